@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * The AbstractEntityEventListener Class
+ * <p/>
+ * The base class of the components that keep in-memory state derived from
+ * the persisted entities, such as caches and indexes, up to date through the
+ * Hibernate entity events. Once initialised, the component is registered
+ * for whichever of the post insert, update and delete events it implements
+ * the listener interfaces of.
+ * <p/>
+ * The Hibernate post-commit event handling is not requested, since the
+ * listeners defer their work through the Spring transaction synchronisation
+ * instead, i.e. until the modifying transaction has been committed, which is
+ * also when the search indexes get updated. This way no rolled back
+ * modification is ever applied, while the events still provide the entity
+ * states before and after the modification. When no transaction is active,
+ * the work is performed straight away.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public abstract class AbstractEntityEventListener {
+
+    /**
+     * The Entity Manager Factory.
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Once the component has been initialised, register it as a Hibernate
+     * entity event listener for all the event types it supports.
+     */
+    @PostConstruct
+    public void registerListeners() {
+        final EventListenerRegistry registry = this.entityManagerFactory
+                .unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        Optional.ofNullable(registry).ifPresent(r -> {
+            if(this instanceof PostInsertEventListener listener) {
+                r.appendListeners(EventType.POST_INSERT, listener);
+            }
+            if(this instanceof PostUpdateEventListener listener) {
+                r.appendListeners(EventType.POST_UPDATE, listener);
+            }
+            if(this instanceof PostDeleteEventListener listener) {
+                r.appendListeners(EventType.POST_DELETE, listener);
+            }
+        });
+    }
+
+    /**
+     * The listeners defer their work through the Spring transaction
+     * synchronisation, so they do not need to wait for the transaction to
+     * commit through Hibernate.
+     *
+     * @param persister the entity persister
+     * @return always false
+     */
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * Runs the provided task once the current transaction has been
+     * committed, or straight away if no transaction is active.
+     *
+     * @param task the task to be run
+     */
+    protected void runAfterCommit(Runnable task) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    task.run();
+                }
+            });
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Runs the provided task straight away, and once more after the current
+     * transaction has been committed, if one is active. This suits the
+     * invalidations which should take effect immediately, but which could
+     * otherwise be undone by a reload before the commit.
+     *
+     * @param task the task to be run
+     */
+    protected void runNowAndAfterCommit(Runnable task) {
+        task.run();
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.runAfterCommit(task);
+        }
+    }
+
+}
@@ -0,0 +1,506 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201AtonTypes;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
+import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.grad.eNav.atonAdminService.utils.VectorTileEncoder;
+import org.hibernate.Hibernate;
+import org.hibernate.event.spi.*;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * The AtonClusterIndex Component Class
+ * <p/>
+ * Maintains an in-memory, pre-aggregated grid of the Aids to Navigation
+ * positions, so that the low zoom map views can be served as clusters in
+ * time proportional to the number of the returned clusters, rather than to
+ * the number of the AtoNs they contain. The grid follows the web mercator
+ * tiling scheme, with a configurable number of cells per tile side, and it
+ * holds the AtoN counts, mean positions, bounding boxes and per-type
+ * breakdowns of every occupied cell, for every zoom level up to the
+ * configured maximum.
+ * <p/>
+ * Since this does not depend on any search backend aggregation, the same
+ * index is used with both the Elasticsearch and the embedded Lucene
+ * backends. The grid is lazily built once from a light-weight projection of
+ * the AtoN positions and types. After that, whenever an AtoN is inserted,
+ * updated or deleted, only the cells its previous and current positions
+ * fall within are updated, once the modifying transaction has been
+ * committed.
+ * <p/>
+ * The grid is built without holding the component lock, so that the AtoN
+ * updates committed in the meantime are not blocked. These are queued
+ * instead and replayed once the built grid has been swapped in. Replaying
+ * an update already reflected in the loaded positions has no effect.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class AtonClusterIndex extends AbstractEntityEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    /**
+     * The number of grid cells per tile side, as a power of two.
+     */
+    @Value("${gla.rad.aton-service.clusters.precision:2}")
+    int precision;
+
+    /**
+     * The maximum grid level to be pre-aggregated.
+     */
+    @Value("${gla.rad.aton-service.clusters.maxLevel:16}")
+    int maxLevel;
+
+    // Component Variables
+    private final Object buildLock = new Object();
+    private List<Map<Long, Cell>> grid;
+    private Map<BigInteger, Position> positions;
+    private Map<BigInteger, Position> pendingMoves;
+
+    /**
+     * The position of an AtoN within the cluster grid.
+     *
+     * @param latitude the latitude of the AtoN centroid
+     * @param longitude the longitude of the AtoN centroid
+     * @param type the AtoN type description
+     */
+    record Position(double latitude, double longitude, String type) {
+    }
+
+    /**
+     * Returns the AtoN clusters of the grid cells that intersect with the
+     * provided bounds, for the specified map zoom level. The bounds should
+     * be provided as created by {@link GeometryUtils#toEnvelopes}, i.e. not
+     * crossing the antimeridian.
+     *
+     * @param bounds the geographic bounds
+     * @param zoom the map zoom level
+     * @return the AtoN clusters within the bounds
+     */
+    public List<AtonClusterDto> getClusters(Envelope bounds, int zoom) {
+        this.loadGrid();
+        synchronized (this) {
+            return this.getClusters(this.grid, bounds, zoom);
+        }
+    }
+
+    /**
+     * Returns the AtoN clusters of the provided grid that intersect with the
+     * provided bounds, for the specified map zoom level. This should only be
+     * called while holding the component lock.
+     *
+     * @param grid the cluster grid levels
+     * @param bounds the geographic bounds
+     * @param zoom the map zoom level
+     * @return the AtoN clusters within the bounds
+     */
+    protected List<AtonClusterDto> getClusters(List<Map<Long, Cell>> grid, Envelope bounds, int zoom) {
+        final int level = Math.min(Math.max(zoom, 0) + this.precision, this.maxLevel);
+        final Map<Long, Cell> cells = grid.get(level);
+        final long n = 1L << level;
+
+        // Find the range of the cells within the bounds - y grows southwards
+        final long minCellX = toCell(toFractionX(bounds.getMinY()), n);
+        final long maxCellX = toCell(toFractionX(bounds.getMaxY()), n);
+        final long minCellY = toCell(toFractionY(bounds.getMaxX()), n);
+        final long maxCellY = toCell(toFractionY(bounds.getMinX()), n);
+
+        // Visit whichever is smaller, the cell range or the occupied cells
+        final List<AtonClusterDto> clusters = new ArrayList<>();
+        if((maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) <= cells.size()) {
+            for(long x = minCellX; x <= maxCellX; x++) {
+                for(long y = minCellY; y <= maxCellY; y++) {
+                    Optional.ofNullable(cells.get(toKey(x, y)))
+                            .map(Cell::toDto)
+                            .ifPresent(clusters::add);
+                }
+            }
+        } else {
+            cells.forEach((key, cell) -> {
+                final long x = key >>> 32;
+                final long y = key & 0xFFFFFFFFL;
+                if(x >= minCellX && x <= maxCellX && y >= minCellY && y <= maxCellY) {
+                    clusters.add(cell.toDto());
+                }
+            });
+        }
+        return clusters;
+    }
+
+    /**
+     * Updates the cluster grid after an AtoN insertion.
+     *
+     * @param event the post insert event
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.update(event.getEntity(), false);
+    }
+
+    /**
+     * Updates the cluster grid after an AtoN update.
+     *
+     * @param event the post update event
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.update(event.getEntity(), false);
+    }
+
+    /**
+     * Updates the cluster grid after an AtoN deletion.
+     *
+     * @param event the post delete event
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.update(event.getEntity(), true);
+    }
+
+    /**
+     * Moves the provided entity to its current position in the cluster grid,
+     * or removes it if it has been deleted, as long as it is an AtoN. If a
+     * transaction is currently active, this is deferred until it has been
+     * committed, so that rolled back modifications are never applied.
+     *
+     * @param entity the entity that was modified
+     * @param deleted whether the entity was deleted
+     */
+    protected void update(Object entity, boolean deleted) {
+        if(!(entity instanceof AidsToNavigation aidsToNavigation) || aidsToNavigation.getId() == null) {
+            return;
+        }
+        final BigInteger id = aidsToNavigation.getId();
+        final Position position = deleted ? null : this.toPosition(aidsToNavigation.getGeometry(), Hibernate.getClass(aidsToNavigation));
+
+        // Apply the update once the transaction commits
+        this.runAfterCommit(() -> this.move(id, position));
+    }
+
+    /**
+     * Moves the AtoN with the provided identifier out of the grid cells of
+     * its previous position and into the ones of its current position. If
+     * the grid is being built, the move is queued to be replayed once that
+     * is done, while if the grid building has not started yet, nothing
+     * needs to be done, since it will be loaded with the current positions
+     * anyway.
+     *
+     * @param id the AtoN identifier
+     * @param position the current AtoN position, or null to remove it
+     */
+    protected synchronized void move(BigInteger id, Position position) {
+        if(this.grid == null) {
+            Optional.ofNullable(this.pendingMoves).ifPresent(m -> m.put(id, position));
+            return;
+        }
+        final Position previous = position == null ? this.positions.remove(id) : this.positions.put(id, position);
+        if(Objects.equals(previous, position)) {
+            return;
+        }
+        Optional.ofNullable(previous).ifPresent(p -> this.removeFromGrid(this.grid, p));
+        Optional.ofNullable(position).ifPresent(p -> this.addToGrid(this.grid, p));
+    }
+
+    /**
+     * Builds the cluster grid from the database, if that has not been done
+     * yet. The grid is built without holding the component lock, while any
+     * moves requested in the meantime are queued, and then swapped in,
+     * replaying the queued moves on top of it.
+     */
+    protected void loadGrid() {
+        synchronized (this.buildLock) {
+            synchronized (this) {
+                if(this.grid != null) {
+                    return;
+                }
+                this.pendingMoves = new LinkedHashMap<>();
+            }
+
+            // Build the grid without blocking the moves
+            final Map<BigInteger, Position> builtPositions = new HashMap<>();
+            final List<Map<Long, Cell>> builtGrid;
+            try {
+                builtGrid = this.buildGrid(this.loadAtons(), builtPositions);
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    this.pendingMoves = null;
+                }
+                throw ex;
+            }
+
+            // Swap it in and replay the queued moves
+            synchronized (this) {
+                this.grid = builtGrid;
+                this.positions = builtPositions;
+                final Map<BigInteger, Position> queued = this.pendingMoves;
+                this.pendingMoves = null;
+                queued.forEach(this::move);
+            }
+        }
+    }
+
+    /**
+     * Builds a cluster grid from the provided [identifier, geometry, type]
+     * rows, aggregating the centroid of every AtoN into one cell per grid
+     * level.
+     *
+     * @param rows the AtoN rows
+     * @param positions the map to be populated with the AtoN positions
+     * @return the cluster grid levels
+     */
+    protected List<Map<Long, Cell>> buildGrid(List<Object[]> rows, Map<BigInteger, Position> positions) {
+        final List<Map<Long, Cell>> grid = new ArrayList<>();
+        for(int level = 0; level <= this.maxLevel; level++) {
+            grid.add(new HashMap<>());
+        }
+        for(Object[] row : rows) {
+            Optional.ofNullable(this.toPosition((Geometry) row[1], row[2])).ifPresent(position -> {
+                positions.put((BigInteger) row[0], position);
+                this.addToGrid(grid, position);
+            });
+        }
+        log.debug("Built the AtoN cluster grid with {} entries over {} levels", positions.size(), grid.size());
+        return grid;
+    }
+
+    /**
+     * Adds an AtoN position to its cell on every level of the provided grid.
+     *
+     * @param grid the cluster grid levels
+     * @param position the AtoN position
+     */
+    protected void addToGrid(List<Map<Long, Cell>> grid, Position position) {
+        final double fx = toFractionX(position.longitude());
+        final double fy = toFractionY(position.latitude());
+        for(int level = 0; level <= this.maxLevel; level++) {
+            final long n = 1L << level;
+            grid.get(level)
+                    .computeIfAbsent(toKey(toCell(fx, n), toCell(fy, n)), k -> new Cell())
+                    .add(position, level == this.maxLevel);
+        }
+    }
+
+    /**
+     * Removes an AtoN position from its cell on every level of the provided
+     * grid. The cell bounding boxes are recomputed bottom-up, from the
+     * remaining positions of the highest level cell and then from the four
+     * child cells of every lower level one.
+     *
+     * @param grid the cluster grid levels
+     * @param position the AtoN position
+     */
+    protected void removeFromGrid(List<Map<Long, Cell>> grid, Position position) {
+        final double fx = toFractionX(position.longitude());
+        final double fy = toFractionY(position.latitude());
+        for(int level = this.maxLevel; level >= 0; level--) {
+            final long n = 1L << level;
+            final long x = toCell(fx, n);
+            final long y = toCell(fy, n);
+            final Map<Long, Cell> cells = grid.get(level);
+            final Cell cell = cells.get(toKey(x, y));
+            if(cell == null) {
+                continue;
+            }
+            cell.remove(position);
+            if(cell.count <= 0) {
+                cells.remove(toKey(x, y));
+            } else if(level == this.maxLevel) {
+                cell.resetBounds();
+                cell.positions.forEach(p -> cell.include(p.latitude(), p.latitude(), p.longitude(), p.longitude()));
+            } else {
+                cell.resetBounds();
+                final Map<Long, Cell> children = grid.get(level + 1);
+                for(long cx = 2 * x; cx <= 2 * x + 1; cx++) {
+                    for(long cy = 2 * y; cy <= 2 * y + 1; cy++) {
+                        Optional.ofNullable(children.get(toKey(cx, cy)))
+                                .ifPresent(child -> cell.include(child.minLatitude, child.maxLatitude, child.minLongitude, child.maxLongitude));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads the identifiers, geometries and concrete types of all the AtoNs
+     * from the database, using a simple projection.
+     *
+     * @return the list of the [identifier, geometry, type] rows
+     */
+    protected List<Object[]> loadAtons() {
+        final EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(
+                    "select a.id, a.geometry, type(a) from AidsToNavigation a where a.geometry is not null", Object[].class)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Translates an AtoN geometry and concrete type into its position in the
+     * cluster grid, i.e. the centroid of the geometry, in the axis order
+     * described in {@link GeometryUtils}.
+     *
+     * @param geometry the AtoN geometry
+     * @param type the concrete AtoN class
+     * @return the AtoN position, or null if there is no geometry
+     */
+    protected Position toPosition(Geometry geometry, Object type) {
+        if(geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        final Coordinate centroid = geometry.getCentroid().getCoordinate();
+        return new Position(centroid.x, centroid.y, this.getAtonType(type));
+    }
+
+    /**
+     * Translates the concrete AtoN class of a projection row into the AtoN
+     * type description.
+     *
+     * @param type the concrete AtoN class
+     * @return the AtoN type description
+     */
+    @SuppressWarnings("unchecked")
+    protected String getAtonType(Object type) {
+        return Optional.ofNullable(type)
+                .filter(Class.class::isInstance)
+                .map(Class.class::cast)
+                .filter(AidsToNavigation.class::isAssignableFrom)
+                .map(c -> S201AtonTypes.fromLocalClass((Class<? extends AidsToNavigation>) c))
+                .orElse(S201AtonTypes.UNKNOWN)
+                .getDescription();
+    }
+
+    /**
+     * Converts a longitude into its fraction of the web mercator X axis.
+     *
+     * @param longitude the longitude
+     * @return the fraction of the X axis
+     */
+    protected static double toFractionX(double longitude) {
+        return (longitude + 180.0) / 360.0;
+    }
+
+    /**
+     * Converts a latitude into its fraction of the web mercator Y axis,
+     * which grows southwards.
+     *
+     * @param latitude the latitude
+     * @return the fraction of the Y axis
+     */
+    protected static double toFractionY(double latitude) {
+        final double latRad = Math.toRadians(Math.max(-VectorTileEncoder.MAX_LATITUDE, Math.min(VectorTileEncoder.MAX_LATITUDE, latitude)));
+        return (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0;
+    }
+
+    /**
+     * Converts an axis fraction into the index of the grid cell it falls
+     * within.
+     *
+     * @param fraction the axis fraction
+     * @param n the number of cells per axis
+     * @return the cell index
+     */
+    protected static long toCell(double fraction, long n) {
+        return Math.max(0, Math.min(n - 1, (long) Math.floor(fraction * n)));
+    }
+
+    /**
+     * Combines the grid cell indexes into a single key.
+     *
+     * @param x the cell column
+     * @param y the cell row
+     * @return the cell key
+     */
+    protected static long toKey(long x, long y) {
+        return (x << 32) | y;
+    }
+
+    /**
+     * The aggregated contents of a single cluster grid cell. The cells of
+     * the highest grid level also keep their AtoN positions, so that their
+     * bounding boxes can be recomputed when an AtoN is removed.
+     */
+    protected static class Cell {
+        long count;
+        double sumLatitude;
+        double sumLongitude;
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        final Map<String, Long> types = new TreeMap<>();
+        final List<Position> positions = new ArrayList<>();
+
+        void add(Position position, boolean member) {
+            this.count++;
+            this.sumLatitude += position.latitude();
+            this.sumLongitude += position.longitude();
+            this.include(position.latitude(), position.latitude(), position.longitude(), position.longitude());
+            this.types.merge(position.type(), 1L, Long::sum);
+            if(member) {
+                this.positions.add(position);
+            }
+        }
+
+        void remove(Position position) {
+            this.count--;
+            this.sumLatitude -= position.latitude();
+            this.sumLongitude -= position.longitude();
+            this.types.computeIfPresent(position.type(), (type, count) -> count > 1 ? count - 1 : null);
+            this.positions.remove(position);
+        }
+
+        void resetBounds() {
+            this.minLatitude = Double.POSITIVE_INFINITY;
+            this.maxLatitude = Double.NEGATIVE_INFINITY;
+            this.minLongitude = Double.POSITIVE_INFINITY;
+            this.maxLongitude = Double.NEGATIVE_INFINITY;
+        }
+
+        void include(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+            this.minLatitude = Math.min(this.minLatitude, minLatitude);
+            this.maxLatitude = Math.max(this.maxLatitude, maxLatitude);
+            this.minLongitude = Math.min(this.minLongitude, minLongitude);
+            this.maxLongitude = Math.max(this.maxLongitude, maxLongitude);
+        }
+
+        AtonClusterDto toDto() {
+            final AtonClusterDto dto = new AtonClusterDto();
+            dto.setCount(this.count);
+            dto.setLatitude(this.sumLatitude / this.count);
+            dto.setLongitude(this.sumLongitude / this.count);
+            dto.setBbox(new double[]{this.minLongitude, this.minLatitude, this.maxLongitude, this.maxLatitude});
+            dto.setTypes(new LinkedHashMap<>(this.types));
+            return dto;
+        }
+    }
+
+}
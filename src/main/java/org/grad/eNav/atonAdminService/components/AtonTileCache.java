@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.utils.VectorTileEncoder;
+import org.hibernate.event.spi.*;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * The AtonTileCache Component Class
+ * <p/>
+ * Generating the AtoN vector tiles requires a spatial search and the
+ * encoding of all the matching AtoN geometries, while the same tiles are
+ * requested again and again by the map clients. This component therefore
+ * keeps the generated (compressed) tiles in memory, evicting the least
+ * recently used ones once the maximum number of entries is reached.
+ * <p/>
+ * Whenever an AtoN is inserted, updated or deleted, only the cached tiles
+ * that its previous or current geometry falls within (including the tile
+ * buffer) are dropped, once the modifying transaction commits, so that no
+ * tile is left showing stale data. The cached tiles are also indexed per
+ * zoom level, so that only the tiles covering the modified area need to be
+ * looked up, rather than scanning the whole cache.
+ * <p/>
+ * A tile generated while an eviction takes place may still reflect the
+ * previous data, so every eviction advances an invalidation generation,
+ * and the tiles are only cached if no eviction took place since their
+ * generation started. Since the search index may also lag slightly behind
+ * the committed data, the cached tiles additionally expire after a short
+ * time-to-live.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class AtonTileCache extends AbstractEntityEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    /**
+     * Whether the tile caching is enabled.
+     */
+    @Value("${gla.rad.aton-service.tiles.cache.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The maximum number of cached tiles.
+     */
+    @Value("${gla.rad.aton-service.tiles.cache.maxEntries:10000}")
+    int maxEntries;
+
+    /**
+     * The time-to-live of the cached tiles in milliseconds. A non-positive
+     * value disables the expiry.
+     */
+    @Value("${gla.rad.aton-service.tiles.cache.ttl:60000}")
+    long ttl;
+
+    /**
+     * The extent of the tile coordinate space.
+     */
+    @Value("${gla.rad.aton-service.tiles.extent:4096}")
+    int extent;
+
+    /**
+     * The tile buffer in tile coordinate units.
+     */
+    @Value("${gla.rad.aton-service.tiles.buffer:64}")
+    int buffer;
+
+    // Component Variables
+    private final LinkedHashMap<TileKey, CachedTile> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Set<TileKey>> levels = new HashMap<>();
+    private long generation;
+
+    /**
+     * The key of a cached tile.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     */
+    record TileKey(int z, int x, int y) {
+    }
+
+    /**
+     * A cached tile.
+     *
+     * @param tile the tile content
+     * @param expiresAt the tile expiry time in milliseconds, or zero if none
+     */
+    record CachedTile(byte[] tile, long expiresAt) {
+    }
+
+    /**
+     * Returns the cached tile for the provided coordinates, if available.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the cached tile
+     */
+    public synchronized Optional<byte[]> get(int z, int x, int y) {
+        if(!this.enabled) {
+            return Optional.empty();
+        }
+        final TileKey key = new TileKey(z, x, y);
+        final CachedTile cached = this.tiles.get(key);
+        if(cached != null && cached.expiresAt() > 0 && cached.expiresAt() <= System.currentTimeMillis()) {
+            this.tiles.remove(key);
+            this.unindex(key);
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cached).map(CachedTile::tile);
+    }
+
+    /**
+     * Returns the current invalidation generation, which should be read
+     * before generating a tile and passed back when caching it.
+     *
+     * @return the current invalidation generation
+     */
+    public synchronized long getGeneration() {
+        return this.generation;
+    }
+
+    /**
+     * Stores the provided tile in the cache, evicting the least recently
+     * used tiles if the maximum number of entries is exceeded.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @param tile the tile to be cached
+     */
+    public synchronized void put(int z, int x, int y, byte[] tile) {
+        this.put(z, x, y, tile, this.generation);
+    }
+
+    /**
+     * Stores the provided tile in the cache, unless any tiles were evicted
+     * since the provided invalidation generation was read, in which case the
+     * tile may already be stale.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @param tile the tile to be cached
+     * @param generation the invalidation generation read before generating the tile
+     */
+    public synchronized void put(int z, int x, int y, byte[] tile, long generation) {
+        if(!this.enabled || tile == null || generation != this.generation) {
+            return;
+        }
+        final TileKey key = new TileKey(z, x, y);
+        this.tiles.put(key, new CachedTile(tile, this.ttl > 0 ? System.currentTimeMillis() + this.ttl : 0));
+        this.levels.computeIfAbsent(z, k -> new HashSet<>()).add(key);
+        final Iterator<TileKey> iterator = this.tiles.keySet().iterator();
+        while(this.tiles.size() > Math.max(this.maxEntries, 1) && iterator.hasNext()) {
+            this.unindex(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the number of the currently cached tiles.
+     *
+     * @return the number of cached tiles
+     */
+    public synchronized int size() {
+        return this.tiles.size();
+    }
+
+    /**
+     * Returns the geographic envelope of the specified tile, including the
+     * tile buffer, following the S-100 axis order.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the buffered tile envelope
+     */
+    public Envelope getBufferedTileEnvelope(int z, int x, int y) {
+        final Envelope envelope = VectorTileEncoder.getTileEnvelope(z, x, y);
+        final double ratio = (double) this.buffer / Math.max(this.extent, 1);
+        envelope.expandBy(envelope.getWidth() * ratio, envelope.getHeight() * ratio);
+        return envelope;
+    }
+
+    /**
+     * Invalidates the cached tiles after an AtoN insertion.
+     *
+     * @param event the post insert event
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if(event.getEntity() instanceof AidsToNavigation aidsToNavigation) {
+            this.invalidate(aidsToNavigation.getGeometry());
+        }
+    }
+
+    /**
+     * Invalidates the cached tiles after an AtoN update, both for its
+     * previous and its current geometry.
+     *
+     * @param event the post update event
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if(event.getEntity() instanceof AidsToNavigation aidsToNavigation) {
+            final int index = Arrays.asList(event.getPersister().getPropertyNames()).indexOf("geometry");
+            Optional.ofNullable(event.getOldState())
+                    .filter(state -> index >= 0 && index < state.length)
+                    .map(state -> state[index])
+                    .filter(Geometry.class::isInstance)
+                    .map(Geometry.class::cast)
+                    .ifPresent(this::invalidate);
+            this.invalidate(aidsToNavigation.getGeometry());
+        }
+    }
+
+    /**
+     * Invalidates the cached tiles after an AtoN deletion.
+     *
+     * @param event the post delete event
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if(event.getEntity() instanceof AidsToNavigation aidsToNavigation) {
+            this.invalidate(aidsToNavigation.getGeometry());
+        }
+    }
+
+    /**
+     * Drops all the cached tiles that the provided geometry falls within.
+     * If a transaction is currently active, this is deferred until it has
+     * been committed, since the cached tiles remain valid up to that point
+     * and the spatial index is only updated then.
+     *
+     * @param geometry the geometry of the modified AtoN
+     */
+    public void invalidate(Geometry geometry) {
+        if(geometry == null || geometry.isEmpty()) {
+            return;
+        }
+        final Envelope envelope = geometry.getEnvelopeInternal();
+
+        // Evict the tiles once the transaction commits
+        this.runAfterCommit(() -> this.evict(envelope));
+    }
+
+    /**
+     * Drops all the cached tiles whose buffered envelope intersects with the
+     * provided envelope. For every cached zoom level, either the range of
+     * tiles around the envelope or the cached tiles of that level are
+     * checked, whichever is smaller. Any tiles being generated in the
+     * meantime will not be cached.
+     *
+     * @param envelope the envelope of the modified area
+     */
+    protected synchronized void evict(Envelope envelope) {
+        this.generation++;
+        final int margin = 1 + (int) Math.ceil((double) this.buffer / Math.max(this.extent, 1));
+        for(Map.Entry<Integer, Set<TileKey>> level : new ArrayList<>(this.levels.entrySet())) {
+            final int z = level.getKey();
+            final double n = Math.pow(2, z);
+            final int minX = (int) Math.max(Math.floor(VectorTileEncoder.longitudeToTile(envelope.getMinY(), n)) - margin, 0);
+            final int maxX = (int) Math.min(Math.floor(VectorTileEncoder.longitudeToTile(envelope.getMaxY(), n)) + margin, n - 1);
+            final int minY = (int) Math.max(Math.floor(VectorTileEncoder.latitudeToTile(envelope.getMaxX(), n)) - margin, 0);
+            final int maxY = (int) Math.min(Math.floor(VectorTileEncoder.latitudeToTile(envelope.getMinX(), n)) + margin, n - 1);
+
+            // Collect the candidate tiles of this level
+            final List<TileKey> candidates = new ArrayList<>();
+            if((long) (maxX - minX + 1) * (maxY - minY + 1) <= level.getValue().size()) {
+                for(int x = minX; x <= maxX; x++) {
+                    for(int y = minY; y <= maxY; y++) {
+                        Optional.of(new TileKey(z, x, y))
+                                .filter(level.getValue()::contains)
+                                .ifPresent(candidates::add);
+                    }
+                }
+            } else {
+                candidates.addAll(level.getValue());
+            }
+            candidates.stream()
+                    .filter(key -> this.getBufferedTileEnvelope(key.z(), key.x(), key.y()).intersects(envelope))
+                    .forEach(key -> {
+                        this.tiles.remove(key);
+                        this.unindex(key);
+                    });
+        }
+    }
+
+    /**
+     * Removes the provided tile key from the per zoom level index.
+     *
+     * @param key the tile key
+     */
+    protected void unindex(TileKey key) {
+        Optional.ofNullable(this.levels.get(key.z())).ifPresent(keys -> {
+            keys.remove(key);
+            if(keys.isEmpty()) {
+                this.levels.remove(key.z());
+            }
+        });
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.FeatureName;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201AtonTypes;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonUpdateDto;
+import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The AtonUpdateBroadcaster Component Class
+ * <p/>
+ * This component broadcasts the AtoN updates to the web-socket clients.
+ * Rather than sending a separate frame for every update, the updates are
+ * coalesced per AtoN ID code over a short window, so that only the latest
+ * state of each AtoN is sent, and are then published as batched frames of
+ * compact AtoN update DTOs. This way bulk updates, such as a replay of the
+ * publication topic, will not flood the connected clients.
+ * <p/>
+ * All clients subscribed to the general topics receive every update.
+ * Clients that register their map viewport are instead expected to subscribe
+ * only to their user destinations (e.g. "/user/topic/S201"), where they will
+ * receive just the updates falling within that viewport. The deletions are
+ * always sent in full, since the clients might still be displaying AtoNs
+ * outside their current viewport.
+ * <p/>
+ * The publishers only place the updates in the pending map, so they are
+ * never blocked by the web-socket clients.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class AtonUpdateBroadcaster {
+
+    /**
+     * The General Destination Prefix
+     */
+    @Value("${gla.rad.aton-service.web-socket.prefix:topic}")
+    String prefix;
+
+    /**
+     * The maximum number of AtoN updates in each frame.
+     */
+    @Value("${gla.rad.aton-service.web-socket.broadcast.maxBatchSize:500}")
+    int maxBatchSize;
+
+    /**
+     * Attach the web-socket as a simple messaging template
+     */
+    @Autowired
+    SimpMessagingTemplate webSocket;
+
+    // Component Variables
+    final Map<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+    final Map<String, List<Envelope>> viewports = new ConcurrentHashMap<>();
+
+    /**
+     * A pending AtoN update and whether that is a deletion.
+     *
+     * @param update the compact AtoN update
+     * @param deletion whether the AtoN was deleted
+     */
+    record PendingUpdate(AtonUpdateDto update, boolean deletion) {
+    }
+
+    /**
+     * Places the provided AtoN in the pending updates, replacing any earlier
+     * update for the same AtoN ID code that has not been broadcast yet.
+     *
+     * @param aidsToNavigation the updated AtoN
+     * @param deletion whether the AtoN was deleted
+     */
+    public void enqueue(AidsToNavigation aidsToNavigation, boolean deletion) {
+        if(Objects.isNull(aidsToNavigation) || Objects.isNull(aidsToNavigation.getIdCode())) {
+            return;
+        }
+        this.pending.put(aidsToNavigation.getIdCode(), new PendingUpdate(this.toUpdate(aidsToNavigation), deletion));
+    }
+
+    /**
+     * Registers the map viewport of a web-socket session, provided as a
+     * [minLon, minLat, maxLon, maxLat] bounding box. Viewports crossing the
+     * antimeridian are split in two. An invalid bounding box clears the
+     * session viewport.
+     *
+     * @param sessionId the web-socket session ID
+     * @param bbox the viewport bounding box
+     */
+    public void setViewport(String sessionId, double[] bbox) {
+        if(Objects.isNull(sessionId)) {
+            return;
+        }
+        if(Objects.isNull(bbox) || bbox.length != 4) {
+            this.viewports.remove(sessionId);
+            return;
+        }
+        this.viewports.put(sessionId, GeometryUtils.toEnvelopes(bbox));
+    }
+
+    /**
+     * Clears the viewport of any web-socket session that disconnects.
+     *
+     * @param event the session disconnect event
+     */
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        this.viewports.remove(event.getSessionId());
+    }
+
+    /**
+     * Broadcasts all the pending AtoN updates in batched frames, once per
+     * broadcast window. Any updates arriving while broadcasting will be
+     * picked up by the next window.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.aton-service.web-socket.broadcast.window:500}")
+    public void flush() {
+        if(this.pending.isEmpty()) {
+            return;
+        }
+
+        // Drain the pending updates
+        final List<AtonUpdateDto> updates = new ArrayList<>();
+        final List<AtonUpdateDto> deletions = new ArrayList<>();
+        for(String idCode : new ArrayList<>(this.pending.keySet())) {
+            Optional.ofNullable(this.pending.remove(idCode))
+                    .ifPresent(p -> (p.deletion() ? deletions : updates).add(p.update()));
+        }
+
+        // Broadcast everything to the general topics
+        final String updatesTopic = String.format("/%s/S201", this.prefix);
+        final String deletionsTopic = String.format("/%s/deletions/S201", this.prefix);
+        this.send(updatesTopic, updates, null);
+        this.send(deletionsTopic, deletions, null);
+
+        // And only what is within each session viewport to the user destinations
+        this.viewports.forEach((sessionId, viewport) -> {
+            this.send(updatesTopic, updates.stream()
+                    .filter(update -> this.isInViewport(update, viewport))
+                    .toList(), sessionId);
+            this.send(deletionsTopic, deletions, sessionId);
+        });
+    }
+
+    /**
+     * Sends the provided AtoN updates in frames of up to the maximum batch
+     * size, either to a general topic, or to the user destination of the
+     * provided session.
+     *
+     * @param destination the destination to send the updates to
+     * @param updates the AtoN updates
+     * @param sessionId the web-socket session ID, if sending to a user destination
+     */
+    protected void send(String destination, List<AtonUpdateDto> updates, String sessionId) {
+        final int batchSize = Math.max(this.maxBatchSize, 1);
+        for(int i = 0; i < updates.size(); i += batchSize) {
+            final List<AtonUpdateDto> batch = updates.subList(i, Math.min(i + batchSize, updates.size()));
+            try {
+                if(Objects.isNull(sessionId)) {
+                    this.webSocket.convertAndSend(destination, batch);
+                } else {
+                    final SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+                    headerAccessor.setSessionId(sessionId);
+                    headerAccessor.setLeaveMutable(true);
+                    this.webSocket.convertAndSendToUser(sessionId, destination, batch, headerAccessor.getMessageHeaders());
+                }
+            } catch (Exception ex) {
+                log.warn("Failed to broadcast AtoN updates to {}: {}", destination, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the provided AtoN update falls within the provided
+     * viewport.
+     *
+     * @param update the AtoN update
+     * @param viewport the viewport envelopes
+     * @return whether the AtoN update falls within the viewport
+     */
+    protected boolean isInViewport(AtonUpdateDto update, List<Envelope> viewport) {
+        return Optional.ofNullable(update.getGeometry())
+                .map(Geometry::getEnvelopeInternal)
+                .filter(envelope -> viewport.stream().anyMatch(envelope::intersects))
+                .isPresent();
+    }
+
+    /**
+     * Converts the provided AtoN into the compact AtoN update DTO.
+     *
+     * @param aidsToNavigation the AtoN
+     * @return the compact AtoN update DTO
+     */
+    protected AtonUpdateDto toUpdate(AidsToNavigation aidsToNavigation) {
+        final AtonUpdateDto update = new AtonUpdateDto();
+        update.setId(aidsToNavigation.getId());
+        update.setIdCode(aidsToNavigation.getIdCode());
+        update.setAtonType(S201AtonTypes.fromLocalClass(aidsToNavigation.getClass()).getDescription());
+        update.setName(Optional.ofNullable(aidsToNavigation.getFeatureNames())
+                .orElse(Collections.emptySet())
+                .stream()
+                .map(FeatureName::getName)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null));
+        update.setDateStart(aidsToNavigation.getDateStart());
+        update.setDateEnd(aidsToNavigation.getDateEnd());
+        update.setGeometry(aidsToNavigation.getGeometry());
+        return update;
+    }
+
+}
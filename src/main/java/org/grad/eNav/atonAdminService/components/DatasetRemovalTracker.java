@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.hibernate.event.spi.*;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The DatasetRemovalTracker Component Class
+ * <p/>
+ * The Last-Modified validators of the dataset retrieval endpoints are based
+ * on the modification times of the returned datasets. These cannot reflect
+ * a dataset that has since been removed, i.e. cancelled or deleted, so a
+ * client revalidating through the If-Modified-Since header would keep
+ * holding it. This component therefore keeps track of the last time any
+ * dataset was removed, which the endpoints include in their Last-Modified
+ * validators.
+ * <p/>
+ * The time is kept in whole seconds and never exceeds the current time, as
+ * required for the Last-Modified header, so any removals within the same
+ * second as a previous response are only detected through the ETag
+ * validators, which include the total number of matching datasets. Like
+ * the rest of the in-memory caches of this service, the time is kept per
+ * service instance and is initialised with the instance start time.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class DatasetRemovalTracker extends AbstractEntityEventListener implements PostUpdateEventListener, PostDeleteEventListener {
+
+    // Component Variables
+    volatile Instant lastRemovalTime = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+    /**
+     * Returns the last time a dataset was removed, in whole seconds in line
+     * with the HTTP dates.
+     *
+     * @return the last dataset removal time
+     */
+    public Instant getLastRemovalTime() {
+        return this.lastRemovalTime;
+    }
+
+    /**
+     * Tracks the removal time after a dataset update, only if the dataset
+     * was cancelled by it.
+     *
+     * @param event the post update event
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if(event.getEntity() instanceof S201Dataset dataset && Boolean.TRUE.equals(dataset.getCancelled())) {
+            final int index = Arrays.asList(event.getPersister().getPropertyNames()).indexOf("cancelled");
+            final boolean wasCancelled = Optional.ofNullable(event.getOldState())
+                    .filter(state -> index >= 0 && index < state.length)
+                    .map(state -> state[index])
+                    .map(Boolean.TRUE::equals)
+                    .orElse(false);
+            if(!wasCancelled) {
+                this.track(dataset);
+            }
+        }
+    }
+
+    /**
+     * Tracks the removal time after a dataset deletion.
+     *
+     * @param event the post delete event
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.track(event.getEntity());
+    }
+
+    /**
+     * Updates the last removal time if the provided entity is a dataset. If
+     * a transaction is currently active, this is deferred until it has been
+     * committed, so that no response generated before the commit can be
+     * validated against the new time.
+     *
+     * @param entity the entity that was modified
+     */
+    protected void track(Object entity) {
+        if(!(entity instanceof S201Dataset)) {
+            return;
+        }
+
+        // Update the removal time once the transaction commits
+        this.runAfterCommit(this::advance);
+    }
+
+    /**
+     * Advances the last removal time to the current second, without ever
+     * moving it backwards if concurrent commits are completed out of order.
+     */
+    protected synchronized void advance() {
+        final Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        if(now.isAfter(this.lastRemovalTime)) {
+            this.lastRemovalTime = now;
+        }
+    }
+
+}
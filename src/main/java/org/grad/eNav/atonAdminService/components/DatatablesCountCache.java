@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
+import org.grad.eNav.atonAdminService.models.dtos.datatables.DtSearch;
+import org.hibernate.event.spi.*;
+import org.hibernate.search.engine.search.query.SearchQuery;
+import org.hibernate.search.engine.search.query.SearchResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * The DatatablesCountCache Component Class
+ *
+ * Computing the exact total hit count of a search is the most expensive part
+ * of a datatables paging request, and it is repeated for every page the user
+ * navigates through, although the total does not change unless the search
+ * text does. This component therefore caches the total hit counts per entity
+ * class and search key, so that subsequent pages of the same search only need
+ * to fetch the requested hits. The counts are kept in the bounded
+ * "datatablesCountCache" region defined in the ehcache.xml, whose
+ * time-to-live also bounds the staleness caused by any modifications that
+ * bypass the Hibernate entity events.
+ * <p/>
+ * The cached counts of an entity class are invalidated whenever an entity of
+ * that class is inserted, updated or deleted (and once more after the
+ * modifying transaction commits), by advancing the generation of that class,
+ * which is part of the cache keys. The counts of the previous generations are
+ * then no longer looked up and are left to expire from the cache.
+ * <p/>
+ * Optionally, an approximate total hit count threshold can be configured.
+ * When set, the search backends are allowed to stop counting once the
+ * threshold is reached, and the reported total only guarantees that the
+ * next page exists.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class DatatablesCountCache extends AbstractEntityEventListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    /**
+     * Whether the count caching is enabled.
+     */
+    @Value("${gla.rad.aton-service.datatables.count-cache.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The approximate total hit count threshold; zero for exact totals.
+     */
+    @Value("${gla.rad.aton-service.datatables.total-hit-count-threshold:0}")
+    int totalHitCountThreshold;
+
+    /**
+     * The Cache Manager.
+     */
+    @Autowired(required = false)
+    CacheManager cacheManager;
+
+    // Component Variables
+    private final Map<Class<?>, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the total hit count threshold that the datatables search
+     * queries should be constructed with. If no approximate threshold has
+     * been configured, the returned value will request exact totals.
+     *
+     * @return the total hit count threshold
+     */
+    public int getTotalHitCountThreshold() {
+        return this.totalHitCountThreshold > 0 ? this.totalHitCountThreshold : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Fetches the page requested by the provided datatables paging request
+     * from the provided search query. If the total hit count of the same
+     * search has already been cached, only the page hits are fetched,
+     * otherwise the total is calculated by the search and cached for the
+     * next requests.
+     *
+     * @param entityClass       the class of the entities being searched
+     * @param searchQuery       the search query to be fetched
+     * @param dtPagingRequest   the datatables paging request
+     * @param keyParts          any additional search parameters affecting the total
+     * @return the requested page
+     * @param <T> the type of the search hits
+     */
+    public <T> Page<T> fetchPage(Class<?> entityClass,
+                                 SearchQuery<T> searchQuery,
+                                 DtPagingRequest dtPagingRequest,
+                                 Object... keyParts) {
+        final int start = dtPagingRequest.getStart();
+        final int length = dtPagingRequest.getLength();
+        final String key = this.generateKey(entityClass, Optional.ofNullable(dtPagingRequest.getSearch())
+                .map(DtSearch::getValue)
+                .orElse(null), keyParts);
+
+        // If the total is already known, just fetch the hits
+        final Long cachedCount = this.getCachedCount(key);
+        if(Objects.nonNull(cachedCount)) {
+            return new PageImpl<>(searchQuery.fetchHits(start, length), dtPagingRequest.toPageRequest(), cachedCount);
+        }
+
+        // Otherwise perform the search and pick up the total
+        final SearchResult<T> searchResult = searchQuery.fetch(start, length);
+        final long total;
+        if(this.totalHitCountThreshold > 0 && !searchResult.total().isHitCountExact()) {
+            // Only guarantee that the next page is reachable
+            total = Math.max(searchResult.total().hitCountLowerBound(), (long) start + length + 1);
+        } else {
+            total = searchResult.total().hitCount();
+            this.putCachedCount(key, total);
+        }
+        return new PageImpl<>(searchResult.hits(), dtPagingRequest.toPageRequest(), total);
+    }
+
+    /**
+     * Invalidates the cached counts after an entity insertion.
+     *
+     * @param event the post insert event
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Invalidates the cached counts after an entity update.
+     *
+     * @param event the post update event
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Invalidates the cached counts after an entity deletion.
+     *
+     * @param event the post delete event
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Invalidates all the cached counts of the entity classes that the
+     * provided entity belongs to. If a transaction is currently active, the
+     * same counts will be invalidated again once it has been committed,
+     * since the search index is only updated at that point.
+     *
+     * @param entity the entity that was modified
+     */
+    protected void invalidate(Object entity) {
+        final List<AtomicLong> affected = this.generations.entrySet()
+                .stream()
+                .filter(e -> e.getKey().isInstance(entity))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        if(affected.isEmpty()) {
+            return;
+        }
+
+        // Invalidate now and again after the transaction commits
+        this.runNowAndAfterCommit(() -> affected.forEach(AtomicLong::incrementAndGet));
+    }
+
+    /**
+     * Generates the cache key of the provided search, out of the entity
+     * class along with its current generation, the search text and any
+     * additional key parts. The search text is used as it is, since the
+     * wildcard searches are sensitive to both letter case and whitespace.
+     *
+     * @param entityClass   the class of the entities being searched
+     * @param searchText    the search text
+     * @param keyParts      the additional search parameters
+     * @return the cache key
+     */
+    protected String generateKey(Class<?> entityClass, String searchText, Object... keyParts) {
+        final long generation = this.generations.computeIfAbsent(entityClass, c -> new AtomicLong()).get();
+        return Arrays.stream(Optional.ofNullable(keyParts).orElseGet(() -> new Object[]{}))
+                .map(String::valueOf)
+                .collect(Collectors.joining("|",
+                        String.format("%s#%d|%s|", entityClass.getName(), generation, Optional.ofNullable(searchText).orElse("")),
+                        ""));
+    }
+
+    /**
+     * Returns the cached count of the provided key, if caching is enabled
+     * and the cached count has not yet expired.
+     *
+     * @param key           the cache key
+     * @return the cached count, or null if not available
+     */
+    protected Long getCachedCount(String key) {
+        if(!this.enabled) {
+            return null;
+        }
+        return this.getCountCache()
+                .map(cache -> cache.get(key, Long.class))
+                .orElse(null);
+    }
+
+    /**
+     * Caches the count of the provided key, if caching is enabled.
+     *
+     * @param key           the cache key
+     * @param count         the total hit count
+     */
+    protected void putCachedCount(String key, long count) {
+        if(!this.enabled) {
+            return;
+        }
+        this.getCountCache().ifPresent(cache -> cache.put(key, count));
+    }
+
+    /**
+     * Returns the datatables count cache, if that is available.
+     *
+     * @return the datatables count cache
+     */
+    protected Optional<Cache> getCountCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("datatablesCountCache"));
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * The ElasticsearchSpatialSearchProvider Component Class
+ *
+ * The default spatial search provider, which delegates the geo-spatial
+ * predicates to the native Elasticsearch geo_shape queries, as generated by
+ * the {@link GeometryUtils} utility.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.search.backend.type", havingValue = "elasticsearch", matchIfMissing = true)
+public class ElasticsearchSpatialSearchProvider implements SpatialSearchProvider {
+
+    /**
+     * Constructs a native Elasticsearch geo_shape intersection predicate for
+     * the provided field and geometry.
+     *
+     * @param factory       the search predicate factory
+     * @param entityClass   the class of the entities being searched
+     * @param fieldName     the name of the indexed geometry field
+     * @param geometry      the geometry that the results should intersect with
+     * @return the spatial intersection predicate
+     */
+    @Override
+    public PredicateFinalStep intersects(SearchPredicateFactory factory,
+                                         Class<?> entityClass,
+                                         String fieldName,
+                                         Geometry geometry) {
+        return factory.extension(ElasticsearchExtension.get())
+                .fromJson(GeometryUtils.geoShapeIntersectsQuery(fieldName, geometry));
+    }
+
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.event.spi.*;
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The EmbeddedSpatialSearchProvider Component Class
+ *
+ * The spatial search provider used with the embedded, in-process Lucene
+ * search backend. Since the Lucene backend does not support the geo_shape
+ * queries, this provider maintains an in-memory JTS {@link STRtree} for each
+ * searched entity geometry field. The spatial predicates are resolved against
+ * this index (using the exact JTS intersection check for the envelope
+ * candidates) and translated into an identifier predicate, so that they can
+ * be combined with any other Hibernate Search predicate.
+ * <p/>
+ * The in-memory indexes are lazily built from the database and they are
+ * invalidated whenever an entity of the relevant class is inserted, updated
+ * or deleted. The invalidation is repeated once the modifying transaction
+ * has been committed, so that no index is rebuilt from uncommitted data.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.search.backend.type", havingValue = "lucene")
+@Slf4j
+public class EmbeddedSpatialSearchProvider extends AbstractEntityEventListener implements SpatialSearchProvider,
+        PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    // Component Variables
+    private final Map<String, SpatialRegion> regions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs an identifier predicate matching all the entities of the
+     * provided class, whose geometry intersects with the provided geometry,
+     * as resolved by the in-memory spatial index.
+     *
+     * @param factory       the search predicate factory
+     * @param entityClass   the class of the entities being searched
+     * @param fieldName     the name of the indexed geometry field
+     * @param geometry      the geometry that the results should intersect with
+     * @return the spatial intersection predicate
+     */
+    @Override
+    public PredicateFinalStep intersects(SearchPredicateFactory factory,
+                                         Class<?> entityClass,
+                                         String fieldName,
+                                         Geometry geometry) {
+        // Get the spatial region for the requested entity field
+        final SpatialRegion region = this.regions.computeIfAbsent(
+                entityClass.getName() + "#" + fieldName,
+                k -> new SpatialRegion(entityClass, fieldName));
+
+        // Query the envelope candidates and perform the exact check
+        final PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        final List<?> candidates = this.getIndex(region).query(geometry.getEnvelopeInternal());
+        final List<Object> ids = candidates.stream()
+                .map(SpatialEntry.class::cast)
+                .filter(e -> prepared.intersects(e.geometry()))
+                .map(SpatialEntry::id)
+                .toList();
+
+        // An empty identifier list should not match anything
+        return ids.isEmpty() ?
+                factory.not(factory.matchAll()) :
+                factory.id().matchingAny(ids);
+    }
+
+    /**
+     * Invalidates the in-memory spatial indexes after an entity insertion.
+     *
+     * @param event the post insert event
+     */
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Invalidates the in-memory spatial indexes after an entity update.
+     *
+     * @param event the post update event
+     */
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Invalidates the in-memory spatial indexes after an entity deletion.
+     *
+     * @param event the post delete event
+     */
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        this.invalidate(event.getEntity());
+    }
+
+    /**
+     * Marks all the spatial regions that the provided entity belongs to as
+     * dirty. If a transaction is currently active, the same regions will be
+     * marked again once it has been committed.
+     *
+     * @param entity the entity that was modified
+     */
+    protected void invalidate(Object entity) {
+        final List<SpatialRegion> affected = this.regions.values()
+                .stream()
+                .filter(r -> r.entityClass.isInstance(entity))
+                .toList();
+        if(affected.isEmpty()) {
+            return;
+        }
+
+        // Invalidate now and again after the transaction commits
+        this.runNowAndAfterCommit(() -> affected.forEach(SpatialRegion::markDirty));
+    }
+
+    /**
+     * Returns the in-memory spatial index of the provided region, rebuilding
+     * it from the database if it has been invalidated.
+     *
+     * @param region the spatial region
+     * @return the up-to-date spatial index
+     */
+    protected STRtree getIndex(SpatialRegion region) {
+        if(region.index == null || region.dirty) {
+            synchronized (region) {
+                if(region.index == null || region.dirty) {
+                    region.dirty = false;
+                    region.index = this.buildIndex(region);
+                }
+            }
+        }
+        return region.index;
+    }
+
+    /**
+     * Builds the in-memory spatial index of the provided region by loading
+     * the identifiers and the geometries of all the relevant entities.
+     *
+     * @param region the spatial region
+     * @return the newly built spatial index
+     */
+    protected STRtree buildIndex(SpatialRegion region) {
+        final List<Object[]> rows = this.loadGeometries(region);
+
+        // Populate the STR-tree
+        final STRtree index = new STRtree();
+        rows.forEach(row -> {
+            final Geometry geometry = (Geometry) row[1];
+            index.insert(geometry.getEnvelopeInternal(), new SpatialEntry(row[0], geometry));
+        });
+        index.build();
+        log.debug("Built the in-memory spatial index for {}#{} with {} entries",
+                region.entityClass.getSimpleName(), region.fieldName, rows.size());
+        return index;
+    }
+
+    /**
+     * Loads the identifiers and the (non-null) geometries of all the entities
+     * of the provided region from the database, using a simple projection.
+     *
+     * @param region the spatial region
+     * @return the list of the [identifier, geometry] rows
+     */
+    protected List<Object[]> loadGeometries(SpatialRegion region) {
+        final EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            final EntityType<?> entityType = entityManager.getMetamodel().entity(region.entityClass);
+            final String idName = entityType.getSingularAttributes()
+                    .stream()
+                    .filter(SingularAttribute::isId)
+                    .map(SingularAttribute::getName)
+                    .findFirst()
+                    .orElseThrow();
+            return entityManager.createQuery(String.format(
+                    "select e.%s, e.%s from %s e where e.%s is not null",
+                    idName, region.fieldName, entityType.getName(), region.fieldName), Object[].class)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * The in-memory spatial index region of a single entity geometry field.
+     */
+    protected static class SpatialRegion {
+        final Class<?> entityClass;
+        final String fieldName;
+        volatile STRtree index;
+        volatile boolean dirty;
+
+        SpatialRegion(Class<?> entityClass, String fieldName) {
+            this.entityClass = entityClass;
+            this.fieldName = fieldName;
+        }
+
+        void markDirty() {
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * The spatial index entry, holding the entity identifier and geometry.
+     *
+     * @param id        the entity identifier
+     * @param geometry  the entity geometry
+     */
+    private record SpatialEntry(Object id, Geometry geometry) {
+
+    }
+
+}
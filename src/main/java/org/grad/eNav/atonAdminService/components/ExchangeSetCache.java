@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * The ExchangeSetCache Component Class
+ * <p/>
+ * Packaging an S-100 exchange set is an expensive operation, since all the
+ * dataset files need to be written, remotely signed and catalogued before
+ * being compressed, while the same exchange sets are usually requested again
+ * and again by the SECOM clients and the subscription deliveries. This
+ * component therefore keeps the finished exchange set ZIP files on disk,
+ * indexed by a key describing the exact dataset versions they contain, so
+ * that repeat requests can be served by a simple file read.
+ * <p/>
+ * The cache is bounded by the total size of the stored files, evicting the
+ * least recently used entries first, and the entries containing a dataset
+ * are dropped as soon as a new content log for that dataset is saved. The
+ * files are kept in a directory dedicated to this service, and only the
+ * files named by the cache itself are ever deleted from it.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class ExchangeSetCache {
+
+    /**
+     * Whether the exchange set caching is enabled.
+     */
+    @Value("${gla.rad.service.s100.exchangeSet.cache.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The directory to store the cached exchange sets in.
+     */
+    @Value("${gla.rad.service.s100.exchangeSet.cache.dir:${gla.rad.service.s100.exchangeSet.dir:/tmp}/exchangeSetCache}")
+    String cacheDir;
+
+    /**
+     * The maximum total size of the cached exchange sets in bytes.
+     */
+    @Value("${gla.rad.service.s100.exchangeSet.cache.maxSize:104857600}")
+    long maxSize;
+
+    // Class Variables
+    static final String FILE_PREFIX = "exchangeSet-";
+
+    // Component Variables
+    private final LinkedHashMap<String, CachedExchangeSet> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0;
+
+    /**
+     * Once the component has been initialised, make sure the cache directory
+     * exists and delete any exchange sets left over by a previous run, since
+     * the cache index is only kept in memory. Any other files found in the
+     * directory are left untouched.
+     */
+    @PostConstruct
+    public void init() {
+        if(!this.enabled) {
+            return;
+        }
+        try {
+            final Path dir = Paths.get(this.cacheDir);
+            Files.createDirectories(dir);
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(dir, FILE_PREFIX + "*.{zip,tmp}")) {
+                for(Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            log.error("Error while initialising the exchange set cache directory {}: {}", this.cacheDir, ex.getMessage());
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * Returns the cached exchange set for the provided key, if available.
+     *
+     * @param key the exchange set key
+     * @return the cached exchange set ZIP bytes
+     */
+    public Optional<byte[]> get(String key) {
+        if(!this.enabled || key == null) {
+            return Optional.empty();
+        }
+        final CachedExchangeSet entry;
+        synchronized (this) {
+            entry = this.entries.get(key);
+        }
+        if(entry == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readAllBytes(entry.file()));
+        } catch (IOException ex) {
+            // The file has been evicted in the meantime or removed externally
+            log.debug("Exchange set cache entry {} could not be read: {}", key, ex.getMessage());
+            this.remove(key, entry);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the provided exchange set in the cache under the specified key.
+     * The least recently used entries will be evicted if the maximum cache
+     * size is exceeded. Exchange sets larger than the whole cache are not
+     * stored at all.
+     *
+     * @param key the exchange set key
+     * @param uuids the UUIDs of the datasets contained in the exchange set
+     * @param exchangeSet the exchange set ZIP bytes
+     */
+    public void put(String key, Collection<UUID> uuids, byte[] exchangeSet) {
+        if(!this.enabled || key == null || exchangeSet == null || exchangeSet.length > this.maxSize) {
+            return;
+        }
+
+        // Write the file first, so that readers never see partial content
+        final Path file = Paths.get(this.cacheDir, FILE_PREFIX + key + ".zip");
+        try {
+            final Path tmpFile = Files.createTempFile(Paths.get(this.cacheDir), FILE_PREFIX + key, ".tmp");
+            Files.write(tmpFile, exchangeSet);
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            log.error("Error while caching exchange set {}: {}", key, ex.getMessage());
+            return;
+        }
+
+        // And then update the index, evicting as required
+        final List<CachedExchangeSet> evicted = new ArrayList<>();
+        synchronized (this) {
+            final CachedExchangeSet previous = this.entries.put(key, new CachedExchangeSet(file, exchangeSet.length, new HashSet<>(uuids)));
+            if(previous != null) {
+                this.totalSize -= previous.size();
+            }
+            this.totalSize += exchangeSet.length;
+            final Iterator<Map.Entry<String, CachedExchangeSet>> iterator = this.entries.entrySet().iterator();
+            while(this.totalSize > this.maxSize && iterator.hasNext()) {
+                final Map.Entry<String, CachedExchangeSet> eldest = iterator.next();
+                if(eldest.getKey().equals(key)) {
+                    continue;
+                }
+                iterator.remove();
+                this.totalSize -= eldest.getValue().size();
+                evicted.add(eldest.getValue());
+            }
+        }
+        evicted.forEach(this::deleteFile);
+    }
+
+    /**
+     * Drops all the cached exchange sets that contain the dataset with the
+     * provided UUID.
+     *
+     * @param uuid the UUID of the modified dataset
+     */
+    public void invalidate(UUID uuid) {
+        if(!this.enabled || uuid == null) {
+            return;
+        }
+        final List<CachedExchangeSet> evicted = new ArrayList<>();
+        synchronized (this) {
+            final Iterator<CachedExchangeSet> iterator = this.entries.values().iterator();
+            while(iterator.hasNext()) {
+                final CachedExchangeSet entry = iterator.next();
+                if(entry.uuids().contains(uuid)) {
+                    iterator.remove();
+                    this.totalSize -= entry.size();
+                    evicted.add(entry);
+                }
+            }
+        }
+        evicted.forEach(this::deleteFile);
+    }
+
+    /**
+     * Returns the total size of the currently cached exchange sets in bytes.
+     *
+     * @return the total size of the cache
+     */
+    public synchronized long getTotalSize() {
+        return this.totalSize;
+    }
+
+    /**
+     * Removes the provided entry from the cache, if it is still the one
+     * registered under the specified key.
+     *
+     * @param key the exchange set key
+     * @param entry the cached exchange set entry
+     */
+    protected void remove(String key, CachedExchangeSet entry) {
+        synchronized (this) {
+            if(!this.entries.remove(key, entry)) {
+                return;
+            }
+            this.totalSize -= entry.size();
+        }
+        this.deleteFile(entry);
+    }
+
+    /**
+     * Deletes the file of an evicted cache entry.
+     *
+     * @param entry the evicted cache entry
+     */
+    protected void deleteFile(CachedExchangeSet entry) {
+        try {
+            Files.deleteIfExists(entry.file());
+        } catch (IOException ex) {
+            log.warn("Could not delete cached exchange set {}: {}", entry.file(), ex.getMessage());
+        }
+    }
+
+    /**
+     * The Cached Exchange Set Record.
+     *
+     * @param file the file holding the exchange set
+     * @param size the size of the exchange set in bytes
+     * @param uuids the UUIDs of the datasets contained in the exchange set
+     */
+    protected record CachedExchangeSet(Path file, long size, Set<UUID> uuids) {}
+
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.secomv2.core.base.SecomTrustStoreProvider;
+import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
+import org.grad.secomv2.core.utils.KeyStoreUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The LocalSignatureEngine Component Class
+ * <p/>
+ * By default, all the signatures of the service are generated and verified
+ * by the cKeeper microservice, which costs a remote HTTP round trip for
+ * every single signature. When enabled, this component loads the service
+ * key material once from a local keystore, so that the signatures can be
+ * generated and verified in-process instead.
+ * <p/>
+ * The inbound signatures are still verified by cKeeper against the keys
+ * registered for the sender MRNs, unless the local verification is also
+ * explicitly enabled. In that case, they are verified against the
+ * certificate chains provided with the messages, as long as these pass a
+ * full PKIX path validation against the SECOM trust store. The outcome of
+ * the path validation is cached per certificate chain in a bounded cache
+ * that expires, so that revoked certificates are eventually detected.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class LocalSignatureEngine {
+
+    /**
+     * Whether the local signing mode is enabled.
+     */
+    @Value("${gla.rad.service.signing.local.enabled:false}")
+    boolean enabled;
+
+    /**
+     * The location of the keystore holding the service key material.
+     */
+    @Value("${gla.rad.service.signing.local.keystore:}")
+    String keystore;
+
+    /**
+     * The type of the keystore holding the service key material.
+     */
+    @Value("${gla.rad.service.signing.local.keystoreType:PKCS12}")
+    String keystoreType;
+
+    /**
+     * The password of the keystore holding the service key material.
+     */
+    @Value("${gla.rad.service.signing.local.keystorePassword:}")
+    String keystorePassword;
+
+    /**
+     * The alias of the service key entry; the first key entry if empty.
+     */
+    @Value("${gla.rad.service.signing.local.keyAlias:}")
+    String keyAlias;
+
+    /**
+     * The certificate ID to be reported; the certificate serial number if empty.
+     */
+    @Value("${gla.rad.service.signing.local.certificateId:}")
+    String certificateId;
+
+    /**
+     * Whether the inbound signatures should also be verified in-process.
+     */
+    @Value("${gla.rad.service.signing.local.verification:false}")
+    boolean verification;
+
+    /**
+     * Whether the revocation status of the certificates should be checked.
+     */
+    @Value("${gla.rad.service.signing.local.revocation:true}")
+    boolean revocation;
+
+    /**
+     * The SECOM Trust Store Provider.
+     */
+    @Autowired
+    @Lazy
+    SecomTrustStoreProvider secomTrustStoreProvider;
+
+    /**
+     * The Cache Manager.
+     */
+    @Autowired(required = false)
+    CacheManager cacheManager;
+
+    // Component Variables
+    protected PrivateKey privateKey;
+    protected X509Certificate[] certificateChain;
+    protected List<X509Certificate> trustAnchors;
+
+    /**
+     * Once the component has been initialised, and if the local signing mode
+     * is enabled, load the service key material from the configured keystore.
+     * If that fails, the component falls back to the remote cKeeper mode.
+     */
+    @PostConstruct
+    public void init() {
+        if(!this.enabled) {
+            return;
+        }
+        try {
+            final KeyStore keyStore = KeyStoreUtils.getKeyStore(this.keystore, this.keystorePassword, this.keystoreType);
+            if(keyStore == null) {
+                throw new KeyStoreException(String.format("Local signing keystore %s could not be loaded", this.keystore));
+            }
+            final String alias = this.keyAlias != null && !this.keyAlias.isBlank() ?
+                    this.keyAlias :
+                    this.findFirstKeyAlias(keyStore);
+            this.setKeyMaterial((PrivateKey) keyStore.getKey(alias, Optional.ofNullable(this.keystorePassword).orElse("").toCharArray()),
+                    Optional.ofNullable(keyStore.getCertificateChain(alias))
+                            .map(Arrays::stream)
+                            .orElseGet(() -> Arrays.stream(new Certificate[]{}))
+                            .map(X509Certificate.class::cast)
+                            .toArray(X509Certificate[]::new));
+            log.info("Local signature engine initialised with the key material of {}", this.getCertificate().getSubjectX500Principal());
+        } catch (GeneralSecurityException | IOException | RuntimeException ex) {
+            log.error("Error while loading the local signing key material, falling back to cKeeper: {}", ex.getMessage());
+            this.enabled = false;
+        }
+    }
+
+    /**
+     * Sets the key material to be used for the local signatures and enables
+     * the local signing mode. This allows the key material to be provided
+     * by sources other than the configured keystore.
+     *
+     * @param privateKey the private key of the service
+     * @param certificateChain the certificate chain of the service, starting with its own certificate
+     * @throws KeyStoreException if the provided key material is incomplete
+     */
+    public void setKeyMaterial(PrivateKey privateKey, X509Certificate... certificateChain) throws KeyStoreException {
+        if(privateKey == null || certificateChain == null || certificateChain.length == 0) {
+            throw new KeyStoreException("Incomplete local signing key material provided");
+        }
+        this.privateKey = privateKey;
+        this.certificateChain = certificateChain;
+        this.enabled = true;
+    }
+
+    /**
+     * Returns whether the local signing mode is enabled and the key material
+     * has been loaded successfully.
+     *
+     * @return whether the local signing mode is enabled
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Returns whether the inbound signatures should be verified in-process.
+     * This requires both the local signing mode and the local verification
+     * to be enabled.
+     *
+     * @return whether the inbound signatures should be verified in-process
+     */
+    public boolean isVerificationEnabled() {
+        return this.enabled && this.verification;
+    }
+
+    /**
+     * Returns the ID of the local signing certificate. Unless explicitly
+     * configured, this is the serial number of the certificate.
+     *
+     * @return the ID of the local signing certificate
+     */
+    public BigInteger getCertificateId() {
+        return Optional.ofNullable(this.certificateId)
+                .filter(id -> !id.isBlank())
+                .map(BigInteger::new)
+                .orElseGet(() -> this.getCertificate().getSerialNumber());
+    }
+
+    /**
+     * Returns the local signing certificate.
+     *
+     * @return the local signing certificate
+     */
+    public X509Certificate getCertificate() {
+        return this.certificateChain[0];
+    }
+
+    /**
+     * Returns the root certificate of the local signing certificate chain.
+     *
+     * @return the root certificate of the local signing certificate chain
+     */
+    public X509Certificate getRootCertificate() {
+        return this.certificateChain[this.certificateChain.length - 1];
+    }
+
+    /**
+     * Signs the provided payload in-process, using the local service key
+     * and the requested signature algorithm.
+     *
+     * @param algorithm the algorithm to be used for the signature generation
+     * @param payload the payload to be signed
+     * @return the generated signature
+     * @throws GeneralSecurityException if the signature cannot be generated
+     */
+    public byte[] sign(String algorithm, byte[] payload) throws GeneralSecurityException {
+        final Signature signature = Signature.getInstance(this.getAlgorithm(algorithm));
+        signature.initSign(this.privateKey);
+        signature.update(Optional.ofNullable(payload).orElseGet(() -> new byte[]{}));
+        return signature.sign();
+    }
+
+    /**
+     * Verifies the provided signature in-process. The verification will only
+     * succeed if the provided certificate chain is trusted, and the signature
+     * matches the content.
+     *
+     * @param chain the certificate chain of the signing party, starting with its own certificate
+     * @param algorithm the algorithm used for the signature generation
+     * @param signature the signature to be verified
+     * @param content the signed content
+     * @return whether the signature verification was successful or not
+     */
+    public boolean verify(X509Certificate[] chain, String algorithm, byte[] signature, byte[] content) {
+        if(!this.isTrusted(chain)) {
+            return false;
+        }
+        return this.verifySignature(chain[0].getPublicKey(), algorithm, signature, content);
+    }
+
+    /**
+     * Verifies the provided signature in-process against the provided public
+     * key, without performing any trust checks. It is up to the caller to
+     * make sure the public key belongs to a trusted party.
+     *
+     * @param publicKey the public key of the signing party
+     * @param algorithm the algorithm used for the signature generation
+     * @param signature the signature to be verified
+     * @param content the signed content
+     * @return whether the signature verification was successful or not
+     */
+    public boolean verifySignature(PublicKey publicKey, String algorithm, byte[] signature, byte[] content) {
+        if(publicKey == null || signature == null) {
+            return false;
+        }
+        try {
+            final Signature verifier = Signature.getInstance(this.getAlgorithm(algorithm));
+            verifier.initVerify(publicKey);
+            verifier.update(Optional.ofNullable(content).orElseGet(() -> new byte[]{}));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException ex) {
+            log.debug("Local signature verification failed: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the provided certificate chain is currently valid and
+     * leads to one of the certificates of the SECOM trust store. Since the
+     * path validation is costly, its outcome is cached per certificate chain,
+     * but the validity of the entity certificate is always checked.
+     *
+     * @param chain the certificate chain to be checked, starting with the entity certificate
+     * @return whether the certificate chain is trusted or not
+     */
+    public boolean isTrusted(X509Certificate... chain) {
+        if(chain == null || chain.length == 0 || chain[0] == null) {
+            return false;
+        }
+        try {
+            chain[0].checkValidity();
+        } catch (CertificateException ex) {
+            return false;
+        }
+
+        // Look up the cache first
+        final String key = Arrays.stream(chain)
+                .map(this::getFingerprint)
+                .collect(Collectors.joining(":"));
+        final Optional<Cache> cache = this.getTrustedCertificateCache();
+        final Boolean cached = cache.map(c -> c.get(key, Boolean.class)).orElse(null);
+        if(cached != null) {
+            return cached;
+        }
+
+        // Otherwise validate the certificate path
+        final boolean trusted = this.validateCertPath(chain);
+        cache.ifPresent(c -> c.put(key, trusted));
+        return trusted;
+    }
+
+    /**
+     * Performs a full PKIX validation of the provided certificate chain,
+     * using the certificates of the SECOM trust store as trust anchors. This
+     * checks the signatures, validity periods and constraints of the whole
+     * path and, unless disabled, the revocation status of its certificates.
+     *
+     * @param chain the certificate chain to be validated, starting with the entity certificate
+     * @return whether the certificate chain is valid or not
+     */
+    protected boolean validateCertPath(X509Certificate[] chain) {
+        final List<X509Certificate> anchors = this.getTrustAnchors();
+        try {
+            final PKIXParameters parameters = new PKIXParameters(anchors.stream()
+                    .map(anchor -> new TrustAnchor(anchor, null))
+                    .collect(Collectors.toSet()));
+            parameters.setRevocationEnabled(this.revocation);
+
+            // The trust anchors should not be part of the validated path
+            final CertPath certPath = CertificateFactory.getInstance("X.509").generateCertPath(Arrays.stream(chain)
+                    .filter(certificate -> !anchors.contains(certificate))
+                    .toList());
+            CertPathValidator.getInstance("PKIX").validate(certPath, parameters);
+            return true;
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            log.debug("Certificate path validation failed for {}: {}", chain[0].getSubjectX500Principal(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the certificates of the SECOM trust store, which are loaded
+     * only once.
+     *
+     * @return the trusted certificates
+     */
+    protected synchronized List<X509Certificate> getTrustAnchors() {
+        if(this.trustAnchors == null) {
+            final List<X509Certificate> anchors = new ArrayList<>();
+            Optional.ofNullable(this.secomTrustStoreProvider)
+                    .map(SecomTrustStoreProvider::getTrustStore)
+                    .ifPresent(trustStore -> {
+                        try {
+                            for(String alias : Collections.list(trustStore.aliases())) {
+                                if(trustStore.getCertificate(alias) instanceof X509Certificate anchor) {
+                                    anchors.add(anchor);
+                                }
+                            }
+                        } catch (KeyStoreException ex) {
+                            log.error("Error while reading the SECOM trust store: {}", ex.getMessage());
+                        }
+                    });
+            this.trustAnchors = anchors;
+        }
+        return this.trustAnchors;
+    }
+
+    /**
+     * Returns the local trusted certificate cache, if that is available.
+     *
+     * @return the local trusted certificate cache
+     */
+    protected Optional<Cache> getTrustedCertificateCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("localTrustedCertificateCache"));
+    }
+
+    /**
+     * Maps the provided signature algorithm to the default SECOM one, if
+     * none was provided.
+     *
+     * @param algorithm the requested signature algorithm
+     * @return the signature algorithm to be used
+     */
+    protected String getAlgorithm(String algorithm) {
+        return Optional.ofNullable(algorithm)
+                .filter(a -> !a.isBlank())
+                .orElse(DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue());
+    }
+
+    /**
+     * Generates the SHA-256 fingerprint of the provided certificate to be
+     * used in the trust cache keys.
+     *
+     * @param certificate the certificate
+     * @return the certificate fingerprint
+     */
+    protected String getFingerprint(X509Certificate certificate) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(certificate.getEncoded()));
+        } catch (GeneralSecurityException ex) {
+            // Fall back to the issuer and serial number
+            return certificate.getIssuerX500Principal().getName() + ":" + certificate.getSerialNumber();
+        }
+    }
+
+    /**
+     * Returns the alias of the first key entry in the provided keystore.
+     *
+     * @param keyStore the keystore
+     * @return the alias of the first key entry
+     * @throws KeyStoreException if the keystore cannot be read or contains no keys
+     */
+    protected String findFirstKeyAlias(KeyStore keyStore) throws KeyStoreException {
+        for(String alias : Collections.list(keyStore.aliases())) {
+            if(keyStore.isKeyEntry(alias)) {
+                return alias;
+            }
+        }
+        throw new KeyStoreException("No key entry found in the local signing keystore");
+    }
+
+}
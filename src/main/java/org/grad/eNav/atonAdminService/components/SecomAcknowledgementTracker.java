@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.secomv2.core.models.enums.AckTypeEnum;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SecomAcknowledgementTracker Component Class
+ * <p/>
+ * All the SECOM subscription uploads request a delivery acknowledgement
+ * from the receiving clients. This component keeps track of the pending
+ * upload transactions, so that the incoming acknowledgements can be
+ * correlated to them and the delivered/opened latencies can be published
+ * per client. Acknowledgements are only accepted from the client the
+ * upload was sent to.
+ * <p/>
+ * The pending transactions are expired through a hashed timer wheel that
+ * advances one slot per tick, so that each tick only needs to inspect the
+ * transactions of a single slot. The acknowledgements are optional for the
+ * clients, so an upload is considered successful as soon as the client
+ * accepts it, and the acknowledgements are only used for the metrics. If
+ * the redeliveries are enabled through a positive maximum number, any
+ * upload that has not been acknowledged by the time its transaction
+ * expires is also redelivered, up to that number of times.
+ * <p/>
+ * The pending transactions are only held in memory, so if the service
+ * restarts, no redelivery will be triggered for the uploads in flight.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SecomAcknowledgementTracker {
+
+    /**
+     * The time in seconds to wait for a delivery acknowledgement. A
+     * non-positive value disables the tracking.
+     */
+    @Value("${gla.rad.service.secom.acknowledgements.timeout:300}")
+    long timeout;
+
+    /**
+     * The maximum number of redeliveries for each unacknowledged upload. A
+     * non-positive value disables the redeliveries.
+     */
+    @Value("${gla.rad.service.secom.acknowledgements.maxRedeliveries:0}")
+    int maxRedeliveries;
+
+    /**
+     * The duration of each timer wheel tick in milliseconds.
+     */
+    @Value("${gla.rad.service.secom.acknowledgements.tick:1000}")
+    long tickDuration;
+
+    /**
+     * The number of slots in the timer wheel.
+     */
+    @Value("${gla.rad.service.secom.acknowledgements.wheelSize:512}")
+    int wheelSize;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Component Variables
+    final Map<UUID, PendingTransaction> pending = new ConcurrentHashMap<>();
+    final Map<String, Integer> redeliveries = new ConcurrentHashMap<>();
+    final List<Set<UUID>> wheel = new ArrayList<>();
+    final AtomicLong currentTick = new AtomicLong();
+
+    /**
+     * A pending upload transaction.
+     */
+    static class PendingTransaction {
+        final UUID transactionId;
+        final String client;
+        final String deliveryKey;
+        final Instant sentAt;
+        final long deadlineTick;
+        final Runnable redelivery;
+        final AtomicBoolean delivered = new AtomicBoolean();
+
+        PendingTransaction(UUID transactionId, String client, String deliveryKey, Instant sentAt, long deadlineTick, Runnable redelivery) {
+            this.transactionId = transactionId;
+            this.client = client;
+            this.deliveryKey = deliveryKey;
+            this.sentAt = sentAt;
+            this.deadlineTick = deadlineTick;
+            this.redelivery = redelivery;
+        }
+    }
+
+    /**
+     * Once the component has been initialised, set up the timer wheel slots
+     * and register the pending transactions metric.
+     */
+    @PostConstruct
+    public void init() {
+        for(int i = 0; i < Math.max(this.wheelSize, 1); i++) {
+            this.wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        Gauge.builder("secom.ack.pending", this.pending, Map::size)
+                .description("The number of SECOM upload transactions pending acknowledgement")
+                .register(this.meterRegistry);
+    }
+
+    /**
+     * Starts tracking a new successfully uploaded transaction, unless the
+     * tracking is disabled.
+     *
+     * @param transactionId the upload transaction identifier
+     * @param client        the client the upload was sent to
+     * @param deliveryKey   the key identifying the delivered data
+     * @param redelivery    the task to redeliver the data if not acknowledged
+     */
+    public void track(UUID transactionId, String client, String deliveryKey, Runnable redelivery) {
+        if(this.timeout <= 0 || Objects.isNull(transactionId)) {
+            return;
+        }
+        final long ticks = Math.max(1, (this.timeout * 1000 + this.tickDuration - 1) / Math.max(this.tickDuration, 1));
+        final PendingTransaction transaction = new PendingTransaction(transactionId,
+                String.valueOf(client),
+                deliveryKey,
+                Instant.now(),
+                this.currentTick.get() + ticks,
+                redelivery);
+        this.pending.put(transactionId, transaction);
+        this.getSlot(transaction.deadlineTick).add(transactionId);
+    }
+
+    /**
+     * Correlates an incoming acknowledgement to a pending transaction and
+     * records the respective latency. The transaction keeps being tracked
+     * after the delivery acknowledgement, in case an opened acknowledgement
+     * follows, but it will no longer be redelivered. Acknowledgements sent
+     * by any other client than the one the upload was sent to are ignored.
+     *
+     * @param transactionId the acknowledged transaction identifier
+     * @param sender        the MRN of the acknowledgement sender
+     * @param ackType       the acknowledgement type
+     * @return whether the acknowledgement matched a pending transaction
+     */
+    public boolean acknowledge(UUID transactionId, String sender, AckTypeEnum ackType) {
+        final PendingTransaction transaction = Optional.ofNullable(transactionId)
+                .map(this.pending::get)
+                .orElse(null);
+        if(Objects.isNull(transaction)) {
+            this.count("unknown");
+            return false;
+        } else if(!transaction.client.equals(sender)) {
+            log.warn("SECOM acknowledgement for upload {} to {} received from {}", transactionId, transaction.client, sender);
+            this.count("rejected");
+            return false;
+        }
+
+        // Record the acknowledgement latency
+        final boolean opened = AckTypeEnum.OPENED_ACK.equals(ackType);
+        Timer.builder("secom.ack.latency")
+                .description("The SECOM upload acknowledgement latency")
+                .tag("client", transaction.client)
+                .tag("type", opened ? "opened" : "delivered")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(this.meterRegistry)
+                .record(Duration.between(transaction.sentAt, Instant.now()));
+        this.count(opened ? "opened" : "delivered");
+
+        // No more redeliveries are required
+        if(transaction.delivered.compareAndSet(false, true)) {
+            this.redeliveries.remove(transaction.deliveryKey);
+        }
+        if(opened) {
+            this.pending.remove(transactionId);
+        }
+        return true;
+    }
+
+    /**
+     * Advances the timer wheel by one slot and expires all the transactions
+     * of that slot that have reached their deadline.
+     */
+    @Scheduled(fixedRateString = "${gla.rad.service.secom.acknowledgements.tick:1000}")
+    public void tick() {
+        if(this.wheel.isEmpty()) {
+            return;
+        }
+        final long tick = this.currentTick.incrementAndGet();
+        final Set<UUID> slot = this.getSlot(tick);
+        for(Iterator<UUID> iterator = slot.iterator(); iterator.hasNext(); ) {
+            final PendingTransaction transaction = this.pending.get(iterator.next());
+            if(Objects.isNull(transaction)) {
+                iterator.remove();
+            } else if(transaction.deadlineTick <= tick) {
+                iterator.remove();
+                this.pending.remove(transaction.transactionId);
+                this.expire(transaction);
+            }
+        }
+    }
+
+    /**
+     * Handles an expired transaction, redelivering the data if it has not
+     * been acknowledged yet and the redeliveries are enabled.
+     *
+     * @param transaction the expired transaction
+     */
+    protected void expire(PendingTransaction transaction) {
+        if(transaction.delivered.get()) {
+            return;
+        } else if(this.maxRedeliveries <= 0 || Objects.isNull(transaction.redelivery)) {
+            log.debug("SECOM upload {} to {} was never acknowledged", transaction.transactionId, transaction.client);
+            this.count("expired");
+            return;
+        }
+
+        // Give up after the maximum number of redeliveries
+        final int attempt = this.redeliveries.merge(transaction.deliveryKey, 1, Integer::sum);
+        if(attempt > this.maxRedeliveries) {
+            log.warn("SECOM upload {} to {} was never acknowledged", transaction.transactionId, transaction.client);
+            this.redeliveries.remove(transaction.deliveryKey);
+            this.count("expired");
+            return;
+        }
+
+        log.info("SECOM upload {} to {} was not acknowledged, redelivering", transaction.transactionId, transaction.client);
+        this.count("redelivered");
+        try {
+            transaction.redelivery.run();
+        } catch (Exception ex) {
+            log.error("Failed to redeliver SECOM upload {} to {}: {}", transaction.transactionId, transaction.client, ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the timer wheel slot of the provided tick.
+     *
+     * @param tick the timer wheel tick
+     * @return the timer wheel slot
+     */
+    private Set<UUID> getSlot(long tick) {
+        return this.wheel.get((int) Math.floorMod(tick, (long) this.wheel.size()));
+    }
+
+    /**
+     * Counts a SECOM acknowledgement event with the provided result.
+     *
+     * @param result the SECOM acknowledgement event result
+     */
+    private void count(String result) {
+        Counter.builder("secom.ack")
+                .description("The SECOM upload acknowledgement events")
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The SecomDeliveryEngine Component Class
+ * <p/>
+ * Delivering the dataset updates to the SECOM subscriptions involves a
+ * remote upload to each one of the subscribed clients, which can be slow or
+ * even unavailable at times. This component therefore decouples the
+ * deliveries from the publication of the updates, by placing them in a
+ * bounded queue per client endpoint, which is drained by the delivery
+ * executor, so that different clients are served in parallel while the
+ * updates to each client are still delivered in order.
+ * <p/>
+ * A pending delivery for the same key (i.e. the same subscription and
+ * dataset) is replaced by any newer one, so that superseded updates are
+ * never sent. Failed deliveries are retried with an exponential backoff,
+ * scheduled without holding on to a delivery thread, and each endpoint is
+ * protected by a simple circuit breaker, which rejects the deliveries for a
+ * while after too many consecutive failures. Idle endpoint queues whose
+ * circuits are closed are pruned, so that they do not accumulate.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SecomDeliveryEngine {
+
+    /**
+     * The maximum number of pending deliveries per client endpoint.
+     */
+    @Value("${gla.rad.service.secom.delivery.queueCapacity:100}")
+    int queueCapacity;
+
+    /**
+     * The maximum number of attempts for each delivery.
+     */
+    @Value("${gla.rad.service.secom.delivery.maxAttempts:3}")
+    int maxAttempts;
+
+    /**
+     * The initial retry backoff in milliseconds, doubled on every attempt.
+     */
+    @Value("${gla.rad.service.secom.delivery.backoff:500}")
+    long backoff;
+
+    /**
+     * The maximum retry backoff in milliseconds.
+     */
+    @Value("${gla.rad.service.secom.delivery.maxBackoff:10000}")
+    long maxBackoff;
+
+    /**
+     * The number of consecutive failures that open an endpoint circuit.
+     */
+    @Value("${gla.rad.service.secom.delivery.circuitBreaker.failureThreshold:5}")
+    int failureThreshold;
+
+    /**
+     * The time in seconds an endpoint circuit remains open.
+     */
+    @Value("${gla.rad.service.secom.delivery.circuitBreaker.openDuration:60}")
+    long openDuration;
+
+    /**
+     * The Delivery Executor.
+     */
+    @Autowired
+    @Qualifier("deliveryExecutor")
+    Executor deliveryExecutor;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Component Variables
+    final Map<String, DeliveryQueue> queues = new ConcurrentHashMap<>();
+    ScheduledExecutorService retryScheduler;
+
+    /**
+     * A pending delivery for a client endpoint.
+     *
+     * @param key the key identifying superseded deliveries
+     * @param task the delivery task
+     * @param enqueuedAt the time the delivery was queued
+     */
+    record Delivery(String key, Runnable task, Instant enqueuedAt) {}
+
+    /**
+     * The pending deliveries and the circuit breaker state of a single client
+     * endpoint. All the fields are guarded by the queue instance itself.
+     */
+    static class DeliveryQueue {
+        final LinkedHashMap<String, Delivery> pending = new LinkedHashMap<>();
+        boolean draining = false;
+        boolean pruned = false;
+        int consecutiveFailures = 0;
+        Instant openUntil = null;
+    }
+
+    /**
+     * Once the component has been initialised, set up the retry scheduler
+     * and register the pending deliveries metric.
+     */
+    @PostConstruct
+    public void init() {
+        if(Objects.isNull(this.retryScheduler)) {
+            this.retryScheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                    .name("delivery-retry-", 0)
+                    .daemon()
+                    .factory());
+        }
+        Gauge.builder("secom.delivery.pending", this.queues, queues -> queues.values()
+                        .stream()
+                        .mapToInt(queue -> {
+                            synchronized (queue) { return queue.pending.size(); }
+                        })
+                        .sum())
+                .description("The number of pending SECOM deliveries")
+                .register(this.meterRegistry);
+    }
+
+    /**
+     * When shutting down, stop the retry scheduler.
+     */
+    @PreDestroy
+    public void destroy() {
+        Optional.ofNullable(this.retryScheduler).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * Submits a new delivery to the queue of the provided client endpoint. If
+     * a delivery with the same key is already pending, it will be replaced by
+     * the new one, while if the queue is full the oldest pending delivery
+     * will be dropped.
+     *
+     * @param endpoint the client endpoint to deliver to
+     * @param key the key identifying superseded deliveries
+     * @param task the delivery task
+     */
+    public void submit(String endpoint, String key, Runnable task) {
+        while(true) {
+            final DeliveryQueue queue = this.queues.computeIfAbsent(endpoint, e -> new DeliveryQueue());
+            if(this.submit(endpoint, queue, key, task)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Submits a new delivery to the provided client endpoint queue, unless
+     * that has been pruned in the meantime.
+     *
+     * @param endpoint the client endpoint to deliver to
+     * @param queue the delivery queue of the endpoint
+     * @param key the key identifying superseded deliveries
+     * @param task the delivery task
+     * @return whether the delivery was submitted to the queue
+     */
+    private boolean submit(String endpoint, DeliveryQueue queue, String key, Runnable task) {
+        final boolean startDrain;
+        synchronized (queue) {
+            if(queue.pruned) {
+                return false;
+            } else if(queue.pending.containsKey(key)) {
+                log.debug("Coalescing superseded SECOM delivery {} to {}", key, endpoint);
+                this.count("coalesced");
+            } else if(queue.pending.size() >= Math.max(this.queueCapacity, 1)) {
+                final Iterator<Delivery> iterator = queue.pending.values().iterator();
+                log.warn("SECOM delivery queue for {} is full, dropping delivery {}", endpoint, iterator.next().key());
+                iterator.remove();
+                this.count("dropped");
+            }
+            queue.pending.put(key, new Delivery(key, task, Instant.now()));
+            startDrain = !queue.draining;
+            queue.draining = true;
+        }
+
+        // Start draining the queue if not already running
+        if(startDrain) {
+            this.deliveryExecutor.execute(() -> this.drain(endpoint, queue));
+        }
+        return true;
+    }
+
+    /**
+     * Drains the pending deliveries of a client endpoint in order, until the
+     * queue is empty or a failed delivery has to be retried later. In the
+     * latter case, the draining resumes after the retry.
+     *
+     * @param endpoint the client endpoint to deliver to
+     * @param queue the delivery queue of the endpoint
+     */
+    protected void drain(String endpoint, DeliveryQueue queue) {
+        while(true) {
+            final Delivery delivery;
+            synchronized (queue) {
+                final Iterator<Delivery> iterator = queue.pending.values().iterator();
+                if(!iterator.hasNext()) {
+                    queue.draining = false;
+                    this.pruneIfIdle(endpoint, queue);
+                    return;
+                }
+                delivery = iterator.next();
+                iterator.remove();
+            }
+            if(!this.deliver(endpoint, queue, delivery, 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Performs a single delivery attempt, unless the endpoint circuit is
+     * open. If the attempt fails, a retry is scheduled with an exponential
+     * backoff, up to the maximum number of attempts.
+     *
+     * @param endpoint the client endpoint to deliver to
+     * @param queue the delivery queue of the endpoint
+     * @param delivery the delivery to be performed
+     * @param attempt the delivery attempt number
+     * @return whether the delivery is complete, or a retry has been scheduled
+     */
+    protected boolean deliver(String endpoint, DeliveryQueue queue, Delivery delivery, int attempt) {
+        // Do not hammer endpoints that keep failing
+        if(!this.isCircuitClosed(queue)) {
+            log.warn("SECOM delivery {} to {} rejected while the endpoint circuit is open", delivery.key(), endpoint);
+            this.count("rejected");
+            return true;
+        }
+
+        try {
+            delivery.task().run();
+            this.recordSuccess(queue);
+            this.count("delivered");
+            Timer.builder("secom.delivery.latency")
+                    .description("The SECOM delivery latency from queueing to completion")
+                    .register(this.meterRegistry)
+                    .record(Duration.between(delivery.enqueuedAt(), Instant.now()));
+            return true;
+        } catch (Exception ex) {
+            this.recordFailure(queue);
+            if(attempt >= this.maxAttempts) {
+                log.error("SECOM delivery {} to {} failed after {} attempts: {}", delivery.key(), endpoint, attempt, ex.getMessage());
+                this.count("failed");
+                return true;
+            }
+            log.warn("SECOM delivery {} to {} failed, retrying: {}", delivery.key(), endpoint, ex.getMessage());
+            this.count("retried");
+        }
+
+        // Back off before retrying, without blocking the delivery thread
+        try {
+            this.retryScheduler.schedule(() -> this.deliveryExecutor.execute(() -> this.retry(endpoint, queue, delivery, attempt + 1)),
+                    Math.min(this.backoff << Math.min(attempt - 1, 30), this.maxBackoff),
+                    TimeUnit.MILLISECONDS);
+            return false;
+        } catch (RejectedExecutionException ex) {
+            log.error("SECOM delivery {} to {} could not be retried: {}", delivery.key(), endpoint, ex.getMessage());
+            this.count("failed");
+            return true;
+        }
+    }
+
+    /**
+     * Retries a failed delivery, unless that has been superseded in the
+     * meantime, and then resumes draining the endpoint queue.
+     *
+     * @param endpoint the client endpoint to deliver to
+     * @param queue the delivery queue of the endpoint
+     * @param delivery the delivery to be retried
+     * @param attempt the delivery attempt number
+     */
+    protected void retry(String endpoint, DeliveryQueue queue, Delivery delivery, int attempt) {
+        // No need to retry if a newer delivery is already pending
+        final boolean superseded;
+        synchronized (queue) {
+            superseded = queue.pending.containsKey(delivery.key());
+        }
+        if(superseded) {
+            log.debug("SECOM delivery {} to {} superseded while retrying", delivery.key(), endpoint);
+            this.count("superseded");
+        } else if(!this.deliver(endpoint, queue, delivery, attempt)) {
+            return;
+        }
+        this.drain(endpoint, queue);
+    }
+
+    /**
+     * Periodically prunes the idle client endpoint queues, including the
+     * ones whose circuits have been left open by their last deliveries.
+     */
+    @Scheduled(fixedRateString = "${gla.rad.service.secom.delivery.pruneInterval:60000}")
+    public void prune() {
+        this.queues.forEach((endpoint, queue) -> {
+            synchronized (queue) {
+                this.pruneIfIdle(endpoint, queue);
+            }
+        });
+    }
+
+    /**
+     * Removes the provided client endpoint queue if that is idle and its
+     * circuit is closed, so that no state is lost. This must be called
+     * while holding the queue lock.
+     *
+     * @param endpoint the client endpoint
+     * @param queue the delivery queue of the endpoint
+     */
+    private void pruneIfIdle(String endpoint, DeliveryQueue queue) {
+        if(!queue.draining && queue.pending.isEmpty() && this.isCircuitClosed(queue)) {
+            queue.pruned = true;
+            this.queues.remove(endpoint, queue);
+        }
+    }
+
+    /**
+     * Checks whether the circuit of the provided endpoint queue allows a new
+     * delivery. Once the open duration expires, deliveries are allowed again
+     * but a single failure will re-open the circuit.
+     *
+     * @param queue the delivery queue of the endpoint
+     * @return whether the circuit is closed
+     */
+    protected boolean isCircuitClosed(DeliveryQueue queue) {
+        synchronized (queue) {
+            return Objects.isNull(queue.openUntil) || !Instant.now().isBefore(queue.openUntil);
+        }
+    }
+
+    /**
+     * Records a successful delivery, closing the endpoint circuit.
+     *
+     * @param queue the delivery queue of the endpoint
+     */
+    private void recordSuccess(DeliveryQueue queue) {
+        synchronized (queue) {
+            queue.consecutiveFailures = 0;
+            queue.openUntil = null;
+        }
+    }
+
+    /**
+     * Records a failed delivery, opening the endpoint circuit if the failure
+     * threshold has been reached.
+     *
+     * @param queue the delivery queue of the endpoint
+     */
+    private void recordFailure(DeliveryQueue queue) {
+        synchronized (queue) {
+            queue.consecutiveFailures++;
+            if(this.failureThreshold > 0 && queue.consecutiveFailures >= this.failureThreshold) {
+                queue.openUntil = Instant.now().plusSeconds(this.openDuration);
+            }
+        }
+        Counter.builder("secom.delivery.failures")
+                .description("The failed SECOM delivery attempts")
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a SECOM delivery with the provided result.
+     *
+     * @param result the SECOM delivery result
+     */
+    private void count(String result) {
+        Counter.builder("secom.delivery")
+                .description("The SECOM deliveries")
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
+import org.grad.secomv2.core.base.SecomConstants;
+import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
+import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * The SecomSubscriptionMatcher Component Class
+ * <p/>
+ * Every dataset publication needs to be matched against the stored SECOM
+ * subscriptions, which change rarely compared to the publications. Instead
+ * of running a full text search query for each publication, this component
+ * keeps an in-memory index of all the subscriptions, with a hash index for
+ * each of the matched attributes (container type, data product type,
+ * product version and data reference) and a JTS {@link STRtree} over the
+ * subscription geometries, so that the publications can be matched without
+ * contacting the search backend.
+ * <p/>
+ * The index is lazily built from the database and it is invalidated by the
+ * subscription service whenever a subscription is saved or deleted. The
+ * invalidation is repeated once the modifying transaction has been
+ * committed, while the index is also rebuilt periodically to pick up any
+ * changes made by other service instances.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SecomSubscriptionMatcher {
+
+    /**
+     * Whether the in-memory subscription matching is enabled.
+     */
+    @Value("${gla.rad.service.secom.subscriptions.matcher.enabled:true}")
+    boolean enabled;
+
+    /**
+     * The maximum age of the index in seconds before it gets rebuilt. A
+     * non-positive value disables the periodic rebuilds.
+     */
+    @Value("${gla.rad.service.secom.subscriptions.matcher.refreshInterval:300}")
+    long refreshInterval;
+
+    /**
+     * The Entity Manager Factory.
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    // Component Variables
+    private static final Object NULL_KEY = new Object();
+    volatile MatchIndex index;
+    volatile boolean dirty;
+
+    /**
+     * Returns whether the in-memory subscription matching is enabled.
+     *
+     * @return whether the in-memory subscription matching is enabled
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Matches the provided publication attributes against the indexed
+     * subscriptions, following the same semantics as the full text search
+     * query of the subscription service, i.e. a subscription with a missing
+     * attribute matches any value, while any missing publication attribute
+     * is not checked at all.
+     *
+     * @param containerType         the container type of the requested subscriptions
+     * @param dataProductType       the SECOM data product type of the requested subscriptions
+     * @param productVersion        the product version of the requested subscriptions
+     * @param dataReference         the UUID data reference matched by the requested subscriptions
+     * @param geometry              the geometry intersecting with the requested subscriptions
+     * @param timestamp             the timestamp for which the requested subscriptions are valid
+     * @return the list of matching subscription requests, sorted by UUID
+     */
+    public List<SubscriptionRequest> match(ContainerTypeEnum containerType,
+                                           SECOM_DataProductType dataProductType,
+                                           String productVersion,
+                                           UUID dataReference,
+                                           Geometry geometry,
+                                           LocalDateTime timestamp) {
+        final MatchIndex matchIndex = this.getIndex();
+
+        // Narrow down the candidates through the attribute indexes
+        Set<UUID> candidates = null;
+        candidates = this.narrow(candidates, matchIndex.containerTypes, containerType);
+        candidates = this.narrow(candidates, matchIndex.dataProductTypes, dataProductType);
+        candidates = this.narrow(candidates, matchIndex.productVersions, productVersion);
+        candidates = this.narrow(candidates, matchIndex.dataReferences, dataReference);
+
+        // Then through the spatial index, performing the exact check
+        if(Objects.nonNull(geometry) && (Objects.isNull(candidates) || !candidates.isEmpty())) {
+            final PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+            final Set<UUID> intersecting = new HashSet<>();
+            for(Object entry : matchIndex.geometries.query(geometry.getEnvelopeInternal())) {
+                final SubscriptionRequest subscription = (SubscriptionRequest) entry;
+                if(prepared.intersects(subscription.getSubscriptionGeometry())) {
+                    intersecting.add(subscription.getUuid());
+                }
+            }
+            candidates = this.narrow(candidates, intersecting);
+        }
+
+        // Finally check the subscription periods of the remaining candidates
+        return Optional.ofNullable(candidates)
+                .map(Collection::stream)
+                .orElseGet(() -> matchIndex.subscriptions.keySet().stream())
+                .map(matchIndex.subscriptions::get)
+                .filter(s -> Objects.isNull(timestamp) || this.isActive(s, timestamp))
+                .sorted(Comparator.comparing(s -> s.getUuid().toString()))
+                .toList();
+    }
+
+    /**
+     * Marks the in-memory index as dirty, so that it gets rebuilt on the
+     * next match. If a transaction is currently active, the index will be
+     * marked again once it has been committed.
+     */
+    public void invalidate() {
+        this.dirty = true;
+
+        // Repeat the invalidation after the transaction commits
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty = true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the in-memory subscription index, rebuilding it from the
+     * database if it has been invalidated or has expired.
+     *
+     * @return the up-to-date subscription index
+     */
+    protected MatchIndex getIndex() {
+        if(this.isStale()) {
+            synchronized (this) {
+                if(this.isStale()) {
+                    this.dirty = false;
+                    this.index = this.buildIndex(this.loadSubscriptions());
+                }
+            }
+        }
+        return this.index;
+    }
+
+    /**
+     * Checks whether the in-memory subscription index needs to be rebuilt.
+     *
+     * @return whether the in-memory subscription index needs to be rebuilt
+     */
+    protected boolean isStale() {
+        final MatchIndex current = this.index;
+        return current == null
+                || this.dirty
+                || (this.refreshInterval > 0 && Instant.now().isAfter(current.builtAt.plusSeconds(this.refreshInterval)));
+    }
+
+    /**
+     * Builds the in-memory subscription index for the provided subscriptions.
+     *
+     * @param subscriptions the subscriptions to be indexed
+     * @return the newly built subscription index
+     */
+    protected MatchIndex buildIndex(List<SubscriptionRequest> subscriptions) {
+        final MatchIndex matchIndex = new MatchIndex();
+        subscriptions.forEach(subscription -> {
+            final UUID uuid = subscription.getUuid();
+            matchIndex.subscriptions.put(uuid, subscription);
+            this.put(matchIndex.containerTypes, subscription.getContainerType(), uuid);
+            this.put(matchIndex.dataProductTypes, subscription.getDataProductType(), uuid);
+            this.put(matchIndex.productVersions, subscription.getProductVersion(), uuid);
+            this.put(matchIndex.dataReferences, subscription.getDataReference(), uuid);
+            Optional.ofNullable(subscription.getSubscriptionGeometry())
+                    .ifPresent(g -> matchIndex.geometries.insert(g.getEnvelopeInternal(), subscription));
+        });
+        matchIndex.geometries.build();
+        log.debug("Built the in-memory SECOM subscription index with {} entries", subscriptions.size());
+        return matchIndex;
+    }
+
+    /**
+     * Loads all the subscriptions of the supported SECOM version from the
+     * database.
+     *
+     * @return the list of the subscriptions
+     */
+    protected List<SubscriptionRequest> loadSubscriptions() {
+        final EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery(
+                    "select s from SubscriptionRequest s where s.secomVersion = :secomVersion", SubscriptionRequest.class)
+                    .setParameter("secomVersion", SecomConstants.SECOM_VERSION)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    /**
+     * Checks whether the provided subscription is active at the provided
+     * timestamp. Missing period boundaries are considered open.
+     *
+     * @param subscription  the subscription to be checked
+     * @param timestamp     the timestamp to check against
+     * @return whether the subscription is active
+     */
+    protected boolean isActive(SubscriptionRequest subscription, LocalDateTime timestamp) {
+        return Optional.ofNullable(subscription.getSubscriptionPeriodStart()).map(s -> !s.isAfter(timestamp)).orElse(true)
+                && Optional.ofNullable(subscription.getSubscriptionPeriodEnd()).map(e -> !e.isBefore(timestamp)).orElse(true);
+    }
+
+    /**
+     * Narrows down the current candidates to the subscriptions indexed with
+     * the provided attribute value, or without a value at all. A null value
+     * leaves the candidates unchanged.
+     *
+     * @param candidates    the current candidates, or null if not narrowed yet
+     * @param attributeIndex the attribute index
+     * @param value         the matched attribute value
+     * @return the narrowed down candidates
+     */
+    private Set<UUID> narrow(Set<UUID> candidates, Map<Object, Set<UUID>> attributeIndex, Object value) {
+        if(Objects.isNull(value)) {
+            return candidates;
+        }
+        final Set<UUID> matching = new HashSet<>(attributeIndex.getOrDefault(value, Collections.emptySet()));
+        matching.addAll(attributeIndex.getOrDefault(NULL_KEY, Collections.emptySet()));
+        return this.narrow(candidates, matching);
+    }
+
+    /**
+     * Narrows down the current candidates to the provided matching ones.
+     *
+     * @param candidates    the current candidates, or null if not narrowed yet
+     * @param matching      the matching subscriptions
+     * @return the narrowed down candidates
+     */
+    private Set<UUID> narrow(Set<UUID> candidates, Set<UUID> matching) {
+        if(Objects.isNull(candidates)) {
+            return matching;
+        }
+        candidates.retainAll(matching);
+        return candidates;
+    }
+
+    /**
+     * Adds a subscription to the provided attribute index.
+     *
+     * @param attributeIndex the attribute index
+     * @param value         the subscription attribute value
+     * @param uuid          the subscription UUID
+     */
+    private void put(Map<Object, Set<UUID>> attributeIndex, Object value, UUID uuid) {
+        attributeIndex.computeIfAbsent(Optional.ofNullable(value).orElse(NULL_KEY), k -> new HashSet<>())
+                .add(uuid);
+    }
+
+    /**
+     * The in-memory subscription index. Once built, it is never modified, so
+     * it can be safely shared between the matching threads.
+     */
+    protected static class MatchIndex {
+        final Map<UUID, SubscriptionRequest> subscriptions = new HashMap<>();
+        final Map<Object, Set<UUID>> containerTypes = new HashMap<>();
+        final Map<Object, Set<UUID>> dataProductTypes = new HashMap<>();
+        final Map<Object, Set<UUID>> productVersions = new HashMap<>();
+        final Map<Object, Set<UUID>> dataReferences = new HashMap<>();
+        final STRtree geometries = new STRtree();
+        Instant builtAt = Instant.now();
+    }
+
+}
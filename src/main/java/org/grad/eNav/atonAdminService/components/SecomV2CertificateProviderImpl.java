@@ -17,18 +17,12 @@
 package org.grad.eNav.atonAdminService.components;
 
 import lombok.extern.slf4j.Slf4j;
-import org.grad.eNav.atonAdminService.feign.CKeeperClient;
-import org.grad.eNav.atonAdminService.models.domain.s100.ServiceInformationConfig;
-import org.grad.eNav.atonAdminService.models.dtos.McpEntityType;
-import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
 import org.grad.secomv2.core.base.DigitalSignatureCertificate;
 import org.grad.secomv2.core.base.SecomCertificateProvider;
-import org.grad.secomv2.core.utils.SecomPemUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
-import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
 
 /**
  * The SECOM v2.0 Certificate Provider Implementation.
@@ -44,17 +38,16 @@ import java.security.cert.CertificateException;
 public class SecomV2CertificateProviderImpl implements SecomCertificateProvider {
 
     /**
-     * The Service Information Config.
+     * The Signature Certificate Manager.
      */
     @Autowired
-    ServiceInformationConfig serviceInformationConfig;
+    SignatureCertificateManager signatureCertificateManager;
 
     /**
-     * The cKeeper Feign Client.
+     * The Local Signature Engine.
      */
     @Autowired
-    @Lazy
-    CKeeperClient cKeeperClient;
+    LocalSignatureEngine localSignatureEngine;
 
     /**
      * This function overrides the interface definition to link the SECOM
@@ -69,26 +62,17 @@ public class SecomV2CertificateProviderImpl implements SecomCertificateProvider
         // Initialise SECOM the digital signature certificate
         final DigitalSignatureCertificate digitalSignatureCertificate = new DigitalSignatureCertificate();
 
-        // Get the signature certificate from cKeeper
-        final SignatureCertificateDto response = this.cKeeperClient.getSignatureCertificate(
-                this.serviceInformationConfig.name(),
-                this.serviceInformationConfig.version(),
-                null,
-                McpEntityType.SERVICE.getValue());
-
-        // Build the SECOM digital certificate object
-        try {
-            digitalSignatureCertificate.setCertificateAlias(new String[]{String.format("%d", response.getCertificateId())});
-            digitalSignatureCertificate.setCertificate(SecomPemUtils.getCertsFromPem(new String[]{response.getCertificate()}));
-            digitalSignatureCertificate.setPublicKey(digitalSignatureCertificate.getCertificate()[0].getPublicKey());
-            digitalSignatureCertificate.setRootCertificate(SecomPemUtils.getCertFromPem(response.getRootCertificate()));
-        } catch (CertificateException ex) {
-            log.error(ex.getMessage());
-            return null;
+        // In the local signing mode, use the locally loaded certificate
+        if(this.localSignatureEngine.isEnabled()) {
+            digitalSignatureCertificate.setCertificateAlias(new String[]{String.format("%d", this.localSignatureEngine.getCertificateId())});
+            digitalSignatureCertificate.setCertificate(new X509Certificate[]{this.localSignatureEngine.getCertificate()});
+            digitalSignatureCertificate.setPublicKey(this.localSignatureEngine.getCertificate().getPublicKey());
+            digitalSignatureCertificate.setRootCertificate(this.localSignatureEngine.getRootCertificate());
+            return digitalSignatureCertificate;
         }
 
-        // Return the output
-        return digitalSignatureCertificate;
+        // Otherwise, use the certificate managed on behalf of cKeeper
+        return this.signatureCertificateManager.getDigitalSignatureCertificate();
     }
 
 }
@@ -30,17 +30,22 @@ import org.grad.secomv2.core.base.SecomSignatureProvider;
 import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
 import org.grad.secomv2.core.utils.SecomPemUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import javax.security.auth.x500.X500Principal;
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
-import java.util.Base64;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Stream;
 
 /**
@@ -49,6 +54,14 @@ import java.util.stream.Stream;
  * In the current e-Navigation Service Architecture, it's the cKeeper
  * microservice that is responsible for generating the validating the
  * SECOM v2.0 message signatures.
+ * <p/>
+ * Since the inbound signature verification would otherwise require a
+ * cKeeper round-trip per request, the parsed certificate chains and the
+ * positive verification outcomes are cached. Once an entity certificate
+ * has been verified by cKeeper for its MRN, its subsequent signatures can
+ * optionally be verified in-process. Verifying the signatures of unknown
+ * certificates in-process is a separate option of the local signature
+ * engine, which performs its own certificate path validation.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
@@ -63,6 +76,25 @@ public class SecomV2SignatureProviderImpl implements SecomSignatureProvider {
     @Lazy
     CKeeperClient cKeeperClient;
 
+    /**
+     * The Local Signature Engine.
+     */
+    @Autowired
+    LocalSignatureEngine localSignatureEngine;
+
+    /**
+     * The Cache Manager.
+     */
+    @Autowired(required = false)
+    CacheManager cacheManager;
+
+    /**
+     * Whether signatures of already trusted certificates should be verified
+     * in-process rather than through cKeeper.
+     */
+    @Value("${gla.rad.service.secom.signatures.localVerification:false}")
+    boolean localVerification;
+
     // Class Variables
     private static final String ANS10_MRN_OBJECT_IDENTIFIER = "0.9.2342.19200300.100.1.1";
 
@@ -95,6 +127,16 @@ public class SecomV2SignatureProviderImpl implements SecomSignatureProvider {
                         DigitalSignatureAlgorithmEnum.fromValue(signatureCertificate.getCertificate()[0].getSigAlgName()))
                 .orElseGet(this::getSignatureAlgorithm);
 
+        // In the local signing mode, sign the payload in-process
+        if(this.localSignatureEngine.isEnabled()) {
+            try {
+                return this.localSignatureEngine.sign(algorithm.getValue(), Optional.ofNullable(payload).orElse(new byte[]{}));
+            } catch (GeneralSecurityException ex) {
+                log.error(ex.getMessage());
+                return null;
+            }
+        }
+
         // Get the signature generated from cKeeper
         final Response response = this.cKeeperClient.generateCertificateSignature(
                 new BigInteger(signatureCertificate.getCertificateAlias()[0]),
@@ -127,6 +169,121 @@ public class SecomV2SignatureProviderImpl implements SecomSignatureProvider {
      */
     @Override
     public boolean validateSignature(String[] signatureCertificates, byte[] signature, byte[] content) {
+        // Get the parsed X.509 certificate chain from the request
+        final CertificateChain chain = this.getCertificateChain(signatureCertificates).orElse(null);
+        // Make sure the certificate could be parsed
+        if(chain == null || signature == null) {
+            return false;
+        }
+
+        // Identical signed content from the same certificate does not need to be verified again
+        final String verificationKey = this.generateVerificationKey(chain, signature, content);
+        if(this.getVerificationCache().map(cache -> cache.get(verificationKey)).isPresent()) {
+            return true;
+        }
+
+        // Verify the signature and cache any positive outcomes
+        final boolean valid = this.verifySignature(chain, signature, content);
+        if(valid) {
+            this.getVerificationCache().ifPresent(cache -> cache.put(verificationKey, Boolean.TRUE));
+        }
+        return valid;
+    }
+
+    /**
+     * Performs the actual signature verification, either in-process or
+     * through cKeeper. When the local signature engine verification is
+     * enabled, the signature is verified in-process against the provided
+     * certificate chain, which must validate against the SECOM trust store
+     * and carry an entity MRN. The same applies to certificates that are
+     * already trusted when the local verification is enabled. Otherwise,
+     * cKeeper is asked to verify the signature for the entity MRN and, if
+     * successful, the certificate is marked as trusted for the subsequent
+     * requests.
+     *
+     * @param chain the parsed certificate chain
+     * @param signature the signature to validate the context against
+     * @param content the content to be validated
+     * @return whether the signature validation was successful or not
+     */
+    protected boolean verifySignature(CertificateChain chain, byte[] signature, byte[] content) {
+        final X509Certificate certificate = chain.certificates()[0];
+
+        // If explicitly enabled, verify the signature in-process
+        if(this.localSignatureEngine.isVerificationEnabled()) {
+            return Objects.nonNull(chain.mrn())
+                    && this.localSignatureEngine.verify(chain.certificates(), chain.algorithm(), signature, content);
+        }
+
+        // For already trusted certificates, the signature can also be verified in-process
+        if(this.localVerification && this.isTrustedCertificate(chain)) {
+            return this.localSignatureEngine.verifySignature(certificate.getPublicKey(), chain.algorithm(), signature, content);
+        }
+
+        // Construct the signature verification object
+        final SignatureVerificationRequestDto verificationRequest = new SignatureVerificationRequestDto();
+        verificationRequest.setContent(Base64.getEncoder().encodeToString(Optional.ofNullable(content).orElseGet(() -> new byte[]{})));
+        verificationRequest.setSignature(Base64.getEncoder().encodeToString(signature));
+        verificationRequest.setAlgorithm(chain.algorithm());
+
+        // Ask cKeeper to verify the signature
+        final Response response = this.cKeeperClient.verifyEntitySignature(chain.mrn(), verificationRequest);
+
+        // Make sure the response is valid
+        if(response == null || response.status() >= 300) {
+            return false;
+        }
+
+        // Trust the certificate only if it actually matches the entity key cKeeper verified against
+        if(this.localVerification
+                && this.localSignatureEngine.verifySignature(certificate.getPublicKey(), chain.algorithm(), signature, content)) {
+            this.getTrustedCertificateCache().ifPresent(cache -> cache.put(chain.fingerprint(), chain.mrn()));
+        }
+
+        // If everything went OK, return a positive response
+        return true;
+    }
+
+    /**
+     * Checks whether the entity certificate of the provided chain is
+     * currently valid and has been verified by cKeeper before, for the same
+     * entity MRN.
+     *
+     * @param chain the parsed certificate chain
+     * @return whether the entity certificate is trusted
+     */
+    protected boolean isTrustedCertificate(CertificateChain chain) {
+        try {
+            chain.certificates()[0].checkValidity();
+        } catch (CertificateException ex) {
+            return false;
+        }
+        return this.getTrustedCertificateCache()
+                .map(cache -> cache.get(chain.fingerprint(), String.class))
+                .filter(mrn -> mrn.equals(chain.mrn()))
+                .isPresent();
+    }
+
+    /**
+     * Parses the provided PEM certificate chain, along with the entity MRN
+     * and signature algorithm, looking up the certificate chain cache first
+     * so that the same chains are not parsed on every request.
+     *
+     * @param signatureCertificates the PEM encoded certificate chain
+     * @return the parsed certificate chain, if that is valid
+     */
+    protected Optional<CertificateChain> getCertificateChain(String[] signatureCertificates) {
+        if(signatureCertificates == null || signatureCertificates.length == 0) {
+            return Optional.empty();
+        }
+
+        // Look up the cache first
+        final String key = this.digest("SHA-256", String.join("\n", signatureCertificates).getBytes(StandardCharsets.UTF_8));
+        final Optional<CertificateChain> cachedChain = this.getCertificateChainCache()
+                .map(cache -> cache.get(key, CertificateChain.class));
+        if(cachedChain.isPresent()) {
+            return cachedChain;
+        }
 
         // Get the X.509 certificate from the request
         X509Certificate[] certificate = null;
@@ -135,6 +292,11 @@ public class SecomV2SignatureProviderImpl implements SecomSignatureProvider {
         } catch (CertificateException ex) {
             log.error(ex.getMessage());
         }
+        // Make sure the certificate could be parsed
+        if(certificate == null || certificate.length == 0) {
+            return Optional.empty();
+        }
+
         // Now try to get the MRN out of the certificate principals
         final String mrn = Stream.of(certificate)
                 .map(X509Certificate::getSubjectX500Principal)
@@ -149,28 +311,95 @@ public class SecomV2SignatureProviderImpl implements SecomSignatureProvider {
                 .orElse(null);
 
         // Get the certificate algorithm
-        DigitalSignatureAlgorithmEnum algorithm = Stream.of(certificate)
+        final String algorithm = Stream.of(certificate)
                 .map(X509Certificate::getSigAlgName)
                 .findFirst()
                 .map(DigitalSignatureAlgorithmEnum::fromValue)
+                .map(DigitalSignatureAlgorithmEnum::getValue)
                 .orElse(null);
 
-        // Construct the signature verification object
-        final SignatureVerificationRequestDto verificationRequest = new SignatureVerificationRequestDto();
-        verificationRequest.setContent(Base64.getEncoder().encodeToString(content));
-        verificationRequest.setSignature(Base64.getEncoder().encodeToString(signature));
-        verificationRequest.setAlgorithm(algorithm.getValue());
+        // Cache the parsed chain for any repeat requests
+        final CertificateChain chain = new CertificateChain(certificate,
+                this.localSignatureEngine.getFingerprint(certificate[0]),
+                mrn,
+                algorithm);
+        this.getCertificateChainCache().ifPresent(cache -> cache.put(key, chain));
+        return Optional.of(chain);
+    }
 
-        // Ask cKeeper to verify the signature
-        final Response response = this.cKeeperClient.verifyEntitySignature(mrn, verificationRequest);
+    /**
+     * Generates the verification cache key for the provided signature, based
+     * on the entity certificate fingerprint and the digests of the signature
+     * and the signed content.
+     *
+     * @param chain the parsed certificate chain
+     * @param signature the signature to be verified
+     * @param content the signed content
+     * @return the verification cache key
+     */
+    protected String generateVerificationKey(CertificateChain chain, byte[] signature, byte[] content) {
+        return String.format("%s:%s:%s",
+                chain.fingerprint(),
+                this.digest("SHA-256", signature),
+                this.digest("SHA-384", Optional.ofNullable(content).orElseGet(() -> new byte[]{})));
+    }
 
-        // Make sure the response is valid
-        if(response == null) {
-            return false;
+    /**
+     * Generates the hex encoded digest of the provided data.
+     *
+     * @param algorithm the digest algorithm
+     * @param data the data to be digested
+     * @return the hex encoded digest
+     */
+    protected String digest(String algorithm, byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance(algorithm).digest(data));
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256 and SHA-384
+            throw new IllegalStateException(ex);
         }
+    }
 
-        // If everything went OK, return a positive response
-        return response.status() < 300;
+    /**
+     * Returns the SECOM certificate chain cache, if that is available.
+     *
+     * @return the SECOM certificate chain cache
+     */
+    protected Optional<Cache> getCertificateChainCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("secomCertificateChainCache"));
+    }
+
+    /**
+     * Returns the SECOM signature verification cache, if that is available.
+     *
+     * @return the SECOM signature verification cache
+     */
+    protected Optional<Cache> getVerificationCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("secomVerificationCache"));
+    }
+
+    /**
+     * Returns the SECOM trusted certificate cache, if that is available.
+     *
+     * @return the SECOM trusted certificate cache
+     */
+    protected Optional<Cache> getTrustedCertificateCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("secomTrustedCertificateCache"));
+    }
+
+    /**
+     * The parsed SECOM certificate chain, along with the entity certificate
+     * fingerprint, MRN and signature algorithm.
+     *
+     * @param certificates the X.509 certificates of the chain
+     * @param fingerprint the SHA-256 fingerprint of the entity certificate
+     * @param mrn the MRN of the entity
+     * @param algorithm the signature algorithm of the entity certificate
+     */
+    protected record CertificateChain(X509Certificate[] certificates, String fingerprint, String mrn, String algorithm) {
     }
 
 }
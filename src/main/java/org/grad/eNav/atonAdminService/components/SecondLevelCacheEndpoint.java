@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * The SecondLevelCacheEndpoint Component Class
+ *
+ * An actuator endpoint providing a view of the Hibernate second-level cache
+ * regions, i.e. their hit/miss/put counts and the number of entries currently
+ * kept in memory. It also allows the administrators to evict the contents of
+ * the second-level cache, either as a whole or for a single region.
+ * <p/>
+ * Note that the region statistics are only populated when the Hibernate
+ * statistics have been enabled through the "hibernate.generate_statistics"
+ * property, e.g. by activating the "statistics" profile.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Endpoint(id = "secondlevelcache")
+@Slf4j
+public class SecondLevelCacheEndpoint {
+
+    /**
+     * The Entity Manager Factory.
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Returns the statistics of all the second-level cache regions.
+     *
+     * @return the second-level cache statistics
+     */
+    @ReadOperation
+    public Map<String, Object> regions() {
+        final Statistics statistics = this.getStatistics();
+        final Map<String, Object> regions = new TreeMap<>();
+        Arrays.stream(statistics.getSecondLevelCacheRegionNames())
+                .forEach(name -> regions.put(name, this.region(name)));
+
+        // Build the response
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        result.put("hitCount", statistics.getSecondLevelCacheHitCount());
+        result.put("missCount", statistics.getSecondLevelCacheMissCount());
+        result.put("putCount", statistics.getSecondLevelCachePutCount());
+        result.put("queryCacheHitCount", statistics.getQueryCacheHitCount());
+        result.put("queryCacheMissCount", statistics.getQueryCacheMissCount());
+        result.put("queryCachePutCount", statistics.getQueryCachePutCount());
+        result.put("regions", regions);
+        return result;
+    }
+
+    /**
+     * Returns the statistics of a single second-level cache region.
+     *
+     * @param region the name of the region
+     * @return the second-level cache region statistics
+     */
+    @ReadOperation
+    public Map<String, Object> region(@Selector String region) {
+        return Optional.ofNullable(this.getStatistics().getCacheRegionStatistics(region))
+                .map(this::toMap)
+                .orElse(null);
+    }
+
+    /**
+     * Evicts all the contents of the second-level cache.
+     */
+    @DeleteOperation
+    public void evictAll() {
+        log.info("Evicting all the Hibernate second-level cache regions");
+        this.entityManagerFactory.getCache().evictAll();
+    }
+
+    /**
+     * Evicts the contents of a single second-level cache region.
+     *
+     * @param region the name of the region
+     */
+    @DeleteOperation
+    public void evictRegion(@Selector String region) {
+        log.info("Evicting the Hibernate second-level cache region {}", region);
+        this.entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getCache()
+                .evictRegion(region);
+    }
+
+    /**
+     * Returns the Hibernate statistics of the current session factory.
+     *
+     * @return the Hibernate statistics
+     */
+    protected Statistics getStatistics() {
+        return this.entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+    }
+
+    /**
+     * Translates the provided cache region statistics into a map, so that
+     * they can be easily serialised by the actuator.
+     *
+     * @param statistics the cache region statistics
+     * @return the map representation of the statistics
+     */
+    protected Map<String, Object> toMap(CacheRegionStatistics statistics) {
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("hitCount", statistics.getHitCount());
+        result.put("missCount", statistics.getMissCount());
+        result.put("putCount", statistics.getPutCount());
+        result.put("elementCountInMemory", statistics.getElementCountInMemory());
+        result.put("sizeInMemory", statistics.getSizeInMemory());
+        return result;
+    }
+
+}
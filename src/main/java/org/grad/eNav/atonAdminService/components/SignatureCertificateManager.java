@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.feign.CKeeperClient;
+import org.grad.eNav.atonAdminService.models.domain.s100.ServiceInformationConfig;
+import org.grad.eNav.atonAdminService.models.dtos.McpEntityType;
+import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
+import org.grad.secomv2.core.base.DigitalSignatureCertificate;
+import org.grad.secomv2.core.utils.SecomPemUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SignatureCertificateManager Component Class
+ * <p/>
+ * This component holds the current signature certificate of this service,
+ * as provided by cKeeper, along with its parsed SECOM digital signature
+ * certificate representation. Only the very first lookup blocks on cKeeper;
+ * afterwards the certificate is refreshed asynchronously ahead of its
+ * expiry, either on access or by the periodic refresh check. If cKeeper
+ * cannot be reached, the last good certificate keeps being served and the
+ * refresh is retried after a short interval.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SignatureCertificateManager {
+
+    /**
+     * The time in seconds the certificate is considered fresh for.
+     */
+    @Value("${gla.rad.service.secom.certificates.ttl:300}")
+    long ttl;
+
+    /**
+     * The time in seconds before the expiry the certificate gets refreshed.
+     */
+    @Value("${gla.rad.service.secom.certificates.refreshAhead:60}")
+    long refreshAhead;
+
+    /**
+     * The time in seconds to wait before retrying a failed refresh.
+     */
+    @Value("${gla.rad.service.secom.certificates.retryInterval:10}")
+    long retryInterval;
+
+    /**
+     * The Service Information Config.
+     */
+    @Autowired
+    ServiceInformationConfig serviceInformationConfig;
+
+    /**
+     * The cKeeper Feign Client.
+     */
+    @Autowired
+    @Lazy
+    CKeeperClient cKeeperClient;
+
+    /**
+     * The Task Executor.
+     */
+    @Autowired
+    @Qualifier("taskExecutor")
+    Executor taskExecutor;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Component Variables
+    volatile ManagedCertificate current;
+    volatile Instant nextRefresh = Instant.EPOCH;
+    final AtomicBoolean refreshing = new AtomicBoolean();
+
+    /**
+     * The signature certificate as provided by cKeeper, along with its parsed
+     * SECOM representation and the time it was retrieved.
+     *
+     * @param signatureCertificate the cKeeper signature certificate
+     * @param digitalSignatureCertificate the parsed SECOM digital signature certificate
+     * @param retrievedAt the time the certificate was retrieved
+     */
+    record ManagedCertificate(SignatureCertificateDto signatureCertificate,
+                              DigitalSignatureCertificate digitalSignatureCertificate,
+                              Instant retrievedAt) {
+    }
+
+    /**
+     * Once the component has been initialised, register the certificate age
+     * metric.
+     */
+    @PostConstruct
+    public void init() {
+        Gauge.builder("secom.certificate.age", this, manager -> Optional.ofNullable(manager.current)
+                        .map(ManagedCertificate::retrievedAt)
+                        .map(retrievedAt -> Duration.between(retrievedAt, Instant.now()).toSeconds())
+                        .orElse(-1L))
+                .description("The age in seconds of the current signature certificate")
+                .baseUnit("seconds")
+                .register(this.meterRegistry);
+    }
+
+    /**
+     * Returns the current signature certificate of this service as provided
+     * by cKeeper.
+     *
+     * @return the current signature certificate
+     */
+    public SignatureCertificateDto getSignatureCertificate() {
+        return this.getCertificate().signatureCertificate();
+    }
+
+    /**
+     * Returns the parsed SECOM digital signature certificate of this service.
+     *
+     * @return the current SECOM digital signature certificate
+     */
+    public DigitalSignatureCertificate getDigitalSignatureCertificate() {
+        return this.getCertificate().digitalSignatureCertificate();
+    }
+
+    /**
+     * Returns the current certificate, triggering an asynchronous refresh if
+     * that is due. If no certificate has been retrieved yet, this blocks
+     * until cKeeper has responded.
+     *
+     * @return the current certificate
+     */
+    protected ManagedCertificate getCertificate() {
+        final ManagedCertificate certificate = this.current;
+        if(Objects.isNull(certificate)) {
+            return this.loadCertificate();
+        }
+        if(!Instant.now().isBefore(this.nextRefresh)) {
+            this.refreshAsync();
+        }
+        return certificate;
+    }
+
+    /**
+     * Periodically checks whether the certificate is due for a refresh, so
+     * that it stays fresh even without any incoming traffic.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.service.secom.certificates.refreshCheck:10000}")
+    public void refreshIfDue() {
+        if(Objects.nonNull(this.current) && !Instant.now().isBefore(this.nextRefresh)) {
+            this.refreshAsync();
+        }
+    }
+
+    /**
+     * Refreshes the certificate on the task executor, unless a refresh is
+     * already in progress. Any failures are logged and the last good
+     * certificate keeps being served.
+     */
+    protected void refreshAsync() {
+        if(!this.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            this.taskExecutor.execute(() -> {
+                try {
+                    this.refresh();
+                } catch (Exception ex) {
+                    log.warn("Signature certificate refresh failed, serving the last good certificate: {}", ex.getMessage());
+                } finally {
+                    this.refreshing.set(false);
+                }
+            });
+        } catch (RuntimeException ex) {
+            this.refreshing.set(false);
+            throw ex;
+        }
+    }
+
+    /**
+     * Performs the initial blocking certificate retrieval. Concurrent
+     * callers wait for the same retrieval rather than all calling cKeeper.
+     *
+     * @return the retrieved certificate
+     */
+    protected synchronized ManagedCertificate loadCertificate() {
+        return Optional.ofNullable(this.current)
+                .orElseGet(this::refresh);
+    }
+
+    /**
+     * Retrieves the signature certificate from cKeeper and parses it. On
+     * success the certificate replaces the current one, otherwise the next
+     * refresh is scheduled after the retry interval.
+     *
+     * @return the retrieved certificate
+     */
+    protected ManagedCertificate refresh() {
+        final Timer.Sample sample = Timer.start(this.meterRegistry);
+        try {
+            // Get the signature certificate from cKeeper
+            final SignatureCertificateDto signatureCertificate = this.cKeeperClient.getSignatureCertificate(
+                    this.serviceInformationConfig.name(),
+                    this.serviceInformationConfig.version(),
+                    null,
+                    McpEntityType.SERVICE.getValue());
+            if(Objects.isNull(signatureCertificate)) {
+                throw new IllegalStateException("No signature certificate received from cKeeper");
+            }
+
+            // Parse it and replace the current one
+            final ManagedCertificate certificate = new ManagedCertificate(
+                    signatureCertificate,
+                    this.parseCertificate(signatureCertificate),
+                    Instant.now());
+            this.current = certificate;
+            this.nextRefresh = certificate.retrievedAt().plusSeconds(Math.max(this.ttl - this.refreshAhead, 1));
+            sample.stop(this.getRefreshTimer("success"));
+            return certificate;
+        } catch (RuntimeException ex) {
+            this.nextRefresh = Instant.now().plusSeconds(Math.max(this.retryInterval, 1));
+            sample.stop(this.getRefreshTimer("failure"));
+            Counter.builder("secom.certificate.refresh.failures")
+                    .description("The number of failed signature certificate refreshes")
+                    .register(this.meterRegistry)
+                    .increment();
+            throw ex;
+        }
+    }
+
+    /**
+     * Parses the provided cKeeper signature certificate into the SECOM
+     * digital signature certificate representation. Invalid certificates
+     * are rejected, so that they never replace the last good one.
+     *
+     * @param signatureCertificate the cKeeper signature certificate
+     * @return the SECOM digital signature certificate
+     * @throws IllegalStateException if the certificate is invalid
+     */
+    protected DigitalSignatureCertificate parseCertificate(SignatureCertificateDto signatureCertificate) {
+        final DigitalSignatureCertificate digitalSignatureCertificate = new DigitalSignatureCertificate();
+        try {
+            final X509Certificate[] certificates = SecomPemUtils.getCertsFromPem(new String[]{signatureCertificate.getCertificate()});
+            if(Objects.isNull(certificates) || certificates.length == 0) {
+                throw new CertificateException("No certificates found in the cKeeper signature certificate");
+            }
+            digitalSignatureCertificate.setCertificateAlias(new String[]{String.format("%d", signatureCertificate.getCertificateId())});
+            digitalSignatureCertificate.setCertificate(certificates);
+            digitalSignatureCertificate.setPublicKey(certificates[0].getPublicKey());
+            digitalSignatureCertificate.setRootCertificate(SecomPemUtils.getCertFromPem(signatureCertificate.getRootCertificate()));
+        } catch (CertificateException ex) {
+            throw new IllegalStateException(String.format("Invalid signature certificate received from cKeeper: %s", ex.getMessage()), ex);
+        }
+        return digitalSignatureCertificate;
+    }
+
+    /**
+     * Returns the certificate refresh latency timer for the provided result.
+     *
+     * @param result the refresh result
+     * @return the certificate refresh latency timer
+     */
+    protected Timer getRefreshTimer(String result) {
+        return Timer.builder("secom.certificate.refresh")
+                .description("The signature certificate refresh latency")
+                .tag("result", result)
+                .register(this.meterRegistry);
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+import org.locationtech.jts.geom.Geometry;
+
+/**
+ * The SpatialSearchProvider Interface
+ *
+ * Abstracts the construction of the geo-spatial Hibernate Search predicates
+ * away from the services, so that the same search queries can be executed
+ * against any of the supported search backends. The Elasticsearch backend
+ * relies on the native geo_shape queries, whereas the embedded Lucene backend
+ * resolves the spatial part of the query through an in-memory index.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public interface SpatialSearchProvider {
+
+    /**
+     * Constructs a predicate that matches all the entities of the provided
+     * class, whose geometry field intersects with the provided geometry. Note
+     * that the indexed field name is expected to match the name of the entity
+     * geometry property.
+     *
+     * @param factory       the search predicate factory
+     * @param entityClass   the class of the entities being searched
+     * @param fieldName     the name of the indexed geometry field
+     * @param geometry      the geometry that the results should intersect with
+     * @return the spatial intersection predicate
+     */
+    PredicateFinalStep intersects(SearchPredicateFactory factory,
+                                  Class<?> entityClass,
+                                  String fieldName,
+                                  Geometry geometry);
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.work.SearchIndexingPlan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The SubscriptionTimestampBuffer Component Class
+ * <p/>
+ * After every successful delivery, the update timestamp of the SECOM
+ * subscription needs to be persisted, so that the next exchange set
+ * delivered only includes the newer deltas. Instead of writing each
+ * timestamp separately, this component buffers the latest timestamp of
+ * each subscription in memory and flushes them periodically to the
+ * database, as batched JDBC updates. Since these updates bypass Hibernate,
+ * the updated subscriptions are then re-indexed explicitly, to keep their
+ * sortable update timestamps in the search index current.
+ * <p/>
+ * The buffered timestamps only ever move the persisted ones forward, so if
+ * a flush fails the entries are simply put back to be retried, while if the
+ * service stops before a flush the persisted timestamps will just be
+ * older. In both cases the next delivery will include some deltas again,
+ * but nothing will ever be skipped, i.e. the deliveries are at-least-once.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Component
+@Slf4j
+public class SubscriptionTimestampBuffer {
+
+    /**
+     * The maximum number of timestamps to be written in a single batch. A
+     * flush is also requested as soon as this many timestamps are buffered.
+     */
+    @Value("${gla.rad.service.secom.subscriptions.timestamps.batchSize:500}")
+    int batchSize;
+
+    /**
+     * The Entity Manager Factory.
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * The JDBC Template.
+     */
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * The Task Executor.
+     */
+    @Autowired
+    @Qualifier("taskExecutor")
+    Executor taskExecutor;
+
+    // Component Variables
+    final Map<UUID, LocalDateTime> buffer = new ConcurrentHashMap<>();
+    final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    /**
+     * Buffers the provided update timestamp of a subscription, replacing any
+     * older one still pending.
+     *
+     * @param uuid the UUID of the subscription
+     * @param updatedAt the update timestamp of the subscription
+     */
+    public void record(UUID uuid, LocalDateTime updatedAt) {
+        if(Objects.isNull(uuid) || Objects.isNull(updatedAt)) {
+            return;
+        }
+        this.buffer.merge(uuid, updatedAt, (a, b) -> a.isAfter(b) ? a : b);
+
+        // Do not wait for the next scheduled flush if the buffer is full
+        if(this.buffer.size() >= Math.max(this.batchSize, 1) && this.flushRequested.compareAndSet(false, true)) {
+            this.taskExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Returns the number of buffered timestamps.
+     *
+     * @return the number of buffered timestamps
+     */
+    public int size() {
+        return this.buffer.size();
+    }
+
+    /**
+     * Flushes all the buffered timestamps to the database in batches. Any
+     * entries that fail to be written are put back into the buffer.
+     */
+    @Scheduled(fixedDelayString = "${gla.rad.service.secom.subscriptions.timestamps.flushInterval:5000}")
+    public synchronized void flush() {
+        this.flushRequested.set(false);
+
+        // Take a snapshot of the buffered entries
+        final List<Map.Entry<UUID, LocalDateTime>> entries = this.buffer.entrySet()
+                .stream()
+                .map(e -> Map.entry(e.getKey(), e.getValue()))
+                .toList();
+        if(entries.isEmpty()) {
+            return;
+        }
+        entries.forEach(e -> this.buffer.remove(e.getKey(), e.getValue()));
+
+        // And write them in batches
+        for(int i = 0; i < entries.size(); i += Math.max(this.batchSize, 1)) {
+            final List<Map.Entry<UUID, LocalDateTime>> batch = entries.subList(i, Math.min(i + Math.max(this.batchSize, 1), entries.size()));
+            try {
+                this.writeBatch(batch);
+            } catch (Exception ex) {
+                log.error("Failed to persist {} SECOM subscription timestamps, will retry: {}", batch.size(), ex.getMessage());
+                batch.forEach(e -> this.buffer.merge(e.getKey(), e.getValue(), (a, b) -> a.isAfter(b) ? a : b));
+            }
+        }
+    }
+
+    /**
+     * Make sure all the buffered timestamps are persisted before shutting
+     * down.
+     */
+    @PreDestroy
+    public void destroy() {
+        log.info("Persisting {} pending SECOM subscription timestamps...", this.buffer.size());
+        this.flush();
+    }
+
+    /**
+     * Writes a batch of subscription timestamps to the database in a single
+     * JDBC batch, without moving any persisted timestamp backwards. Since the
+     * entities are updated directly, their second level cache entries are
+     * evicted and their search index documents are updated as well.
+     *
+     * @param batch the batch of subscription timestamps
+     */
+    protected void writeBatch(List<Map.Entry<UUID, LocalDateTime>> batch) {
+        this.jdbcTemplate.batchUpdate(
+                "UPDATE subscription_request SET updated_at = ? WHERE uuid = ? AND (updated_at IS NULL OR updated_at < ?)",
+                batch.stream()
+                        .map(e -> new Object[]{Timestamp.valueOf(e.getValue()), e.getKey(), Timestamp.valueOf(e.getValue())})
+                        .toList());
+        batch.forEach(e -> this.entityManagerFactory.getCache().evict(SubscriptionRequest.class, e.getKey()));
+        this.reindex(batch.stream().map(Map.Entry::getKey).toList());
+        log.debug("Persisted {} SECOM subscription timestamps", batch.size());
+    }
+
+    /**
+     * Re-indexes the subscriptions of the provided UUIDs, by reloading them
+     * from the database and updating their search index documents straight
+     * away, since no Hibernate flush or commit will ever trigger that for
+     * the JDBC updates.
+     *
+     * @param uuids the UUIDs of the subscriptions to be re-indexed
+     */
+    protected void reindex(List<UUID> uuids) {
+        final EntityManager entityManager = this.entityManagerFactory.createEntityManager();
+        try {
+            final SearchIndexingPlan indexingPlan = Search.session(entityManager).indexingPlan();
+            uuids.stream()
+                    .map(uuid -> entityManager.find(SubscriptionRequest.class, uuid))
+                    .filter(Objects::nonNull)
+                    .forEach(indexingPlan::addOrUpdate);
+            indexingPlan.execute();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+}
@@ -16,18 +16,23 @@
 
 package org.grad.eNav.atonAdminService.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * The AsynchronousConfig Class
  *
  * This is a simple configuration that enables asynchronous operations and
- * provide a task executor for them.
+ * provide a task executor for them. The dedicated signing and delivery
+ * executors have bounded queues, and once these are full, the submitted tasks
+ * are run by the submitting thread instead, which naturally throttles the
+ * producers rather than letting the pending tasks pile up in memory.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
@@ -35,6 +40,30 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class AsynchronousConfig {
 
+    /**
+     * The maximum number of concurrent signature requests.
+     */
+    @Value("${gla.rad.service.s100.signing.parallelism:8}")
+    int signingParallelism;
+
+    /**
+     * The maximum number of concurrent SECOM subscription deliveries.
+     */
+    @Value("${gla.rad.service.secom.delivery.parallelism:16}")
+    int deliveryParallelism;
+
+    /**
+     * The maximum number of queued signature requests.
+     */
+    @Value("${gla.rad.service.s100.signing.queueCapacity:1000}")
+    int signingQueueCapacity;
+
+    /**
+     * The maximum number of client endpoints queued for delivery.
+     */
+    @Value("${gla.rad.service.secom.delivery.executorQueueCapacity:1000}")
+    int deliveryQueueCapacity;
+
     /**
      * The default task executor for all asynchronous operations.
      *
@@ -51,4 +80,43 @@ public class AsynchronousConfig {
         return taskExecutor;
     }
 
+    /**
+     * The bounded task executor for the concurrent signature requests made
+     * while packaging the S-100 exchange sets. This is kept separate from
+     * the default executor, so that large exchange sets cannot flood the
+     * signature provider.
+     *
+     * @return The task executor for the signature requests
+     */
+    @Bean("signingExecutor")
+    public Executor signingExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(this.signingParallelism);
+        taskExecutor.setMaxPoolSize(this.signingParallelism);
+        taskExecutor.setQueueCapacity(this.signingQueueCapacity);
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        taskExecutor.setThreadNamePrefix("signer-");
+        taskExecutor.initialize();
+        return taskExecutor;
+    }
+
+    /**
+     * The bounded task executor for the SECOM subscription deliveries. Each
+     * client endpoint queue is drained by a single task at a time, so this
+     * limits the number of client endpoints being served concurrently.
+     *
+     * @return The task executor for the SECOM subscription deliveries
+     */
+    @Bean("deliveryExecutor")
+    public Executor deliveryExecutor() {
+        ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+        taskExecutor.setCorePoolSize(this.deliveryParallelism);
+        taskExecutor.setMaxPoolSize(this.deliveryParallelism);
+        taskExecutor.setQueueCapacity(this.deliveryQueueCapacity);
+        taskExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        taskExecutor.setThreadNamePrefix("delivery-");
+        taskExecutor.initialize();
+        return taskExecutor;
+    }
+
 }
@@ -16,11 +16,21 @@
 package org.grad.eNav.atonAdminService.config;
 
 
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.jcache.JCacheCacheManager;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Cache Configuration Class
+ * <p/>
+ * Apart from enabling the Spring caching, this configuration also shares the
+ * JCache manager of the application with the Hibernate second-level cache, so
+ * that the entity, collection and query regions defined in the ehcache.xml
+ * are used and reported through the same metrics as the rest of the caches.
  *
  * @author Lawrence Hughes (email: Lawrence.Hughes@gla-rad.org)
  */
@@ -28,4 +38,18 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableCaching
 public class CacheConfig {
+
+    /**
+     * Provides the Hibernate properties customiser that sets the JCache
+     * manager to be used for the Hibernate second-level cache regions.
+     *
+     * @param cacheManager the Spring JCache cache manager, if available
+     * @return the Hibernate properties customiser
+     */
+    @Bean
+    public HibernatePropertiesCustomizer hibernateSecondLevelCacheCustomizer(ObjectProvider<JCacheCacheManager> cacheManager) {
+        return properties -> cacheManager.ifAvailable(cm ->
+                properties.put(ConfigSettings.CACHE_MANAGER, cm.getCacheManager()));
+    }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilterFactory;
+import org.apache.lucene.analysis.core.LowerCaseFilterFactory;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilterFactory;
+import org.apache.lucene.analysis.snowball.SnowballPorterFilterFactory;
+import org.apache.lucene.analysis.standard.StandardTokenizerFactory;
+import org.hibernate.search.backend.lucene.analysis.LuceneAnalysisConfigurationContext;
+import org.hibernate.search.backend.lucene.analysis.LuceneAnalysisConfigurer;
+
+/**
+ * The Custom Lucene Analysis Configurer
+ *
+ * Defines the custom Lucene analysis configuration used for this service when
+ * running on the embedded search backend. This is the Lucene equivalent of the
+ * {@link CustomElasticsearchAnalysisConfigurer}, so that both backends analyse
+ * the indexed text in exactly the same way.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Slf4j
+public class CustomLuceneAnalysisConfigurer implements LuceneAnalysisConfigurer {
+
+    /**
+     * Implements the Lucene analysis configuration.
+     *
+     * @param context the Lucene analysis configuration context
+     */
+    @Override
+    public void configure(LuceneAnalysisConfigurationContext context) {
+        context.analyzer( "english" ).custom()
+                .tokenizer( StandardTokenizerFactory.class )
+                .charFilter( HTMLStripCharFilterFactory.class )
+                .tokenFilter( LowerCaseFilterFactory.class )
+                .tokenFilter( SnowballPorterFilterFactory.class )
+                        .param( "language", "English" )
+                .tokenFilter( ASCIIFoldingFilterFactory.class );
+
+        context.normalizer( "lowercase" ).custom()
+                .tokenFilter( LowerCaseFilterFactory.class )
+                .tokenFilter( ASCIIFoldingFilterFactory.class );
+    }
+
+}
@@ -53,6 +53,14 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${gla.rad.aton-service.web-socket.aton-data-endpoint:atons}")
     private String atonDataEndpoint;
 
+    /**
+     * The time in milliseconds a single session send may take before that
+     * session gets closed, so that slow clients cannot hold on to the
+     * outbound threads.
+     */
+    @Value("${gla.rad.aton-service.web-socket.send-time-limit:10000}")
+    private int sendTimeLimit;
+
     /**
      * This function implements the basic registration for our WebSocket message
      * broker. It basically set's the destination prefix and all endpoints.
@@ -76,7 +84,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     {
         registry.setMessageSizeLimit(5000000);
         registry.setSendBufferSizeLimit(5000000);
-        registry.setSendTimeLimit(500000);
+        registry.setSendTimeLimit(this.sendTimeLimit);
     }
 
     /**
@@ -16,13 +16,19 @@
 
 package org.grad.eNav.atonAdminService.controllers;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.grad.eNav.atonAdminService.components.DomainDtoMapper;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPage;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
 import org.grad.eNav.atonAdminService.models.dtos.s201.AidsToNavigationDto;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
+import org.grad.eNav.atonAdminService.models.enums.AtonExportFormat;
 import org.grad.eNav.atonAdminService.services.AidsToNavigationService;
+import org.grad.eNav.atonAdminService.services.AtonExportService;
+import org.grad.eNav.atonAdminService.services.AtonTileService;
 import org.grad.eNav.atonAdminService.services.DatasetService;
 import org.grad.eNav.atonAdminService.utils.GeometryJSONConverter;
 import org.grad.eNav.atonAdminService.utils.HeaderUtil;
@@ -31,14 +37,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -57,6 +70,18 @@ public class AidsToNavigationController {
     @Autowired
     AidsToNavigationService aidsToNavigationService;
 
+    /**
+     * The AtoN Tile Service.
+     */
+    @Autowired
+    AtonTileService atonTileService;
+
+    /**
+     * The AtoN Export Service.
+     */
+    @Autowired
+    AtonExportService atonExportService;
+
     /**
      * The Dataset Service.
      */
@@ -132,6 +157,97 @@ public class AidsToNavigationController {
                 .body(this.aidsToNavigationToDtoMapper.convertToPage(atonPage, AidsToNavigationDto.class));
     }
 
+    /**
+     * GET /api/atons/export : Streams all the Aids to Navigation that match
+     * the provided criteria, either as newline delimited JSON (the default)
+     * or as a GeoJSON feature collection. The entries are written out while
+     * being loaded, so that the full export is never held in memory.
+     *
+     * @param format the export format, i.e. ndjson or geojson
+     * @param idCode the Aids to Navigation number
+     * @param geometry the geometry for AtoN message filtering
+     * @param startDate the start date for AtoN message filtering
+     * @param endDate the end date for AtoN message filtering
+     * @param response the HTTP servlet response to stream the export to
+     * @throws IOException if the response output stream cannot be accessed
+     */
+    @GetMapping(value = "/export")
+    public void exportAidsToNavigation(@RequestParam("format") Optional<String> format,
+                                       @RequestParam("idCode") Optional<String> idCode,
+                                       @RequestParam("geometry") Optional<Geometry> geometry,
+                                       @RequestParam("startDate") Optional<LocalDateTime> startDate,
+                                       @RequestParam("endDate") Optional<LocalDateTime> endDate,
+                                       HttpServletResponse response) throws IOException {
+        log.debug("REST request to export the Aids to Navigation");
+        final AtonExportFormat exportFormat = format
+                .map(f -> AtonExportFormat.fromName(f)
+                        .orElseThrow(() -> new ValidationException("format", "The export format should be either ndjson or geojson")))
+                .orElse(AtonExportFormat.NDJSON);
+
+        // Set up the response and stream the export
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(exportFormat.getMediaType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("atons." + exportFormat.getExtension())
+                .build()
+                .toString());
+        this.atonExportService.export(
+                exportFormat,
+                idCode.orElse(null),
+                geometry.orElse(null),
+                startDate.orElse(null),
+                endDate.orElse(null),
+                response.getOutputStream()
+        );
+    }
+
+    /**
+     * GET /api/atons/clusters : Returns the clusters of the Aids to
+     * Navigation within the provided bounding box, along with their per
+     * AtoN type breakdowns, for the low zoom map views.
+     *
+     * @param bbox the bounding box in the [minLon, minLat, maxLon, maxLat] order
+     * @param zoom the map zoom level
+     * @return the ResponseEntity with status 200 (OK) and the list of clusters in body
+     */
+    @GetMapping(value = "/clusters", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<AtonClusterDto>> getAidsToNavigationClusters(@RequestParam("bbox") double[] bbox,
+                                                                            @RequestParam("zoom") int zoom) {
+        log.debug("REST request to get the Aids to Navigation clusters for zoom level {}", zoom);
+        return ResponseEntity.ok()
+                .body(this.aidsToNavigationService.findClusters(bbox, zoom));
+    }
+
+    /**
+     * GET /api/atons/tiles/{z}/{x}/{y}.mvt : Returns the Mapbox Vector Tile
+     * of the Aids to Navigation for the specified tile coordinates. The
+     * tiles are served gzip-compressed, unless the client does not accept
+     * the gzip content encoding.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @param acceptEncoding the accepted content encodings of the client
+     * @return the ResponseEntity with status 200 (OK) and the vector tile in body
+     */
+    @GetMapping(value = "/tiles/{z}/{x}/{y}.mvt", produces = AtonTileService.MVT_MEDIA_TYPE)
+    public ResponseEntity<byte[]> getAidsToNavigationTile(@PathVariable int z,
+                                                          @PathVariable int x,
+                                                          @PathVariable int y,
+                                                          @RequestHeader(HttpHeaders.ACCEPT_ENCODING) Optional<String> acceptEncoding) {
+        log.debug("REST request to get the Aids to Navigation vector tile {}/{}/{}", z, x, y);
+        final boolean gzip = acceptEncoding.map(this::acceptsGzip).orElse(false);
+        final ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.parseMediaType(AtonTileService.MVT_MEDIA_TYPE));
+        if(gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return builder.body(this.atonTileService.getTile(z, x, y, gzip));
+    }
+
     /**
      * POST /api/atons/dt : Returns a paged list of all current Aids to
      * Navigation for the datatables front-end.
@@ -176,4 +292,27 @@ public class AidsToNavigationController {
                 .build();
     }
 
+    /**
+     * Checks whether the provided Accept-Encoding header value accepts the
+     * gzip content encoding with a non-zero quality value. An explicit gzip
+     * entry takes precedence over the wildcard one.
+     *
+     * @param acceptEncoding the Accept-Encoding header value
+     * @return whether the gzip content encoding is accepted
+     */
+    protected boolean acceptsGzip(String acceptEncoding) {
+        final Map<String, Boolean> codings = new HashMap<>();
+        for(String entry : acceptEncoding.split(",")) {
+            final String[] parts = entry.trim().split(";");
+            final boolean accepted = Arrays.stream(parts)
+                    .skip(1)
+                    .map(String::trim)
+                    .filter(param -> param.startsWith("q="))
+                    .noneMatch(param -> param.substring(2).trim().matches("0(\\.0*)?"));
+            codings.put(parts[0].trim().toLowerCase(), accepted);
+        }
+        return Optional.ofNullable(codings.get("gzip"))
+                .orElse(codings.getOrDefault("*", false));
+    }
+
 }
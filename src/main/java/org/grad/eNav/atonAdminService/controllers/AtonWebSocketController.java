@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.controllers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.AtonUpdateBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+
+/**
+ * The AtoN Web-Socket Controller.
+ *
+ * This controller handles the messages sent by the web-socket clients to
+ * the application destinations, such as the registration of the map
+ * viewport that the AtoN updates should be filtered by.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Controller
+@Slf4j
+public class AtonWebSocketController {
+
+    /**
+     * The AtoN Update Broadcaster.
+     */
+    @Autowired
+    AtonUpdateBroadcaster atonUpdateBroadcaster;
+
+    /**
+     * Registers the map viewport of the sending web-socket session, as a
+     * [minLon, minLat, maxLon, maxLat] bounding box. The filtered AtoN
+     * updates will then be sent to the user destinations of the session.
+     * An empty payload clears the viewport.
+     *
+     * @param bbox the viewport bounding box
+     * @param headerAccessor the message header accessor
+     */
+    @MessageMapping("/viewport")
+    public void setViewport(@Payload(required = false) double[] bbox, SimpMessageHeaderAccessor headerAccessor) {
+        log.debug("AtoN web-socket session {} registered viewport {}", headerAccessor.getSessionId(), bbox);
+        this.atonUpdateBroadcaster.setViewport(headerAccessor.getSessionId(), bbox);
+    }
+
+}
@@ -16,28 +16,36 @@
 
 package org.grad.eNav.atonAdminService.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.DatasetRemovalTracker;
 import org.grad.eNav.atonAdminService.components.DomainDtoMapper;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPage;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
 import org.grad.eNav.atonAdminService.models.dtos.s201.S201DataSetDto;
 import org.grad.eNav.atonAdminService.services.DatasetService;
+import org.grad.eNav.atonAdminService.utils.ConditionalRequestUtils;
 import org.grad.eNav.atonAdminService.utils.GeometryJSONConverter;
 import org.grad.eNav.atonAdminService.utils.HeaderUtil;
 import org.locationtech.jts.geom.Geometry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
+import java.time.Instant;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 
 /**
@@ -56,6 +64,12 @@ public class DatasetController {
     @Autowired
     DatasetService datasetService;
 
+    /**
+     * The Dataset Removal Tracker.
+     */
+    @Autowired
+    DatasetRemovalTracker datasetRemovalTracker;
+
     /**
      * Object Mapper from Domain to DTO.
      */
@@ -74,16 +88,20 @@ public class DatasetController {
      * @param uuid the UUID of the dataset to be retrieved
      * @param geometry the geometry for Dataset filtering
      * @param pageable the pagination information
-     * @return the ResponseEntity with status 200 (OK) and the list of datasets in body
+     * @param request the HTTP servlet request
+     * @return the ResponseEntity with status 200 (OK) and the list of datasets in body, or with status 304 (Not Modified) if the client already holds the current version
      */
     @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Page<S201DataSetDto>> getDatasets(@RequestParam("datasetTitle") Optional<UUID> uuid,
                                                             @RequestParam("geometry") Optional<Geometry> geometry,
-                                                            Pageable pageable) {
+                                                            Pageable pageable,
+                                                            HttpServletRequest request) {
         log.debug("REST request to get page of Dataset");
         uuid.ifPresent(v -> log.debug("Dataset UUID specified as: {}", uuid.toString()));
         geometry.ifPresent(v -> log.debug("Dataset geometry specified as: {}", GeometryJSONConverter.convertFromGeometry(v).toString()));
-        final Page<S201Dataset> datasetPage = this.datasetService.findAll(
+
+        // Identify the response version by the dataset versions in the index
+        final Page<DatasetVersion> datasetVersions = this.datasetService.findAllVersions(
                 uuid.orElse(null),
                 geometry.orElse(null),
                 null,
@@ -91,7 +109,24 @@ public class DatasetController {
                 Boolean.TRUE,
                 pageable
         );
+        final String eTag = ConditionalRequestUtils.generateETag(Stream.concat(
+                Stream.of(pageable, datasetVersions.getTotalElements()),
+                datasetVersions.stream().map(v -> v.getContentTag() + ":" + v.getLastUpdatedAt())));
+        final Instant lastModified = ConditionalRequestUtils.getLastModified(datasetVersions.stream()
+                .flatMap(v -> Stream.of(v.getGeneratedAt(), v.getLastUpdatedAt())), this.datasetRemovalTracker.getLastRemovalTime());
+        final HttpHeaders validatorHeaders = ConditionalRequestUtils.createValidatorHeaders(eTag, lastModified);
+
+        // If the client already holds the current version, don't send it again
+        if(ConditionalRequestUtils.isNotModified(request, eTag, lastModified)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(validatorHeaders)
+                    .build();
+        }
+
+        // Otherwise retrieve the datasets of the already looked up versions
+        final Page<S201Dataset> datasetPage = this.datasetService.findAll(datasetVersions);
         return ResponseEntity.ok()
+                .headers(validatorHeaders)
                 .body(this.datasetDtoMapper.convertToPage(datasetPage, S201DataSetDto.class));
     }
 
@@ -16,14 +16,20 @@
 package org.grad.eNav.atonAdminService.controllers.secom.v2;
 
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.logging.log4j.util.Strings;
+import org.grad.eNav.atonAdminService.components.SecomAcknowledgementTracker;
+import org.grad.eNav.atonAdminService.controllers.secom.SecomRequestHeaders;
 import org.grad.secomv2.core.exceptions.SecomInvalidCertificateException;
 import org.grad.secomv2.core.exceptions.SecomSignatureVerificationException;
 import org.grad.secomv2.core.exceptions.SecomValidationException;
 import org.grad.secomv2.core.interfaces.AcknowledgementServiceInterface;
 import org.grad.secomv2.core.models.AcknowledgementObject;
 import org.grad.secomv2.core.models.AcknowledgementResponseObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
@@ -41,6 +47,19 @@ import java.util.Optional;
 @Slf4j
 public class AcknowledgementController implements AcknowledgementServiceInterface {
 
+    /**
+     * The SECOM Acknowledgement Tracker.
+     */
+    @Autowired
+    SecomAcknowledgementTracker secomAcknowledgementTracker;
+
+    /**
+     * The Request Context.
+     */
+    @Autowired
+    @Lazy
+    Optional<HttpServletRequest> httpServletRequest;
+
     /**
      * POST /api/secom/v2/acknowledgement : During upload of information, an
      * acknowledgement can be requested which is expected to be received when
@@ -65,12 +84,22 @@ public class AcknowledgementController implements AcknowledgementServiceInterfac
             throw new SecomInvalidCertificateException("No valid certificate provided");
         }
 
-        // Process the incoming request - for now just log
-        // TODO: We need to actually check for active transactions and log acks
+        // Identify the acknowledgement sender through the forwarded MRN header
+        final String mrn = this.httpServletRequest
+                .map(req -> req.getHeader(SecomRequestHeaders.MRN_HEADER))
+                .map(Strings::trimToNull)
+                .orElse(null);
+
+        // Process the incoming request by correlating it to the active transactions
         Optional.of(acknowledgementObject)
                 .map(AcknowledgementObject::getEnvelope)
-                .ifPresent(e -> log.debug("Acknowledgement of type {} for transaction {} received at {}",
-                        e.getAckType(), e.getTransactionIdentifier(), e.getCreatedAt()));
+                .ifPresent(e -> {
+                    log.debug("Acknowledgement of type {} for transaction {} received at {}",
+                            e.getAckType(), e.getTransactionIdentifier(), e.getCreatedAt());
+                    if(!this.secomAcknowledgementTracker.acknowledge(e.getTransactionIdentifier(), mrn, e.getAckType())) {
+                        log.debug("No active transaction {} found for acknowledgement", e.getTransactionIdentifier());
+                    }
+                });
 
         // Create the response
         AcknowledgementResponseObject acknowledgementResponseObject = new AcknowledgementResponseObject();
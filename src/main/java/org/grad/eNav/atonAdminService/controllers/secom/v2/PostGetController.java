@@ -21,37 +21,45 @@ import jakarta.validation.Valid;
 import jakarta.validation.ValidationException;
 import jakarta.xml.bind.JAXBException;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.DatasetRemovalTracker;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.UnLoCodeMapEntry;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.grad.eNav.atonAdminService.models.dtos.secom.LazyDataResponseObject;
+import org.grad.eNav.atonAdminService.services.DatasetContentService;
 import org.grad.eNav.atonAdminService.services.DatasetService;
 import org.grad.eNav.atonAdminService.services.S100ExchangeSetService;
 import org.grad.eNav.atonAdminService.services.UnLoCodeService;
+import org.grad.eNav.atonAdminService.utils.ConditionalRequestUtils;
 import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.grad.eNav.atonAdminService.utils.PaginationUtils;
 import org.grad.eNav.atonAdminService.utils.WKTUtils;
 import org.grad.secomv2.core.interfaces.PostGetServiceInterface;
 import org.grad.secomv2.core.models.*;
 import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
+import org.hibernate.Hibernate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.io.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.annotation.Validated;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * The SECOM v2 Get Service Interface Controller.
@@ -69,6 +77,18 @@ public class PostGetController implements PostGetServiceInterface {
     @Autowired
     DatasetService datasetService;
 
+    /**
+     * The Dataset Content Service.
+     */
+    @Autowired
+    DatasetContentService datasetContentService;
+
+    /**
+     * The Dataset Removal Tracker.
+     */
+    @Autowired
+    DatasetRemovalTracker datasetRemovalTracker;
+
     /**
      * The SECOM Exchange Set Service.
      */
@@ -81,6 +101,12 @@ public class PostGetController implements PostGetServiceInterface {
     @Autowired
     UnLoCodeService unLoCodeService;
 
+    /**
+     * The default SECOM page size, used when no page size is requested.
+     */
+    @Value("${gla.rad.service.secom.pagination.defaultPageSize:100}")
+    int defaultPageSize;
+
     // Class Variables
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(),4326);
 
@@ -106,10 +132,7 @@ public class PostGetController implements PostGetServiceInterface {
 
         // Init local variables
         Geometry jtsGeometry = null;
-        Pageable pageable = Optional.ofNullable(envelopeGetFilterObject.getPage())
-                .map(p -> PageRequest.of(p - 1, Optional.ofNullable(envelopeGetFilterObject.getPageSize()).orElse(Integer.MAX_VALUE)))
-                .map(Pageable.class::cast)
-                .orElse(Pageable.unpaged());
+        Pageable pageable = PaginationUtils.toPageable(envelopeGetFilterObject.getPage(), envelopeGetFilterObject.getPageSize(), this.defaultPageSize);
         LocalDateTime validFromLdt = Optional.ofNullable(envelopeGetFilterObject.getValidFrom())
                 .map(i -> LocalDateTime.ofInstant(i, ZoneId.systemDefault()))
                 .orElse(null);
@@ -136,15 +159,44 @@ public class PostGetController implements PostGetServiceInterface {
                     .orElseGet(() -> this.geometryFactory.createEmpty(0)));
         }
 
+        // Look up the current dataset versions directly from the index
+        final Page<DatasetVersion> datasetVersions;
+        if(reqDataProductType == SECOM_DataProductType.S201) {
+            try {
+                datasetVersions = this.datasetService.findAllVersions(envelopeGetFilterObject.getDataReference(), jtsGeometry, validFromLdt, validToLdt, Boolean.FALSE, pageable);
+            } catch (Exception ex) {
+                log.error("Error while retrieving the dataset query versions: {} ", ex.getMessage());
+                throw new ValidationException(ex.getMessage());
+            }
+        } else {
+            datasetVersions = Page.empty(pageable);
+        }
+
+        // Identify the response version by the dataset content versions
+        final String eTag = ConditionalRequestUtils.generateETag(Stream.concat(
+                Stream.of(reqContainerType, reqDataProductType, envelopeGetFilterObject.getValidFrom(), envelopeGetFilterObject.getValidTo(), pageable.getPageNumber(), pageable.getPageSize(), this.datasetContentService.isCompressionEnabled(), datasetVersions.getTotalElements()),
+                datasetVersions.stream().map(DatasetVersion::getContentTag)));
+        final Instant lastModified = ConditionalRequestUtils.getLastModified(datasetVersions.stream()
+                .map(DatasetVersion::getGeneratedAt), this.datasetRemovalTracker.getLastRemovalTime());
+        final HttpHeaders validatorHeaders = ConditionalRequestUtils.createValidatorHeaders(eTag, lastModified);
+
+        // If the client already holds the current version, don't send it again
+        if(ConditionalRequestUtils.isNotModified(eTag, lastModified)) {
+            log.debug("SECOM request client already holds the current Dataset version");
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .headers(validatorHeaders)
+                    .build();
+        }
+
         // Initialise the data response object list
         final List<DataResponseObject> dataResponseObjectList = new ArrayList<>();
+        Page<S201Dataset> result = Page.empty(pageable);
 
         // We only support specifically S-201 Datasets
         if(reqDataProductType == SECOM_DataProductType.S201) {
-            // Retrieve all matching datasets
-            Page<S201Dataset> result;
+            // Retrieve the datasets of the already looked up versions
             try {
-                result = this.datasetService.findAll(envelopeGetFilterObject.getDataReference(), jtsGeometry, validFromLdt, validToLdt, Boolean.FALSE, pageable);
+                result = this.datasetService.findAll(datasetVersions);
             } catch (Exception ex) {
                 log.error("Error while retrieving the dataset query results: {} ", ex.getMessage());
                 throw new ValidationException(ex.getMessage());
@@ -152,19 +204,10 @@ public class PostGetController implements PostGetServiceInterface {
 
             // Package as S100 Datasets
             if(reqContainerType == ContainerTypeEnum.S100_DataSet) {
+                // Only retrieve each content while the response is written
                 result.stream()
-                        .map(S201Dataset::getDatasetContent)
-                        .filter(Objects::nonNull)
-                        .map(DatasetContent::getContent)
-                        .map(String::getBytes)
-                        .map(bytes -> {
-                            // Create and populate the data response object
-                            final DataResponseObject dataResponseObject = new DataResponseObject();
-                            dataResponseObject.setData(bytes);
-
-                            // And return the data response object
-                            return dataResponseObject;
-                        })
+                        .filter(dataset -> Objects.nonNull(dataset.getDatasetContent()))
+                        .map(this::toDataResponseObject)
                         .forEach(dataResponseObjectList::add);
 
             }
@@ -191,11 +234,50 @@ public class PostGetController implements PostGetServiceInterface {
         // Generate the Get Response Object
         final GetResponseObject getResponseObject = new GetResponseObject();
         getResponseObject.setDataResponseObject(dataResponseObjectList);
-        getResponseObject.setPagination(new PaginationObject(
-                dataResponseObjectList.size(),
-                Optional.ofNullable(envelopeGetFilterObject.getPageSize()).orElse(Integer.MAX_VALUE)));
+        getResponseObject.setPagination(PaginationUtils.toPaginationObject(result, pageable));
 
         // And final return the Get Response Object
-        return ResponseEntity.ok(getResponseObject);
+        return ResponseEntity.ok()
+                .headers(validatorHeaders)
+                .body(getResponseObject);
     }
+
+    /**
+     * Wraps the content of the provided dataset into a lazy SECOM data
+     * response object. If the dataset content has not already been loaded,
+     * its actual content will only be retrieved from the database while the
+     * response is being signed and written, so that the response never holds
+     * more than a single dataset content in memory, regardless of its size.
+     * <p/>
+     * If the dataset content compression is enabled, the compressed form of
+     * the content will be provided instead, and the response will be flagged
+     * as compressed in its exchange metadata.
+     *
+     * @param s201Dataset the dataset whose content will be wrapped
+     * @return the lazy SECOM data response object
+     */
+    protected DataResponseObject toDataResponseObject(S201Dataset s201Dataset) {
+        final DatasetContent datasetContent = s201Dataset.getDatasetContent();
+
+        // For compressed responses, prefer the already compressed content
+        if(this.datasetContentService.isCompressionEnabled()) {
+            final DataResponseObject dataResponseObject = new LazyDataResponseObject(() -> Optional.of(datasetContent)
+                    .filter(Hibernate::isInitialized)
+                    .map(DatasetContent::getCompressedContent)
+                    .or(() -> this.datasetContentService.findCompressedContent(datasetContent.getId(), s201Dataset.getUuid()))
+                    .orElse(null));
+            dataResponseObject.setExchangeMetadata(new ExchangeMetadata());
+            dataResponseObject.getExchangeMetadata().setCompressionFlag(Boolean.TRUE);
+            return dataResponseObject;
+        }
+
+        // Otherwise provide the content as it is
+        return new LazyDataResponseObject(() -> Optional.of(datasetContent)
+                .filter(Hibernate::isInitialized)
+                .map(DatasetContent::getContent)
+                .or(() -> this.datasetContentService.findContent(datasetContent.getId()))
+                .map(String::getBytes)
+                .orElse(null));
+    }
+
 }
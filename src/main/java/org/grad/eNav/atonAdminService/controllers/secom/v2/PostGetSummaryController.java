@@ -21,11 +21,12 @@ import jakarta.validation.Valid;
 import jakarta.validation.ValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.grad.eNav.atonAdminService.models.UnLoCodeMapEntry;
-import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.grad.eNav.atonAdminService.services.DatasetContentService;
 import org.grad.eNav.atonAdminService.services.DatasetService;
 import org.grad.eNav.atonAdminService.services.UnLoCodeService;
 import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.grad.eNav.atonAdminService.utils.PaginationUtils;
 import org.grad.eNav.atonAdminService.utils.WKTUtils;
 import org.grad.secomv2.core.interfaces.PostGetSummaryServiceInterface;
 import org.grad.secomv2.core.models.*;
@@ -37,7 +38,8 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.locationtech.jts.io.ParseException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
@@ -66,12 +68,24 @@ public class PostGetSummaryController implements PostGetSummaryServiceInterface
     @Autowired
     DatasetService datasetService;
 
+    /**
+     * The Dataset Content Service.
+     */
+    @Autowired
+    DatasetContentService datasetContentService;
+
     /**
      * The UN/LOCODE Service.
      */
     @Autowired
     UnLoCodeService unLoCodeService;
 
+    /**
+     * The default SECOM page size, used when no page size is requested.
+     */
+    @Value("${gla.rad.service.secom.pagination.defaultPageSize:100}")
+    int defaultPageSize;
+
     // Class Variables
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(),4326);
 
@@ -98,10 +112,7 @@ public class PostGetSummaryController implements PostGetSummaryServiceInterface
 
         // Init local variables
         Geometry jtsGeometry = null;
-        Pageable pageable = Optional.ofNullable(envelopeGetSummaryFilterObject.getPage())
-                .map(p -> PageRequest.of(p - 1, Optional.ofNullable(envelopeGetSummaryFilterObject.getPageSize()).orElse(Integer.MAX_VALUE)))
-                .map(Pageable.class::cast)
-                .orElse(Pageable.unpaged());
+        Pageable pageable = PaginationUtils.toPageable(envelopeGetSummaryFilterObject.getPage(), envelopeGetSummaryFilterObject.getPageSize(), this.defaultPageSize);
         LocalDateTime validFromLdt = Optional.ofNullable(envelopeGetSummaryFilterObject.getValidFrom())
                 .map(i -> LocalDateTime.ofInstant(i, ZoneId.systemDefault()))
                 .orElse(null);
@@ -130,17 +141,18 @@ public class PostGetSummaryController implements PostGetSummaryServiceInterface
 
         // We only support S-100 Datasets here
         final List<SummaryObject> summaryObjectList = new ArrayList<>();
+        Page<S201Dataset> result = Page.empty(pageable);
         if(reqContainerType == ContainerTypeEnum.S100_DataSet) {
             // We only support specifically S-201 Datasets
             if (reqDataProductType == SECOM_DataProductType.S201) {
-                this.datasetService.findAll(null, jtsGeometry, validFromLdt, validToLdt, Boolean.FALSE, pageable)
-                        .stream()
+                result = this.datasetService.findAll(null, jtsGeometry, validFromLdt, validToLdt, Boolean.FALSE, pageable);
+                result.stream()
                         .map(dataset -> {
                             // Create and populate the summary object
                             SummaryObject summaryObject = new SummaryObject();
                             summaryObject.setDataReference(dataset.getUuid());
                             summaryObject.setDataProtection(Boolean.FALSE);
-                            summaryObject.setDataCompression(Boolean.FALSE);
+                            summaryObject.setDataCompression(this.datasetContentService.isCompressionEnabled());
                             summaryObject.setContainerType(reqContainerType);
                             summaryObject.setDataProductType(reqDataProductType);
                             summaryObject.setInfo_productVersion(dataset.getDatasetIdentificationInformation().getProductEdition());
@@ -151,7 +163,9 @@ public class PostGetSummaryController implements PostGetSummaryServiceInterface
                             summaryObject.setInfo_lastModifiedDate(Optional.ofNullable(dataset.getLastUpdatedAt()).map(ldt-> ldt.atZone(ZoneId.systemDefault())).map(ZonedDateTime::toInstant).orElse(null));
                             summaryObject.setInfo_size(Optional.of(dataset)
                                     .map(S201Dataset::getDatasetContent)
-                                    .map(DatasetContent::getContentLength)
+                                    .map(content -> this.datasetContentService.isCompressionEnabled() && Objects.nonNull(content.getCompressedContentLength()) ?
+                                            content.getCompressedContentLength() :
+                                            content.getContentLength())
                                     .map(BigInteger::longValue)
                                     .orElse(BigInteger.ZERO.longValue()));
 
@@ -165,9 +179,7 @@ public class PostGetSummaryController implements PostGetSummaryServiceInterface
         // Start building the response
         final GetSummaryResponseObject getSummaryResponseObject = new GetSummaryResponseObject();
         getSummaryResponseObject.setSummaryObject(summaryObjectList);
-        getSummaryResponseObject.setPagination(new PaginationObject(
-                summaryObjectList.size(),
-                Optional.ofNullable(envelopeGetSummaryFilterObject.getPageSize()).orElse(Integer.MAX_VALUE)));
+        getSummaryResponseObject.setPagination(PaginationUtils.toPaginationObject(result, pageable));
 
         // And return the Get Summary Response Object
         return ResponseEntity.ok(getSummaryResponseObject);
@@ -20,13 +20,13 @@ import feign.Response;
 import org.grad.eNav.atonAdminService.config.FeignClientConfig;
 import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
 import org.grad.eNav.atonAdminService.models.dtos.SignatureVerificationRequestDto;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigInteger;
+import java.util.List;
 
 /**
  * The Feign Interface For the CKeeper Client.
@@ -37,7 +37,6 @@ import java.math.BigInteger;
 @FeignClient(name = "ckeeper", /*url = "https://rnavlab.gla-rad.org/enav/ckeeper/",*/ configuration = FeignClientConfig.class)
 public interface CKeeperClient {
 
-    @Cacheable(value = "secomCertCache", key="#entityName")
     @RequestMapping(method = RequestMethod.GET, value = "/api/signature/certificate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     SignatureCertificateDto getSignatureCertificate(@RequestParam("entityName") String entityName,
                                                     @RequestParam(value = "version", required = false) String version,
@@ -49,6 +48,11 @@ public interface CKeeperClient {
                                           @RequestParam(value="algorithm", required = false) String algorithm,
                                           @RequestBody byte[] payload);
 
+    @RequestMapping(method = RequestMethod.POST, value = "/api/signature/certificate/{certificateId}/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    List<String> generateCertificateSignatures(@PathVariable BigInteger certificateId,
+                                               @RequestParam(value="algorithm", required = false) String algorithm,
+                                               @RequestBody List<String> payloads);
+
     @RequestMapping(method = RequestMethod.POST, value = "/api/signature/entity/verify/{entityName}",consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     Response verifyEntitySignature(@PathVariable String entityName,
                                    @RequestBody SignatureVerificationRequestDto signatureVerificationRequestDto);
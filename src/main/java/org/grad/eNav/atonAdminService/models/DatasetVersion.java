@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The Dataset Version Class.
+ * <p>
+ * A lightweight description of the current version of an S-201 dataset, as
+ * projected directly from the search index. This allows the service to
+ * decide whether a client already holds the latest dataset content, without
+ * loading the (potentially large) content itself from the database.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class DatasetVersion {
+
+    // Class Variables
+    private UUID uuid;
+    private BigInteger sequenceNo;
+    private LocalDateTime generatedAt;
+    private LocalDateTime lastUpdatedAt;
+
+    /**
+     * Instantiates a new Dataset version.
+     */
+    public DatasetVersion() {
+
+    }
+
+    /**
+     * Instantiates a new Dataset version.
+     *
+     * @param uuid          the dataset UUID
+     * @param sequenceNo    the dataset content sequence number
+     * @param generatedAt   the dataset content generation time
+     * @param lastUpdatedAt the dataset last update time
+     */
+    public DatasetVersion(UUID uuid, BigInteger sequenceNo, LocalDateTime generatedAt, LocalDateTime lastUpdatedAt) {
+        this.uuid = uuid;
+        this.sequenceNo = sequenceNo;
+        this.generatedAt = generatedAt;
+        this.lastUpdatedAt = lastUpdatedAt;
+    }
+
+    /**
+     * Gets uuid.
+     *
+     * @return the uuid
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * Sets uuid.
+     *
+     * @param uuid the uuid
+     */
+    public void setUuid(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    /**
+     * Gets sequence no.
+     *
+     * @return the sequence no
+     */
+    public BigInteger getSequenceNo() {
+        return sequenceNo;
+    }
+
+    /**
+     * Sets sequence no.
+     *
+     * @param sequenceNo the sequence no
+     */
+    public void setSequenceNo(BigInteger sequenceNo) {
+        this.sequenceNo = sequenceNo;
+    }
+
+    /**
+     * Gets generated at.
+     *
+     * @return the generated at
+     */
+    public LocalDateTime getGeneratedAt() {
+        return generatedAt;
+    }
+
+    /**
+     * Sets generated at.
+     *
+     * @param generatedAt the generated at
+     */
+    public void setGeneratedAt(LocalDateTime generatedAt) {
+        this.generatedAt = generatedAt;
+    }
+
+    /**
+     * Gets last updated at.
+     *
+     * @return the last updated at
+     */
+    public LocalDateTime getLastUpdatedAt() {
+        return lastUpdatedAt;
+    }
+
+    /**
+     * Sets last updated at.
+     *
+     * @param lastUpdatedAt the last updated at
+     */
+    public void setLastUpdatedAt(LocalDateTime lastUpdatedAt) {
+        this.lastUpdatedAt = lastUpdatedAt;
+    }
+
+    /**
+     * Returns the content version tag of the dataset, i.e. the combination
+     * of the dataset UUID and the content sequence number, which changes
+     * every time a new content is generated.
+     *
+     * @return the content version tag
+     */
+    public String getContentTag() {
+        return this.uuid + ":" + this.sequenceNo;
+    }
+
+}
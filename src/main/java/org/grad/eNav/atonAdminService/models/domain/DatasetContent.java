@@ -19,6 +19,7 @@ package org.grad.eNav.atonAdminService.models.domain;
 import jakarta.persistence.*;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.search.engine.backend.types.Projectable;
 import org.hibernate.search.engine.backend.types.Sortable;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.*;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -59,11 +60,11 @@ public class DatasetContent implements Serializable {
     @OneToOne(mappedBy = "datasetContent")
     private S201Dataset dataset;
 
-    @GenericField(sortable = Sortable.YES)
+    @GenericField(sortable = Sortable.YES, projectable = Projectable.YES)
     @LastModifiedDate
     private LocalDateTime generatedAt;
 
-    @GenericField(sortable = Sortable.YES)
+    @GenericField(sortable = Sortable.YES, projectable = Projectable.YES)
     private BigInteger sequenceNo;
 
     /*
@@ -78,6 +79,16 @@ public class DatasetContent implements Serializable {
 
     private BigInteger contentLength;
 
+    /*
+     * The content compressed into a zip archive, so that it can be served
+     * directly to the clients requesting compressed data. This is also
+     * created in Postgres as an OID field.
+     */
+    @Lob
+    private byte[] compressedContent;
+
+    private BigInteger compressedContentLength;
+
     /*
      * This is actually created in Postgres as an OID field. To actually read
      * the contents of it we can run the following native query:
@@ -199,6 +210,42 @@ public class DatasetContent implements Serializable {
         this.contentLength = contentLength;
     }
 
+    /**
+     * Gets compressed content.
+     *
+     * @return the compressed content
+     */
+    public byte[] getCompressedContent() {
+        return compressedContent;
+    }
+
+    /**
+     * Sets compressed content.
+     *
+     * @param compressedContent the compressed content
+     */
+    public void setCompressedContent(byte[] compressedContent) {
+        this.compressedContent = compressedContent;
+    }
+
+    /**
+     * Gets compressed content length.
+     *
+     * @return the compressed content length
+     */
+    public BigInteger getCompressedContentLength() {
+        return compressedContentLength;
+    }
+
+    /**
+     * Sets compressed content length.
+     *
+     * @param compressedContentLength the compressed content length
+     */
+    public void setCompressedContentLength(BigInteger compressedContentLength) {
+        this.compressedContentLength = compressedContentLength;
+    }
+
     /**
      * Gets delta.
      *
@@ -243,6 +290,8 @@ public class DatasetContent implements Serializable {
         // Clear the content
         this.content = null;
         this.contentLength = BigInteger.ZERO;
+        this.compressedContent = null;
+        this.compressedContentLength = BigInteger.ZERO;
 
         // And return the object for easy use
         return this;
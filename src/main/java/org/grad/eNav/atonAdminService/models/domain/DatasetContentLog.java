@@ -19,7 +19,6 @@ package org.grad.eNav.atonAdminService.models.domain;
 import jakarta.persistence.*;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.eNav.atonAdminService.models.enums.DatasetType;
-import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.search.engine.backend.types.Sortable;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
@@ -41,15 +40,18 @@ import java.util.UUID;
  * purposes. For existing datasets, this table will contain the history
  * of the dataset changes, but for non-existing ones, it will contain
  * a record of the deletion with its timestamp and last content version.
+ * <p/>
+ * Note that the log entries are excluded from the second-level cache, since
+ * they carry large LOB contents and are only ever appended and queried,
+ * rather than looked up by their identifier.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
 @Entity
 @Table(indexes = @Index(columnList = "datasetType, uuid, operation, sequenceNo, generatedAt"))
 @EntityListeners(AuditingEntityListener.class)
-@Cacheable
+@Cacheable(false)
 @Indexed
-@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class DatasetContentLog implements Serializable {
 
     // Class Variables
@@ -26,7 +26,8 @@ import org.grad.eNav.atonAdminService.utils.GeometryJSONDeserializer;
 import org.grad.eNav.atonAdminService.utils.GeometryJSONSerializer;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.search.engine.backend.types.Sortable;
-import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.ValueBinderRef;
+import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.PropertyBinderRef;
+import org.hibernate.search.mapper.pojo.common.annotation.Param;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.*;
 import org.locationtech.jts.geom.Geometry;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -54,8 +55,23 @@ import java.util.Set;
 @Cacheable
 @Indexed
 @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NamedEntityGraph(
+        name = AidsToNavigation.DATASET_ENTITY_GRAPH,
+        attributeNodes = {
+                @NamedAttributeNode("featureNames"),
+                @NamedAttributeNode("informations")
+        }
+)
 public abstract class AidsToNavigation implements Serializable {
 
+    /**
+     * The entity graph used when loading the Aids to Navigation for the
+     * generation or export of datasets. It fetches the relations accessed for
+     * every single entry, while the rest of the lazy relations are loaded in
+     * batches through the default batch fetch size.
+     */
+    public static final String DATASET_ENTITY_GRAPH = "AidsToNavigation.dataset";
+
     // Class Variables
     @Id
     @ScaledNumberField(name = "id", decimalScale=0, sortable = Sortable.YES)
@@ -69,6 +85,7 @@ public abstract class AidsToNavigation implements Serializable {
     private String idCode;
 
     @ElementCollection
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<FeatureName> featureNames;
 
     @GenericField(indexNullAs = "9999-01-01", sortable = Sortable.YES)
@@ -107,7 +124,10 @@ public abstract class AidsToNavigation implements Serializable {
 
     @JsonSerialize(using = GeometryJSONSerializer.class)
     @JsonDeserialize(using = GeometryJSONDeserializer.class)
-    @NonStandardField(name="geometry", valueBinder = @ValueBinderRef(type = GeometryBinder.class))
+    @PropertyBinding(binder = @PropertyBinderRef(
+            type = GeometryBinder.class,
+            params = @Param(name="fieldName", value = "geometry")
+    ))
     private Geometry geometry;
 
     @JsonManagedReference
@@ -123,6 +143,7 @@ public abstract class AidsToNavigation implements Serializable {
     final private Set<AtonAssociation> peerAtonAssociations = new HashSet<>();
 
     @ElementCollection
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     private Set<String> seasonalActionRequireds;
 
     @GenericField()
@@ -24,9 +24,10 @@ import org.grad.eNav.atonAdminService.utils.GeometryBinder;
 import org.grad.eNav.atonAdminService.utils.GeometryJSONDeserializer;
 import org.grad.eNav.atonAdminService.utils.GeometryJSONSerializer;
 import org.hibernate.search.engine.backend.types.Sortable;
-import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.ValueBinderRef;
+import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.PropertyBinderRef;
+import org.hibernate.search.mapper.pojo.common.annotation.Param;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.KeywordField;
-import org.hibernate.search.mapper.pojo.mapping.definition.annotation.NonStandardField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.PropertyBinding;
 import org.locationtech.jts.geom.Geometry;
 
 import java.io.Serializable;
@@ -66,7 +67,10 @@ public class DangerousFeature implements Serializable {
 
     @JsonSerialize(using = GeometryJSONSerializer.class)
     @JsonDeserialize(using = GeometryJSONDeserializer.class)
-    @NonStandardField(name="geometry", valueBinder = @ValueBinderRef(type = GeometryBinder.class))
+    @PropertyBinding(binder = @PropertyBinderRef(
+            type = GeometryBinder.class,
+            params = @Param(name="fieldName", value = "geometry")
+    ))
     private Geometry geometry;
 
     /**
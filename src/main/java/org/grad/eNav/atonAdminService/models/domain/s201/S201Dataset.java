@@ -22,12 +22,14 @@ import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.utils.GeometryBinder;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.search.engine.backend.types.Projectable;
 import org.hibernate.search.engine.backend.types.Sortable;
-import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.ValueBinderRef;
+import org.hibernate.search.mapper.pojo.bridge.mapping.annotation.PropertyBinderRef;
+import org.hibernate.search.mapper.pojo.common.annotation.Param;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.GenericField;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.Indexed;
 import org.hibernate.search.mapper.pojo.mapping.definition.annotation.IndexedEmbedded;
-import org.hibernate.search.mapper.pojo.mapping.definition.annotation.NonStandardField;
+import org.hibernate.search.mapper.pojo.mapping.definition.annotation.PropertyBinding;
 import org.locationtech.jts.geom.Geometry;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
@@ -69,14 +71,17 @@ public class S201Dataset {
     @IndexedEmbedded
     private S201DatasetIdentification datasetIdentificationInformation;
 
-    @NonStandardField(name="geometry", valueBinder = @ValueBinderRef(type = GeometryBinder.class))
+    @PropertyBinding(binder = @PropertyBinderRef(
+            type = GeometryBinder.class,
+            params = @Param(name="fieldName", value = "geometry")
+    ))
     private Geometry geometry;
 
     @GenericField(sortable = Sortable.YES)
     @CreatedDate
     private LocalDateTime createdAt;
 
-    @GenericField(sortable = Sortable.YES)
+    @GenericField(sortable = Sortable.YES, projectable = Projectable.YES)
     @LastModifiedDate
     private LocalDateTime lastUpdatedAt;
 
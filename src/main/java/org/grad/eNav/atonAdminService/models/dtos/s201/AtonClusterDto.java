@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models.dtos.s201;
+
+import java.util.Map;
+
+/**
+ * The S-201 AtoN Cluster DTO Class.
+ * <p>
+ * This is an aggregated representation of all the Aids to Navigation that
+ * fall within the same grid cell, as used by the low zoom map views. It
+ * carries the number of the AtoNs in the cell, their mean position and
+ * bounding box, as well as a breakdown of their counts per AtoN type.
+ * Following the rest of the map interfaces, the bounding box is provided
+ * in the [minLon, minLat, maxLon, maxLat] order.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ * @see org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation
+ */
+public class AtonClusterDto {
+
+    // Class Variables
+    private long count;
+
+    private double latitude;
+
+    private double longitude;
+
+    private double[] bbox;
+
+    private Map<String, Long> types;
+
+    /**
+     * Gets count.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sets count.
+     *
+     * @param count the count
+     */
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    /**
+     * Gets latitude.
+     *
+     * @return the latitude
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Sets latitude.
+     *
+     * @param latitude the latitude
+     */
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    /**
+     * Gets longitude.
+     *
+     * @return the longitude
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Sets longitude.
+     *
+     * @param longitude the longitude
+     */
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    /**
+     * Gets bbox.
+     *
+     * @return the bbox
+     */
+    public double[] getBbox() {
+        return bbox;
+    }
+
+    /**
+     * Sets bbox.
+     *
+     * @param bbox the bbox
+     */
+    public void setBbox(double[] bbox) {
+        this.bbox = bbox;
+    }
+
+    /**
+     * Gets types.
+     *
+     * @return the types
+     */
+    public Map<String, Long> getTypes() {
+        return types;
+    }
+
+    /**
+     * Sets types.
+     *
+     * @param types the types
+     */
+    public void setTypes(Map<String, Long> types) {
+        this.types = types;
+    }
+
+}
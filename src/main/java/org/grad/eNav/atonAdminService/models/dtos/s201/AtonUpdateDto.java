@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models.dtos.s201;
+
+import org.grad.eNav.atonAdminService.utils.GeometryJSONDeserializer;
+import org.grad.eNav.atonAdminService.utils.GeometryJSONSerializer;
+import org.locationtech.jts.geom.Geometry;
+import tools.jackson.databind.annotation.JsonDeserialize;
+import tools.jackson.databind.annotation.JsonSerialize;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+/**
+ * The S-201 AtoN Update DTO Class.
+ * <p>
+ * This is a compact representation of an Aids to Navigation update, as
+ * broadcast through the web-socket. It only carries the information
+ * required to place and label the AtoN on a map, so that the full AtoN
+ * entities, with all their collections, do not need to be serialised for
+ * every update.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ * @see org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation
+ */
+public class AtonUpdateDto {
+
+    // Class Variables
+    private BigInteger id;
+
+    private String idCode;
+
+    private String atonType;
+
+    private String name;
+
+    private LocalDate dateStart;
+
+    private LocalDate dateEnd;
+
+    @JsonSerialize(using = GeometryJSONSerializer.class)
+    @JsonDeserialize(using = GeometryJSONDeserializer.class)
+    private Geometry geometry;
+
+    /**
+     * Gets id.
+     *
+     * @return the id
+     */
+    public BigInteger getId() {
+        return id;
+    }
+
+    /**
+     * Sets id.
+     *
+     * @param id the id
+     */
+    public void setId(BigInteger id) {
+        this.id = id;
+    }
+
+    /**
+     * Gets id code.
+     *
+     * @return the id code
+     */
+    public String getIdCode() {
+        return idCode;
+    }
+
+    /**
+     * Sets id code.
+     *
+     * @param idCode the id code
+     */
+    public void setIdCode(String idCode) {
+        this.idCode = idCode;
+    }
+
+    /**
+     * Gets aton type.
+     *
+     * @return the aton type
+     */
+    public String getAtonType() {
+        return atonType;
+    }
+
+    /**
+     * Sets aton type.
+     *
+     * @param atonType the aton type
+     */
+    public void setAtonType(String atonType) {
+        this.atonType = atonType;
+    }
+
+    /**
+     * Gets name.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Sets name.
+     *
+     * @param name the name
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets date start.
+     *
+     * @return the date start
+     */
+    public LocalDate getDateStart() {
+        return dateStart;
+    }
+
+    /**
+     * Sets date start.
+     *
+     * @param dateStart the date start
+     */
+    public void setDateStart(LocalDate dateStart) {
+        this.dateStart = dateStart;
+    }
+
+    /**
+     * Gets date end.
+     *
+     * @return the date end
+     */
+    public LocalDate getDateEnd() {
+        return dateEnd;
+    }
+
+    /**
+     * Sets date end.
+     *
+     * @param dateEnd the date end
+     */
+    public void setDateEnd(LocalDate dateEnd) {
+        this.dateEnd = dateEnd;
+    }
+
+    /**
+     * Gets geometry.
+     *
+     * @return the geometry
+     */
+    public Geometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Sets geometry.
+     *
+     * @param geometry the geometry
+     */
+    public void setGeometry(Geometry geometry) {
+        this.geometry = geometry;
+    }
+
+}
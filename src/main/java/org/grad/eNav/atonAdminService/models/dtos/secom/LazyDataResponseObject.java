@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models.dtos.secom;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.grad.secomv2.core.models.DataResponseObject;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * The SECOM Lazy Data Response Object.
+ * <p>
+ * An extension of the SECOM data response object that does not load its
+ * data payload until it is first requested (i.e. while being signed). The
+ * loaded payload is then kept until it has been serialised into the
+ * response, so that the signature and the serialised response are always
+ * generated out of the same bytes, and it is released straight after, so
+ * that the payloads already written out can be garbage collected while
+ * the rest of the response is still being written.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class LazyDataResponseObject extends DataResponseObject {
+
+    // Class Variables
+    private transient Supplier<byte[]> dataSupplier;
+    private byte[] data;
+
+    /**
+     * Instantiates a new Lazy data response object.
+     *
+     * @param dataSupplier the supplier of the data payload
+     */
+    public LazyDataResponseObject(Supplier<byte[]> dataSupplier) {
+        this.dataSupplier = dataSupplier;
+    }
+
+    /**
+     * Gets data. Unless the data has been explicitly overridden, it will be
+     * retrieved from the data supplier on the first request and kept until
+     * it has been serialised.
+     *
+     * @return the data
+     */
+    @Override
+    @JsonIgnore
+    public synchronized byte[] getData() {
+        if(Objects.nonNull(this.dataSupplier)) {
+            this.data = this.dataSupplier.get();
+            this.dataSupplier = null;
+        }
+        return this.data;
+    }
+
+    /**
+     * Gets the data for serialising it into the response, and releases it,
+     * since it is no longer required once written.
+     *
+     * @return the data
+     */
+    @JsonProperty("data")
+    public synchronized byte[] writeData() {
+        final byte[] written = this.getData();
+        this.data = null;
+        return written;
+    }
+
+    /**
+     * Sets data. This overrides the data supplier, e.g. in cases where the
+     * payload needs to be transformed before being sent.
+     *
+     * @param data the data
+     */
+    @Override
+    public synchronized void setData(byte[] data) {
+        this.data = data;
+        this.dataSupplier = null;
+    }
+
+}
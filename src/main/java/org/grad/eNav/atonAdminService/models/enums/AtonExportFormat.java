@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models.enums;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The AtoN Export Format Enum.
+ * <p></p>
+ * This enumeration defines the formats supported by the streaming export of
+ * the Aids to Navigation, along with the media type that each format is
+ * served as.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public enum AtonExportFormat {
+    NDJSON("application/x-ndjson", "ndjson"),
+    GEOJSON("application/geo+json", "geojson");
+
+    // Enum Variables
+    private final String mediaType;
+    private final String extension;
+
+    /**
+     * The AtoN Export Format Enum Constructor.
+     *
+     * @param mediaType the media type of the format
+     * @param extension the file extension of the format
+     */
+    AtonExportFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    /**
+     * Gets the media type.
+     *
+     * @return the media type
+     */
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Gets the file extension.
+     *
+     * @return the file extension
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Finds the export format matching the provided name, regardless of its
+     * case.
+     *
+     * @param name the name of the export format
+     * @return the matching export format, if any
+     */
+    public static Optional<AtonExportFormat> fromName(String name) {
+        return Arrays.stream(AtonExportFormat.values())
+                .filter(f -> f.name().equalsIgnoreCase(name))
+                .findFirst();
+    }
+}
@@ -16,8 +16,11 @@
 
 package org.grad.eNav.atonAdminService.repos;
 
+import jakarta.persistence.QueryHint;
 import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.math.BigInteger;
 import java.util.Optional;
@@ -36,6 +39,7 @@ public interface AidsToNavigationRepo extends JpaRepository<AidsToNavigation, Bi
      * @param idCode the Aids to Navigation ID code.
      * @return The Aids to Navigation if that exists
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<AidsToNavigation> findByIdCode(String idCode);
 
 }
@@ -18,8 +18,10 @@ package org.grad.eNav.atonAdminService.repos;
 
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.math.BigInteger;
+import java.util.Optional;
 
 /**
  * Spring Data JPA repository for the S-201 Dataset Content Log entities.
@@ -28,4 +30,26 @@ import java.math.BigInteger;
  */
 public interface DatasetContentRepo extends JpaRepository<DatasetContent, BigInteger> {
 
+    /**
+     * Retrieves only the content of the dataset content entry with the
+     * provided ID. Since this is a scalar projection, the dataset content
+     * entity will not be loaded (or kept) in the persistence context.
+     *
+     * @param id                The ID of the dataset content entry
+     * @return the dataset content entry content if it exists
+     */
+    @Query("select d.content from DatasetContent d where d.id = :id")
+    Optional<String> findContentById(BigInteger id);
+
+    /**
+     * Retrieves only the compressed content of the dataset content entry
+     * with the provided ID. Since this is a scalar projection, the dataset
+     * content entity will not be loaded (or kept) in the persistence context.
+     *
+     * @param id                The ID of the dataset content entry
+     * @return the dataset content entry compressed content if it exists
+     */
+    @Query("select d.compressedContent from DatasetContent d where d.id = :id")
+    Optional<byte[]> findCompressedContentById(BigInteger id);
+
 }
@@ -16,8 +16,11 @@
 
 package org.grad.eNav.atonAdminService.repos;
 
+import jakarta.persistence.QueryHint;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.UUID;
 import java.util.Optional;
@@ -38,6 +41,7 @@ public interface DatasetRepo extends JpaRepository<S201Dataset, UUID> {
      * @param cancelled Whether the dataset has been cancelled or not
      * @return the dataset matching the UUID and cancellation status
      */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<S201Dataset> findByUuidAndCancelled(UUID uuid, Boolean cancelled);
     
 }
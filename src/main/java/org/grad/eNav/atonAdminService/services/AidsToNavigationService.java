@@ -18,16 +18,23 @@ package org.grad.eNav.atonAdminService.services;
 
 import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.AtonClusterIndex;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.SpatialSearchProvider;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.models.domain.s201.*;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtSortField;
 import org.grad.eNav.atonAdminService.repos.AidsToNavigationRepo;
 import org.grad.eNav.atonAdminService.utils.GeometryUtils;
 import org.grad.eNav.atonAdminService.utils.SearchSortUtils;
-import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
+import org.hibernate.graph.GraphSemantic;
 import org.hibernate.search.engine.search.query.SearchFetchable;
 import org.hibernate.search.engine.search.query.SearchQuery;
+import org.hibernate.search.engine.search.query.SearchScroll;
+import org.hibernate.search.engine.search.query.SearchScrollResult;
 import org.hibernate.search.mapper.orm.Search;
 import org.hibernate.search.mapper.orm.scope.SearchScope;
 import org.hibernate.search.mapper.orm.session.SearchSession;
@@ -43,6 +50,7 @@ import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -80,6 +88,24 @@ public class AidsToNavigationService {
     @Autowired
     AidsToNavigationRepo aidsToNavigationRepo;
 
+    /**
+     * The Spatial Search Provider.
+     */
+    @Autowired
+    SpatialSearchProvider spatialSearchProvider;
+
+    /**
+     * The Datatables Count Cache.
+     */
+    @Autowired
+    DatatablesCountCache datatablesCountCache;
+
+    /**
+     * The AtoN Cluster Index.
+     */
+    @Autowired
+    AtonClusterIndex atonClusterIndex;
+
     // Service Variables
     private final String[] searchFields = new String[] {
             "idCode"
@@ -118,6 +144,28 @@ public class AidsToNavigationService {
                 .orElseGet(() -> new PageImpl<>(Collections.emptyList(), pageable, 0));
     }
 
+    /**
+     * Get all the Aids to Navigation to be included in a dataset, i.e. all
+     * the ones intersecting with the dataset geometry. Since the dataset
+     * generation walks the relations of every single entry, the dataset
+     * entity graph is applied to avoid loading them one entry at a time.
+     *
+     * @param geometry the geometry of the dataset
+     * @return the list of Aids to Navigation to be included in the dataset
+     */
+    @Transactional(readOnly = true)
+    public List<AidsToNavigation> findAllForDataset(Geometry geometry) {
+        log.debug("Request to get the Aids to Navigation of a dataset");
+        return this.getAidsToNavigationSearchQuery(
+                null,
+                geometry,
+                null,
+                null,
+                Collections.singletonList(new DtSortField("id", true)),
+                true
+        ).fetchAllHits();
+    }
+
     /**
      * Get the number of all the Aids to Navigation in the pageable search.
      *
@@ -148,6 +196,84 @@ public class AidsToNavigationService {
                 .orElse(0L);
     }
 
+    /**
+     * Scrolls through all the Aids to Navigation that match the provided
+     * criteria in chunks, handing each one of them over to the provided
+     * consumer as soon as it has been loaded. The persistence context is
+     * cleared after every chunk, so that the memory required does not grow
+     * with the number of the matching Aids to Navigation.
+     * <p/>
+     * Note that a single read-only transaction, and therefore a database
+     * connection, is held for the whole scroll, which for the exports also
+     * includes writing every chunk out to the client. The transaction is
+     * therefore bounded by the configurable export timeout, after which the
+     * loading of the next chunk fails and the scroll is aborted.
+     *
+     * @param idCode the Aids to Navigation ID Code
+     * @param geometry the geometry to match the Aids to Navigation for
+     * @param fromTime the time to match the Aids to Navigation from
+     * @param toTime the time to match the Aids to Navigation to
+     * @param chunkSize the number of Aids to Navigation to be loaded at a time
+     * @param consumer the consumer of the Aids to Navigation
+     * @return the number of the consumed Aids to Navigation
+     */
+    @Transactional(readOnly = true, timeoutString = "${gla.rad.aton-service.export.timeout:600}")
+    public long scrollAll(String idCode,
+                          Geometry geometry,
+                          LocalDateTime fromTime,
+                          LocalDateTime toTime,
+                          int chunkSize,
+                          Consumer<AidsToNavigation> consumer) {
+        log.debug("Request to scroll through the Aids to Navigation in chunks of {}", chunkSize);
+        // Create the search query - always sort by id
+        SearchQuery<AidsToNavigation> searchQuery = this.getAidsToNavigationSearchQuery(
+                idCode,
+                geometry,
+                fromTime,
+                toTime,
+                Collections.singletonList(new DtSortField("id", true))
+        );
+
+        // Consume the results one chunk at a time
+        long count = 0;
+        try (SearchScroll<AidsToNavigation> scroll = searchQuery.scroll(Math.max(chunkSize, 1))) {
+            for(SearchScrollResult<AidsToNavigation> chunk = scroll.next(); chunk.hasHits(); chunk = scroll.next()) {
+                chunk.hits().forEach(consumer);
+                count += chunk.hits().size();
+                this.entityManager.clear();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the clusters of the Aids to Navigation within the provided bounding
+     * box, for the specified map zoom level. The clusters are retrieved from
+     * the pre-aggregated cluster index, so that the cost of the operation
+     * depends on the number of the returned clusters rather than the number
+     * of the Aids to Navigation. Bounding boxes crossing the antimeridian,
+     * i.e. where the minimum longitude is greater than the maximum one, are
+     * also supported.
+     *
+     * @param bbox the bounding box in the [minLon, minLat, maxLon, maxLat] order
+     * @param zoom the map zoom level
+     * @return the list of the Aids to Navigation clusters
+     */
+    public List<AtonClusterDto> findClusters(double[] bbox, int zoom) {
+        log.debug("Request to get the Aids to Navigation clusters for zoom level {}", zoom);
+        if(bbox == null || bbox.length != 4) {
+            throw new ValidationException("bbox", "The bounding box should be provided as minLon,minLat,maxLon,maxLat");
+        }
+        if(zoom < 0) {
+            throw new ValidationException("zoom", "The zoom level cannot be negative");
+        }
+
+        return GeometryUtils.toEnvelopes(bbox).stream()
+                .map(envelope -> this.atonClusterIndex.getClusters(envelope, zoom))
+                .flatMap(List::stream)
+                .toList();
+    }
+
     /**
      * Handles a datatables pagination request and returns the results list in
      * an appropriate format to be viewed by a datatables jQuery table.
@@ -159,16 +285,17 @@ public class AidsToNavigationService {
     public Page<AidsToNavigation> handleDatatablesPagingRequest(DtPagingRequest dtPagingRequest) {
         log.debug("Request to get Aids to Navigation in a Datatables pageable search");
         // Create the search query
-        SearchQuery searchQuery = this.getSearchAidsToNavigationQueryByText(
+        SearchQuery<AidsToNavigation> searchQuery = this.getSearchAidsToNavigationQueryByText(
                 dtPagingRequest.getSearch().getValue(),
                 dtPagingRequest.getSearchSortFields()
         );
 
-        // Map the results to a paged response
-        return Optional.of(searchQuery)
-                .map(query -> query.fetch(dtPagingRequest.getStart(), dtPagingRequest.getLength()))
-                .map(searchResult -> new PageImpl<AidsToNavigation>(searchResult.hits(), dtPagingRequest.toPageRequest(), searchResult.total().hitCount()))
-                .orElseGet(() -> new PageImpl<>(Collections.emptyList(), dtPagingRequest.toPageRequest(), 0));
+        // Map the results to a paged response, reusing any known totals
+        return this.datatablesCountCache.fetchPage(
+                AidsToNavigation.class,
+                searchQuery,
+                dtPagingRequest
+        );
     }
 
     /**
@@ -444,6 +571,7 @@ public class AidsToNavigationService {
                         .fields( this.searchFields )
                         .matching( Optional.ofNullable(searchText).map(st -> "*"+st).orElse("") + "*" ))
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
+                .totalHitCountThreshold(this.datatablesCountCache.getTotalHitCountThreshold())
                 .toQuery();
     }
 
@@ -468,6 +596,30 @@ public class AidsToNavigationService {
                                                                            LocalDateTime fromTime,
                                                                            LocalDateTime toTime,
                                                                            Collection<DtSortField> sortFields) {
+        return this.getAidsToNavigationSearchQuery(idCode, geometry, fromTime, toTime, sortFields, false);
+    }
+
+    /**
+     * Constructs a hibernate search query like the
+     * {@link #getAidsToNavigationSearchQuery(String, Geometry, LocalDateTime, LocalDateTime, Collection)}
+     * function, optionally loading the results through the dataset entity
+     * graph. That should only be requested when the relations of all the
+     * results are going to be accessed, i.e. during the dataset generation.
+     *
+     * @param idCode the AtoN ID Code to be searched
+     * @param geometry the geometry that the results should intersect with
+     * @param fromTime the date-time the results should match from
+     * @param toTime the date-time the results should match to
+     * @param sortFields the sorting selection for the search query
+     * @param datasetGraph whether to load the results through the dataset entity graph
+     * @return the full text query
+     */
+    protected SearchQuery<AidsToNavigation> getAidsToNavigationSearchQuery(String idCode,
+                                                                           Geometry geometry,
+                                                                           LocalDateTime fromTime,
+                                                                           LocalDateTime toTime,
+                                                                           Collection<DtSortField> sortFields,
+                                                                           boolean datasetGraph) {
         // Then build and return the hibernate-search query
         SearchSession searchSession = Search.session( this.entityManager );
         SearchScope<AidsToNavigation> scope = searchSession.scope( AidsToNavigation.class );
@@ -477,8 +629,8 @@ public class AidsToNavigationService {
                             Optional.ofNullable(idCode).ifPresent(v -> b.must(f.match()
                                     .field("idCode")
                                     .matching(v)));
-                            Optional.ofNullable(geometry).ifPresent(g-> b.must(f.extension(ElasticsearchExtension.get())
-                                    .fromJson(GeometryUtils.geoShapeIntersectsQuery("geometry", g))));
+                            Optional.ofNullable(geometry).ifPresent(g-> b.must(this.spatialSearchProvider
+                                    .intersects(f, AidsToNavigation.class, "geometry", g)));
                             Optional.ofNullable(fromTime).ifPresent(v -> b.must(f.range()
                                     .field("dateEnd")
                                     .atLeast(fromTime.toLocalDate())));
@@ -487,6 +639,11 @@ public class AidsToNavigationService {
                                     .atMost(toTime.toLocalDate())));
                         })
                 )
+                .loading(o -> {
+                    if(datasetGraph) {
+                        o.graph(AidsToNavigation.DATASET_ENTITY_GRAPH, GraphSemantic.LOAD);
+                    }
+                })
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
                 .toQuery();
     }
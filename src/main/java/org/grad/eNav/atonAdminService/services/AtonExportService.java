@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.DomainDtoMapper;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AidsToNavigationDto;
+import org.grad.eNav.atonAdminService.models.enums.AtonExportFormat;
+import org.grad.eNav.atonAdminService.utils.GeometryJSONConverter;
+import org.grad.eNav.atonAdminService.utils.GeometryUtils;
+import org.locationtech.jts.geom.Geometry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+
+/**
+ * The AtoN Export Service Class
+ * <p/>
+ * Service Implementation for the bulk export of the Aids to Navigation
+ * inventory. Instead of building the full result pages in memory, the
+ * matching Aids to Navigation are scrolled through in chunks and each one
+ * of them is written out as soon as it has been loaded, through a single
+ * Jackson generator for the whole export. The export is supported both as
+ * newline delimited JSON (one AtoN DTO per line) and as a GeoJSON feature
+ * collection.
+ * <p/>
+ * The NDJSON entries keep the AtoN geometries as returned by the rest of
+ * the API, while the GeoJSON feature geometries are translated into the
+ * longitude first order required by RFC 7946.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class AtonExportService {
+
+    /**
+     * The number of Aids to Navigation to be loaded at a time.
+     */
+    @Value("${gla.rad.aton-service.export.chunkSize:500}")
+    int chunkSize;
+
+    /**
+     * The JSON Object Mapper.
+     */
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * The Aids to Navigation Service.
+     */
+    @Autowired
+    AidsToNavigationService aidsToNavigationService;
+
+    /**
+     * Object Mapper from Domain to DTO.
+     */
+    @Autowired
+    DomainDtoMapper<AidsToNavigation, AidsToNavigationDto> aidsToNavigationToDtoMapper;
+
+    /**
+     * Exports all the Aids to Navigation that match the provided criteria
+     * into the provided output stream, using the requested format.
+     *
+     * @param format the export format
+     * @param idCode the Aids to Navigation ID Code
+     * @param geometry the geometry to match the Aids to Navigation for
+     * @param fromTime the time to match the Aids to Navigation from
+     * @param toTime the time to match the Aids to Navigation to
+     * @param outputStream the output stream to write the export to
+     * @return the number of the exported Aids to Navigation
+     */
+    public long export(AtonExportFormat format,
+                       String idCode,
+                       Geometry geometry,
+                       LocalDateTime fromTime,
+                       LocalDateTime toTime,
+                       OutputStream outputStream) {
+        log.debug("Request to export the Aids to Navigation as {}", format);
+        // The root values are separated by the explicit new lines
+        try (JsonGenerator generator = this.objectMapper.writer()
+                .withRootValueSeparator("")
+                .createGenerator(outputStream)) {
+            // Open the feature collection if required
+            if(format == AtonExportFormat.GEOJSON) {
+                generator.writeStartObject();
+                generator.writeStringProperty("type", "FeatureCollection");
+                generator.writeName("features");
+                generator.writeStartArray();
+            }
+
+            // Stream the matching AtoNs
+            final long count = this.aidsToNavigationService.scrollAll(
+                    idCode,
+                    geometry,
+                    fromTime,
+                    toTime,
+                    this.chunkSize,
+                    aidsToNavigation -> this.writeAidsToNavigation(format, generator, aidsToNavigation)
+            );
+
+            // And close the feature collection if required
+            if(format == AtonExportFormat.GEOJSON) {
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            log.debug("Exported {} Aids to Navigation as {}", count, format);
+            return count;
+        }
+    }
+
+    /**
+     * Writes a single Aids to Navigation entry through the provided
+     * generator, either as an NDJSON line or as a GeoJSON feature. In the
+     * latter case the geometry is moved out of the feature properties and
+     * written in the longitude first order.
+     *
+     * @param format the export format
+     * @param generator the JSON generator
+     * @param aidsToNavigation the Aids to Navigation to be written
+     */
+    protected void writeAidsToNavigation(AtonExportFormat format, JsonGenerator generator, AidsToNavigation aidsToNavigation) {
+        final AidsToNavigationDto dto = this.aidsToNavigationToDtoMapper.convertTo(aidsToNavigation, AidsToNavigationDto.class);
+        switch(format) {
+            case NDJSON -> {
+                generator.writePOJO(dto);
+                generator.writeRaw('\n');
+            }
+            case GEOJSON -> {
+                final Geometry geometry = dto.getGeometry();
+                dto.setGeometry(null);
+                generator.writeStartObject();
+                generator.writeStringProperty("type", "Feature");
+                generator.writeStringProperty("id", dto.getIdCode());
+                generator.writeName("geometry");
+                if(geometry != null) {
+                    generator.writeTree(GeometryJSONConverter.convertFromGeometry(GeometryUtils.toLonLat(geometry)));
+                } else {
+                    generator.writeNull();
+                }
+                generator.writeName("properties");
+                generator.writePOJO(dto);
+                generator.writeEndObject();
+            }
+        }
+    }
+
+}
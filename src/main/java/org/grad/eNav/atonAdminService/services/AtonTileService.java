@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.AtonTileCache;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201AtonTypes;
+import org.grad.eNav.atonAdminService.utils.VectorTileEncoder;
+import org.locationtech.jts.geom.*;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The AtoN Tile Service Class
+ * <p/>
+ * Service Implementation for generating the Mapbox Vector Tiles (MVT) of
+ * the Aids to Navigation, so that the map clients only have to load the
+ * AtoNs that are actually visible. The AtoNs of each tile are retrieved
+ * through the spatial index, transformed into the tile coordinate space,
+ * simplified based on the zoom level and clipped to the buffered tile,
+ * before being encoded and compressed. The generated tiles are kept in the
+ * AtoN tile cache until an AtoN modification affects them.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@Service
+@Slf4j
+public class AtonTileService {
+
+    /**
+     * The name of the AtoN vector tile layer.
+     */
+    public static final String ATON_LAYER = "atons";
+
+    /**
+     * The media type of the Mapbox Vector Tiles.
+     */
+    public static final String MVT_MEDIA_TYPE = "application/vnd.mapbox-vector-tile";
+
+    /**
+     * The extent of the tile coordinate space.
+     */
+    @Value("${gla.rad.aton-service.tiles.extent:4096}")
+    int extent;
+
+    /**
+     * The tile buffer in tile coordinate units.
+     */
+    @Value("${gla.rad.aton-service.tiles.buffer:64}")
+    int buffer;
+
+    /**
+     * The maximum number of features to be included in a single tile.
+     */
+    @Value("${gla.rad.aton-service.tiles.maxFeatures:10000}")
+    int maxFeatures;
+
+    /**
+     * The simplification tolerance in screen pixels.
+     */
+    @Value("${gla.rad.aton-service.tiles.simplification:1.0}")
+    double simplification;
+
+    /**
+     * The maximum supported zoom level.
+     */
+    @Value("${gla.rad.aton-service.tiles.maxZoom:22}")
+    int maxZoom;
+
+    /**
+     * The Aids to Navigation Service.
+     */
+    @Autowired
+    AidsToNavigationService aidsToNavigationService;
+
+    /**
+     * The AtoN Tile Cache.
+     */
+    @Autowired
+    AtonTileCache atonTileCache;
+
+    // Service Variables
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    /**
+     * Returns the gzip-compressed vector tile of the Aids to Navigation for
+     * the specified tile coordinates. The tile is served from the cache if
+     * available, otherwise it is generated and cached, unless the cache was
+     * invalidated while generating it.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the gzip-compressed vector tile
+     */
+    public byte[] getTile(int z, int x, int y) {
+        return this.getTile(z, x, y, true);
+    }
+
+    /**
+     * Returns the vector tile of the Aids to Navigation for the specified
+     * tile coordinates, either gzip-compressed or not, for the clients that
+     * do not accept a gzip content encoding. The tiles are always cached
+     * compressed, so the uncompressed ones are simply decompressed from the
+     * cached entries.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @param compressed whether the tile should be gzip-compressed
+     * @return the vector tile
+     */
+    public byte[] getTile(int z, int x, int y, boolean compressed) {
+        log.debug("Request to get the AtoN vector tile {}/{}/{}", z, x, y);
+
+        // Validate the tile coordinates
+        if(z < 0 || z > this.maxZoom) {
+            throw new ValidationException("z", String.format("The tile zoom level must be between 0 and %d", this.maxZoom));
+        }
+        final long tiles = 1L << z;
+        if(x < 0 || x >= tiles || y < 0 || y >= tiles) {
+            throw new ValidationException(String.format("The tile %d/%d/%d is outside the tile matrix", z, x, y));
+        }
+
+        // Serve from the cache if possible, otherwise generate the tile
+        final byte[] tile = this.atonTileCache.get(z, x, y)
+                .orElseGet(() -> {
+                    final long generation = this.atonTileCache.getGeneration();
+                    final byte[] generated = this.gzip(this.generateTile(z, x, y));
+                    this.atonTileCache.put(z, x, y, generated, generation);
+                    return generated;
+                });
+        return compressed ? tile : this.gunzip(tile);
+    }
+
+    /**
+     * Generates the (uncompressed) vector tile for the specified tile
+     * coordinates, including all the AtoNs that intersect with the buffered
+     * tile envelope.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the vector tile
+     */
+    protected byte[] generateTile(int z, int x, int y) {
+        // Retrieve the AtoNs within the buffered tile
+        final Geometry bounds = this.geometryFactory.toGeometry(this.atonTileCache.getBufferedTileEnvelope(z, x, y));
+        final Page<AidsToNavigation> atonPage = this.aidsToNavigationService.findAll(
+                null,
+                bounds,
+                null,
+                null,
+                PageRequest.of(0, Math.max(this.maxFeatures, 1))
+        );
+        if(atonPage.getTotalElements() > atonPage.getNumberOfElements()) {
+            log.warn("The AtoN vector tile {}/{}/{} was truncated to {} out of {} features",
+                    z, x, y, atonPage.getNumberOfElements(), atonPage.getTotalElements());
+        }
+
+        // Transform, simplify and clip the AtoN geometries into the tile
+        final Geometry clip = this.geometryFactory.toGeometry(new Envelope(-this.buffer, this.extent + this.buffer, -this.buffer, this.extent + this.buffer));
+        final double tolerance = this.simplification * this.extent / 256.0;
+        final VectorTileEncoder encoder = new VectorTileEncoder(this.extent);
+        for(AidsToNavigation aidsToNavigation : atonPage.getContent()) {
+            Optional.ofNullable(aidsToNavigation.getGeometry())
+                    .filter(g -> !g.isEmpty())
+                    .map(g -> VectorTileEncoder.transform(g, z, x, y, this.extent))
+                    .map(g -> this.simplify(g, tolerance))
+                    .map(g -> this.clip(g, clip))
+                    .filter(g -> !g.isEmpty())
+                    .ifPresent(g -> encoder.addFeature(
+                            ATON_LAYER,
+                            Optional.ofNullable(aidsToNavigation.getId()).map(BigInteger::longValue).orElse(0L),
+                            g,
+                            this.getProperties(aidsToNavigation)));
+        }
+        return encoder.encode();
+    }
+
+    /**
+     * Simplifies the provided tile geometry with the specified tolerance,
+     * while preserving its topology. Points are left unchanged.
+     *
+     * @param geometry the geometry in tile coordinates
+     * @param tolerance the simplification tolerance in tile coordinate units
+     * @return the simplified geometry
+     */
+    protected Geometry simplify(Geometry geometry, double tolerance) {
+        if(tolerance <= 0 || geometry instanceof Puntal) {
+            return geometry;
+        }
+        if(geometry.getClass() == GeometryCollection.class) {
+            final Geometry[] geometries = new Geometry[geometry.getNumGeometries()];
+            for(int i = 0; i < geometry.getNumGeometries(); i++) {
+                geometries[i] = this.simplify(geometry.getGeometryN(i), tolerance);
+            }
+            return this.geometryFactory.createGeometryCollection(geometries);
+        }
+        return TopologyPreservingSimplifier.simplify(geometry, tolerance);
+    }
+
+    /**
+     * Clips the provided tile geometry to the buffered tile area. Points
+     * outside the area are dropped, while lines and polygons are cut at its
+     * boundary. If the clipping fails due to an invalid geometry, the
+     * geometry is returned as is.
+     *
+     * @param geometry the geometry in tile coordinates
+     * @param clip the buffered tile area
+     * @return the clipped geometry
+     */
+    protected Geometry clip(Geometry geometry, Geometry clip) {
+        if(clip.getEnvelopeInternal().contains(geometry.getEnvelopeInternal())) {
+            return geometry;
+        }
+        if(geometry instanceof Puntal) {
+            return this.geometryFactory.createMultiPointFromCoords(Arrays.stream(geometry.getCoordinates())
+                    .filter(c -> clip.getEnvelopeInternal().contains(c))
+                    .toArray(Coordinate[]::new));
+        }
+        if(geometry.getClass() == GeometryCollection.class) {
+            final Geometry[] geometries = new Geometry[geometry.getNumGeometries()];
+            for(int i = 0; i < geometry.getNumGeometries(); i++) {
+                geometries[i] = this.clip(geometry.getGeometryN(i), clip);
+            }
+            return this.geometryFactory.createGeometryCollection(geometries);
+        }
+        try {
+            return geometry.intersection(clip);
+        } catch (TopologyException ex) {
+            log.warn("Failed to clip an AtoN geometry to the vector tile: {}", ex.getMessage());
+            return geometry;
+        }
+    }
+
+    /**
+     * Returns the vector tile feature properties of the provided AtoN.
+     *
+     * @param aidsToNavigation the Aids to Navigation
+     * @return the feature properties
+     */
+    protected Map<String, String> getProperties(AidsToNavigation aidsToNavigation) {
+        final Map<String, String> properties = new LinkedHashMap<>();
+        Optional.ofNullable(aidsToNavigation.getIdCode()).ifPresent(v -> properties.put("idCode", v));
+        properties.put("atonType", S201AtonTypes.fromLocalClass(aidsToNavigation.getClass()).getDescription());
+        return properties;
+    }
+
+    /**
+     * Compresses the provided content using gzip.
+     *
+     * @param content the content to be compressed
+     * @return the compressed content
+     */
+    protected byte[] gzip(byte[] content) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(content);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decompresses the provided gzip-compressed content.
+     *
+     * @param content the compressed content
+     * @return the decompressed content
+     */
+    protected byte[] gunzip(byte[] content) {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return gzip.readAllBytes();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -19,6 +19,8 @@ package org.grad.eNav.atonAdminService.services;
 import jakarta.persistence.EntityManager;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.ExchangeSetCache;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
@@ -35,7 +37,6 @@ import org.hibernate.search.mapper.orm.scope.SearchScope;
 import org.hibernate.search.mapper.orm.session.SearchSession;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -80,6 +81,18 @@ public class DatasetContentLogService {
     @Autowired
     DatasetContentLogRepo datasetContentLogRepo;
 
+    /**
+     * The Datatables Count Cache.
+     */
+    @Autowired
+    DatatablesCountCache datatablesCountCache;
+
+    /**
+     * The Exchange Set Cache.
+     */
+    @Autowired
+    ExchangeSetCache exchangeSetCache;
+
     // Service Variables
     private final String[] searchFields = new String[] {
             "uuid",
@@ -212,11 +225,12 @@ public class DatasetContentLogService {
                 dtPagingRequest.getSearchSortFields()
         );
 
-        // Map the results to a paged response
-        return Optional.of(searchQuery)
-                .map(query -> query.fetch(dtPagingRequest.getStart(), dtPagingRequest.getLength()))
-                .map(searchResult -> new PageImpl<>(searchResult.hits(), dtPagingRequest.toPageRequest(), searchResult.total().hitCount()))
-                .orElseGet(() -> new PageImpl<>(Collections.emptyList(), dtPagingRequest.toPageRequest(), 0));
+        // Map the results to a paged response, reusing any known totals
+        return this.datatablesCountCache.fetchPage(
+                DatasetContentLog.class,
+                searchQuery,
+                dtPagingRequest
+        );
     }
 
     /**
@@ -233,6 +247,9 @@ public class DatasetContentLogService {
         // Save the dataset content log entry
         final DatasetContentLog savedDatasetContentLog = this.datasetContentLogRepo.saveAndFlush(datasetContentLog);
 
+        // Any cached exchange sets of this dataset are now outdated
+        this.exchangeSetCache.invalidate(savedDatasetContentLog.getUuid());
+
         // Return the saved dataset content log
         return savedDatasetContentLog;
     }
@@ -341,6 +358,7 @@ public class DatasetContentLogService {
                         .matching(Optional.ofNullable(searchText).map(st -> "*" + st).orElse("") + "*")
                 )
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
+                .totalHitCountThreshold(this.datatablesCountCache.getTotalHitCountThreshold())
                 .toQuery();
     }
 
@@ -29,19 +29,20 @@ import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.repos.DatasetContentRepo;
 import org.grad.eNav.atonAdminService.utils.S201DatasetBuilder;
+import org.grad.eNav.atonAdminService.utils.ZipUtils;
 import org.grad.eNav.s201.utils.S201Utils;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -89,6 +90,78 @@ public class DatasetContentService {
     @Value("${gla.rad.aton-service.datasetMrnPrefix:urn:mrn:test:s201}")
     String datasetMrnPrefix;
 
+    /**
+     * Whether the dataset contents should be provided compressed to the
+     * SECOM clients. The compressed form of the contents is only generated
+     * and stored while this is enabled.
+     */
+    @Value("${gla.rad.service.secom.compression.enabled:false}")
+    boolean compressionEnabled;
+
+    /**
+     * Returns whether the dataset contents should be provided compressed to
+     * the SECOM clients.
+     *
+     * @return whether the dataset content compression is enabled
+     */
+    public boolean isCompressionEnabled() {
+        return this.compressionEnabled;
+    }
+
+    /**
+     * Retrieves the content of the dataset content entry with the provided
+     * ID, without loading the dataset content entity itself. This allows the
+     * contents of multiple datasets to be accessed one at a time, without
+     * them accumulating in the persistence context.
+     *
+     * @param id the ID of the dataset content entry
+     * @return the dataset content if it exists
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> findContent(BigInteger id) {
+        log.debug("Request to get the content of Dataset Content with ID: {}", id);
+        return Optional.ofNullable(id)
+                .flatMap(this.datasetContentRepo::findContentById);
+    }
+
+    /**
+     * Retrieves the compressed content of the dataset content entry with the
+     * provided ID, without loading the dataset content entity itself. The
+     * compressed form stored during the content generation will be used if
+     * available, otherwise the content will be compressed on the fly.
+     *
+     * @param id the ID of the dataset content entry
+     * @param uuid the UUID of the dataset the content belongs to
+     * @return the compressed dataset content if it exists
+     */
+    @Transactional(readOnly = true)
+    public Optional<byte[]> findCompressedContent(BigInteger id, UUID uuid) {
+        log.debug("Request to get the compressed content of Dataset Content with ID: {}", id);
+        return Optional.ofNullable(id)
+                .flatMap(this.datasetContentRepo::findCompressedContentById)
+                .or(() -> this.findContent(id)
+                        .map(content -> this.compressContent(uuid, content)));
+    }
+
+    /**
+     * Compresses the provided dataset content into a zip archive, containing
+     * the dataset as a single file named after the dataset UUID.
+     *
+     * @param uuid the UUID of the dataset the content belongs to
+     * @param content the dataset content to be compressed
+     * @return the compressed dataset content
+     */
+    public byte[] compressContent(UUID uuid, String content) {
+        try {
+            return ZipUtils.zipContent(
+                    Optional.ofNullable(content).map(c -> c.getBytes(StandardCharsets.UTF_8)).orElse(null),
+                    String.format("%s.xml", uuid));
+        } catch (IOException ex) {
+            log.error("Error while compressing the content of dataset with UUID {}: {}", uuid, ex.getMessage());
+            return null;
+        }
+    }
+
     /**
      * The saving operation that persists the dataset content in the database
      * using the respective repository.
@@ -157,11 +230,8 @@ public class DatasetContentService {
         // Get all the new matching Aids to Navigation - if we have a geometry
         final List<AidsToNavigation> atonList = Optional.of(s201Dataset)
                 .map(S201Dataset::getGeometry)
-                .map(geometry ->
-                        this.aidsToNavigationService.findAll(null, geometry, null, null, Pageable.unpaged())
-                )
-                .orElseGet(Page::empty)
-                .getContent();
+                .map(this.aidsToNavigationService::findAllForDataset)
+                .orElseGet(Collections::emptyList);
         final Set<String> idCodes = atonList.stream()
                 .map(AidsToNavigation::getIdCode)
                 .collect(Collectors.toSet());
@@ -223,6 +293,13 @@ public class DatasetContentService {
                     .map(String::length)
                     .map(BigInteger::valueOf)
                     .orElse(BigInteger.ZERO));
+            // Only pay for the compression if the compressed form is served
+            final byte[] compressedDatasetXML = this.compressionEnabled ? this.compressContent(s201Dataset.getUuid(), datasetXML) : null;
+            datasetContent.setCompressedContent(compressedDatasetXML);
+            datasetContent.setCompressedContentLength(Optional.ofNullable(compressedDatasetXML)
+                    .map(c -> c.length)
+                    .map(BigInteger::valueOf)
+                    .orElse(null));
             datasetContent.setDelta(deltaXML);
             datasetContent.setDeltaLength(Optional.ofNullable(deltaXML)
                     .map(String::length)
@@ -22,10 +22,13 @@ import jakarta.persistence.EntityManager;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.grad.eNav.atonAdminService.aspects.LogDataset;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.SpatialSearchProvider;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
 import org.grad.eNav.atonAdminService.exceptions.DeletedAtoNsInDatasetContentGenerationException;
 import org.grad.eNav.atonAdminService.exceptions.SavingFailedException;
 import org.grad.eNav.atonAdminService.exceptions.ValidationException;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201DatasetIdentification;
@@ -33,11 +36,11 @@ import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtSortField;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.eNav.atonAdminService.repos.DatasetRepo;
-import org.grad.eNav.atonAdminService.utils.GeometryUtils;
 import org.grad.eNav.atonAdminService.utils.SearchSortUtils;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
-import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
 import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
+import org.hibernate.search.engine.search.predicate.dsl.PredicateFinalStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
 import org.hibernate.search.engine.search.query.SearchQuery;
 import org.hibernate.search.mapper.orm.Search;
 import org.hibernate.search.mapper.orm.scope.SearchScope;
@@ -55,6 +58,7 @@ import org.springframework.messaging.MessageHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.Executor;
@@ -103,6 +107,18 @@ public class DatasetService {
     @Autowired
     DatasetRepo datasetRepo;
 
+    /**
+     * The Spatial Search Provider.
+     */
+    @Autowired
+    SpatialSearchProvider spatialSearchProvider;
+
+    /**
+     * The Datatables Count Cache.
+     */
+    @Autowired
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The S-201 Dataset Channel to publish the published data to.
      */
@@ -179,6 +195,77 @@ public class DatasetService {
                 .orElseGet(() -> new PageImpl<>(Collections.emptyList(), pageable, 0));
     }
 
+    /**
+     * Get the current versions of all the datasets matching a pageable
+     * search. The versions are projected directly from the search index,
+     * without loading the datasets or their content from the database, and
+     * can be used to check whether a client already holds the latest dataset
+     * content before actually retrieving it. The total number of matching
+     * datasets is also included, at no additional cost.
+     * <p/>
+     * The matching datasets and their ordering are identical to the ones
+     * returned by the {@link #findAll(UUID, Geometry, LocalDateTime, LocalDateTime, Boolean, Pageable)}
+     * operation for the same parameters, so the actual datasets can then be
+     * loaded through the {@link #findAll(Page)} operation without repeating
+     * the search.
+     *
+     * @param uuid the dataset UUID
+     * @param geometry the dataset geometry
+     * @param fromTime the dataset validity starting time
+     * @param toTime the dataset validity ending time
+     * @param includeCancelled whether cancelled datasets should be included in the response
+     * @param pageable the pageable result output
+     * @return The versions of the matching datasets in a paged response
+     */
+    @Transactional(readOnly = true)
+    public Page<DatasetVersion> findAllVersions(UUID uuid,
+                                                Geometry geometry,
+                                                LocalDateTime fromTime,
+                                                LocalDateTime toTime,
+                                                Boolean includeCancelled,
+                                                Pageable pageable) {
+        log.debug("Request to get S-201 Dataset versions in a pageable search");
+        // Create the search query - always sort by name
+        SearchQuery<DatasetVersion> searchQuery = this.getDatasetVersionSearchQuery(
+                uuid,
+                geometry,
+                fromTime,
+                toTime,
+                includeCancelled,
+                Collections.singletonList(new DtSortField("uuid", false))
+        );
+
+        // Only fetch the requested page of versions
+        return Optional.of(searchQuery)
+                .map(query -> pageable.isPaged() ? query.fetch(pageable.getPageNumber() * pageable.getPageSize(), pageable.getPageSize()) : query.fetchAll())
+                .map(searchResult -> new PageImpl<>(searchResult.hits(), pageable, searchResult.total().hitCount()))
+                .orElseGet(() -> new PageImpl<>(Collections.emptyList(), pageable, 0));
+    }
+
+    /**
+     * Get the datasets of the provided page of dataset versions, as returned
+     * by the {@link #findAllVersions(UUID, Geometry, LocalDateTime, LocalDateTime, Boolean, Pageable)}
+     * operation. The datasets are loaded directly from the database by their
+     * UUIDs, retaining the order and the pagination of the versions, so that
+     * the search does not need to be repeated. Any datasets that have been
+     * deleted in the meantime are skipped.
+     *
+     * @param datasetVersions the page of the dataset versions
+     * @return The matching datasets in a paged response
+     */
+    @Transactional(readOnly = true)
+    public Page<S201Dataset> findAll(Page<DatasetVersion> datasetVersions) {
+        log.debug("Request to get S-201 Datasets by their versions");
+        final Map<UUID, S201Dataset> datasets = new HashMap<>();
+        this.datasetRepo.findAllById(datasetVersions.map(DatasetVersion::getUuid).getContent())
+                .forEach(dataset -> datasets.put(dataset.getUuid(), dataset));
+        return new PageImpl<>(datasetVersions.stream()
+                .map(DatasetVersion::getUuid)
+                .map(datasets::get)
+                .filter(Objects::nonNull)
+                .toList(), datasetVersions.getPageable(), datasetVersions.getTotalElements());
+    }
+
     /**
      * Handles a datatables pagination request and returns the dataset results
      * list in an appropriate format to be viewed by a datatables jQuery table.
@@ -199,11 +286,13 @@ public class DatasetService {
                 dtPagingRequest.getSearchSortFields()
         );
 
-        // Map the results to a paged response
-        return Optional.of(searchQuery)
-                .map(query -> query.fetch(dtPagingRequest.getStart(), dtPagingRequest.getLength()))
-                .map(searchResult -> new PageImpl<>(searchResult.hits(), dtPagingRequest.toPageRequest(), searchResult.total().hitCount()))
-                .orElseGet(() -> new PageImpl<>(Collections.emptyList(), dtPagingRequest.toPageRequest(), 0));
+        // Map the results to a paged response, reusing any known totals
+        return this.datatablesCountCache.fetchPage(
+                S201Dataset.class,
+                searchQuery,
+                dtPagingRequest,
+                dtPagingRequest.getSearch().getIncludeCancelled()
+        );
     }
 
     /**
@@ -457,6 +546,7 @@ public class DatasetService {
                 }
                 )
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
+                .totalHitCountThreshold(this.datatablesCountCache.getTotalHitCountThreshold())
                 .toQuery();
     }
 
@@ -486,31 +576,85 @@ public class DatasetService {
         SearchSession searchSession = Search.session( this.entityManager );
         SearchScope<S201Dataset> scope = searchSession.scope( S201Dataset.class );
         return searchSession.search( scope )
-                .where( f -> {
-                    BooleanPredicateClausesStep<?,?> step = f.bool()
-                            .must(Optional.ofNullable(includeCancelled)
-                                    .filter(Boolean.TRUE::equals)
-                                    .map(c -> f.matchAll()
-                                            .toPredicate())
-                                    .orElseGet(() -> f.not(f.match()
-                                            .field("cancelled")
-                                            .matching(Boolean.TRUE))
-                                            .toPredicate()));
-                    if(Objects.nonNull(uuid)) {
-                        step = step.must(f.match()
-                                .field("uuid")
-                                .matching(uuid));
-                    }
-                    if(Objects.nonNull(geometry)) {
-                        step = step.must(f.extension(ElasticsearchExtension.get())
-                                .fromJson(GeometryUtils.geoShapeIntersectsQuery("geometry", geometry)));
-                    }
-                    return step;
-                })
+                .where( f -> this.getDatasetSearchPredicate(f, uuid, geometry, includeCancelled) )
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
                 .toQuery();
     }
 
+    /**
+     * Constructs a hibernate search query projecting the versions of the
+     * datasets matching the provided AtoN UID and geometry. The versions are
+     * retrieved directly from the search index, so no dataset or dataset
+     * content will be loaded from the database.
+     *
+     * @param uuid the dataset UUID to be searched
+     * @param geometry the geometry that the results should intersect with
+     * @param fromTime the date-time the results should match from
+     * @param toTime the date-time the results should match to
+     * @param includeCancelled  whether cancelled datasets should be included in the response
+     * @param sortFields the sorting selection for the search query
+     * @return the full text projection query
+     */
+    protected SearchQuery<DatasetVersion> getDatasetVersionSearchQuery(UUID uuid,
+                                                                       Geometry geometry,
+                                                                       LocalDateTime fromTime,
+                                                                       LocalDateTime toTime,
+                                                                       Boolean includeCancelled,
+                                                                       Collection<DtSortField> sortFields) {
+        // Then build and return the hibernate-search projection query
+        SearchSession searchSession = Search.session( this.entityManager );
+        SearchScope<S201Dataset> scope = searchSession.scope( S201Dataset.class );
+        return searchSession.search( scope )
+                .select( f -> f.composite()
+                        .from(f.id(UUID.class),
+                                f.field("datasetContent.sequenceNo", BigInteger.class),
+                                f.field("datasetContent.generatedAt", LocalDateTime.class),
+                                f.field("lastUpdatedAt", LocalDateTime.class))
+                        .asList(values -> new DatasetVersion(
+                                (UUID) values.get(0),
+                                (BigInteger) values.get(1),
+                                (LocalDateTime) values.get(2),
+                                (LocalDateTime) values.get(3))) )
+                .where( f -> this.getDatasetSearchPredicate(f, uuid, geometry, includeCancelled) )
+                .sort(f -> SearchSortUtils.buildSort(f, sortFields))
+                .toQuery();
+    }
+
+    /**
+     * Constructs the hibernate search predicate shared by the dataset
+     * queries, based on the provided AtoN UID and geometry.
+     *
+     * @param f the search predicate factory
+     * @param uuid the dataset UUID to be searched
+     * @param geometry the geometry that the results should intersect with
+     * @param includeCancelled  whether cancelled datasets should be included in the response
+     * @return the dataset search predicate
+     */
+    protected PredicateFinalStep getDatasetSearchPredicate(SearchPredicateFactory f,
+                                                           UUID uuid,
+                                                           Geometry geometry,
+                                                           Boolean includeCancelled) {
+        BooleanPredicateClausesStep<?,?> step = f.bool()
+                .must(Optional.ofNullable(includeCancelled)
+                        .filter(Boolean.TRUE::equals)
+                        .map(c -> f.matchAll()
+                                .toPredicate())
+                        .orElseGet(() -> f.not(f.match()
+                                .field("cancelled")
+                                .matching(Boolean.TRUE))
+                                .toPredicate()));
+        if(Objects.nonNull(uuid)) {
+            step = step.must(f.match()
+                    .field("uuid")
+                    .matching(uuid));
+        }
+        if(Objects.nonNull(geometry)) {
+            step = step.must(this.spatialSearchProvider
+                    .intersects(f, S201Dataset.class, "geometry", geometry));
+        }
+        return step;
+    }
+
     /**
      * A helper function to protect the rest of the code from editing canceled
      * datasets. This function will perform a database call and could become
@@ -20,20 +20,21 @@ import _int.iho.s100.catalog._5_2.*;
 import feign.Response;
 import jakarta.xml.bind.JAXBException;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.logging.log4j.util.Strings;
+import org.grad.eNav.atonAdminService.components.ExchangeSetCache;
+import org.grad.eNav.atonAdminService.components.LocalSignatureEngine;
+import org.grad.eNav.atonAdminService.components.SignatureCertificateManager;
 import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.feign.CKeeperClient;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
 import org.grad.eNav.atonAdminService.models.domain.s100.ServiceInformationConfig;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
-import org.grad.eNav.atonAdminService.models.dtos.McpEntityType;
 import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
+import org.grad.eNav.atonAdminService.utils.ConditionalRequestUtils;
 import org.grad.eNav.atonAdminService.utils.S201DatasetBuilder;
 import org.grad.eNav.atonAdminService.utils.ZipUtils;
-import org.grad.eNav.atonAdminService.utils.FileActionUtils;
 import org.grad.eNav.s100.enums.MaintenanceFrequency;
 import org.grad.eNav.s100.enums.RoleCode;
 import org.grad.eNav.s100.enums.SecurityClassification;
@@ -43,27 +44,36 @@ import org.grad.eNav.s100.utils.S100ExchangeSetUtils;
 import org.grad.eNav.s201.utils.GIRegistryInfo;
 import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipOutputStream;
 
 /**
@@ -86,18 +96,6 @@ import java.util.zip.ZipOutputStream;
 @Service
 public class S100ExchangeSetService {
 
-    /**
-     * The General Exchange Set Directory Prefix.
-     */
-    @Value("${gla.rad.service.s100.exchangeSet.dir:/tmp}")
-    String s100ExchangeSetDir;
-
-    /**
-     * The General Exchange Set File Prefix.
-     */
-    @Value("${gla.rad.service.s100.exchangeSet.prefix:S201ExchangeSet}")
-    String s100ExchangeSetPrefix;
-
     /**
      * The Service Information Config.
      */
@@ -117,12 +115,53 @@ public class S100ExchangeSetService {
     @Lazy
     CKeeperClient cKeeperClient;
 
+    /**
+     * The Local Signature Engine.
+     */
+    @Autowired
+    LocalSignatureEngine localSignatureEngine;
+
+    /**
+     * The Signature Certificate Manager.
+     */
+    @Autowired
+    SignatureCertificateManager signatureCertificateManager;
+
+    /**
+     * The Exchange Set Cache.
+     */
+    @Autowired
+    ExchangeSetCache exchangeSetCache;
+
+    /**
+     * The Signing Task Executor.
+     */
+    @Autowired
+    @Qualifier("signingExecutor")
+    Executor signingExecutor;
+
+    /**
+     * The Cache Manager.
+     */
+    @Autowired
+    CacheManager cacheManager;
+
+    /**
+     * The number of payloads to be signed per batch request; zero to sign
+     * each payload in a separate request.
+     */
+    @Value("${gla.rad.service.s100.signing.batchSize:0}")
+    int signingBatchSize;
+
     /**
      * The MRN prefix to be used for identifying the S-201 datasets generated
      */
     @Value("${gla.rad.aton-service.datasetMrnPrefix:urn:mrn:test:s201}")
     String datasetMrnPrefix;
 
+    // Class Variables
+    final Map<String, CompletableFuture<byte[]>> exchangeSetBuilds = new ConcurrentHashMap<>();
+
     /**
      * The main packaging function to an exchange set. This operation will
      * accept a specific dataset as an input and will use to retrieve the
@@ -140,104 +179,213 @@ public class S100ExchangeSetService {
      */
     @Transactional(readOnly = true)
     public byte[] packageToExchangeSet(List<S201Dataset> s201Datasets, LocalDateTime validFrom, LocalDateTime validTo) throws IOException, JAXBException {
-        // First get the latest certificate for this service
-        final SignatureCertificateDto signatureCertificate = this.cKeeperClient.getSignatureCertificate(
-                this.serviceInformationConfig.name(),
-                this.serviceInformationConfig.version(),
-                null,
-                McpEntityType.SERVICE.getValue()
-        );
-        // Get the certificate into an X.509 format
-        final BigInteger certificateId = signatureCertificate.getCertificateId();
-        final String certificatePem = signatureCertificate.getCertificate();
-
-        // Create a temporary directory for constructing the exchange set
-        final String timestampSuffix = LocalDateTime.now()
-                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME)
-                .replaceAll("[:\\.]","-");
-        final File tmpExchangeSetDir = Files.createTempDirectory(
-                Paths.get(this.s100ExchangeSetDir),
-                String.format("%s%s", this.s100ExchangeSetPrefix, timestampSuffix)
-        ).toFile();
-
-        // -------------------------------------------------------------------//
-        //                  Start adding the folder structure                 //
-        // -------------------------------------------------------------------//
-        // S_100
-        // | --> S-201
-        //       | --> DATASET_FILES
-        //       | --> CATALOGUES
-        //       | --> SUPPORT_FILES
-        // -------------------------------------------------------------------//
-        final File esRootFolder = FileActionUtils.createDirectory(tmpExchangeSetDir,"S_100");
-        final File esS201Folder = FileActionUtils.createDirectory(esRootFolder,"S-201");
-        final File esS201FolderDatasetFiles = FileActionUtils.createDirectory(esS201Folder, "DATASET_FILES");
-        final File esS201FolderCatalogues = FileActionUtils.createDirectory(esS201Folder, "CATALOGUES");
-        final File esS201FolderSupportFiles = FileActionUtils.createDirectory(esS201Folder, "SUPPORT_FILES");
-        // -------------------------------------------------------------------//
-
-        // Create a map for the dataset internal data to be used for later
-        final Map<String, DatasetData> datasetDataMap = new HashMap<>();
-
-        // Add the dataset files
+        // Get the deltas for each dataset first to identify the exchange set
+        final Map<S201Dataset, List<DatasetContentLog>> datasetDeltasMap = new LinkedHashMap<>();
         for(S201Dataset dataset : s201Datasets) {
-            // Get the deltas for each dataset and sort by time to be safe
-            final List<DatasetContentLog> deltas = this.datasetContentLogService.findForUuidDuring(dataset.getUuid(), validFrom, validTo);
-
-            // TODO: Don't trust the sequence numbers for now - use an index
-            AtomicInteger index = new AtomicInteger(0);
-
-            // Generate the exchange set file for thia dataset/delta pair
-            for(DatasetContentLog delta : deltas) {
-                final String fileName = this.generateExchangeSetFileName(String.format("%s-%d", dataset.getUuid(), index.getAndIncrement()),"XML");
-                final File datasetFile = FileActionUtils.createFile(esS201FolderDatasetFiles, fileName);
-                Files.write(datasetFile.toPath(), Optional.of(delta).map(DatasetContentLog::getDelta).orElse("").getBytes());
-
-                // Add the dataset file to the map for later
-                datasetDataMap.put(
-                        datasetFile.getName(),
-                        new DatasetData(datasetFile,
-                                certificateId,
-                                certificatePem,
-                                dataset,
-                                delta)
-                );
-            }
+            datasetDeltasMap.put(dataset, this.datasetContentLogService.findForUuidDuring(dataset.getUuid(), validFrom, validTo));
+        }
+
+        // Get the latest certificate for this service, since it identifies the exchange set too
+        final SignatureCertificateDto signatureCertificate = this.getSignatureCertificate();
+
+        // If the same exchange set has already been packaged, just reuse it
+        final String exchangeSetKey = this.generateExchangeSetKey(datasetDeltasMap, signatureCertificate);
+        final Optional<byte[]> cachedExchangeSet = this.exchangeSetCache.get(exchangeSetKey);
+        if(cachedExchangeSet.isPresent()) {
+            log.debug("Serving S-100 exchange set {} from the cache", exchangeSetKey);
+            return cachedExchangeSet.get();
+        }
+
+        // If the same exchange set is already being packaged, share the result
+        final CompletableFuture<byte[]> exchangeSetBuild = new CompletableFuture<>();
+        final CompletableFuture<byte[]> existingBuild = this.exchangeSetBuilds.putIfAbsent(exchangeSetKey, exchangeSetBuild);
+        if(existingBuild != null) {
+            log.debug("Sharing S-100 exchange set {} already being packaged", exchangeSetKey);
+            return this.awaitExchangeSet(existingBuild);
         }
 
-        // Add the CATALOG.XML
-        final File esCatalog = FileActionUtils.createFile(esRootFolder, "CATALOG.XML");
-        final String catalogueXml;
         try {
-            catalogueXml = this.generateExchangeSetContent(datasetDataMap, signatureCertificate);
-            FileUtils.writeStringToFile(esCatalog, catalogueXml, Charset.defaultCharset());
-        } catch (CertificateException ex) {
-            log.error(ex.getMessage());
-            throw new ValidationException(ex.getMessage());
+            // A concurrent build might have just completed
+            final byte[] exchangeSet = this.exchangeSetCache.get(exchangeSetKey)
+                    .orElseGet(() -> this.buildExchangeSet(exchangeSetKey, datasetDeltasMap, signatureCertificate));
+            exchangeSetBuild.complete(exchangeSet);
+            return exchangeSet;
+        } catch (RuntimeException ex) {
+            exchangeSetBuild.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            this.exchangeSetBuilds.remove(exchangeSetKey, exchangeSetBuild);
         }
+    }
+
+    /**
+     * Builds and signs a new exchange set for the datasets and the deltas
+     * specified and stores it in the exchange set cache.
+     *
+     * @param exchangeSetKey the key identifying the exchange set
+     * @param datasetDeltasMap the S-201 datasets to be packaged, mapped to their deltas
+     * @param signatureCertificate the signature certificate to sign the exchange set with
+     * @return the packaged S-201 exchange set
+     */
+    protected byte[] buildExchangeSet(String exchangeSetKey, Map<S201Dataset, List<DatasetContentLog>> datasetDeltasMap, SignatureCertificateDto signatureCertificate) {
+        // Build the exchange set straight into an appropriately sized buffer
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream(datasetDeltasMap.values()
+                .stream()
+                .flatMap(List::stream)
+                .map(DatasetContentLog::getDeltaLength)
+                .filter(Objects::nonNull)
+                .mapToInt(BigInteger::intValue)
+                .sum() + 8192);
+        this.writeExchangeSet(datasetDeltasMap, signatureCertificate, baos);
+        final byte[] exchangeSet = baos.toByteArray();
+
+        // Cache the exchange set for any repeat requests
+        this.exchangeSetCache.put(exchangeSetKey,
+                datasetDeltasMap.keySet().stream().map(S201Dataset::getUuid).toList(),
+                exchangeSet);
 
-        // Add the CATALOG.SIGN and add the CATALOG.XML signature
-        final File esSignature = FileActionUtils.createFile(esRootFolder, "CATALOG.SIGN");
-        final byte[] signature;
+        // And return the zipped byte array
+        return exchangeSet;
+    }
+
+    /**
+     * Waits for an exchange set being packaged by another request and
+     * returns it, propagating any errors that might have occurred.
+     *
+     * @param exchangeSetBuild the exchange set build to wait for
+     * @return the packaged S-201 exchange set
+     */
+    protected byte[] awaitExchangeSet(CompletableFuture<byte[]> exchangeSetBuild) {
         try {
-            signature = this.signContent(signatureCertificate.getCertificateId(), DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue(), catalogueXml.getBytes());
-            FileUtils.writeStringToFile(esSignature, new String(signature, StandardCharsets.UTF_8), Charset.defaultCharset());
-        } catch (IOException ex) {
-            log.error("Error while generating the exchange set signature: {}", ex.getMessage());
-            throw new ValidationException(ex.getMessage());
+            return exchangeSetBuild.join();
+        } catch (CompletionException ex) {
+            if(ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw ex;
         }
+    }
+
+    /**
+     * Writes the S-100 exchange set for the datasets and the deltas
+     * specified as a ZIP file into the provided output stream. The exchange
+     * set folder structure and files are streamed directly into the ZIP
+     * entries, so no temporary files are required. Note that the output
+     * stream will be closed once the exchange set has been written.
+     *
+     * @param datasetDeltasMap the S-201 datasets to be packaged, mapped to their deltas
+     * @param signatureCertificate the certificate to sign the exchange set with
+     * @param outputStream the output stream to write the exchange set ZIP to
+     */
+    protected void writeExchangeSet(Map<S201Dataset, List<DatasetContentLog>> datasetDeltasMap, SignatureCertificateDto signatureCertificate, OutputStream outputStream) {
+        // Get the certificate into an X.509 format
+        final BigInteger certificateId = signatureCertificate.getCertificateId();
+        final String certificatePem = signatureCertificate.getCertificate();
 
-        // Put everything into a zip file
-        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        try(ZipOutputStream zos = new ZipOutputStream(baos)) {
-            ZipUtils.zipFile(esRootFolder, "S_100", zos);
+        try(ZipOutputStream zos = new ZipOutputStream(outputStream)) {
+            // -------------------------------------------------------------------//
+            //                  Start adding the folder structure                 //
+            // -------------------------------------------------------------------//
+            // S_100
+            // | --> S-201
+            //       | --> DATASET_FILES
+            //       | --> CATALOGUES
+            //       | --> SUPPORT_FILES
+            // -------------------------------------------------------------------//
+            ZipUtils.zipDirectory("S_100/", zos);
+            ZipUtils.zipDirectory("S_100/S-201/", zos);
+            ZipUtils.zipDirectory("S_100/S-201/DATASET_FILES/", zos);
+            ZipUtils.zipDirectory("S_100/S-201/CATALOGUES/", zos);
+            ZipUtils.zipDirectory("S_100/S-201/SUPPORT_FILES/", zos);
+            // -------------------------------------------------------------------//
+
+            // Create a map for the dataset internal data to be used for later
+            final Map<String, DatasetData> datasetDataMap = new HashMap<>();
+
+            // Add the dataset files
+            for(Map.Entry<S201Dataset, List<DatasetContentLog>> datasetDeltas : datasetDeltasMap.entrySet()) {
+                final S201Dataset dataset = datasetDeltas.getKey();
+                final List<DatasetContentLog> deltas = datasetDeltas.getValue();
+
+                // TODO: Don't trust the sequence numbers for now - use an index
+                AtomicInteger index = new AtomicInteger(0);
+
+                // Generate the exchange set file for thia dataset/delta pair
+                for(DatasetContentLog delta : deltas) {
+                    final String fileName = this.generateExchangeSetFileName(String.format("%s-%d", dataset.getUuid(), index.getAndIncrement()),"XML");
+                    ZipUtils.zipBytes(Optional.of(delta).map(DatasetContentLog::getDelta).orElse("").getBytes(), "S_100/S-201/DATASET_FILES/" + fileName, zos);
+
+                    // Add the dataset file to the map for later
+                    datasetDataMap.put(
+                            fileName,
+                            new DatasetData(fileName,
+                                    certificateId,
+                                    certificatePem,
+                                    dataset,
+                                    delta)
+                    );
+                }
+            }
+
+            // Sign all the dataset file payloads upfront and concurrently
+            this.preSignContents(certificateId,
+                    DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue(),
+                    datasetDataMap.values()
+                            .stream()
+                            .map(DatasetData::delta)
+                            .map(DatasetContentLog::getContent)
+                            .filter(Objects::nonNull)
+                            .map(String::getBytes)
+                            .toList());
+
+            // Add the CATALOG.XML
+            final String catalogueXml;
+            try {
+                catalogueXml = this.generateExchangeSetContent(datasetDataMap, signatureCertificate);
+                ZipUtils.zipBytes(catalogueXml.getBytes(Charset.defaultCharset()), "S_100/CATALOG.XML", zos);
+            } catch (CertificateException ex) {
+                log.error(ex.getMessage());
+                throw new ValidationException(ex.getMessage());
+            }
+
+            // Add the CATALOG.SIGN and add the CATALOG.XML signature
+            final byte[] signature = this.signContent(certificateId, DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue(), catalogueXml.getBytes());
+            ZipUtils.zipBytes(new String(signature, StandardCharsets.UTF_8).getBytes(Charset.defaultCharset()), "S_100/CATALOG.SIGN", zos);
         } catch(IOException ex) {
             log.error("Error while generating the compressed S-100 data: {}", ex.getMessage());
             throw new ValidationException(ex.getMessage());
         }
+    }
 
-        // And return the zipped byte array
-        return baos.toByteArray();
+    /**
+     * Generates the key identifying an exchange set by the exact dataset
+     * versions it contains, i.e. the dataset UUIDs with their first and
+     * last included content log entries. The dataset modification times
+     * are also included, since the catalogue metadata depends on them, as
+     * well as the signature certificate, so that a certificate rotation
+     * never serves exchange sets signed by the previous one.
+     *
+     * @param datasetDeltasMap the S-201 datasets to be packaged, mapped to their deltas
+     * @param signatureCertificate the signature certificate to sign the exchange set with
+     * @return the exchange set key
+     */
+    protected String generateExchangeSetKey(Map<S201Dataset, List<DatasetContentLog>> datasetDeltasMap, SignatureCertificateDto signatureCertificate) {
+        final Stream<String> datasetVersions = datasetDeltasMap.entrySet()
+                .stream()
+                .map(entry -> Stream.<Object>of(
+                        entry.getKey().getUuid(),
+                        entry.getKey().getLastUpdatedAt(),
+                        entry.getValue().size(),
+                        entry.getValue().stream().findFirst().map(DatasetContentLog::getId).orElse(null),
+                        entry.getValue().stream().findFirst().map(DatasetContentLog::getSequenceNo).orElse(null),
+                        entry.getValue().stream().reduce((first, second) -> second).map(DatasetContentLog::getId).orElse(null),
+                        entry.getValue().stream().reduce((first, second) -> second).map(DatasetContentLog::getSequenceNo).orElse(null))
+                        .map(String::valueOf)
+                        .collect(Collectors.joining(":")))
+                .sorted();
+        final Stream<String> certificateVersion = Stream.of(signatureCertificate.getCertificateId() + ":" + signatureCertificate.getCertificate());
+        return ConditionalRequestUtils.generateETag(Stream.concat(certificateVersion, datasetVersions))
+                .replace("\"", "");
     }
 
     /**
@@ -263,7 +411,7 @@ public class S100ExchangeSetService {
                     S100SEDigitalSignature s100SEDigitalSignature = new S100SEDigitalSignature();
                     s100SEDigitalSignature.setId(String.format("sig%d", signatureCounter.getAndIncrement()));
                     s100SEDigitalSignature.setCertificateRef(String.format("cer%d", data.certificateId()));
-                    s100SEDigitalSignature.setValue(this.signContent(data.certificateId, DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue(), payload));
+                    s100SEDigitalSignature.setValue(this.signContentCached(data.certificateId, DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue(), payload));
                     return s100SEDigitalSignature;
                 })
                 .setIdentifier(S201DatasetBuilder.generateDatasetId(this.datasetMrnPrefix + ":exchangeset", UUID.randomUUID()))
@@ -296,7 +444,7 @@ public class S100ExchangeSetService {
 
             // And add to the builder
             s100ExchangeCatalogueBuilder.addDatasetMetadata(builder -> builder
-                    .setFileName("file:/" + data.datasetFile.getName())
+                    .setFileName("file:/" + data.fileName())
                     .setDatasetID(S201DatasetBuilder.generateDatasetId(this.datasetMrnPrefix, dataset.getUuid()))
                     .setDescription(dataset.getDatasetIdentificationInformation().getDatasetAbstract())
                     .setCompressionFlag(false)
@@ -367,6 +515,32 @@ public class S100ExchangeSetService {
                 Optional.ofNullable(extension).filter(Strings::isNotEmpty).orElse("XML"));
     }
 
+    /**
+     * Returns the latest signature certificate of this service. In the local
+     * signing mode this is the locally loaded certificate, otherwise it is
+     * the one provided by cKeeper, as kept fresh by the signature
+     * certificate manager.
+     *
+     * @return the signature certificate of this service
+     */
+    protected SignatureCertificateDto getSignatureCertificate() {
+        // In the local signing mode, use the locally loaded certificate
+        if(this.localSignatureEngine.isEnabled()) {
+            final SignatureCertificateDto signatureCertificate = new SignatureCertificateDto();
+            signatureCertificate.setCertificateId(this.localSignatureEngine.getCertificateId());
+            try {
+                signatureCertificate.setCertificate(Base64.getEncoder().encodeToString(this.localSignatureEngine.getCertificate().getEncoded()));
+            } catch (CertificateEncodingException ex) {
+                log.error(ex.getMessage());
+                throw new ValidationException(ex.getMessage());
+            }
+            return signatureCertificate;
+        }
+
+        // Otherwise, use the certificate managed on behalf of cKeeper
+        return this.signatureCertificateManager.getSignatureCertificate();
+    }
+
     /**
      * This small helper function will use the cKeeper facility to acquire the
      * appropriate certificate for this service and sign the provided payload
@@ -377,6 +551,15 @@ public class S100ExchangeSetService {
      * @return the generated signature
      */
     protected byte[] signContent(BigInteger certificateId, String algorithm, byte[] content) {
+        // In the local signing mode, sign the content in-process
+        if(this.localSignatureEngine.isEnabled()) {
+            try {
+                return this.localSignatureEngine.sign(algorithm, content);
+            } catch (GeneralSecurityException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
         // Sign using the acquired certificate
         final Response signResponse = this.cKeeperClient.generateCertificateSignature(certificateId,
                 algorithm,
@@ -393,6 +576,152 @@ public class S100ExchangeSetService {
         }
     }
 
+    /**
+     * Signs all the provided contents like the {@link #signContent} function,
+     * but using a single cKeeper batch signature request. The signatures are
+     * returned in the same order and form as the ones of individual requests,
+     * i.e. each one being the text cKeeper would have responded with for the
+     * respective content. In the local signing mode, each content is simply
+     * signed in-process.
+     *
+     * @param certificateId the ID of the certificate to sign the contents with
+     * @param algorithm the algorithm to be used for the signature generation
+     * @param contents the contents to be signed
+     * @return the generated signatures
+     */
+    protected List<byte[]> signContents(BigInteger certificateId, String algorithm, List<byte[]> contents) {
+        // In the local signing mode, there is no round trip to batch
+        if(this.localSignatureEngine.isEnabled()) {
+            return contents.stream()
+                    .map(content -> this.signContent(certificateId, algorithm, content))
+                    .toList();
+        }
+
+        // Sign using the acquired certificate - the payloads need to be Base64 encoded to fit in JSON
+        final List<String> signatures = this.cKeeperClient.generateCertificateSignatures(certificateId,
+                algorithm,
+                contents.stream()
+                        .map(Base64.getEncoder()::encodeToString)
+                        .toList());
+        if(signatures == null || signatures.size() != contents.size()) {
+            throw new ValidationException("Invalid batch signature response received from cKeeper");
+        }
+
+        // Extract and return the outputs, just like the individual response bodies
+        return signatures.stream()
+                .map(signature -> signature.getBytes(StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    /**
+     * Signs the provided content like the {@link #signContent} function, but
+     * looks up the signature cache first, so that payloads that have already
+     * been signed with the same certificate and algorithm are never signed
+     * again.
+     *
+     * @param certificateId the ID of the certificate to sign the content with
+     * @param algorithm the algorithm to be used for the signature generation
+     * @param content the content to be signed
+     * @return the generated signature
+     */
+    protected byte[] signContentCached(BigInteger certificateId, String algorithm, byte[] content) {
+        final String key = this.generateSignatureKey(certificateId, algorithm, content);
+        return this.getSignatureCache()
+                .map(cache -> cache.get(key, byte[].class))
+                .orElseGet(() -> {
+                    final byte[] signature = this.signContent(certificateId, algorithm, content);
+                    this.getSignatureCache().ifPresent(cache -> cache.put(key, signature));
+                    return signature;
+                });
+    }
+
+    /**
+     * Signs all the provided payloads that are not already available in the
+     * signature cache and stores the generated signatures in the cache. If a
+     * signing batch size has been configured, the payloads are signed through
+     * the batch cKeeper operation, otherwise each of them is signed in a
+     * separate request, executed concurrently by the bounded signing executor.
+     *
+     * @param certificateId the ID of the certificate to sign the payloads with
+     * @param algorithm the algorithm to be used for the signature generation
+     * @param payloads the payloads to be signed
+     */
+    protected void preSignContents(BigInteger certificateId, String algorithm, Collection<byte[]> payloads) {
+        // Without a cache there is no place to keep the signatures in
+        final Optional<Cache> signatureCache = this.getSignatureCache();
+        if(signatureCache.isEmpty()) {
+            return;
+        }
+
+        // Identify the distinct payloads that have not been signed yet
+        final Map<String, byte[]> unsigned = new LinkedHashMap<>();
+        for(byte[] payload : payloads) {
+            final String key = this.generateSignatureKey(certificateId, algorithm, payload);
+            if(signatureCache.get().get(key) == null) {
+                unsigned.putIfAbsent(key, payload);
+            }
+        }
+        if(unsigned.isEmpty()) {
+            return;
+        }
+
+        // Sign them either in batches or with concurrent individual requests
+        final List<Map.Entry<String, byte[]>> entries = new ArrayList<>(unsigned.entrySet());
+        if(this.signingBatchSize > 0) {
+            for(int i = 0; i < entries.size(); i += this.signingBatchSize) {
+                final List<Map.Entry<String, byte[]>> batch = entries.subList(i, Math.min(i + this.signingBatchSize, entries.size()));
+                final List<byte[]> signatures = this.signContents(certificateId,
+                        algorithm,
+                        batch.stream()
+                                .map(Map.Entry::getValue)
+                                .toList());
+                for(int j = 0; j < batch.size(); j++) {
+                    signatureCache.get().put(batch.get(j).getKey(), signatures.get(j));
+                }
+            }
+        } else {
+            CompletableFuture.allOf(entries.stream()
+                    .map(entry -> CompletableFuture
+                            .supplyAsync(() -> this.signContent(certificateId, algorithm, entry.getValue()), this.signingExecutor)
+                            .thenAccept(signature -> signatureCache.get().put(entry.getKey(), signature)))
+                    .toArray(CompletableFuture[]::new))
+                    .join();
+        }
+    }
+
+    /**
+     * Generates the signature cache key for the provided payload, based on
+     * the certificate and algorithm used and the SHA-384 digest of the
+     * payload itself.
+     *
+     * @param certificateId the ID of the certificate to sign the payload with
+     * @param algorithm the algorithm to be used for the signature generation
+     * @param payload the payload to be signed
+     * @return the signature cache key
+     */
+    protected String generateSignatureKey(BigInteger certificateId, String algorithm, byte[] payload) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-384");
+            return String.format("%s:%s:%s",
+                    certificateId,
+                    algorithm,
+                    HexFormat.of().formatHex(digest.digest(Optional.ofNullable(payload).orElseGet(() -> new byte[]{}))));
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-384
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Returns the S-100 signature cache, if that is available.
+     *
+     * @return the S-100 signature cache
+     */
+    protected Optional<Cache> getSignatureCache() {
+        return Optional.ofNullable(this.cacheManager)
+                .map(cm -> cm.getCache("s100SignatureCache"));
+    }
+
     /**
      * Maps the dataset content operations to the S-100 Purpose enumeration
      * options.
@@ -420,14 +749,14 @@ public class S100ExchangeSetService {
      * A small internal class to group the dataset information for the S-100
      * exchange set generation.
      *
-     * @param datasetFile the dataset file to be packaged
+     * @param fileName the name of the dataset file to be packaged
      * @param certificateId the ID of the certificate to be used for signing
      * @param certificatePem the PEM of the certificate to be used for signing
      * @param dataset the S-201 dataset to be packaged
      * @param delta the delta information to be packaged
      * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
      */
-    protected record DatasetData(File datasetFile,
+    protected record DatasetData(String fileName,
                                BigInteger certificateId,
                                String certificatePem,
                                S201Dataset dataset,
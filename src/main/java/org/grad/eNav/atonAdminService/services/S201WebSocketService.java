@@ -20,18 +20,17 @@ import tools.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.AtonUpdateBroadcaster;
 import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.MessagingException;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -41,7 +40,9 @@ import java.util.Optional;
  *
  * This class implements a handler for the AtoN messages coming into a Spring
  * Integration channel. It basically just publishes them to another channel,
- * which happens to be a web-socket implementation.
+ * which happens to be a web-socket implementation. The updates are handed
+ * over to the AtoN update broadcaster, which coalesces them and sends them
+ * in compact batched frames.
  *
  * @author Nikolaos Vastardis
  */
@@ -52,12 +53,6 @@ public class S201WebSocketService implements MessageHandler {
     @Autowired
     ObjectMapper objectMapper;
 
-    /**
-     * The General Destination Prefix
-     */
-    @Value("${gla.rad.aton-service.web-socket.prefix:topic}")
-    String prefix;
-
     /**
      * The S-201 Publish Channel to listen for the publications to.
      */
@@ -66,10 +61,10 @@ public class S201WebSocketService implements MessageHandler {
     PublishSubscribeChannel atonPublicationChannel;
 
     /**
-     * Attach the web-socket as a simple messaging template
+     * The AtoN Update Broadcaster.
      */
     @Autowired
-    SimpMessagingTemplate webSocket;
+    AtonUpdateBroadcaster atonUpdateBroadcaster;
 
     /**
      * The service post-construct operations where the handler auto-registers
@@ -130,27 +125,12 @@ public class S201WebSocketService implements MessageHandler {
                     datasetOperation.getOperation(),
                     aidsToNavigation.getIdCode()));
 
-            // Handle based on whether this is a deletion or not
-            if(!datasetOperation.isWithdrawal()) {
-                this.publishMessage(this.webSocket, String.format("/%s/%s", prefix, contentType), aidsToNavigation);
-            } else {
-                this.publishMessage(this.webSocket, String.format("/%s/%s", prefix + "/deletions", contentType), aidsToNavigation);
-            }
+            // Hand it over to the broadcaster, based on whether this is a deletion or not
+            this.atonUpdateBroadcaster.enqueue(aidsToNavigation, datasetOperation.isWithdrawal());
         }
         else {
             log.warn("Radar message handler received a message with erroneous format.");
         }
     }
 
-    /**
-     * Pushes a new/updated message into the web-socket messaging template.
-     *
-     * @param messagingTemplate     The web-socket messaging template
-     * @param topic                 The topic of the web-socket
-     * @param payload               The payload to be pushed
-     */
-    private void publishMessage(SimpMessagingTemplate messagingTemplate, String topic, Object payload) {
-        messagingTemplate.convertAndSend(topic, payload);
-    }
-
 }
@@ -16,6 +16,11 @@
 
 package org.grad.eNav.atonAdminService.services.secom.v2;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +30,7 @@ import org.grad.secomv2.core.models.*;
 import org.grad.secomv2.springboot4.components.SecomClient;
 import org.grad.secomv2.springboot4.components.SecomConfigProperties;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -37,13 +43,29 @@ import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * The SECOM v2 Service Class.
  *
  * A service to handle the general SECOM v2 requests that need additional
  * processing, not covered by the existing services, e.g signing.
+ * <p/>
+ * Since the SECOM clients are requested for every subscription delivery and
+ * notification, the constructed clients are pooled by their endpoint URL so
+ * that their SSL contexts and connections can be reused, while the results
+ * of the discovery service lookups are cached by MRN. Entries that are close
+ * to their expiry are refreshed in the background, so that the frequently
+ * used clients never have to wait for the discovery service, while the MRNs
+ * not found are also cached (for a shorter period) to avoid flooding the
+ * discovery service with repeated failing lookups. If the discovery service
+ * itself fails, the last endpoint discovered for an MRN keeps being used,
+ * and only an actual empty search result is considered as not found. The
+ * cache is bounded, dropping the least recently used MRNs first.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
@@ -57,14 +79,73 @@ public class SecomV2Service {
     @Value("${secom.service-registry.url:}" )
     String discoveryServiceUrl;
 
+    /**
+     * The time (in seconds) the discovered client endpoints are cached for.
+     * A non-positive value disables the caching.
+     */
+    @Value("${gla.rad.service.secom.discovery.cacheTtl:300}")
+    long discoveryCacheTtl;
+
+    /**
+     * The time (in seconds) the MRNs not found in the discovery service are
+     * cached for. A non-positive value disables the negative caching.
+     */
+    @Value("${gla.rad.service.secom.discovery.negativeCacheTtl:30}")
+    long discoveryNegativeCacheTtl;
+
+    /**
+     * The time (in seconds) before their expiry that the cached client
+     * endpoints will be refreshed in the background when accessed.
+     */
+    @Value("${gla.rad.service.secom.discovery.refreshAhead:60}")
+    long discoveryRefreshAhead;
+
+    /**
+     * The maximum number of MRNs kept in the discovery cache.
+     */
+    @Value("${gla.rad.service.secom.discovery.cacheSize:1000}")
+    int discoveryCacheSize;
+
+    /**
+     * The maximum number of SECOM clients kept in the pool. A non-positive
+     * value disables the pooling.
+     */
+    @Value("${gla.rad.service.secom.clients.poolSize:100}")
+    int clientPoolSize;
+
     /**
      * The SECOM v2 Configuration Properties.
      */
     @Autowired
     SecomConfigProperties secomConfigProperties;
 
+    /**
+     * The Task Executor.
+     */
+    @Autowired
+    @Qualifier("taskExecutor")
+    Executor taskExecutor;
+
+    /**
+     * The Meter Registry.
+     */
+    @Autowired(required = false)
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     // Class Variables
     SecomClient discoveryService;
+    final LinkedHashMap<String, DiscoveryResult> discoveryCache = new LinkedHashMap<>(16, 0.75f, true);
+    final Set<String> discoveryRefreshes = ConcurrentHashMap.newKeySet();
+    final LinkedHashMap<String, SecomClient> clientPool = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The cached result of a discovery service lookup. A null endpoint URI
+     * indicates that the looked up MRN was not found.
+     *
+     * @param endpointUri the discovered endpoint URI
+     * @param expiresAt the expiry time of the cached result
+     */
+    record DiscoveryResult(String endpointUri, Instant expiresAt) {}
 
     /**
      * The service post-construct operations where the handler auto-registers
@@ -92,6 +173,18 @@ public class SecomV2Service {
                     }
                 })
                 .orElse(null);
+
+        // Register the discovery cache and client pool size metrics
+        Gauge.builder("secom.discovery.cached", this.discoveryCache, cache -> {
+                    synchronized (cache) { return cache.size(); }
+                })
+                .description("The number of MRNs currently in the SECOM discovery cache")
+                .register(this.meterRegistry);
+        Gauge.builder("secom.clients.pooled", this.clientPool, pool -> {
+                    synchronized (pool) { return pool.size(); }
+                })
+                .description("The number of SECOM clients currently pooled")
+                .register(this.meterRegistry);
     }
 
     /**
@@ -102,6 +195,12 @@ public class SecomV2Service {
     public void destroy() {
         log.info("SECOM v2 Service is shutting down...");
         this.discoveryService = null;
+        synchronized (this.discoveryCache) {
+            this.discoveryCache.clear();
+        }
+        synchronized (this.clientPool) {
+            this.clientPool.clear();
+        }
     }
 
     /**
@@ -109,6 +208,10 @@ public class SecomV2Service {
      * service (in this case it's the MCP MSR) and request the client endpoint
      * URI. It will then construct a SECOM client to be returned for the URI
      * discovered.
+     * <p/>
+     * Both the discovered endpoint URIs and the constructed SECOM clients are
+     * cached, so repeated requests for the same MRN will normally not need to
+     * contact the discovery service, or construct a new client.
      *
      * @param mrn the MRN to be lookup up
      * @return the SECOM client for the endpoint matching the provided URI
@@ -124,30 +227,13 @@ public class SecomV2Service {
                 .filter(Objects::nonNull)
                 .orElseThrow(() -> new SecomValidationException("Subscription request found for S-201 dataset updates but no connection to service registry"));
 
-        // Create the discovery service search filter object for the provided MRN
-        final SearchFilterObject searchFilterObject = new SearchFilterObject();
-        final EnvelopeSearchFilterObject envelopeSearchFilterObject = new EnvelopeSearchFilterObject();
-        final SearchParameters searchParameters = new SearchParameters();
-        searchParameters.setInstanceId(mrn);
-        envelopeSearchFilterObject.setQuery(searchParameters);
-        searchFilterObject.setEnvelope(envelopeSearchFilterObject);
-
-        // Lookup the endpoints of the clients from the SECOM discovery service
-        final List<ServiceInstanceObject> instances = Optional.ofNullable(this.discoveryService)
-                .flatMap(ds -> ds.searchService(searchFilterObject))
-                .map(SearchResult::getEnvelope)
-                .map(EnvelopeSearchResultObject::getServiceInstance)
-                .orElse(Collections.emptyList());
-
-        // Extract the latest matching instance
-        final ServiceInstanceObject instance = instances.stream()
-                .max(Comparator.comparing(ServiceInstanceObject::getVersion))
-                .orElseThrow(() -> new SecomNotFoundException(mrn));
+        // Discover the client endpoint
+        final String endpointUri = this.discoverEndpoint(mrn);
 
         // Now construct and return a SECOM client for the discovered URI
         try {
-            return new SecomClient(new URL(instance.getEndpointUri()), this.secomConfigProperties);
-        } catch (IOException | KeyStoreException | NoSuchAlgorithmException | CertificateException | UnrecoverableKeyException ex) {
+            return this.getPooledClient(new URL(endpointUri));
+        } catch (MalformedURLException ex) {
             log.error(ex.getMessage(), ex);
             throw new SecomValidationException(ex.getMessage());
         }
@@ -168,6 +254,206 @@ public class SecomV2Service {
                 .orElseThrow(() -> new SecomValidationException("Cannot request SECOM v2 client for an empty/invalid URL"));
 
         // Now construct and return a SECOM client for the discovered URI
+        return this.getPooledClient(url);
+    }
+
+    /**
+     * Discovers the endpoint URI of the SECOM client with the provided MRN.
+     * The cached result will be used if available, and if it's close to its
+     * expiry, it will also be refreshed in the background.
+     *
+     * @param mrn the MRN to be looked up
+     * @return the discovered endpoint URI
+     */
+    protected String discoverEndpoint(String mrn) {
+        // Without caching, always contact the discovery service
+        if(this.discoveryCacheTtl <= 0) {
+            return this.lookupEndpoint(mrn);
+        }
+
+        // Use the cached result if still valid
+        final Instant now = Instant.now();
+        final DiscoveryResult cached = this.getCachedEndpoint(mrn);
+        if(Objects.nonNull(cached) && now.isBefore(cached.expiresAt())) {
+            // Negative results are just reported again
+            if(Objects.isNull(cached.endpointUri())) {
+                this.countDiscovery("negative");
+                throw new SecomNotFoundException(mrn);
+            }
+
+            // Refresh the positive results close to their expiry
+            this.countDiscovery("hit");
+            if(now.isAfter(cached.expiresAt().minusSeconds(this.discoveryRefreshAhead))
+                    && this.discoveryRefreshes.add(mrn)) {
+                CompletableFuture.runAsync(() -> this.refreshEndpoint(mrn), this.taskExecutor)
+                        .whenComplete((result, ex) -> {
+                            this.discoveryRefreshes.remove(mrn);
+                            Optional.ofNullable(ex).ifPresent(e -> log.warn("Unable to refresh the SECOM discovery result for {}: {}", mrn, e.getMessage()));
+                        });
+            }
+            return cached.endpointUri();
+        }
+
+        // Otherwise contact the discovery service and cache the result
+        this.countDiscovery("miss");
+        return this.refreshEndpoint(mrn);
+    }
+
+    /**
+     * Looks up the endpoint URI of the SECOM client with the provided MRN in
+     * the discovery service, and caches the result. If the MRN was not found,
+     * this will also be cached, if negative caching is enabled. If however
+     * the lookup itself failed, the last endpoint URI discovered for the MRN
+     * will be kept and returned instead, if one is available.
+     *
+     * @param mrn the MRN to be looked up
+     * @return the discovered endpoint URI
+     */
+    protected String refreshEndpoint(String mrn) {
+        try {
+            final String endpointUri = this.lookupEndpoint(mrn);
+            this.cacheEndpoint(mrn, new DiscoveryResult(endpointUri, Instant.now().plusSeconds(this.discoveryCacheTtl)));
+            return endpointUri;
+        } catch (SecomNotFoundException ex) {
+            if(this.discoveryNegativeCacheTtl > 0) {
+                this.cacheEndpoint(mrn, new DiscoveryResult(null, Instant.now().plusSeconds(this.discoveryNegativeCacheTtl)));
+            } else {
+                synchronized (this.discoveryCache) {
+                    this.discoveryCache.remove(mrn);
+                }
+            }
+            throw ex;
+        } catch (RuntimeException ex) {
+            final String lastEndpointUri = Optional.ofNullable(this.getCachedEndpoint(mrn))
+                    .map(DiscoveryResult::endpointUri)
+                    .orElseThrow(() -> ex);
+            log.warn("Unable to look up the SECOM discovery result for {}, using the last one discovered: {}", mrn, ex.getMessage());
+            this.countDiscovery("stale");
+            return lastEndpointUri;
+        }
+    }
+
+    /**
+     * Returns the cached discovery result for the provided MRN, even if it
+     * has expired.
+     *
+     * @param mrn the MRN to be looked up
+     * @return the cached discovery result, or null if none is available
+     */
+    protected DiscoveryResult getCachedEndpoint(String mrn) {
+        synchronized (this.discoveryCache) {
+            return this.discoveryCache.get(mrn);
+        }
+    }
+
+    /**
+     * Caches the discovery result for the provided MRN, evicting the least
+     * recently used MRNs if the cache is full.
+     *
+     * @param mrn the looked up MRN
+     * @param discoveryResult the discovery result to be cached
+     */
+    protected void cacheEndpoint(String mrn, DiscoveryResult discoveryResult) {
+        synchronized (this.discoveryCache) {
+            this.discoveryCache.put(mrn, discoveryResult);
+
+            // Evict the least recently used MRNs if the cache is full
+            final Iterator<String> iterator = this.discoveryCache.keySet().iterator();
+            while(this.discoveryCache.size() > Math.max(this.discoveryCacheSize, 1) && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Looks up the endpoint URI of the SECOM client with the provided MRN in
+     * the discovery service. If multiple instances are found, the latest
+     * version will be used, while if the discovery service does not provide
+     * a search result at all, the lookup is considered as failed rather than
+     * not found.
+     *
+     * @param mrn the MRN to be looked up
+     * @return the discovered endpoint URI
+     */
+    protected String lookupEndpoint(String mrn) {
+        // Create the discovery service search filter object for the provided MRN
+        final SearchFilterObject searchFilterObject = new SearchFilterObject();
+        final EnvelopeSearchFilterObject envelopeSearchFilterObject = new EnvelopeSearchFilterObject();
+        final SearchParameters searchParameters = new SearchParameters();
+        searchParameters.setInstanceId(mrn);
+        envelopeSearchFilterObject.setQuery(searchParameters);
+        searchFilterObject.setEnvelope(envelopeSearchFilterObject);
+
+        // Lookup the endpoints of the clients from the SECOM discovery service
+        final Timer.Sample sample = Timer.start(this.meterRegistry);
+        final List<ServiceInstanceObject> instances;
+        try {
+            instances = Optional.ofNullable(this.discoveryService)
+                    .flatMap(ds -> ds.searchService(searchFilterObject))
+                    .map(SearchResult::getEnvelope)
+                    .map(envelope -> Optional.ofNullable(envelope.getServiceInstance()).orElse(Collections.emptyList()))
+                    .orElseThrow(() -> new SecomValidationException("No search result received from the SECOM discovery service for " + mrn));
+        } finally {
+            sample.stop(Timer.builder("secom.discovery.latency")
+                    .description("The latency of the SECOM discovery service lookups")
+                    .register(this.meterRegistry));
+        }
+
+        // Extract the latest matching instance
+        return instances.stream()
+                .max(Comparator.comparing(ServiceInstanceObject::getVersion))
+                .map(ServiceInstanceObject::getEndpointUri)
+                .orElseThrow(() -> new SecomNotFoundException(mrn));
+    }
+
+    /**
+     * Returns the pooled SECOM client for the provided URL, or constructs a
+     * new one if none is available in the pool.
+     *
+     * @param url the URL of the SECOM client
+     * @return the SECOM client for the provided URL
+     */
+    protected SecomClient getPooledClient(URL url) {
+        // Without pooling, always construct a new client
+        if(this.clientPoolSize <= 0) {
+            this.countClient("created");
+            return this.createClient(url);
+        }
+
+        // Reuse the pooled client if available
+        final String key = url.toString();
+        synchronized (this.clientPool) {
+            final SecomClient pooled = this.clientPool.get(key);
+            if(Objects.nonNull(pooled)) {
+                this.countClient("reused");
+                return pooled;
+            }
+        }
+
+        // Otherwise construct a new one (outside the lock) and pool it
+        final SecomClient client = this.createClient(url);
+        synchronized (this.clientPool) {
+            final SecomClient pooled = this.clientPool.putIfAbsent(key, client);
+            this.countClient(Objects.isNull(pooled) ? "created" : "reused");
+
+            // Evict the least recently used clients if the pool is full
+            final Iterator<String> iterator = this.clientPool.keySet().iterator();
+            while(this.clientPool.size() > this.clientPoolSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+            return Objects.isNull(pooled) ? client : pooled;
+        }
+    }
+
+    /**
+     * Constructs a new SECOM client for the provided URL.
+     *
+     * @param url the URL of the SECOM client
+     * @return the constructed SECOM client
+     */
+    protected SecomClient createClient(URL url) {
         try {
             return new SecomClient(url, this.secomConfigProperties);
         } catch (IOException | KeyStoreException | NoSuchAlgorithmException | CertificateException | UnrecoverableKeyException ex) {
@@ -176,4 +462,30 @@ public class SecomV2Service {
         }
     }
 
+    /**
+     * Counts a discovery cache access with the provided result.
+     *
+     * @param result the discovery cache access result
+     */
+    private void countDiscovery(String result) {
+        Counter.builder("secom.discovery.cache")
+                .description("The SECOM discovery cache accesses")
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts a SECOM client request with the provided result.
+     *
+     * @param result the SECOM client request result
+     */
+    private void countClient(String result) {
+        Counter.builder("secom.clients")
+                .description("The SECOM client requests")
+                .tag("result", result)
+                .register(this.meterRegistry)
+                .increment();
+    }
+
 }
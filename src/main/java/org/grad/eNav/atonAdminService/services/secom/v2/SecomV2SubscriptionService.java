@@ -23,27 +23,35 @@ import jakarta.persistence.EntityManagerFactory;
 import jakarta.validation.constraints.NotNull;
 import jakarta.xml.bind.JAXBException;
 import lombok.extern.slf4j.Slf4j;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.SecomAcknowledgementTracker;
+import org.grad.eNav.atonAdminService.components.SecomDeliveryEngine;
+import org.grad.eNav.atonAdminService.components.SecomSubscriptionMatcher;
+import org.grad.eNav.atonAdminService.components.SpatialSearchProvider;
+import org.grad.eNav.atonAdminService.components.SubscriptionTimestampBuffer;
+import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.DtSortField;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.eNav.atonAdminService.repos.SecomSubscriptionRepo;
+import org.grad.eNav.atonAdminService.services.DatasetContentService;
 import org.grad.eNav.atonAdminService.services.S100ExchangeSetService;
 import org.grad.eNav.atonAdminService.services.UnLoCodeService;
-import org.grad.eNav.atonAdminService.utils.GeometryUtils;
 import org.grad.eNav.atonAdminService.utils.SearchSortUtils;
 import org.grad.secomv2.core.base.SecomConstants;
 import org.grad.secomv2.core.exceptions.SecomNotFoundException;
 import org.grad.secomv2.core.exceptions.SecomValidationException;
 import org.grad.secomv2.core.models.EnvelopeUploadObject;
+import org.grad.secomv2.core.models.ExchangeMetadata;
 import org.grad.secomv2.core.models.UploadObject;
+import org.grad.secomv2.core.models.UploadResponseObject;
 import org.grad.secomv2.core.models.enums.AckRequestEnum;
 import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
 import org.grad.secomv2.core.models.enums.SubscriptionEventEnum;
 import org.grad.secomv2.springboot4.components.SecomClient;
-import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
 import org.hibernate.search.engine.search.predicate.SearchPredicate;
 import org.hibernate.search.engine.search.predicate.dsl.BooleanPredicateClausesStep;
 import org.hibernate.search.engine.search.query.SearchQuery;
@@ -67,6 +75,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.*;
 
 /**
@@ -85,6 +94,15 @@ public class SecomV2SubscriptionService implements MessageHandler {
     @Value("${gla.rad.service.secom.subscriptions.restrictDuplicates:false}")
     boolean restrictDuplicateSubscriptions;
 
+    /**
+     * The window in seconds that the exchange set subscription update times
+     * are rounded down to, so that subscribers updated at similar times can
+     * share the same packaged exchange set. A non-positive value disables
+     * the rounding.
+     */
+    @Value("${gla.rad.service.secom.subscriptions.exchangeSetWindow:0}")
+    long exchangeSetWindow;
+
     /**
      * The Entity Manager Factory.
      */
@@ -115,12 +133,54 @@ public class SecomV2SubscriptionService implements MessageHandler {
     @Autowired
     S100ExchangeSetService s100ExchangeSetService;
 
+    /**
+     * The Dataset Content Service.
+     */
+    @Autowired
+    DatasetContentService datasetContentService;
+
+    /**
+     * The SECOM Acknowledgement Tracker.
+     */
+    @Autowired
+    SecomAcknowledgementTracker secomAcknowledgementTracker;
+
+    /**
+     * The SECOM Delivery Engine.
+     */
+    @Autowired
+    SecomDeliveryEngine secomDeliveryEngine;
+
+    /**
+     * The SECOM Subscription Matcher.
+     */
+    @Autowired
+    SecomSubscriptionMatcher secomSubscriptionMatcher;
+
+    /**
+     * The Subscription Timestamp Buffer.
+     */
+    @Autowired
+    SubscriptionTimestampBuffer subscriptionTimestampBuffer;
+
     /**
      * The SECOM Subscription Repo.
      */
     @Autowired
     SecomSubscriptionRepo secomSubscriptionRepo;
 
+    /**
+     * The Spatial Search Provider.
+     */
+    @Autowired
+    SpatialSearchProvider spatialSearchProvider;
+
+    /**
+     * The Datatables Count Cache.
+     */
+    @Autowired
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The S-201 Dataset Channel to publish the published data to.
      */
@@ -206,21 +266,14 @@ public class SecomV2SubscriptionService implements MessageHandler {
 
             // Handle based on whether this is a deletion or not
             if(!datasetOperation.isWithdrawal()) {
-                // Get the matching subscriptions and inform them of the update
+                // Get the matching subscriptions and queue the update deliveries
                 this.findAll(ContainerTypeEnum.S100_DataSet,
                                 SECOM_DataProductType.S201,
                                 s201Dataset.getDatasetIdentificationInformation().getProductEdition(),
                                 s201Dataset.getUuid(),
                                 s201Dataset.getGeometry(),
                                 s201Dataset.getLastUpdatedAt())
-                        .forEach(subscription -> {
-                            try {
-                                this.sendToSubscription(subscription, s201Dataset);
-                            } catch (Exception ex) {
-                                log.error("Error while handling subscription with UUID {} for {}: {}",
-                                        subscription.getUuid(), subscription.getClientMrn(), ex.getMessage());
-                            }
-                        });
+                        .forEach(subscription -> this.submitDelivery(subscription, s201Dataset));
             } else {
                 // Get the matching subscriptions and inform them of the deletion
                 this.findAll(null,
@@ -247,7 +300,9 @@ public class SecomV2SubscriptionService implements MessageHandler {
     }
 
     /**
-     * Get all the Subscription Requests in a search list.
+     * Get all the Subscription Requests in a search list. Unless disabled,
+     * the subscriptions are matched against the in-memory subscription index
+     * rather than the full text search backend.
      *
      * @param containerType         the container type of the requested subscriptions
      * @param dataProductType       the SECOM data product type of the requested subscriptions
@@ -265,6 +320,18 @@ public class SecomV2SubscriptionService implements MessageHandler {
                                              Geometry geometry,
                                              LocalDateTime timestamp) {
         log.debug("Request to get Subscription Requests in a search");
+        // Match against the in-memory subscription index if possible
+        if(this.secomSubscriptionMatcher.isEnabled()) {
+            return this.secomSubscriptionMatcher.match(
+                    containerType,
+                    dataProductType,
+                    productVersion,
+                    dataReference,
+                    geometry,
+                    timestamp
+            );
+        }
+
         // Create the search query - always sort by name
         SearchQuery<SubscriptionRequest> searchQuery = this.getSubscriptionRequestSearchQuery(
                 containerType,
@@ -299,11 +366,12 @@ public class SecomV2SubscriptionService implements MessageHandler {
                 dtPagingRequest.getSearchSortFields()
         );
 
-        // Map the results to a paged response
-        return Optional.of(searchQuery)
-                .map(query -> query.fetch(dtPagingRequest.getStart(), dtPagingRequest.getLength()))
-                .map(searchResult -> new PageImpl<>(searchResult.hits(), dtPagingRequest.toPageRequest(), searchResult.total().hitCount()))
-                .orElseGet(() -> new PageImpl<>(Collections.emptyList(), dtPagingRequest.toPageRequest(), 0));
+        // Map the results to a paged response, reusing any known totals
+        return this.datatablesCountCache.fetchPage(
+                SubscriptionRequest.class,
+                searchQuery,
+                dtPagingRequest
+        );
     }
 
 
@@ -338,6 +406,7 @@ public class SecomV2SubscriptionService implements MessageHandler {
 
         // Now save the request
         final SubscriptionRequest result = this.secomSubscriptionRepo.save(subscriptionRequest);
+        this.secomSubscriptionMatcher.invalidate();
 
         // Inform to the subscription client (identify through MRN) - asynchronous
         if(Objects.isNull(subscriptionRequest.getCallbackEndpoint())) {
@@ -385,6 +454,7 @@ public class SecomV2SubscriptionService implements MessageHandler {
 
         // Delete the subscription
         this.secomSubscriptionRepo.delete(subscriptionRequest);
+        this.secomSubscriptionMatcher.invalidate();
 
         // Inform to the subscription client (identify through MRN) - asynchronous
         if(Objects.isNull(subscriptionRequest.getCallbackEndpoint())) {
@@ -415,6 +485,41 @@ public class SecomV2SubscriptionService implements MessageHandler {
         return subscriptionRequest.getUuid();
     }
 
+    /**
+     * Submits the delivery of an S-201 dataset to a subscription to the
+     * SECOM delivery engine, queued by the subscription client endpoint.
+     *
+     * @param subscriptionRequest   the subscription request
+     * @param s201Dataset           the S-201 dataset to be sent to the subscription
+     */
+    protected void submitDelivery(SubscriptionRequest subscriptionRequest, S201Dataset s201Dataset) {
+        this.secomDeliveryEngine.submit(
+                Optional.ofNullable(subscriptionRequest.getCallbackEndpoint())
+                        .map(Object::toString)
+                        .orElseGet(() -> String.valueOf(subscriptionRequest.getClientMrn())),
+                subscriptionRequest.getUuid() + "/" + s201Dataset.getUuid(),
+                () -> this.sendToSubscription(subscriptionRequest, s201Dataset));
+    }
+
+    /**
+     * Submits the redelivery of an unacknowledged S-201 dataset upload to a
+     * subscription to the SECOM delivery engine. The redelivery covers the
+     * same exchange set time window as the original upload, even though the
+     * subscription timestamp has been advanced in the meantime.
+     *
+     * @param subscriptionRequest   the subscription request
+     * @param s201Dataset           the S-201 dataset to be sent to the subscription
+     * @param updatedAt             the subscription timestamp of the original upload
+     */
+    protected void submitRedelivery(SubscriptionRequest subscriptionRequest, S201Dataset s201Dataset, LocalDateTime updatedAt) {
+        this.secomDeliveryEngine.submit(
+                Optional.ofNullable(subscriptionRequest.getCallbackEndpoint())
+                        .map(Object::toString)
+                        .orElseGet(() -> String.valueOf(subscriptionRequest.getClientMrn())),
+                subscriptionRequest.getUuid() + "/" + s201Dataset.getUuid(),
+                () -> this.sendToSubscription(subscriptionRequest, s201Dataset, updatedAt));
+    }
+
     /**
      * This function handles the operation of sending the updated list of
      * the received S-201 Aids to Navigation entries to the provided
@@ -422,11 +527,31 @@ public class SecomV2SubscriptionService implements MessageHandler {
      * order to find our the correct endpoint and then the SECOM upload
      * interface of the discovered client (if a valid registration is returned)
      * will be utilised.
+     * <p/>
+     * The subscription timestamp is advanced as soon as the client accepts
+     * the upload, since the delivery acknowledgements are optional, and they
+     * are only tracked for the metrics and the optional redeliveries. Any
+     * failures to package or upload the data are thrown back to the delivery
+     * engine, so that it can retry.
      *
      * @param subscriptionRequest   the subscription request
      * @param s201Dataset           the S-201 dataset to be sent to the subscription
      */
     protected void sendToSubscription(SubscriptionRequest subscriptionRequest, S201Dataset s201Dataset) {
+        this.sendToSubscription(subscriptionRequest, s201Dataset, subscriptionRequest.getUpdatedAt());
+    }
+
+    /**
+     * Sends the provided S-201 dataset to the provided subscription, where
+     * any exchange set delta starts from the provided subscription
+     * timestamp, rather than the current one, so that a redelivery covers
+     * the same time window as the original upload.
+     *
+     * @param subscriptionRequest   the subscription request
+     * @param s201Dataset           the S-201 dataset to be sent to the subscription
+     * @param updatedAt             the subscription timestamp to start the delta from
+     */
+    protected void sendToSubscription(SubscriptionRequest subscriptionRequest, S201Dataset s201Dataset, LocalDateTime updatedAt) {
         // Make sure we also have an MRN for the subscribed client
         if(Objects.isNull(subscriptionRequest.getClientMrn())) {
             log.warn("Subscription request found for S-201 dataset updates but no client MRN");
@@ -438,6 +563,9 @@ public class SecomV2SubscriptionService implements MessageHandler {
                 this.secomV2Service.getClient(subscriptionRequest.getClientMrn()) :
                 this.secomV2Service.getClient(subscriptionRequest.getCallbackEndpoint());
 
+        // Keep the time the data was collected, to be recorded once uploaded
+        final LocalDateTime collectedAt = LocalDateTime.now();
+
         // Build the data envelope
         EnvelopeUploadObject envelopeUploadObject = new EnvelopeUploadObject();
         envelopeUploadObject.setDataProductType(SECOM_DataProductType.S201);
@@ -446,16 +574,27 @@ public class SecomV2SubscriptionService implements MessageHandler {
 
         // Package the data according to the container (exchange-set or dataset by default)
         if(ContainerTypeEnum.S100_ExchangeSet.equals(subscriptionRequest.getContainerType())) {
-            envelopeUploadObject.setContainerType(ContainerTypeEnum.S100_DataSet);
+            envelopeUploadObject.setContainerType(ContainerTypeEnum.S100_ExchangeSet);
             try {
                 envelopeUploadObject.setData(this.s100ExchangeSetService.packageToExchangeSet(
                         Collections.singletonList(s201Dataset),
-                        subscriptionRequest.getUpdatedAt(),
-                        LocalDateTime.now()));
+                        this.getExchangeSetWindowStart(updatedAt),
+                        collectedAt));
             } catch (IOException | JAXBException ex) {
-                log.error(ex.getMessage());
-                return;
+                throw new IllegalStateException(ex);
             }
+            // Exchange sets are always compressed
+            envelopeUploadObject.setExchangeMetadata(new ExchangeMetadata());
+            envelopeUploadObject.getExchangeMetadata().setCompressionFlag(Boolean.TRUE);
+        } else if(this.datasetContentService.isCompressionEnabled()) {
+            envelopeUploadObject.setContainerType(ContainerTypeEnum.S100_DataSet);
+            envelopeUploadObject.setData(Optional.of(s201Dataset.getDatasetContent())
+                    .map(DatasetContent::getCompressedContent)
+                    .orElseGet(() -> this.datasetContentService.compressContent(
+                            s201Dataset.getUuid(),
+                            s201Dataset.getDatasetContent().getContent())));
+            envelopeUploadObject.setExchangeMetadata(new ExchangeMetadata());
+            envelopeUploadObject.getExchangeMetadata().setCompressionFlag(Boolean.TRUE);
         } else {
             envelopeUploadObject.setContainerType(ContainerTypeEnum.S100_DataSet);
             envelopeUploadObject.setData(s201Dataset.getDatasetContent().getContent().getBytes());
@@ -466,10 +605,36 @@ public class SecomV2SubscriptionService implements MessageHandler {
         uploadObject.setEnvelope(envelopeUploadObject);
 
         // Now upload the message to the subscription client
-        secomClient.upload(uploadObject);
+        final UploadResponseObject uploadResponseObject = secomClient.upload(uploadObject)
+                .orElseThrow(() -> new IllegalStateException(String.format("No upload response received from client %s", subscriptionRequest.getClientMrn())));
+        if(Objects.nonNull(uploadResponseObject.getSECOM_ResponseCode())) {
+            throw new IllegalStateException(String.format("Upload to client %s failed with %s: %s",
+                    subscriptionRequest.getClientMrn(), uploadResponseObject.getSECOM_ResponseCode(), uploadResponseObject.getMessage()));
+        }
 
-        // Update the subscription timestamp tp keep track of the updates
-        this.updateSubscriptionTimestamp(subscriptionRequest);
+        // Update the subscription timestamp and track the acknowledgement
+        this.updateSubscriptionTimestamp(subscriptionRequest, collectedAt);
+        this.secomAcknowledgementTracker.track(envelopeUploadObject.getTransactionIdentifier(),
+                subscriptionRequest.getClientMrn(),
+                subscriptionRequest.getUuid() + "/" + s201Dataset.getUuid(),
+                () -> this.submitRedelivery(subscriptionRequest, s201Dataset, updatedAt));
+    }
+
+    /**
+     * Rounds the provided subscription update time down to the configured
+     * exchange set window. Any subscribers whose update times fall within
+     * the same window will be sent the same deltas, so the exchange set only
+     * needs to be packaged and signed once for all of them.
+     *
+     * @param updatedAt the subscription update time
+     * @return the start of the exchange set window
+     */
+    protected LocalDateTime getExchangeSetWindowStart(LocalDateTime updatedAt) {
+        if(Objects.isNull(updatedAt) || this.exchangeSetWindow <= 0) {
+            return updatedAt;
+        }
+        final long epochSecond = updatedAt.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, this.exchangeSetWindow), 0, ZoneOffset.UTC);
     }
 
     /**
@@ -496,6 +661,7 @@ public class SecomV2SubscriptionService implements MessageHandler {
                         .matching(Optional.ofNullable(searchText).map(st -> "*" + st).orElse("") + "*")
                 )
                 .sort(f -> SearchSortUtils.buildSort(f, sortFields))
+                .totalHitCountThreshold(this.datatablesCountCache.getTotalHitCountThreshold())
                 .toQuery();
     }
 
@@ -585,8 +751,8 @@ public class SecomV2SubscriptionService implements MessageHandler {
                                 .should(emptyValuePred));
                     });
                     Optional.ofNullable(geometry).ifPresent(g -> {
-                        step.must(f.extension(ElasticsearchExtension.get())
-                                .fromJson(GeometryUtils.geoShapeIntersectsQuery("subscriptionGeometry", g)));
+                        step.must(this.spatialSearchProvider
+                                .intersects(f, SubscriptionRequest.class, "subscriptionGeometry", g));
                     });
                     Optional.ofNullable(timestamp).ifPresent(v -> {
                         step.must(f.range()
@@ -608,16 +774,25 @@ public class SecomV2SubscriptionService implements MessageHandler {
      * This helper function will update the timestamp of a subscription request
      * to demonstrate when that subscription was last informed on any changes.
      * This will be used to only send the dataset delta in case the exchange
-     * set container has been selected.
+     * set container has been selected. The timestamp is persisted in the
+     * background, along with the timestamps of the other subscriptions.
+     * Since the uploads and redeliveries may complete out of order, the
+     * timestamp is only ever moved forward.
      *
      * @param subscriptionRequest The subscription request to be updated
+     * @param updatedAt The time the delivered data was collected
      */
-    protected void updateSubscriptionTimestamp(SubscriptionRequest subscriptionRequest) {
+    protected synchronized void updateSubscriptionTimestamp(SubscriptionRequest subscriptionRequest, LocalDateTime updatedAt) {
+        // Never move the timestamp of the subscription backwards
+        if(Objects.nonNull(subscriptionRequest.getUpdatedAt()) && !updatedAt.isAfter(subscriptionRequest.getUpdatedAt())) {
+            return;
+        }
+
         // Update the timestamp of the subscription
-        subscriptionRequest.setUpdatedAt(LocalDateTime.now());
+        subscriptionRequest.setUpdatedAt(updatedAt);
 
-        // And save it in the database
-        this.secomSubscriptionRepo.save(subscriptionRequest);
+        // And buffer it to be saved in the database
+        this.subscriptionTimestampBuffer.record(subscriptionRequest.getUuid(), subscriptionRequest.getUpdatedAt());
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The Conditional Request Utility Class.
+ * <p>
+ * A collection of utility functions used to support the HTTP conditional
+ * requests (i.e. the If-None-Match and If-Modified-Since headers) on the
+ * dataset retrieval endpoints, so that clients already holding the current
+ * version of the requested data can be answered with a 304 (Not Modified)
+ * response without the data being loaded and transmitted again.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class ConditionalRequestUtils {
+
+    /**
+     * Generates a strong ETag out of the provided version parts. The parts
+     * are joined in order and hashed, so that any change in any of them, or
+     * in their order, will produce a different ETag.
+     *
+     * @param parts the parts identifying the version of a response
+     * @return the quoted strong ETag
+     */
+    public static String generateETag(Stream<?> parts) {
+        final String joined = parts
+                .map(String::valueOf)
+                .collect(Collectors.joining("|"));
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return "\"" + HexFormat.of().formatHex(digest.digest(joined.getBytes(StandardCharsets.UTF_8))) + "\"";
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Determines the last modification time of a response as the latest
+     * of the provided modification times. Since the HTTP dates only have a
+     * precision of seconds, the result is truncated accordingly.
+     *
+     * @param times the modification times of the response entries
+     * @return the last modification time, or null if none was provided
+     */
+    public static Instant getLastModified(Stream<LocalDateTime> times) {
+        return times
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .map(ldt -> ldt.atZone(ZoneId.systemDefault()).toInstant())
+                .map(instant -> instant.truncatedTo(ChronoUnit.SECONDS))
+                .orElse(null);
+    }
+
+    /**
+     * Determines the last modification time of a response as the latest of
+     * the provided modification times and the last time any entry might
+     * have been removed from the response. Without the latter, a removal
+     * would not change the last modification time of the remaining entries,
+     * and the clients revalidating through the If-Modified-Since header
+     * would never notice it.
+     *
+     * @param times the modification times of the response entries
+     * @param lastRemovalTime the last time any entry might have been removed
+     * @return the last modification time, or null if none was available
+     */
+    public static Instant getLastModified(Stream<LocalDateTime> times, Instant lastRemovalTime) {
+        return Stream.of(getLastModified(times), lastRemovalTime)
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    /**
+     * Checks whether the provided request is conditional and the client
+     * already holds the response version identified by the provided ETag
+     * and last modification time. As per RFC 9110, the If-None-Match header
+     * takes precedence, and the If-Modified-Since header is only evaluated
+     * when no If-None-Match header is present.
+     *
+     * @param request       the HTTP servlet request
+     * @param eTag          the ETag of the current response version
+     * @param lastModified  the last modification time of the current response version
+     * @return whether the client copy is still up to date
+     */
+    public static boolean isNotModified(HttpServletRequest request, String eTag, Instant lastModified) {
+        // Check the If-None-Match header first
+        final List<String> ifNoneMatch = Optional.ofNullable(request.getHeaders(HttpHeaders.IF_NONE_MATCH))
+                .map(Collections::list)
+                .orElseGet(Collections::emptyList);
+        if(!ifNoneMatch.isEmpty()) {
+            return Objects.nonNull(eTag) && ifNoneMatch.stream()
+                    .flatMap(header -> Arrays.stream(header.split(",")))
+                    .map(String::trim)
+                    .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                    .anyMatch(tag -> "*".equals(tag) || tag.equals(eTag));
+        }
+
+        // Otherwise fall back to the If-Modified-Since header
+        if(Objects.nonNull(lastModified)) {
+            try {
+                final long ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+                return ifModifiedSince >= 0 && lastModified.toEpochMilli() <= ifModifiedSince;
+            } catch (IllegalArgumentException ex) {
+                // Invalid dates should be ignored
+                return false;
+            }
+        }
+
+        // If nothing matches, the response must be sent
+        return false;
+    }
+
+    /**
+     * Checks whether the HTTP request currently being handled is conditional
+     * and the client already holds the response version identified by the
+     * provided ETag and last modification time. This is meant for handlers
+     * whose signatures are defined by an external interface (e.g. SECOM) and
+     * cannot accept the request as an argument. Outside a request, the
+     * response is always considered as modified.
+     *
+     * @param eTag          the ETag of the current response version
+     * @param lastModified  the last modification time of the current response version
+     * @return whether the client copy is still up to date
+     */
+    public static boolean isNotModified(String eTag, Instant lastModified) {
+        return Optional.ofNullable(RequestContextHolder.getRequestAttributes())
+                .filter(ServletRequestAttributes.class::isInstance)
+                .map(ServletRequestAttributes.class::cast)
+                .map(ServletRequestAttributes::getRequest)
+                .map(request -> isNotModified(request, eTag, lastModified))
+                .orElse(Boolean.FALSE);
+    }
+
+    /**
+     * Creates the validator headers (i.e. ETag and Last-Modified) to be
+     * included in both the full and the 304 (Not Modified) responses.
+     *
+     * @param eTag          the ETag of the current response version
+     * @param lastModified  the last modification time of the current response version
+     * @return the validator http headers
+     */
+    public static HttpHeaders createValidatorHeaders(String eTag, Instant lastModified) {
+        final HttpHeaders headers = new HttpHeaders();
+        Optional.ofNullable(eTag).ifPresent(headers::setETag);
+        Optional.ofNullable(lastModified).ifPresent(headers::setLastModified);
+        return headers;
+    }
+
+}
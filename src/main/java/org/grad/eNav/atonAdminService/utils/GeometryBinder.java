@@ -14,27 +14,29 @@
  * limitations under the License.
  */
 
+
 package org.grad.eNav.atonAdminService.utils;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonPrimitive;
 import org.hibernate.search.backend.elasticsearch.ElasticsearchExtension;
-import org.hibernate.search.mapper.pojo.bridge.ValueBridge;
-import org.hibernate.search.mapper.pojo.bridge.binding.ValueBindingContext;
-import org.hibernate.search.mapper.pojo.bridge.mapping.programmatic.ValueBinder;
-import org.hibernate.search.mapper.pojo.bridge.runtime.ValueBridgeFromIndexedValueContext;
-import org.hibernate.search.mapper.pojo.bridge.runtime.ValueBridgeToIndexedValueContext;
+import org.hibernate.search.engine.backend.document.DocumentElement;
+import org.hibernate.search.engine.backend.document.IndexFieldReference;
+import org.hibernate.search.engine.backend.document.model.dsl.IndexSchemaElement;
+import org.hibernate.search.engine.backend.types.Searchable;
+import org.hibernate.search.engine.spatial.GeoPoint;
+import org.hibernate.search.mapper.pojo.bridge.PropertyBridge;
+import org.hibernate.search.mapper.pojo.bridge.binding.PropertyBindingContext;
+import org.hibernate.search.mapper.pojo.bridge.mapping.programmatic.PropertyBinder;
+import org.hibernate.search.mapper.pojo.bridge.runtime.PropertyBridgeWriteContext;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.io.ParseException;
-import org.locationtech.jts.io.WKTReader;
-import org.locationtech.jts.io.WKTWriter;
-
-import java.util.Optional;
+import org.locationtech.jts.geom.Point;
 
 /**
- * The Hibernate Search Geometry Value Binder.
+ * The Hibernate Search Geometry Property Binder.
  *
- * This value binder class is used in order for Hibernate Search to generate
+ * This property binder class is used in order for Hibernate Search to generate
  * indexable fields from the geometry variables of each instance and then
  * be able to perform search queries on them using the Elasticsearch backend.
  * <p>
@@ -44,64 +46,142 @@ import java.util.Optional;
  * WKT for both the indexing and the querying of geo_shape fields, which makes it
  * an easy and lossless way to map the JTS geometries. The geo-spatial queries can
  * then be constructed through the {@link GeometryUtils} utility.
+ * <p>
+ * Since most of the indexed geometries (e.g. buoys, beacons and lights) are
+ * single points, the following fields are also indexed alongside the shape,
+ * so that the much cheaper point and range queries can be used instead:
+ * <ul>
+ *     <li>{@code <field>_point}: whether the geometry is a single point</li>
+ *     <li>{@code <field>_centroid}: the geometry centroid as a geo_point</li>
+ *     <li>{@code <field>_min_x}, {@code <field>_min_y}, {@code <field>_max_x}
+ *     and {@code <field>_max_y}: the geometry envelope</li>
+ * </ul>
+ * <p>
+ * When the service runs on the embedded Lucene backend instead, there is no
+ * native geo_shape support available. In that case the geometries are simply
+ * stored as plain WKT strings, while the actual spatial filtering is performed
+ * by the in-memory index of the
+ * {@link org.grad.eNav.atonAdminService.components.EmbeddedSpatialSearchProvider}.
+ * <p>
+ * The name of the indexed field can be provided through the "fieldName"
+ * parameter, otherwise the name of the geometry property will be used.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
-public class GeometryBinder implements ValueBinder {
+public class GeometryBinder implements PropertyBinder {
 
     /**
-     * The main binding operation where the geometry value bridge is used and
-     * the geometry objects are indexed as a native Elasticsearch geo_shape
-     * field, using their WKT representation.
+     * The suffix of the field indicating whether the geometry is a point.
+     */
+    public static final String POINT_FIELD_SUFFIX = "_point";
+
+    /**
+     * The suffix of the geometry centroid geo_point field.
+     */
+    public static final String CENTROID_FIELD_SUFFIX = "_centroid";
+
+    /**
+     * The suffixes of the geometry envelope fields.
+     */
+    public static final String MIN_X_FIELD_SUFFIX = "_min_x";
+    public static final String MIN_Y_FIELD_SUFFIX = "_min_y";
+    public static final String MAX_X_FIELD_SUFFIX = "_max_x";
+    public static final String MAX_Y_FIELD_SUFFIX = "_max_y";
+
+    /**
+     * The main binding operation where the geometry property bridge is used
+     * and the geometry objects are indexed as a native Elasticsearch geo_shape
+     * field, using their WKT representation, along with the point flag, the
+     * centroid and the envelope fields. For backends other than Elasticsearch,
+     * the WKT representation is indexed as a simple string.
      *
-     * @param context    The value binding context.
+     * @param context    The property binding context.
      */
     @Override
-    public void bind(ValueBindingContext<?> context) {
-        context.bridge(
-                Geometry.class,
-                new GeometryValueBridge(),
-                context.typeFactory()
-                        .extension(ElasticsearchExtension.get())
-                        .asNative()
-                        .mapping("{\"type\": \"geo_shape\"}")
-        );
+    public void bind(PropertyBindingContext context) {
+        context.dependencies().useRootOnly();
+
+        // Get the name of the field to be indexed
+        final String fieldName = context.paramOptional("fieldName", String.class)
+                .orElseGet(() -> context.bridgedElement().name());
+        final IndexSchemaElement schemaElement = context.indexSchemaElement();
+
+        // Create the shape field, depending on the backend
+        final IndexFieldReference<JsonElement> nativeShapeField = ElasticsearchExtension.get()
+                .extendOptional(context.typeFactory())
+                .map(f -> schemaElement.field(fieldName, f.asNative()
+                                .mapping("{\"type\": \"geo_shape\"}"))
+                        .toReference())
+                .orElse(null);
+        final IndexFieldReference<String> wktShapeField = nativeShapeField != null ? null :
+                schemaElement.field(fieldName, f -> f.asString()
+                                .searchable(Searchable.NO))
+                        .toReference();
+
+        // And bind everything together
+        context.bridge(Geometry.class, new GeometryPropertyBridge(
+                nativeShapeField,
+                wktShapeField,
+                schemaElement.field(fieldName + POINT_FIELD_SUFFIX, f -> f.asBoolean()).toReference(),
+                schemaElement.field(fieldName + CENTROID_FIELD_SUFFIX, f -> f.asGeoPoint()).toReference(),
+                schemaElement.field(fieldName + MIN_X_FIELD_SUFFIX, f -> f.asDouble()).toReference(),
+                schemaElement.field(fieldName + MIN_Y_FIELD_SUFFIX, f -> f.asDouble()).toReference(),
+                schemaElement.field(fieldName + MAX_X_FIELD_SUFFIX, f -> f.asDouble()).toReference(),
+                schemaElement.field(fieldName + MAX_Y_FIELD_SUFFIX, f -> f.asDouble()).toReference()
+        ));
     }
 
     /**
-     * The private Geometry Value Bridge that translates the JTS geometries into
-     * their WKT representation, wrapped into a JSON primitive so that it can be
-     * indexed into a native Elasticsearch geo_shape field.
+     * The private Geometry Property Bridge that translates the JTS geometries
+     * into their WKT representation, as well as populating the point flag,
+     * centroid and envelope fields.
+     *
+     * @param nativeShapeField  the native geo_shape field, if supported
+     * @param wktShapeField     the WKT string field, if geo_shape is not supported
+     * @param pointField        the point flag field
+     * @param centroidField     the centroid geo_point field
+     * @param minXField         the envelope minimum X (longitude) field
+     * @param minYField         the envelope minimum Y (latitude) field
+     * @param maxXField         the envelope maximum X (longitude) field
+     * @param maxYField         the envelope maximum Y (latitude) field
      */
-    private static class GeometryValueBridge implements ValueBridge<Geometry, JsonElement> {
-        @Override
-        public JsonElement toIndexedValue(Geometry value, ValueBridgeToIndexedValueContext context) {
-            return Optional.ofNullable(value)
-                    .map(g -> new WKTWriter().write(g))
-                    .<JsonElement>map(JsonPrimitive::new)
-                    .orElse(null);
-        }
+    private record GeometryPropertyBridge(IndexFieldReference<JsonElement> nativeShapeField,
+                                          IndexFieldReference<String> wktShapeField,
+                                          IndexFieldReference<Boolean> pointField,
+                                          IndexFieldReference<GeoPoint> centroidField,
+                                          IndexFieldReference<Double> minXField,
+                                          IndexFieldReference<Double> minYField,
+                                          IndexFieldReference<Double> maxXField,
+                                          IndexFieldReference<Double> maxYField) implements PropertyBridge<Geometry> {
 
         @Override
-        public Geometry fromIndexedValue(JsonElement value, ValueBridgeFromIndexedValueContext context) {
-            // The geo_shape field is not projectable, so this is mostly a
-            // best-effort reconstruction kept for type consistency.
-            try {
-                return Optional.ofNullable(value)
-                        .filter(JsonElement::isJsonPrimitive)
-                        .map(JsonElement::getAsString)
-                        .map(wkt -> {
-                            try {
-                                return new WKTReader().read(wkt);
-                            } catch (ParseException ex) {
-                                throw new IllegalArgumentException(ex);
-                            }
-                        })
-                        .orElse(null);
-            } catch (IllegalArgumentException ex) {
-                return null;
+        public void write(DocumentElement target, Geometry geometry, PropertyBridgeWriteContext context) {
+            if(geometry == null || geometry.isEmpty()) {
+                return;
+            }
+
+            // Index the shape itself
+            final String wkt = GeometryUtils.toWkt(geometry);
+            if(this.nativeShapeField != null) {
+                target.addValue(this.nativeShapeField, new JsonPrimitive(wkt));
+            } else {
+                target.addValue(this.wktShapeField, wkt);
             }
+
+            // Index the point flag and the centroid
+            final Point centroid = geometry instanceof Point point ? point : geometry.getCentroid();
+            target.addValue(this.pointField, geometry instanceof Point);
+            if(centroid != null && !centroid.isEmpty()) {
+                target.addValue(this.centroidField, GeoPoint.of(centroid.getY(), centroid.getX()));
+            }
+
+            // Index the envelope
+            final Envelope envelope = geometry.getEnvelopeInternal();
+            target.addValue(this.minXField, envelope.getMinX());
+            target.addValue(this.minYField, envelope.getMinY());
+            target.addValue(this.maxXField, envelope.getMaxX());
+            target.addValue(this.maxYField, envelope.getMaxY());
         }
     }
 
-}
\ No newline at end of file
+}
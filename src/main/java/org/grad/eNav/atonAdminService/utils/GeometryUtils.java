@@ -16,10 +16,16 @@
 
 package org.grad.eNav.atonAdminService.utils;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.io.WKTWriter;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,6 +33,11 @@ import java.util.Optional;
  *
  * This utility class contains various methods that can be used to easily
  * manage geometries and deal their relevant operations.
+ * <p>
+ * Note that all the AtoN geometries follow the S-100 axis order, i.e. the
+ * latitude is stored as the X coordinate and the longitude as the Y one.
+ * Any coordinates provided in the usual web-mapping order, i.e. longitude
+ * first, should be translated through this class.
  *
  * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
  */
@@ -47,33 +58,176 @@ public class GeometryUtils {
     }
 
     /**
-     * Creates the JSON for an Elasticsearch
+     * Translates a bounding box provided in the [minLon, minLat, maxLon,
+     * maxLat] order into the envelopes it covers in the AtoN geometry axis
+     * order. Bounding boxes crossing the antimeridian, i.e. where the minimum
+     * longitude is greater than the maximum one, are split into two
+     * envelopes, one on each side of it.
+     *
+     * @param bbox the bounding box in the [minLon, minLat, maxLon, maxLat] order
+     * @return the list of the envelopes covered by the bounding box
+     */
+    public static List<Envelope> toEnvelopes(double[] bbox) {
+        return bbox[0] <= bbox[2]
+                ? List.of(new Envelope(bbox[1], bbox[3], bbox[0], bbox[2]))
+                : List.of(new Envelope(bbox[1], bbox[3], bbox[0], 180), new Envelope(bbox[1], bbox[3], -180, bbox[2]));
+    }
+
+    /**
+     * Returns a copy of the provided AtoN geometry with its axes swapped into
+     * the longitude first order, as required by the GeoJSON specification
+     * (RFC 7946) and most of the web-mapping clients.
+     *
+     * @param geometry the AtoN geometry
+     * @return the geometry in the longitude first order, or null if not provided
+     */
+    public static Geometry toLonLat(Geometry geometry) {
+        return Optional.ofNullable(geometry)
+                .map(g -> {
+                    final Geometry result = g.copy();
+                    result.apply(new CoordinateSequenceFilter() {
+                        @Override
+                        public void filter(CoordinateSequence seq, int i) {
+                            final double x = seq.getX(i);
+                            seq.setOrdinate(i, CoordinateSequence.X, seq.getY(i));
+                            seq.setOrdinate(i, CoordinateSequence.Y, x);
+                        }
+
+                        @Override
+                        public boolean isDone() {
+                            return false;
+                        }
+
+                        @Override
+                        public boolean isGeometryChanged() {
+                            return true;
+                        }
+                    });
+                    return result;
+                })
+                .orElse(null);
+    }
+
+    /**
+     * Creates the JSON for an Elasticsearch query that matches all the
+     * documents whose geometry, indexed under the provided field through the
+     * {@link GeometryBinder}, intersects with the provided geometry. The
+     * result can be fed directly to the Hibernate Search Elasticsearch
+     * extension through the {@code fromJson} predicate.
+     * <p>
+     * Since most of the indexed geometries are single points, the query is
+     * split into two clauses. The point geometries are matched through their
+     * indexed geo_point centroid, using a bounding box query when the provided
+     * geometry is a rectangle, or a geo_shape query on the geo_point field
+     * otherwise. Both of these are much cheaper than the full
      * <a href="https://www.elastic.co/guide/en/elasticsearch/reference/current/query-dsl-geo-shape-query.html">geo_shape</a>
-     * query that matches all the documents whose geometry, indexed under the
-     * provided field, intersects with the provided geometry. The result can be
-     * fed directly to the Hibernate Search Elasticsearch extension through the
-     * {@code fromJson} predicate.
+     * query, which is only used for the lines and areas.
      *
-     * @param fieldName the name of the indexed geo_shape field
+     * @param fieldName the name of the indexed geometry field
      * @param geometry  the geometry that the results should intersect with
-     * @return the geo_shape query as a JSON object, or null if no geometry is provided
+     * @return the intersection query as a JSON object, or null if no geometry is provided
      */
     public static JsonObject geoShapeIntersectsQuery(String fieldName, Geometry geometry) {
         return Optional.ofNullable(geometry)
-                .map(GeometryUtils::toWkt)
-                .map(wkt -> {
-                    final JsonObject shape = new JsonObject();
-                    shape.addProperty("shape", wkt);
-                    shape.addProperty("relation", "intersects");
-                    final JsonObject field = new JsonObject();
-                    field.add(fieldName, shape);
-                    final JsonObject query = new JsonObject();
-                    query.add("geo_shape", field);
+                .map(g -> {
+                    // The cheap clause for the points
+                    final JsonObject pointClause = boolQuery(
+                            "filter",
+                            termQuery(fieldName + GeometryBinder.POINT_FIELD_SUFFIX, true),
+                            g.isRectangle() ?
+                                    geoBoundingBoxQuery(fieldName + GeometryBinder.CENTROID_FIELD_SUFFIX, g.getEnvelopeInternal()) :
+                                    geoShapeQuery(fieldName + GeometryBinder.CENTROID_FIELD_SUFFIX, g));
+
+                    // The full shape clause for everything else
+                    final JsonObject shapeClause = boolQuery("filter", geoShapeQuery(fieldName, g));
+                    shapeClause.getAsJsonObject("bool").add("must_not", termQuery(fieldName + GeometryBinder.POINT_FIELD_SUFFIX, true));
+
+                    // Either of the two should match
+                    final JsonObject query = boolQuery("should", pointClause, shapeClause);
+                    query.getAsJsonObject("bool").addProperty("minimum_should_match", 1);
                     return query;
                 })
                 .orElse(null);
     }
 
+    /**
+     * Creates the JSON for an Elasticsearch geo_shape intersects query on
+     * the provided field. Note that this query can be applied on both geo_shape
+     * and geo_point fields.
+     *
+     * @param fieldName the name of the indexed field
+     * @param geometry  the geometry that the results should intersect with
+     * @return the geo_shape query as a JSON object
+     */
+    protected static JsonObject geoShapeQuery(String fieldName, Geometry geometry) {
+        final JsonObject shape = new JsonObject();
+        shape.addProperty("shape", toWkt(geometry));
+        shape.addProperty("relation", "intersects");
+        final JsonObject field = new JsonObject();
+        field.add(fieldName, shape);
+        final JsonObject query = new JsonObject();
+        query.add("geo_shape", field);
+        return query;
+    }
+
+    /**
+     * Creates the JSON for an Elasticsearch geo_bounding_box query on the
+     * provided geo_point field.
+     *
+     * @param fieldName the name of the indexed geo_point field
+     * @param envelope  the envelope that the results should fall within
+     * @return the geo_bounding_box query as a JSON object
+     */
+    protected static JsonObject geoBoundingBoxQuery(String fieldName, Envelope envelope) {
+        final JsonObject topLeft = new JsonObject();
+        topLeft.addProperty("lat", envelope.getMaxY());
+        topLeft.addProperty("lon", envelope.getMinX());
+        final JsonObject bottomRight = new JsonObject();
+        bottomRight.addProperty("lat", envelope.getMinY());
+        bottomRight.addProperty("lon", envelope.getMaxX());
+        final JsonObject box = new JsonObject();
+        box.add("top_left", topLeft);
+        box.add("bottom_right", bottomRight);
+        final JsonObject field = new JsonObject();
+        field.add(fieldName, box);
+        final JsonObject query = new JsonObject();
+        query.add("geo_bounding_box", field);
+        return query;
+    }
+
+    /**
+     * Creates the JSON for an Elasticsearch term query.
+     *
+     * @param fieldName the name of the indexed field
+     * @param value     the value to be matched
+     * @return the term query as a JSON object
+     */
+    protected static JsonObject termQuery(String fieldName, boolean value) {
+        final JsonObject field = new JsonObject();
+        field.addProperty(fieldName, value);
+        final JsonObject query = new JsonObject();
+        query.add("term", field);
+        return query;
+    }
+
+    /**
+     * Creates the JSON for an Elasticsearch bool query, placing all the
+     * provided queries under the specified occurrence type.
+     *
+     * @param occur     the occurrence type, e.g. filter or should
+     * @param queries   the queries to be combined
+     * @return the bool query as a JSON object
+     */
+    protected static JsonObject boolQuery(String occur, JsonObject... queries) {
+        final JsonArray clauses = new JsonArray();
+        Arrays.stream(queries).forEach(clauses::add);
+        final JsonObject bool = new JsonObject();
+        bool.add(occur, clauses);
+        final JsonObject query = new JsonObject();
+        query.add("bool", bool);
+        return query;
+    }
+
     /**
      * A helper function to simplify the joining of geometries without troubling
      * ourselves for the null checking... which is a pain.
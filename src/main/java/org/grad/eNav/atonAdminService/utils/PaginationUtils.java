@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import org.grad.secomv2.core.models.PaginationObject;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Optional;
+
+/**
+ * The Pagination Utility Class.
+ * <p>
+ * A collection of utility functions used to translate the SECOM pagination
+ * parameters into the pageable requests used to query the database, and the
+ * retrieved pages back into the SECOM pagination objects. Requests that do
+ * not specify a page or a page size are always limited to the first page of
+ * the default size, so that a single request can never retrieve the whole
+ * set of the matching entries.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class PaginationUtils {
+
+    /**
+     * Generates the pageable request for the provided SECOM pagination
+     * parameters. Note that the SECOM page numbers start from 1 while the
+     * pageable requests start from 0. Missing pages are translated to the
+     * first page, while missing or zero page sizes to the provided default
+     * page size.
+     *
+     * @param page the SECOM page number, starting from 1
+     * @param pageSize the SECOM page size
+     * @param defaultPageSize the default page size
+     * @return the pageable request
+     */
+    public static Pageable toPageable(Integer page, Integer pageSize, int defaultPageSize) {
+        return PageRequest.of(
+                Optional.ofNullable(page)
+                        .filter(p -> p > 0)
+                        .map(p -> p - 1)
+                        .orElse(0),
+                Optional.ofNullable(pageSize)
+                        .filter(s -> s > 0)
+                        .orElse(Math.max(defaultPageSize, 1)));
+    }
+
+    /**
+     * Generates the SECOM pagination object for the provided retrieved page.
+     * The total number of items reported is the total number of matching
+     * entries and not just the ones included in the retrieved page, so that
+     * the clients can determine how many more pages are available.
+     *
+     * @param result the retrieved page
+     * @param pageable the pageable request used to retrieve the page
+     * @return the SECOM pagination object
+     */
+    public static PaginationObject toPaginationObject(Page<?> result, Pageable pageable) {
+        final long totalItems = Optional.ofNullable(result)
+                .map(Page::getTotalElements)
+                .orElse(0L);
+        return new PaginationObject(
+                (int) Math.min(totalItems, Integer.MAX_VALUE),
+                pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE);
+    }
+
+}
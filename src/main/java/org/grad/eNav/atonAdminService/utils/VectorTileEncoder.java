@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import org.locationtech.jts.geom.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The Vector Tile Encoder Class.
+ *
+ * This class encodes geometries into the Mapbox Vector Tile (MVT) format,
+ * as defined by the version 2.1 of the vector tile specification. Only the
+ * subset required by this service is supported, i.e. string feature
+ * properties, while the protocol buffer encoding is written directly so
+ * that no additional dependencies are required.
+ * <p>
+ * The geometries added to the encoder are expected to be already in tile
+ * coordinates, which can be generated by the {@link #transform} method
+ * from the geographic AtoN geometries.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class VectorTileEncoder {
+
+    // Class Variables
+    public static final double MAX_LATITUDE = 85.0511287798066;
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int CMD_MOVE_TO = 1;
+    private static final int CMD_LINE_TO = 2;
+    private static final int CMD_CLOSE_PATH = 7;
+    private static final int GEOM_POINT = 1;
+    private static final int GEOM_LINESTRING = 2;
+    private static final int GEOM_POLYGON = 3;
+
+    // Encoder Variables
+    private final int extent;
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+    /**
+     * A vector tile layer, along with its deduplicated property keys and
+     * values.
+     */
+    private static class Layer {
+        final List<byte[]> features = new ArrayList<>();
+        final Map<String, Integer> keys = new LinkedHashMap<>();
+        final Map<String, Integer> values = new LinkedHashMap<>();
+    }
+
+    /**
+     * The vector tile encoder constructor.
+     *
+     * @param extent the extent of the tiles, i.e. the size of the tile coordinate space
+     */
+    public VectorTileEncoder(int extent) {
+        this.extent = extent;
+    }
+
+    /**
+     * Returns the geographic envelope of the specified tile in the web
+     * mercator tiling scheme, in the AtoN geometry axis order described in
+     * {@link GeometryUtils}.
+     *
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the tile envelope
+     */
+    public static Envelope getTileEnvelope(int z, int x, int y) {
+        final double n = Math.pow(2, z);
+        return new Envelope(
+                tileToLatitude(y + 1, n),
+                tileToLatitude(y, n),
+                x / n * 360.0 - 180.0,
+                (x + 1) / n * 360.0 - 180.0);
+    }
+
+    /**
+     * Transforms the provided geographic geometry, following the S-100 axis
+     * order, into the coordinate space of the specified tile. The result
+     * is not clipped to the tile.
+     *
+     * @param geometry the geographic geometry
+     * @param z the tile zoom level
+     * @param x the tile column
+     * @param y the tile row
+     * @param extent the extent of the tile coordinate space
+     * @return the geometry in tile coordinates
+     */
+    public static Geometry transform(Geometry geometry, int z, int x, int y, int extent) {
+        final double n = Math.pow(2, z);
+        final Geometry result = geometry.copy();
+        result.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence seq, int i) {
+                seq.setOrdinate(i, CoordinateSequence.X, (longitudeToTile(seq.getY(i), n) - x) * extent);
+                seq.setOrdinate(i, CoordinateSequence.Y, (latitudeToTile(seq.getX(i), n) - y) * extent);
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Adds a new feature to the specified layer. The geometry is expected to
+     * be in tile coordinates and its coordinates will be rounded to the
+     * tile grid. Geometry collections are added as separate features with
+     * the same identifier.
+     *
+     * @param layerName the name of the layer to add the feature to
+     * @param id the feature identifier
+     * @param geometry the feature geometry in tile coordinates
+     * @param properties the feature properties
+     */
+    public void addFeature(String layerName, long id, Geometry geometry, Map<String, String> properties) {
+        if(geometry == null || geometry.isEmpty()) {
+            return;
+        }
+
+        // Split the geometry collections
+        if(geometry.getClass() == GeometryCollection.class) {
+            for(int i = 0; i < geometry.getNumGeometries(); i++) {
+                this.addFeature(layerName, id, geometry.getGeometryN(i), properties);
+            }
+            return;
+        }
+
+        // Encode the geometry commands
+        final List<Integer> commands = new ArrayList<>();
+        final int type;
+        if(geometry instanceof Puntal) {
+            type = GEOM_POINT;
+            this.encodePoints(geometry, commands);
+        } else if(geometry instanceof Lineal) {
+            type = GEOM_LINESTRING;
+            this.encodeLines(geometry, commands);
+        } else if(geometry instanceof Polygonal) {
+            type = GEOM_POLYGON;
+            this.encodePolygons(geometry, commands);
+        } else {
+            return;
+        }
+        if(commands.isEmpty()) {
+            return;
+        }
+
+        // Encode the feature properties
+        final Layer layer = this.layers.computeIfAbsent(layerName, name -> new Layer());
+        final List<Integer> tags = new ArrayList<>();
+        Optional.ofNullable(properties).orElse(Collections.emptyMap()).forEach((key, value) -> {
+            if(key != null && value != null) {
+                tags.add(layer.keys.computeIfAbsent(key, k -> layer.keys.size()));
+                tags.add(layer.values.computeIfAbsent(value, v -> layer.values.size()));
+            }
+        });
+
+        // And write the feature
+        final ByteArrayOutputStream feature = new ByteArrayOutputStream();
+        writeTag(feature, 1, WIRE_VARINT);
+        writeVarint(feature, id);
+        writePacked(feature, 2, tags);
+        writeTag(feature, 3, WIRE_VARINT);
+        writeVarint(feature, type);
+        writePacked(feature, 4, commands);
+        layer.features.add(feature.toByteArray());
+    }
+
+    /**
+     * Returns whether no features have been added to the encoder.
+     *
+     * @return whether the encoder is empty
+     */
+    public boolean isEmpty() {
+        return this.layers.isEmpty();
+    }
+
+    /**
+     * Encodes all the added layers and features into a vector tile.
+     *
+     * @return the vector tile protocol buffer bytes
+     */
+    public byte[] encode() {
+        final ByteArrayOutputStream tile = new ByteArrayOutputStream();
+        this.layers.forEach((name, layer) -> {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writeTag(out, 15, WIRE_VARINT);
+            writeVarint(out, 2);
+            writeBytes(out, 1, name.getBytes(StandardCharsets.UTF_8));
+            layer.features.forEach(feature -> writeBytes(out, 2, feature));
+            layer.keys.keySet().forEach(key -> writeBytes(out, 3, key.getBytes(StandardCharsets.UTF_8)));
+            layer.values.keySet().forEach(value -> {
+                final ByteArrayOutputStream stringValue = new ByteArrayOutputStream();
+                writeBytes(stringValue, 1, value.getBytes(StandardCharsets.UTF_8));
+                writeBytes(out, 4, stringValue.toByteArray());
+            });
+            writeTag(out, 5, WIRE_VARINT);
+            writeVarint(out, this.extent);
+            writeBytes(tile, 3, out.toByteArray());
+        });
+        return tile.toByteArray();
+    }
+
+    /**
+     * Encodes the provided point geometries as a single move-to command.
+     *
+     * @param geometry the point geometries
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodePoints(Geometry geometry, List<Integer> commands) {
+        final Set<List<Integer>> points = new LinkedHashSet<>();
+        for(Coordinate coordinate : geometry.getCoordinates()) {
+            points.add(List.of((int) Math.round(coordinate.x), (int) Math.round(coordinate.y)));
+        }
+        final int[] cursor = new int[2];
+        commands.add(command(CMD_MOVE_TO, points.size()));
+        points.forEach(point -> this.encodeDelta(point.get(0), point.get(1), cursor, commands));
+    }
+
+    /**
+     * Encodes the provided line geometries as move-to and line-to commands.
+     *
+     * @param geometry the line geometries
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodeLines(Geometry geometry, List<Integer> commands) {
+        final int[] cursor = new int[2];
+        for(int i = 0; i < geometry.getNumGeometries(); i++) {
+            final List<int[]> points = this.toGrid(geometry.getGeometryN(i).getCoordinates(), false);
+            if(points.size() >= 2) {
+                this.encodePath(points, cursor, commands);
+            }
+        }
+    }
+
+    /**
+     * Encodes the provided polygon geometries as move-to, line-to and
+     * close-path commands. The exterior rings are written clockwise and
+     * the interior rings counter-clockwise in the tile coordinate space,
+     * as required by the specification.
+     *
+     * @param geometry the polygon geometries
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodePolygons(Geometry geometry, List<Integer> commands) {
+        final int[] cursor = new int[2];
+        for(int i = 0; i < geometry.getNumGeometries(); i++) {
+            final Polygon polygon = (Polygon) geometry.getGeometryN(i);
+            final List<int[]> exterior = this.toGrid(polygon.getExteriorRing().getCoordinates(), true);
+            if(exterior.size() < 3 || signedArea(exterior) == 0) {
+                continue;
+            }
+            this.encodeRing(exterior, true, cursor, commands);
+            for(int j = 0; j < polygon.getNumInteriorRing(); j++) {
+                final List<int[]> interior = this.toGrid(polygon.getInteriorRingN(j).getCoordinates(), true);
+                if(interior.size() >= 3 && signedArea(interior) != 0) {
+                    this.encodeRing(interior, false, cursor, commands);
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes a single polygon ring with the required winding order.
+     *
+     * @param ring the ring points without the closing point
+     * @param exterior whether this is an exterior ring
+     * @param cursor the current cursor position
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodeRing(List<int[]> ring, boolean exterior, int[] cursor, List<Integer> commands) {
+        if((signedArea(ring) > 0) != exterior) {
+            Collections.reverse(ring);
+        }
+        this.encodePath(ring, cursor, commands);
+        commands.add(command(CMD_CLOSE_PATH, 1));
+    }
+
+    /**
+     * Encodes a path as a move-to command to its first point followed by a
+     * line-to command for the rest of its points.
+     *
+     * @param points the path points
+     * @param cursor the current cursor position
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodePath(List<int[]> points, int[] cursor, List<Integer> commands) {
+        commands.add(command(CMD_MOVE_TO, 1));
+        this.encodeDelta(points.getFirst()[0], points.getFirst()[1], cursor, commands);
+        commands.add(command(CMD_LINE_TO, points.size() - 1));
+        points.stream().skip(1).forEach(point -> this.encodeDelta(point[0], point[1], cursor, commands));
+    }
+
+    /**
+     * Encodes the delta of the provided point from the current cursor
+     * position and moves the cursor to that point.
+     *
+     * @param x the point X coordinate
+     * @param y the point Y coordinate
+     * @param cursor the current cursor position
+     * @param commands the geometry commands to be appended to
+     */
+    private void encodeDelta(int x, int y, int[] cursor, List<Integer> commands) {
+        commands.add(zigZag(x - cursor[0]));
+        commands.add(zigZag(y - cursor[1]));
+        cursor[0] = x;
+        cursor[1] = y;
+    }
+
+    /**
+     * Rounds the provided coordinates to the tile grid, dropping any
+     * consecutive duplicate points, as well as the closing point of rings.
+     *
+     * @param coordinates the coordinates
+     * @param ring whether the coordinates form a closed ring
+     * @return the points on the tile grid
+     */
+    private List<int[]> toGrid(Coordinate[] coordinates, boolean ring) {
+        final List<int[]> points = new ArrayList<>();
+        for(Coordinate coordinate : coordinates) {
+            final int[] point = new int[]{(int) Math.round(coordinate.x), (int) Math.round(coordinate.y)};
+            if(points.isEmpty() || !Arrays.equals(points.getLast(), point)) {
+                points.add(point);
+            }
+        }
+        if(ring && points.size() > 1 && Arrays.equals(points.getFirst(), points.getLast())) {
+            points.removeLast();
+        }
+        return points;
+    }
+
+    /**
+     * Calculates the signed area of the provided ring through the surveyor's
+     * formula. In the tile coordinate space, where the Y axis points down,
+     * clockwise rings have a positive area.
+     *
+     * @param ring the ring points without the closing point
+     * @return the double of the signed ring area
+     */
+    private static long signedArea(List<int[]> ring) {
+        long area = 0;
+        for(int i = 0; i < ring.size(); i++) {
+            final int[] p1 = ring.get(i);
+            final int[] p2 = ring.get((i + 1) % ring.size());
+            area += (long) p1[0] * p2[1] - (long) p2[0] * p1[1];
+        }
+        return area;
+    }
+
+    /**
+     * Converts the provided longitude into the fractional tile column it
+     * falls within.
+     *
+     * @param longitude the longitude
+     * @param n the number of tiles per axis
+     * @return the fractional tile column
+     */
+    public static double longitudeToTile(double longitude, double n) {
+        return (longitude + 180.0) / 360.0 * n;
+    }
+
+    /**
+     * Converts the provided latitude into the fractional tile row it falls
+     * within, clamping it to the web mercator latitude limits.
+     *
+     * @param latitude the latitude
+     * @param n the number of tiles per axis
+     * @return the fractional tile row
+     */
+    public static double latitudeToTile(double latitude, double n) {
+        final double latRad = Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude)));
+        return (1.0 - Math.log(Math.tan(latRad) + 1.0 / Math.cos(latRad)) / Math.PI) / 2.0 * n;
+    }
+
+    /**
+     * Converts the provided tile row into the latitude of its top edge.
+     *
+     * @param y the tile row
+     * @param n the number of tiles per axis
+     * @return the latitude of the tile row top edge
+     */
+    private static double tileToLatitude(int y, double n) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+    }
+
+    /**
+     * Generates a geometry command integer.
+     *
+     * @param id the command ID
+     * @param count the command repetition count
+     * @return the command integer
+     */
+    private static int command(int id, int count) {
+        return (id & 0x7) | (count << 3);
+    }
+
+    /**
+     * ZigZag encodes the provided parameter integer.
+     *
+     * @param n the parameter integer
+     * @return the ZigZag encoded parameter integer
+     */
+    private static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    /**
+     * Writes a protocol buffer field tag.
+     *
+     * @param out the output stream
+     * @param field the field number
+     * @param wireType the field wire type
+     */
+    private static void writeTag(ByteArrayOutputStream out, int field, int wireType) {
+        writeVarint(out, ((long) field << 3) | wireType);
+    }
+
+    /**
+     * Writes a protocol buffer unsigned variable length integer.
+     *
+     * @param out the output stream
+     * @param value the value to be written
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * Writes a protocol buffer length delimited field.
+     *
+     * @param out the output stream
+     * @param field the field number
+     * @param bytes the field bytes
+     */
+    private static void writeBytes(ByteArrayOutputStream out, int field, byte[] bytes) {
+        writeTag(out, field, WIRE_LENGTH_DELIMITED);
+        writeVarint(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    /**
+     * Writes a protocol buffer packed repeated unsigned integer field. Empty
+     * fields are omitted.
+     *
+     * @param out the output stream
+     * @param field the field number
+     * @param values the field values
+     */
+    private static void writePacked(ByteArrayOutputStream out, int field, List<Integer> values) {
+        if(values.isEmpty()) {
+            return;
+        }
+        final ByteArrayOutputStream packed = new ByteArrayOutputStream();
+        values.forEach(value -> writeVarint(packed, Integer.toUnsignedLong(value)));
+        writeBytes(out, field, packed.toByteArray());
+    }
+
+}
@@ -18,6 +18,7 @@ package org.grad.eNav.atonAdminService.utils;
 
 import jakarta.validation.constraints.NotNull;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -87,4 +88,56 @@ public class ZipUtils {
         fis.close();
     }
 
+    /**
+     * This utility function can be used to add a directory entry to a zip
+     * output stream, without requiring the directory to exist on disk.
+     *
+     * @param dirName the name of the zipped directory
+     * @param zipOut the zip output stream
+     * @throws IOException for exception in the IO operations
+     */
+    public static void zipDirectory(@NotNull String dirName,
+                                    @NotNull ZipOutputStream zipOut) throws IOException {
+        // Directory file name should always finish with a slash
+        zipOut.putNextEntry(new ZipEntry(dirName + (dirName.endsWith("/") ? "" : "/")));
+        zipOut.closeEntry();
+    }
+
+    /**
+     * This utility function can be used to directly add some in-memory
+     * content as a file entry to a zip output stream, without requiring it
+     * to be written to a temporary file first.
+     *
+     * @param content the content to be zipped
+     * @param fileName the name of the zipped file
+     * @param zipOut the zip output stream
+     * @throws IOException for exception in the IO operations
+     */
+    public static void zipBytes(byte[] content,
+                                @NotNull String fileName,
+                                @NotNull ZipOutputStream zipOut) throws IOException {
+        zipOut.putNextEntry(new ZipEntry(fileName));
+        zipOut.write(Optional.ofNullable(content).orElseGet(() -> new byte[]{}));
+        zipOut.closeEntry();
+    }
+
+    /**
+     * This utility function can be used to compress some in-memory content
+     * into a zip archive, containing the content as a single file entry, and
+     * return the archive bytes directly.
+     *
+     * @param content the content to be zipped
+     * @param fileName the name of the zipped file
+     * @return the bytes of the generated zip archive
+     * @throws IOException for exception in the IO operations
+     */
+    public static byte[] zipContent(byte[] content,
+                                    @NotNull String fileName) throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bos)) {
+            zipBytes(content, fileName, zos);
+        }
+        return bos.toByteArray();
+    }
+
 }
@@ -0,0 +1,7 @@
+--
+-- Alter the dataset_content table to add the compressed content
+--
+
+ALTER TABLE dataset_content
+ADD COLUMN compressed_content oid,
+ADD COLUMN compressed_content_length numeric(38,0);
@@ -4,6 +4,16 @@
 var atonMessagesTable = undefined;
 var atonMessagesMap = undefined;
 var drawnItems = undefined;
+var atonTilesLayer = undefined;
+var atonClustersLayer = undefined;
+var atonUpdatesClient = undefined;
+var atonUpdatesTimeout = undefined;
+
+/**
+ * The highest map zoom level where the AtoNs are shown as clusters
+ * @type {number}
+ */
+var atonClustersMaxZoom = 8;
 
 /**
  * The AtoN Messages Table Column Definitions
@@ -153,6 +163,35 @@ $(() => {
         attribution: '&copy; <a href="http://osm.org/copyright">OpenStreetMap</a> contributors'
     }).addTo(atonMessagesMap);
 
+    // Add the AtoN vector tiles so that only the visible AtoNs are loaded
+    atonTilesLayer = L.vectorGrid.protobuf('./api/atons/tiles/{z}/{x}/{y}.mvt', {
+        interactive: true,
+        maxNativeZoom: 22,
+        vectorTileLayerStyles: {
+            atons: {
+                radius: 4,
+                weight: 2,
+                color: '#0d6efd',
+                fill: true,
+                fillOpacity: 0.4
+            }
+        }
+    }).on('click', (e) => {
+        L.popup()
+            .setLatLng(e.latlng)
+            .setContent(`${e.layer.properties.idCode} (${e.layer.properties.atonType})`)
+            .openOn(atonMessagesMap);
+    });
+
+    // At the low zoom levels show the server-side AtoN clusters instead
+    atonClustersLayer = L.layerGroup().addTo(atonMessagesMap);
+    atonMessagesMap.on('moveend', loadAtonClusters);
+    loadAtonClusters();
+
+    // Keep the map up to date with the AtoN updates within its viewport
+    atonMessagesMap.on('moveend', registerAtonViewport);
+    connectAtonUpdates();
+
     // FeatureGroup is to store editable layers
     drawnItems = new L.FeatureGroup();
     atonMessagesMap.addLayer(drawnItems);
@@ -196,6 +235,105 @@ function loadAtonGeometry(event, table, button, config) {
     }
 }
 
+/**
+ * This function will switch the AtoN map between the server-side clusters
+ * and the AtoN vector tiles, based on the current zoom level, and it will
+ * reload the clusters of the visible area when required.
+ */
+function loadAtonClusters() {
+    atonClustersLayer.clearLayers();
+    if(atonMessagesMap.getZoom() > atonClustersMaxZoom) {
+        atonMessagesMap.addLayer(atonTilesLayer);
+        return;
+    }
+    atonMessagesMap.removeLayer(atonTilesLayer);
+
+    // Request the clusters of the visible area
+    var bounds = atonMessagesMap.getBounds();
+    var bbox = [
+        Math.max(bounds.getWest(), -180),
+        Math.max(bounds.getSouth(), -90),
+        Math.min(bounds.getEast(), 180),
+        Math.min(bounds.getNorth(), 90)
+    ];
+    $.ajax({
+        url: `./api/atons/clusters?bbox=${bbox.join(',')}&zoom=${atonMessagesMap.getZoom()}`,
+        type: 'GET',
+        contentType: 'application/json; charset=utf-8',
+        success: (clusters) => {
+            clusters.forEach((cluster) => {
+                var types = Object.entries(cluster.types)
+                    .map(([type, count]) => `${type}: ${count}`)
+                    .join('<br/>');
+                L.circleMarker([cluster.latitude, cluster.longitude], {
+                    radius: Math.min(8 + 2 * Math.log2(cluster.count), 30),
+                    weight: 2,
+                    color: '#0d6efd',
+                    fillOpacity: 0.4
+                }).bindTooltip(`<b>${cluster.count} AtoNs</b><br/>${types}`)
+                  .on('click', () => atonMessagesMap.fitBounds([
+                      [cluster.bbox[1], cluster.bbox[0]],
+                      [cluster.bbox[3], cluster.bbox[2]]
+                  ]))
+                  .addTo(atonClustersLayer);
+            });
+        },
+        error: (response, status, more) => {
+            console.error(response);
+        }
+    });
+}
+
+/**
+ * This function connects to the AtoN web-socket and subscribes to the user
+ * destinations of the session, where only the AtoN updates within the
+ * registered map viewport are sent. Any updates or deletions received will
+ * refresh the map.
+ */
+function connectAtonUpdates() {
+    var socket = new SockJS('./aton-admin-service-websocket');
+    atonUpdatesClient = Stomp.over(socket);
+    atonUpdatesClient.debug = null;
+    atonUpdatesClient.connect({}, (frame) => {
+        atonUpdatesClient.subscribe('/user/topic/S201', refreshAtonMap);
+        atonUpdatesClient.subscribe('/user/topic/deletions/S201', refreshAtonMap);
+        registerAtonViewport();
+    });
+}
+
+/**
+ * This function registers the current map viewport with the AtoN
+ * web-socket, so that only the AtoN updates within it are received.
+ */
+function registerAtonViewport() {
+    if(!atonUpdatesClient || !atonUpdatesClient.connected) {
+        return;
+    }
+    var bounds = atonMessagesMap.getBounds();
+    var bbox = [
+        Math.max(bounds.getWest(), -180),
+        Math.max(bounds.getSouth(), -90),
+        Math.min(bounds.getEast(), 180),
+        Math.min(bounds.getNorth(), 90)
+    ];
+    atonUpdatesClient.send('/atons/viewport', {}, JSON.stringify(bbox));
+}
+
+/**
+ * This function refreshes the AtoN map once the AtoN updates stop arriving
+ * for a short while, so that bulk updates only trigger a single reload.
+ */
+function refreshAtonMap() {
+    clearTimeout(atonUpdatesTimeout);
+    atonUpdatesTimeout = setTimeout(() => {
+        if(atonMessagesMap.hasLayer(atonTilesLayer)) {
+            atonTilesLayer.redraw();
+        } else {
+            loadAtonClusters();
+        }
+    }, 1000);
+}
+
 /**
  * This function will load the AtoN content onto the AtoN content dialog text
  * area.
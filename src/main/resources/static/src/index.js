@@ -33,13 +33,13 @@ function connect() {
         stompClient.connect({}, (frame) => {
             setConnected(true);
             stompClient.subscribe('/topic/' + endpoint, (msg) => {
-                showMessage(JSON.parse(msg.body));
+                [].concat(JSON.parse(msg.body)).forEach(showMessage);
             });
         });
     } else {
         setConnected(true);
         stompClient.subscribe('/topic/' + endpoint, (msg) => {
-            showMessage(JSON.parse(msg.body));
+            [].concat(JSON.parse(msg.body)).forEach(showMessage);
         });
     }
 }
@@ -76,7 +76,7 @@ function showMessage(msg) {
     // And add the entry to the table
     $("#incoming").append("<tr class=\"d-flex\">"
         + "<td class=\"col-4\">" + msg.idCode + "</td>"
-        + "<td class=\"col-4\">" + msg.textualDescription + "</td>"
+        + "<td class=\"col-4\">" + msg.name + "</td>"
         + "<td class=\"col-2\">" + msg.dateStart + "</td>"
         + "<td class=\"col-2\">" + msg.dateEnd + "</td>"
         + "</tr>");
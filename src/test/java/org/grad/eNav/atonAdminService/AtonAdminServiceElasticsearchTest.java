@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.grad.eNav.atonAdminService.components.ElasticsearchSpatialSearchProvider;
+import org.grad.eNav.atonAdminService.components.SpatialSearchProvider;
+import org.hibernate.search.backend.elasticsearch.ElasticsearchBackend;
+import org.hibernate.search.mapper.orm.Search;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles({"test", "elasticsearch"})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestingConfiguration.class)
+class AtonAdminServiceElasticsearchTest {
+
+	/**
+	 * The Entity Manager Factory.
+	 */
+	@Autowired
+	EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * The Spatial Search Provider.
+	 */
+	@Autowired
+	SpatialSearchProvider spatialSearchProvider;
+
+	/**
+	 * Test that the context also loads on the Elasticsearch backend, using
+	 * the native geo_shape spatial search provider. Since no cluster is
+	 * available while testing, the search queries themselves can only be
+	 * executed on the embedded Lucene backend of the default test profile.
+	 */
+	@Test
+	void contextLoads() {
+		assertInstanceOf(ElasticsearchSpatialSearchProvider.class, this.spatialSearchProvider);
+		assertNotNull(Search.mapping(this.entityManagerFactory)
+				.backend()
+				.unwrap(ElasticsearchBackend.class));
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AbstractEntityEventListenerTest {
+
+    /**
+     * The Entity Manager Factory mock.
+     */
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+
+    // Test Variables
+    private TestEntityEventListener listener;
+    private AtomicInteger counter;
+
+    /**
+     * A test listener, only interested in the entity insertions.
+     */
+    static class TestEntityEventListener extends AbstractEntityEventListener implements PostInsertEventListener {
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+        }
+
+    }
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.listener = new TestEntityEventListener();
+        this.listener.entityManagerFactory = this.entityManagerFactory;
+        this.counter = new AtomicInteger();
+    }
+
+    /**
+     * Test that the listeners are only registered for the event types they
+     * support.
+     */
+    @Test
+    void testRegisterListeners() {
+        final SessionFactoryImplementor sessionFactory = mock(SessionFactoryImplementor.class);
+        final ServiceRegistryImplementor serviceRegistry = mock(ServiceRegistryImplementor.class);
+        final EventListenerRegistry registry = mock(EventListenerRegistry.class);
+        doReturn(sessionFactory).when(this.entityManagerFactory).unwrap(SessionFactoryImplementor.class);
+        doReturn(serviceRegistry).when(sessionFactory).getServiceRegistry();
+        doReturn(registry).when(serviceRegistry).getService(EventListenerRegistry.class);
+
+        // Perform the component call
+        this.listener.registerListeners();
+
+        // Make sure the listener was only registered for the insertions
+        verify(registry, times(1)).appendListeners(EventType.POST_INSERT, this.listener);
+        verify(registry, never()).appendListeners(eq(EventType.POST_UPDATE), any(PostUpdateEventListener[].class));
+        verify(registry, never()).appendListeners(eq(EventType.POST_DELETE), any(PostDeleteEventListener[].class));
+        assertFalse(this.listener.requiresPostCommitHandling(null));
+    }
+
+    /**
+     * Test that without an active transaction, the tasks are run straight
+     * away, and only once.
+     */
+    @Test
+    void testRunWithoutTransaction() {
+        this.listener.runAfterCommit(this.counter::incrementAndGet);
+        assertEquals(1, this.counter.get());
+
+        this.listener.runNowAndAfterCommit(this.counter::incrementAndGet);
+        assertEquals(2, this.counter.get());
+    }
+
+    /**
+     * Test that within an active transaction, the tasks are deferred until
+     * it has been committed, or run both straight away and after the commit.
+     */
+    @Test
+    void testRunWithinTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.listener.runAfterCommit(this.counter::incrementAndGet);
+            assertEquals(0, this.counter.get());
+
+            this.listener.runNowAndAfterCommit(this.counter::incrementAndGet);
+            assertEquals(1, this.counter.get());
+
+            // Commit the transaction
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(3, this.counter.get());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+}
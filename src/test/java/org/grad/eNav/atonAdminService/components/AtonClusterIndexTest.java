@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.s201.BuoyCardinal;
+import org.grad.eNav.atonAdminService.models.domain.s201.Lighthouse;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigInteger;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AtonClusterIndexTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    AtonClusterIndex atonClusterIndex;
+
+    // Test Variables
+    private GeometryFactory factory;
+    private List<Object[]> rows;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.atonClusterIndex.precision = 2;
+        this.atonClusterIndex.maxLevel = 16;
+
+        // Create the AtoN rows, with their geometries in latitude first order
+        this.factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.rows = List.of(
+                new Object[]{BigInteger.ONE, this.factory.createPoint(new Coordinate(50.0, 10.0)), BuoyCardinal.class},
+                new Object[]{BigInteger.TWO, this.factory.createPoint(new Coordinate(51.0, 11.0)), Lighthouse.class},
+                new Object[]{BigInteger.TEN, this.factory.createPoint(new Coordinate(-30.0, -60.0)), BuoyCardinal.class}
+        );
+        lenient().doReturn(this.rows).when(this.atonClusterIndex).loadAtons();
+    }
+
+    /**
+     * Test that at the low zoom levels the nearby AtoNs are aggregated into
+     * the same cluster, along with their per-type breakdown.
+     */
+    @Test
+    void testGetClusters() {
+        final List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 0)
+                .stream()
+                .sorted(Comparator.comparingLong(AtonClusterDto::getCount).reversed())
+                .toList();
+
+        // Validate the results
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getCount());
+        assertEquals(50.5, result.get(0).getLatitude(), 1e-9);
+        assertEquals(10.5, result.get(0).getLongitude(), 1e-9);
+        assertArrayEquals(new double[]{10.0, 50.0, 11.0, 51.0}, result.get(0).getBbox(), 1e-9);
+        assertEquals(1L, result.get(0).getTypes().get("Cardinal Buoy"));
+        assertEquals(1L, result.get(0).getTypes().get("Lighthouse"));
+        assertEquals(1, result.get(1).getCount());
+        assertEquals(1L, result.get(1).getTypes().get("Cardinal Buoy"));
+    }
+
+    /**
+     * Test that at the higher zoom levels the AtoNs are split into separate
+     * clusters.
+     */
+    @Test
+    void testGetClustersHighZoom() {
+        final List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 10);
+
+        // Validate the results
+        assertEquals(3, result.size());
+        assertTrue(result.stream().allMatch(c -> c.getCount() == 1));
+    }
+
+    /**
+     * Test that only the clusters within the requested bounds are returned.
+     */
+    @Test
+    void testGetClustersWithinBounds() {
+        final List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(45, 55, 5, 15), 0);
+
+        // Validate the results
+        assertEquals(1, result.size());
+        assertEquals(2, result.getFirst().getCount());
+    }
+
+    /**
+     * Test that the cluster grid is only loaded once, and that modifications
+     * of other entities are ignored.
+     */
+    @Test
+    void testUpdateIgnoresOtherEntities() {
+        this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 0);
+        this.atonClusterIndex.update(new S201Dataset(), false);
+        this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 0);
+
+        // Validate the grid was only loaded once
+        verify(this.atonClusterIndex, times(1)).loadAtons();
+        verify(this.atonClusterIndex, never()).move(any(), any());
+    }
+
+    /**
+     * Test that inserted and moved AtoNs are applied to the cluster grid
+     * incrementally, without reloading it from the database.
+     */
+    @Test
+    void testUpdateInsertAndMove() {
+        this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 0);
+
+        // Insert a new AtoN next to the first cluster
+        final Lighthouse lighthouse = new Lighthouse();
+        lighthouse.setId(BigInteger.valueOf(11));
+        lighthouse.setGeometry(this.factory.createPoint(new Coordinate(52.0, 12.0)));
+        this.atonClusterIndex.update(lighthouse, false);
+
+        // Validate the new AtoN was added in the first cluster
+        List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(45, 55, 5, 15), 0);
+        assertEquals(1, result.size());
+        assertEquals(3, result.getFirst().getCount());
+        assertEquals(2L, result.getFirst().getTypes().get("Lighthouse"));
+        assertArrayEquals(new double[]{10.0, 50.0, 12.0, 52.0}, result.getFirst().getBbox(), 1e-9);
+
+        // Move the same AtoN next to the second cluster
+        lighthouse.setGeometry(this.factory.createPoint(new Coordinate(-31.0, -61.0)));
+        this.atonClusterIndex.update(lighthouse, false);
+
+        // Validate the AtoN was moved between the clusters
+        result = this.atonClusterIndex.getClusters(new Envelope(45, 55, 5, 15), 0);
+        assertEquals(1, result.size());
+        assertEquals(2, result.getFirst().getCount());
+        assertEquals(1L, result.getFirst().getTypes().get("Lighthouse"));
+        assertArrayEquals(new double[]{10.0, 50.0, 11.0, 51.0}, result.getFirst().getBbox(), 1e-9);
+        result = this.atonClusterIndex.getClusters(new Envelope(-35, -25, -65, -55), 0);
+        assertEquals(1, result.size());
+        assertEquals(2, result.getFirst().getCount());
+        assertArrayEquals(new double[]{-61.0, -31.0, -60.0, -30.0}, result.getFirst().getBbox(), 1e-9);
+
+        // Validate the grid was only loaded once
+        verify(this.atonClusterIndex, times(1)).loadAtons();
+    }
+
+    /**
+     * Test that deleted AtoNs are removed from the cluster grid, shrinking
+     * the cluster counts and bounding boxes, and dropping the empty clusters.
+     */
+    @Test
+    void testUpdateDelete() {
+        this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), 0);
+
+        // Delete the lighthouse and the isolated cardinal buoy
+        final Lighthouse lighthouse = new Lighthouse();
+        lighthouse.setId(BigInteger.TWO);
+        this.atonClusterIndex.update(lighthouse, true);
+        final BuoyCardinal buoyCardinal = new BuoyCardinal();
+        buoyCardinal.setId(BigInteger.TEN);
+        this.atonClusterIndex.update(buoyCardinal, true);
+
+        // Validate the remaining cluster at both the low and high zoom levels
+        for(int zoom : new int[]{0, 14}) {
+            final List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(-90, 90, -180, 180), zoom);
+            assertEquals(1, result.size());
+            assertEquals(1, result.getFirst().getCount());
+            assertEquals(50.0, result.getFirst().getLatitude(), 1e-9);
+            assertEquals(10.0, result.getFirst().getLongitude(), 1e-9);
+            assertArrayEquals(new double[]{10.0, 50.0, 10.0, 50.0}, result.getFirst().getBbox(), 1e-9);
+            assertNull(result.getFirst().getTypes().get("Lighthouse"));
+        }
+
+        // Validate the grid was only loaded once
+        verify(this.atonClusterIndex, times(1)).loadAtons();
+    }
+
+    /**
+     * Test that any modifications before the grid is first built are simply
+     * ignored, since the grid will be loaded from the database anyway.
+     */
+    @Test
+    void testUpdateBeforeBuild() {
+        final Lighthouse lighthouse = new Lighthouse();
+        lighthouse.setId(BigInteger.valueOf(11));
+        lighthouse.setGeometry(this.factory.createPoint(new Coordinate(52.0, 12.0)));
+        this.atonClusterIndex.update(lighthouse, false);
+
+        // Validate only the loaded AtoNs are included
+        final List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(45, 55, 5, 15), 0);
+        assertEquals(1, result.size());
+        assertEquals(2, result.getFirst().getCount());
+    }
+
+    /**
+     * Test that the modifications committed while the grid is being built
+     * are not blocked by it, and that they are applied once it is built.
+     */
+    @Test
+    void testUpdateWhileBuilding() {
+        final Lighthouse lighthouse = new Lighthouse();
+        lighthouse.setId(BigInteger.valueOf(11));
+        lighthouse.setGeometry(this.factory.createPoint(new Coordinate(52.0, 12.0)));
+        final BuoyCardinal buoyCardinal = new BuoyCardinal();
+        buoyCardinal.setId(BigInteger.TEN);
+        doAnswer(inv -> {
+            final Thread thread = new Thread(() -> {
+                this.atonClusterIndex.update(lighthouse, false);
+                this.atonClusterIndex.update(buoyCardinal, true);
+            });
+            thread.start();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+            return this.rows;
+        }).when(this.atonClusterIndex).loadAtons();
+
+        // Validate the modifications were applied on the built grid
+        List<AtonClusterDto> result = this.atonClusterIndex.getClusters(new Envelope(45, 55, 5, 15), 0);
+        assertEquals(1, result.size());
+        assertEquals(3, result.getFirst().getCount());
+        result = this.atonClusterIndex.getClusters(new Envelope(-35, -25, -65, -55), 0);
+        assertTrue(result.isEmpty());
+        verify(this.atonClusterIndex, times(1)).loadAtons();
+    }
+
+    /**
+     * Test that unknown AtoN types are reported as such.
+     */
+    @Test
+    void testGetAtonType() {
+        assertEquals("Lighthouse", this.atonClusterIndex.getAtonType(Lighthouse.class));
+        assertEquals("Unknown", this.atonClusterIndex.getAtonType("Lighthouse"));
+        assertEquals("Unknown", this.atonClusterIndex.getAtonType(null));
+    }
+
+}
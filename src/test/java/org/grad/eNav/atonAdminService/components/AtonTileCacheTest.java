@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.BeaconCardinal;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+class AtonTileCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    AtonTileCache atonTileCache;
+
+    // Test Variables
+    private GeometryFactory factory;
+    private AidsToNavigation aidsToNavigation;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.atonTileCache.enabled = true;
+        this.atonTileCache.maxEntries = 100;
+        this.atonTileCache.extent = 4096;
+        this.atonTileCache.buffer = 64;
+
+        // Create an AtoN in the north-east quadrant, i.e. latitude first
+        this.factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.aidsToNavigation = new BeaconCardinal();
+        this.aidsToNavigation.setId(BigInteger.ONE);
+        this.aidsToNavigation.setIdCode("ID001");
+        this.aidsToNavigation.setGeometry(this.factory.createPoint(new Coordinate(50.0, 10.0)));
+
+        // Populate the cache with the top level and the first zoom tiles
+        this.atonTileCache.put(0, 0, 0, new byte[]{0});
+        this.atonTileCache.put(1, 0, 0, new byte[]{1});
+        this.atonTileCache.put(1, 1, 0, new byte[]{2});
+        this.atonTileCache.put(1, 0, 1, new byte[]{3});
+        this.atonTileCache.put(1, 1, 1, new byte[]{4});
+    }
+
+    /**
+     * Test that the cached tiles can be retrieved by their coordinates.
+     */
+    @Test
+    void testGet() {
+        assertArrayEquals(new byte[]{2}, this.atonTileCache.get(1, 1, 0).orElse(null));
+        assertTrue(this.atonTileCache.get(2, 0, 0).isEmpty());
+        assertEquals(5, this.atonTileCache.size());
+    }
+
+    /**
+     * Test that no tiles are cached when the caching is disabled.
+     */
+    @Test
+    void testGetDisabled() {
+        this.atonTileCache.enabled = false;
+
+        // Validate the results
+        assertTrue(this.atonTileCache.get(1, 1, 0).isEmpty());
+    }
+
+    /**
+     * Test that a tile generated while any tiles were evicted is not cached,
+     * since it may already be stale.
+     */
+    @Test
+    void testPutAfterEviction() {
+        final long generation = this.atonTileCache.getGeneration();
+
+        // Evict an unrelated area while the tile is being generated
+        this.atonTileCache.invalidate(this.factory.createPoint(new Coordinate(-50.0, -10.0)));
+        this.atonTileCache.put(2, 0, 0, new byte[]{5}, generation);
+
+        // Validate the tile was not cached
+        assertTrue(this.atonTileCache.get(2, 0, 0).isEmpty());
+
+        // But it is cached with the current generation
+        this.atonTileCache.put(2, 0, 0, new byte[]{5}, this.atonTileCache.getGeneration());
+        assertArrayEquals(new byte[]{5}, this.atonTileCache.get(2, 0, 0).orElse(null));
+    }
+
+    /**
+     * Test that the cached tiles expire after their time-to-live.
+     */
+    @Test
+    void testGetExpired() {
+        this.atonTileCache.ttl = 1;
+        this.atonTileCache.put(2, 0, 0, new byte[]{5});
+        this.atonTileCache.ttl = 60000;
+        this.atonTileCache.put(2, 1, 0, new byte[]{6});
+
+        // Wait for the first tile to expire
+        final long start = System.currentTimeMillis();
+        while(System.currentTimeMillis() - start < 5) {
+            Thread.onSpinWait();
+        }
+
+        // Validate the results
+        assertTrue(this.atonTileCache.get(2, 0, 0).isEmpty());
+        assertArrayEquals(new byte[]{6}, this.atonTileCache.get(2, 1, 0).orElse(null));
+        assertEquals(6, this.atonTileCache.size());
+    }
+
+    /**
+     * Test that the least recently used tiles are evicted once the maximum
+     * number of entries is reached.
+     */
+    @Test
+    void testPutEvictsLeastRecentlyUsed() {
+        this.atonTileCache.maxEntries = 5;
+
+        // Access the top level tile and add a new one
+        this.atonTileCache.get(0, 0, 0);
+        this.atonTileCache.put(2, 0, 0, new byte[]{5});
+
+        // Validate the results
+        assertEquals(5, this.atonTileCache.size());
+        assertTrue(this.atonTileCache.get(0, 0, 0).isPresent());
+        assertTrue(this.atonTileCache.get(1, 0, 0).isEmpty());
+        assertTrue(this.atonTileCache.get(2, 0, 0).isPresent());
+    }
+
+    /**
+     * Test that the buffered tile envelope follows the S-100 axis order and
+     * includes the tile buffer.
+     */
+    @Test
+    void testGetBufferedTileEnvelope() {
+        final Envelope envelope = this.atonTileCache.getBufferedTileEnvelope(1, 1, 0);
+
+        // Validate the results
+        assertTrue(envelope.getMinX() < 0.0);
+        assertTrue(envelope.getMaxX() > 85.0);
+        assertEquals(-2.8125, envelope.getMinY(), 1e-9);
+        assertEquals(182.8125, envelope.getMaxY(), 1e-9);
+    }
+
+    /**
+     * Test that only the tiles containing the modified geometry are
+     * invalidated.
+     */
+    @Test
+    void testInvalidate() {
+        this.atonTileCache.invalidate(this.aidsToNavigation.getGeometry());
+
+        // Validate the results
+        assertTrue(this.atonTileCache.get(0, 0, 0).isEmpty());
+        assertTrue(this.atonTileCache.get(1, 1, 0).isEmpty());
+        assertTrue(this.atonTileCache.get(1, 0, 0).isPresent());
+        assertTrue(this.atonTileCache.get(1, 0, 1).isPresent());
+        assertTrue(this.atonTileCache.get(1, 1, 1).isPresent());
+    }
+
+    /**
+     * Test that at the higher zoom levels only the tiles around the modified
+     * geometry are invalidated, while the rest of the level is kept.
+     */
+    @Test
+    void testInvalidateHighZoom() {
+        this.atonTileCache.put(10, 540, 347, new byte[]{5});
+        this.atonTileCache.put(10, 541, 347, new byte[]{6});
+        this.atonTileCache.put(10, 0, 0, new byte[]{7});
+
+        // Perform the component call
+        this.atonTileCache.invalidate(this.aidsToNavigation.getGeometry());
+
+        // Validate the results
+        assertTrue(this.atonTileCache.get(10, 540, 347).isEmpty());
+        assertTrue(this.atonTileCache.get(10, 541, 347).isPresent());
+        assertTrue(this.atonTileCache.get(10, 0, 0).isPresent());
+        assertEquals(5, this.atonTileCache.size());
+    }
+
+    /**
+     * Test that within a transaction the tiles are only invalidated once it
+     * has been committed.
+     */
+    @Test
+    void testInvalidateAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.atonTileCache.invalidate(this.aidsToNavigation.getGeometry());
+
+            // Validate nothing was evicted before the commit
+            assertEquals(5, this.atonTileCache.size());
+
+            // Commit the transaction and validate the eviction
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(3, this.atonTileCache.size());
+            assertTrue(this.atonTileCache.get(1, 1, 0).isEmpty());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * Test that an AtoN deletion invalidates the tiles of its geometry.
+     */
+    @Test
+    void testOnPostDelete() {
+        final PostDeleteEvent event = mock(PostDeleteEvent.class);
+        doReturn(this.aidsToNavigation).when(event).getEntity();
+
+        // Perform the component call
+        this.atonTileCache.onPostDelete(event);
+
+        // Validate the results
+        assertEquals(3, this.atonTileCache.size());
+        assertTrue(this.atonTileCache.get(1, 1, 0).isEmpty());
+    }
+
+    /**
+     * Test that an AtoN update invalidates the tiles of both its previous
+     * and its current geometry.
+     */
+    @Test
+    void testOnPostUpdate() {
+        final EntityPersister persister = mock(EntityPersister.class);
+        doReturn(new String[]{"idCode", "geometry"}).when(persister).getPropertyNames();
+        final PostUpdateEvent event = mock(PostUpdateEvent.class);
+        doReturn(this.aidsToNavigation).when(event).getEntity();
+        doReturn(persister).when(event).getPersister();
+        doReturn(new Object[]{"ID001", this.factory.createPoint(new Coordinate(-50.0, -10.0))}).when(event).getOldState();
+
+        // Perform the component call
+        this.atonTileCache.onPostUpdate(event);
+
+        // Validate the results
+        assertTrue(this.atonTileCache.get(1, 1, 0).isEmpty());
+        assertTrue(this.atonTileCache.get(1, 0, 1).isEmpty());
+        assertTrue(this.atonTileCache.get(1, 0, 0).isPresent());
+        assertTrue(this.atonTileCache.get(1, 1, 1).isPresent());
+    }
+
+}
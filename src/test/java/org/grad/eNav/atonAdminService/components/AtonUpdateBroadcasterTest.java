@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.BeaconCardinal;
+import org.grad.eNav.atonAdminService.models.domain.s201.FeatureName;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonUpdateDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AtonUpdateBroadcasterTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    AtonUpdateBroadcaster atonUpdateBroadcaster;
+
+    /**
+     * The Web Socket mock.
+     */
+    @Mock
+    SimpMessagingTemplate webSocket;
+
+    // Test Variables
+    private GeometryFactory factory;
+    private List<AidsToNavigation> aidsToNavigationList;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        // Create a temp geometry factory to get a test geometries
+        this.factory = new GeometryFactory(new PrecisionModel(), 4326);
+
+        // Create a list of AtoNs spread along the longitudes
+        this.aidsToNavigationList = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            this.aidsToNavigationList.add(this.createAton(i, "ID00" + i, i * 10.0));
+        }
+
+        // Also set the web-socket broadcaster properties
+        this.atonUpdateBroadcaster.prefix = "topic";
+        this.atonUpdateBroadcaster.maxBatchSize = 4;
+    }
+
+    /**
+     * Test that the AtoNs are converted into compact AtoN update DTOs.
+     */
+    @Test
+    void testToUpdate() {
+        final AtonUpdateDto update = this.atonUpdateBroadcaster.toUpdate(this.aidsToNavigationList.getFirst());
+
+        // Make sure the update contains the compact AtoN information
+        assertEquals(BigInteger.ZERO, update.getId());
+        assertEquals("ID000", update.getIdCode());
+        assertEquals("AtoN No0", update.getName());
+        assertEquals("Cardinal Beacon", update.getAtonType());
+        assertEquals(this.aidsToNavigationList.getFirst().getGeometry(), update.getGeometry());
+        assertEquals(LocalDate.of(2024, 1, 1), update.getDateStart());
+        assertEquals(LocalDate.of(2024, 1, 31), update.getDateEnd());
+    }
+
+    /**
+     * Test that multiple updates of the same AtoN within a broadcast window
+     * are coalesced, so that only the latest one is sent.
+     */
+    @Test
+    void testEnqueueCoalesces() {
+        final AidsToNavigation first = this.createAton(1, "ID001", 0.0);
+        final AidsToNavigation second = this.createAton(2, "ID001", 1.0);
+        this.atonUpdateBroadcaster.enqueue(first, false);
+        this.atonUpdateBroadcaster.enqueue(second, false);
+
+        // Broadcast the pending updates
+        this.atonUpdateBroadcaster.flush();
+
+        // Make sure only the latest update was sent in a single frame
+        final ArgumentCaptor<List<AtonUpdateDto>> batchArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.webSocket, times(1)).convertAndSend(eq("/topic/S201"), batchArgument.capture());
+        assertEquals(1, batchArgument.getValue().size());
+        assertTrue(this.atonUpdateBroadcaster.pending.isEmpty());
+
+        // And that it contains the latest AtoN information
+        final AtonUpdateDto update = batchArgument.getValue().getFirst();
+        assertEquals(BigInteger.TWO, update.getId());
+        assertEquals("ID001", update.getIdCode());
+        assertEquals("AtoN No2", update.getName());
+        assertEquals("Cardinal Beacon", update.getAtonType());
+        assertEquals(second.getGeometry(), update.getGeometry());
+        assertEquals(second.getDateStart(), update.getDateStart());
+        assertEquals(second.getDateEnd(), update.getDateEnd());
+    }
+
+    /**
+     * Test that an AtoN deleted within the same broadcast window it was
+     * updated in is only sent as a deletion.
+     */
+    @Test
+    void testEnqueueDeletion() {
+        this.atonUpdateBroadcaster.enqueue(this.aidsToNavigationList.getFirst(), false);
+        this.atonUpdateBroadcaster.enqueue(this.aidsToNavigationList.getFirst(), true);
+
+        // Broadcast the pending updates
+        this.atonUpdateBroadcaster.flush();
+
+        // Make sure only the deletion was sent
+        final ArgumentCaptor<List<AtonUpdateDto>> batchArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.webSocket, never()).convertAndSend(eq("/topic/S201"), any(Object.class));
+        verify(this.webSocket, times(1)).convertAndSend(eq("/topic/deletions/S201"), batchArgument.capture());
+        assertEquals(1, batchArgument.getValue().size());
+        assertEquals(BigInteger.ZERO, batchArgument.getValue().getFirst().getId());
+        assertEquals("ID000", batchArgument.getValue().getFirst().getIdCode());
+    }
+
+    /**
+     * Test that the pending updates are sent in batched frames of up to the
+     * maximum batch size, and that nothing is sent without any updates.
+     */
+    @Test
+    void testFlushBatches() {
+        this.aidsToNavigationList.forEach(aton -> this.atonUpdateBroadcaster.enqueue(aton, false));
+
+        // Broadcast the pending updates twice
+        this.atonUpdateBroadcaster.flush();
+        this.atonUpdateBroadcaster.flush();
+
+        // Make sure all updates were sent in three frames
+        final ArgumentCaptor<List<AtonUpdateDto>> batchArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.webSocket, times(3)).convertAndSend(eq("/topic/S201"), batchArgument.capture());
+        assertEquals(List.of(4, 4, 2), batchArgument.getAllValues().stream().map(List::size).toList());
+    }
+
+    /**
+     * Test that the sessions which have registered a viewport receive only
+     * the updates within it on their user destinations, but all deletions.
+     */
+    @Test
+    void testFlushViewport() {
+        this.atonUpdateBroadcaster.setViewport("session", new double[]{15.0, -10.0, 45.0, 10.0});
+        this.aidsToNavigationList.forEach(aton -> this.atonUpdateBroadcaster.enqueue(aton, false));
+        this.atonUpdateBroadcaster.enqueue(this.createAton(100, "ID100", 90.0), true);
+
+        // Broadcast the pending updates
+        this.atonUpdateBroadcaster.flush();
+
+        // Make sure the session only received the updates in its viewport
+        final ArgumentCaptor<List<AtonUpdateDto>> batchArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.webSocket, times(1)).convertAndSendToUser(eq("session"), eq("/topic/S201"), batchArgument.capture(), any(Map.class));
+        assertEquals(List.of("ID002", "ID003", "ID004"), batchArgument.getValue().stream().map(AtonUpdateDto::getIdCode).sorted().toList());
+        verify(this.webSocket, times(1)).convertAndSendToUser(eq("session"), eq("/topic/deletions/S201"), any(Object.class), any(Map.class));
+    }
+
+    /**
+     * Test that the viewports crossing the antimeridian are split, that
+     * invalid viewports are cleared, and that the viewports are removed
+     * once the sessions disconnect.
+     */
+    @Test
+    void testSetViewport() {
+        this.atonUpdateBroadcaster.setViewport("session", new double[]{170.0, -10.0, -170.0, 10.0});
+        assertEquals(2, this.atonUpdateBroadcaster.viewports.get("session").size());
+        assertTrue(this.atonUpdateBroadcaster.isInViewport(this.atonUpdateBroadcaster.toUpdate(this.createAton(1, "ID001", 175.0)), this.atonUpdateBroadcaster.viewports.get("session")));
+        assertTrue(this.atonUpdateBroadcaster.isInViewport(this.atonUpdateBroadcaster.toUpdate(this.createAton(2, "ID002", -175.0)), this.atonUpdateBroadcaster.viewports.get("session")));
+        assertFalse(this.atonUpdateBroadcaster.isInViewport(this.atonUpdateBroadcaster.toUpdate(this.createAton(3, "ID003", 0.0)), this.atonUpdateBroadcaster.viewports.get("session")));
+
+        // Clear the viewport with an invalid bounding box
+        this.atonUpdateBroadcaster.setViewport("session", new double[]{});
+        assertFalse(this.atonUpdateBroadcaster.viewports.containsKey("session"));
+
+        // And remove it when the session disconnects
+        this.atonUpdateBroadcaster.setViewport("session", new double[]{0.0, 0.0, 10.0, 10.0});
+        final SessionDisconnectEvent event = mock(SessionDisconnectEvent.class);
+        doReturn("session").when(event).getSessionId();
+        this.atonUpdateBroadcaster.onSessionDisconnect(event);
+        assertTrue(this.atonUpdateBroadcaster.viewports.isEmpty());
+        verify(this.webSocket, never()).convertAndSendToUser(anyString(), anyString(), any(Object.class), any(Map.class));
+    }
+
+    /**
+     * Creates a test AtoN at the provided longitude on the equator.
+     *
+     * @param id the AtoN ID
+     * @param idCode the AtoN ID code
+     * @param longitude the AtoN longitude
+     * @return the test AtoN
+     */
+    private AidsToNavigation createAton(int id, String idCode, double longitude) {
+        final AidsToNavigation aidsToNavigation = new BeaconCardinal();
+        aidsToNavigation.setId(BigInteger.valueOf(id));
+        aidsToNavigation.setIdCode(idCode);
+        aidsToNavigation.setGeometry(this.factory.createPoint(new Coordinate(0.0, longitude)));
+        final FeatureName featureName = new FeatureName();
+        featureName.setName("AtoN No" + id);
+        aidsToNavigation.setFeatureNames(Collections.singleton(featureName));
+        aidsToNavigation.setDateStart(LocalDate.of(2024, 1, 1));
+        aidsToNavigation.setDateEnd(LocalDate.of(2024, 1, 31));
+        return aidsToNavigation;
+    }
+
+}
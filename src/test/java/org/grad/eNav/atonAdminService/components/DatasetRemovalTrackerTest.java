@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatasetRemovalTrackerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    DatasetRemovalTracker datasetRemovalTracker;
+
+    // Test Variables
+    private Instant past;
+    private S201Dataset dataset;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.past = Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(3600);
+        this.datasetRemovalTracker.lastRemovalTime = this.past;
+
+        // Create a cancelled dataset
+        this.dataset = new S201Dataset();
+        this.dataset.setCancelled(Boolean.TRUE);
+    }
+
+    /**
+     * Test that the initial removal time is the creation time of the
+     * component in whole seconds, and never in the future.
+     */
+    @Test
+    void testInitialRemovalTime() {
+        final Instant removalTime = new DatasetRemovalTracker().getLastRemovalTime();
+        assertFalse(removalTime.isAfter(Instant.now()));
+        assertEquals(removalTime, removalTime.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Test that the removal time only advances for the datasets.
+     */
+    @Test
+    void testTrackIgnoresOtherEntities() {
+        // Modify an unrelated entity
+        this.datasetRemovalTracker.track(new DatasetContentLog());
+        assertEquals(this.past, this.datasetRemovalTracker.getLastRemovalTime());
+
+        // Now remove a dataset
+        this.datasetRemovalTracker.track(this.dataset);
+        assertTrue(this.datasetRemovalTracker.getLastRemovalTime().isAfter(this.past));
+    }
+
+    /**
+     * Test that the removal time is advanced to the current second, even for
+     * multiple removals, and is never moved past the current time.
+     */
+    @Test
+    void testAdvance() {
+        for(int i = 0; i < 5; i++) {
+            this.datasetRemovalTracker.advance();
+        }
+
+        // Validate the removal time
+        final Instant removalTime = this.datasetRemovalTracker.getLastRemovalTime();
+        assertFalse(removalTime.isAfter(Instant.now()));
+        assertFalse(removalTime.isBefore(Instant.now().truncatedTo(ChronoUnit.SECONDS).minusSeconds(1)));
+        assertEquals(removalTime, removalTime.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    /**
+     * Test that the removal time is never moved backwards.
+     */
+    @Test
+    void testAdvanceNeverBackwards() {
+        final Instant future = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(3600);
+        this.datasetRemovalTracker.lastRemovalTime = future;
+
+        // Perform the component call
+        this.datasetRemovalTracker.advance();
+
+        // Validate the removal time
+        assertEquals(future, this.datasetRemovalTracker.getLastRemovalTime());
+    }
+
+    /**
+     * Test that only the updates cancelling a dataset are tracked as
+     * removals.
+     */
+    @Test
+    void testOnPostUpdate() {
+        final EntityPersister persister = mock(EntityPersister.class);
+        doReturn(new String[]{"uuid", "cancelled"}).when(persister).getPropertyNames();
+        final PostUpdateEvent event = mock(PostUpdateEvent.class);
+        doReturn(this.dataset).when(event).getEntity();
+        doReturn(persister).when(event).getPersister();
+
+        // An update of an already cancelled dataset is not a removal
+        doReturn(new Object[]{null, Boolean.TRUE}).when(event).getOldState();
+        this.datasetRemovalTracker.onPostUpdate(event);
+        assertEquals(this.past, this.datasetRemovalTracker.getLastRemovalTime());
+
+        // And neither is an update of an active dataset
+        this.dataset.setCancelled(Boolean.FALSE);
+        this.datasetRemovalTracker.onPostUpdate(event);
+        assertEquals(this.past, this.datasetRemovalTracker.getLastRemovalTime());
+
+        // But the cancellation of an active one is
+        this.dataset.setCancelled(Boolean.TRUE);
+        doReturn(new Object[]{null, Boolean.FALSE}).when(event).getOldState();
+        this.datasetRemovalTracker.onPostUpdate(event);
+        assertTrue(this.datasetRemovalTracker.getLastRemovalTime().isAfter(this.past));
+    }
+
+    /**
+     * Test that the dataset deletions are tracked as removals.
+     */
+    @Test
+    void testOnPostDelete() {
+        final PostDeleteEvent event = mock(PostDeleteEvent.class);
+        doReturn(new S201Dataset()).when(event).getEntity();
+
+        // Perform the component call
+        this.datasetRemovalTracker.onPostDelete(event);
+
+        // Validate the removal time
+        assertTrue(this.datasetRemovalTracker.getLastRemovalTime().isAfter(this.past));
+    }
+
+    /**
+     * Test that when a transaction is active, the removal time is only
+     * advanced once the transaction has been committed.
+     */
+    @Test
+    void testTrackAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            this.datasetRemovalTracker.track(this.dataset);
+
+            // Validate nothing changed before the commit
+            assertEquals(this.past, this.datasetRemovalTracker.getLastRemovalTime());
+
+            // Commit the transaction and validate the removal time
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertTrue(this.datasetRemovalTracker.getLastRemovalTime().isAfter(this.past));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.grad.eNav.atonAdminService.models.dtos.datatables.DtPagingRequest;
+import org.grad.eNav.atonAdminService.models.dtos.datatables.DtSearch;
+import org.hibernate.search.engine.search.query.SearchQuery;
+import org.hibernate.search.engine.search.query.SearchResult;
+import org.hibernate.search.engine.search.query.SearchResultTotal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.Page;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DatatablesCountCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    DatatablesCountCache datatablesCountCache;
+
+    // Test Variables
+    private DtPagingRequest dtPagingRequest;
+    private SearchQuery<S201Dataset> searchQuery;
+    private SearchResult<S201Dataset> searchResult;
+    private SearchResultTotal searchResultTotal;
+    private List<S201Dataset> hits;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.datatablesCountCache.enabled = true;
+        this.datatablesCountCache.cacheManager = new ConcurrentMapCacheManager("datatablesCountCache");
+
+        // Create a paging request for the second page
+        DtSearch dtSearch = new DtSearch();
+        dtSearch.setValue("  Search   Term ");
+        this.dtPagingRequest = new DtPagingRequest();
+        this.dtPagingRequest.setStart(10);
+        this.dtPagingRequest.setLength(10);
+        this.dtPagingRequest.setOrder(Collections.emptyList());
+        this.dtPagingRequest.setColumns(Collections.emptyList());
+        this.dtPagingRequest.setSearch(dtSearch);
+
+        // Mock the search query
+        this.hits = Collections.singletonList(new S201Dataset());
+        this.searchQuery = mock(SearchQuery.class);
+        this.searchResult = mock(SearchResult.class);
+        this.searchResultTotal = mock(SearchResultTotal.class);
+    }
+
+    /**
+     * Test that the first request calculates the total hit count, while the
+     * next requests of the same search only fetch the page hits.
+     */
+    @Test
+    void testFetchPageCachesCount() {
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+        doReturn(this.hits).when(this.searchQuery).fetchHits(any(), any());
+
+        // Perform the component calls
+        Page<S201Dataset> first = this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        Page<S201Dataset> second = this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate the results
+        assertEquals(42L, first.getTotalElements());
+        assertEquals(42L, second.getTotalElements());
+        assertEquals(this.hits, second.getContent());
+        verify(this.searchQuery, times(1)).fetch(10, 10);
+        verify(this.searchQuery, times(1)).fetchHits(10, 10);
+    }
+
+    /**
+     * Test that searches differing only in letter case or whitespace do not
+     * share the same cached count, since the wildcard searches are sensitive
+     * to both.
+     */
+    @Test
+    void testFetchPageDifferentSearchText() {
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+
+        // Perform the component calls
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        this.dtPagingRequest.getSearch().setValue("search term");
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate that the count was calculated twice
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, never()).fetchHits(any(), any());
+    }
+
+    /**
+     * Test that the counts are not cached when no cache is available.
+     */
+    @Test
+    void testFetchPageNoCache() {
+        this.datatablesCountCache.cacheManager = null;
+
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+
+        // Perform the component calls
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate that the count was calculated twice
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, never()).fetchHits(any(), any());
+    }
+
+    /**
+     * Test that different additional key parts do not share the same
+     * cached count.
+     */
+    @Test
+    void testFetchPageDifferentKeyParts() {
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+
+        // Perform the component calls
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest, Boolean.TRUE);
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest, Boolean.FALSE);
+
+        // Validate that the count was calculated twice
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, never()).fetchHits(any(), any());
+    }
+
+    /**
+     * Test that the cached counts are invalidated when an entity of the cached
+     * class is modified, but not when entities of other classes are.
+     */
+    @Test
+    void testInvalidate() {
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+        doReturn(this.hits).when(this.searchQuery).fetchHits(any(), any());
+
+        // Cache the count and modify an unrelated entity
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        this.datatablesCountCache.invalidate(new DatasetContentLog());
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Now modify a relevant entity
+        this.datatablesCountCache.invalidate(new S201Dataset());
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate that the count was calculated twice
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, times(1)).fetchHits(10, 10);
+    }
+
+    /**
+     * Test that when the caching is disabled, the total hit count is always
+     * calculated.
+     */
+    @Test
+    void testFetchPageDisabled() {
+        this.datatablesCountCache.enabled = false;
+
+        doReturn(42L).when(this.searchResultTotal).hitCount();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+
+        // Perform the component calls
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate that the count was calculated twice
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, never()).fetchHits(any(), any());
+    }
+
+    /**
+     * Test that inexact totals, returned when an approximate threshold is
+     * configured, are not cached and only guarantee the next page.
+     */
+    @Test
+    void testFetchPageApproximateTotal() {
+        this.datatablesCountCache.totalHitCountThreshold = 15;
+
+        doReturn(false).when(this.searchResultTotal).isHitCountExact();
+        doReturn(15L).when(this.searchResultTotal).hitCountLowerBound();
+        doReturn(this.searchResultTotal).when(this.searchResult).total();
+        doReturn(this.hits).when(this.searchResult).hits();
+        doReturn(this.searchResult).when(this.searchQuery).fetch(any(), any());
+
+        // Perform the component calls
+        Page<S201Dataset> first = this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+        this.datatablesCountCache.fetchPage(S201Dataset.class, this.searchQuery, this.dtPagingRequest);
+
+        // Validate the results
+        assertEquals(21L, first.getTotalElements());
+        assertEquals(15, this.datatablesCountCache.getTotalHitCountThreshold());
+        verify(this.searchQuery, times(2)).fetch(10, 10);
+        verify(this.searchQuery, never()).fetchHits(any(), any());
+    }
+
+    /**
+     * Test that without an approximate threshold the search queries request
+     * exact totals.
+     */
+    @Test
+    void testGetTotalHitCountThresholdExact() {
+        assertEquals(Integer.MAX_VALUE, this.datatablesCountCache.getTotalHitCountThreshold());
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.hibernate.search.engine.search.predicate.dsl.IdPredicateMatchingStep;
+import org.hibernate.search.engine.search.predicate.dsl.MatchAllPredicateOptionsStep;
+import org.hibernate.search.engine.search.predicate.dsl.SearchPredicateFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddedSpatialSearchProviderTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    EmbeddedSpatialSearchProvider embeddedSpatialSearchProvider;
+
+    // Test Variables
+    private GeometryFactory geometryFactory;
+    private SearchPredicateFactory searchPredicateFactory;
+    private IdPredicateMatchingStep<?> idPredicateMatchingStep;
+    private UUID insideId;
+    private UUID envelopeOnlyId;
+    private UUID outsideId;
+    private List<Object[]> rows;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.searchPredicateFactory = mock(SearchPredicateFactory.class);
+        this.idPredicateMatchingStep = mock(IdPredicateMatchingStep.class);
+
+        // Create a point inside the search area, a line whose envelope only
+        // overlaps the search area and a point completely outside
+        this.insideId = UUID.randomUUID();
+        this.envelopeOnlyId = UUID.randomUUID();
+        this.outsideId = UUID.randomUUID();
+        this.rows = List.of(
+                new Object[]{this.insideId, this.geometryFactory.createPoint(new Coordinate(1, 1))},
+                new Object[]{this.envelopeOnlyId, this.geometryFactory.createLineString(new Coordinate[]{
+                        new Coordinate(1.5, 3),
+                        new Coordinate(3, 1.5)
+                })},
+                new Object[]{this.outsideId, this.geometryFactory.createPoint(new Coordinate(10, 10))}
+        );
+    }
+
+    /**
+     * Test that the spatial predicates are resolved using the exact geometry
+     * intersection into an identifier predicate.
+     */
+    @Test
+    void testIntersects() {
+        doReturn(this.rows).when(this.embeddedSpatialSearchProvider).loadGeometries(any());
+        doReturn(this.idPredicateMatchingStep).when(this.searchPredicateFactory).id();
+
+        // Perform the component call
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+
+        // Verify that only the intersecting identifier was matched
+        ArgumentCaptor<Collection<?>> idsCaptor = ArgumentCaptor.forClass(Collection.class);
+        verify(this.idPredicateMatchingStep, times(1)).matchingAny(idsCaptor.capture());
+        assertEquals(1, idsCaptor.getValue().size());
+        assertTrue(idsCaptor.getValue().contains(this.insideId));
+    }
+
+    /**
+     * Test that when no geometry intersects, the spatial predicate will not
+     * match anything.
+     */
+    @Test
+    void testIntersectsNoMatches() {
+        doReturn(List.of()).when(this.embeddedSpatialSearchProvider).loadGeometries(any());
+        doReturn(mock(MatchAllPredicateOptionsStep.class)).when(this.searchPredicateFactory).matchAll();
+
+        // Perform the component call
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+
+        // Verify that a negated match-all predicate was constructed
+        verify(this.searchPredicateFactory, times(1)).not(any());
+        verify(this.searchPredicateFactory, never()).id();
+    }
+
+    /**
+     * Test that the in-memory spatial index is only built once and reused,
+     * until an entity of the relevant class gets modified.
+     */
+    @Test
+    void testIndexInvalidation() {
+        doReturn(this.rows).when(this.embeddedSpatialSearchProvider).loadGeometries(any());
+        doReturn(this.idPredicateMatchingStep).when(this.searchPredicateFactory).id();
+
+        // Perform two queries and make sure the index is built only once
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+        verify(this.embeddedSpatialSearchProvider, times(1)).buildIndex(any());
+
+        // Modifying an unrelated entity should not affect the index
+        this.embeddedSpatialSearchProvider.invalidate(new Object());
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+        verify(this.embeddedSpatialSearchProvider, times(1)).buildIndex(any());
+
+        // Modifying a dataset should force the index to be rebuilt
+        this.embeddedSpatialSearchProvider.invalidate(new S201Dataset());
+        this.embeddedSpatialSearchProvider.intersects(this.searchPredicateFactory, S201Dataset.class, "geometry", this.searchArea());
+        verify(this.embeddedSpatialSearchProvider, times(2)).buildIndex(any());
+    }
+
+    /**
+     * A helper function to generate the search area used in the tests.
+     *
+     * @return the search area polygon
+     */
+    private Geometry searchArea() {
+        return this.geometryFactory.createPolygon(new Coordinate[] {
+                new Coordinate(0, 0),
+                new Coordinate(0, 2),
+                new Coordinate(2, 2),
+                new Coordinate(2, 0),
+                new Coordinate(0, 0)
+        });
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExchangeSetCacheTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    ExchangeSetCache exchangeSetCache;
+
+    /**
+     * The temporary cache directory.
+     */
+    @TempDir
+    Path tempDir;
+
+    // Test Variables
+    private UUID uuid;
+    private byte[] exchangeSet;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() throws IOException {
+        // Leave a stale exchange set and a foreign file behind
+        Files.write(this.tempDir.resolve("exchangeSet-stale.zip"), new byte[]{1, 2, 3});
+        Files.write(this.tempDir.resolve("other.zip"), new byte[]{1, 2, 3});
+
+        this.exchangeSetCache.enabled = true;
+        this.exchangeSetCache.cacheDir = this.tempDir.toString();
+        this.exchangeSetCache.maxSize = 100;
+        this.exchangeSetCache.init();
+
+        this.uuid = UUID.randomUUID();
+        this.exchangeSet = "exchangeSet".getBytes();
+    }
+
+    /**
+     * Test that the stale exchange sets are deleted on initialisation, since
+     * the index of the cached exchange sets is only held in memory, while any
+     * other files in the directory are left untouched.
+     */
+    @Test
+    void testInit() throws IOException {
+        try(Stream<Path> files = Files.list(this.tempDir)) {
+            assertEquals(List.of(this.tempDir.resolve("other.zip")), files.toList());
+        }
+    }
+
+    /**
+     * Test that the exchange sets can be stored and retrieved from the disk
+     * cache.
+     */
+    @Test
+    void testPutAndGet() {
+        this.exchangeSetCache.put("key", Collections.singletonList(this.uuid), this.exchangeSet);
+
+        // Make sure the exchange set is cached
+        final Optional<byte[]> result = this.exchangeSetCache.get("key");
+        assertTrue(result.isPresent());
+        assertArrayEquals(this.exchangeSet, result.get());
+        assertEquals(this.exchangeSet.length, this.exchangeSetCache.getTotalSize());
+        assertTrue(Files.exists(this.tempDir.resolve("exchangeSet-key.zip")));
+
+        // And that unknown keys are not
+        assertFalse(this.exchangeSetCache.get("otherKey").isPresent());
+    }
+
+    /**
+     * Test that nothing is cached when the caching is disabled.
+     */
+    @Test
+    void testPutDisabled() {
+        this.exchangeSetCache.enabled = false;
+        this.exchangeSetCache.put("key", Collections.singletonList(this.uuid), this.exchangeSet);
+
+        // Make sure the exchange set is not cached
+        this.exchangeSetCache.enabled = true;
+        assertFalse(this.exchangeSetCache.get("key").isPresent());
+        assertEquals(0, this.exchangeSetCache.getTotalSize());
+    }
+
+    /**
+     * Test that the least recently used exchange sets are evicted once the
+     * maximum cache size is exceeded, and that exchange sets larger than the
+     * whole cache are not stored.
+     */
+    @Test
+    void testPutEvictsLeastRecentlyUsed() {
+        final byte[] data = new byte[40];
+        this.exchangeSetCache.put("key1", List.of(UUID.randomUUID()), data);
+        this.exchangeSetCache.put("key2", List.of(UUID.randomUUID()), data);
+
+        // Access the first entry so that the second one becomes the eldest
+        assertTrue(this.exchangeSetCache.get("key1").isPresent());
+        this.exchangeSetCache.put("key3", List.of(UUID.randomUUID()), data);
+
+        // Make sure only the second entry was evicted
+        assertTrue(this.exchangeSetCache.get("key1").isPresent());
+        assertFalse(this.exchangeSetCache.get("key2").isPresent());
+        assertTrue(this.exchangeSetCache.get("key3").isPresent());
+        assertEquals(80, this.exchangeSetCache.getTotalSize());
+        assertFalse(Files.exists(this.tempDir.resolve("exchangeSet-key2.zip")));
+
+        // And that oversized exchange sets are ignored
+        this.exchangeSetCache.put("key4", List.of(UUID.randomUUID()), new byte[101]);
+        assertFalse(this.exchangeSetCache.get("key4").isPresent());
+        assertEquals(80, this.exchangeSetCache.getTotalSize());
+    }
+
+    /**
+     * Test that all the exchange sets containing a dataset are dropped when
+     * that dataset is invalidated.
+     */
+    @Test
+    void testInvalidate() {
+        final UUID otherUuid = UUID.randomUUID();
+        this.exchangeSetCache.put("key1", List.of(this.uuid), this.exchangeSet);
+        this.exchangeSetCache.put("key2", List.of(this.uuid, otherUuid), this.exchangeSet);
+        this.exchangeSetCache.put("key3", List.of(otherUuid), this.exchangeSet);
+
+        // Invalidate the dataset
+        this.exchangeSetCache.invalidate(this.uuid);
+
+        // Make sure only the entries containing the dataset were dropped
+        assertFalse(this.exchangeSetCache.get("key1").isPresent());
+        assertFalse(this.exchangeSetCache.get("key2").isPresent());
+        assertTrue(this.exchangeSetCache.get("key3").isPresent());
+        assertEquals(this.exchangeSet.length, this.exchangeSetCache.getTotalSize());
+        assertFalse(Files.exists(this.tempDir.resolve("exchangeSet-key1.zip")));
+    }
+
+    /**
+     * Test that the cache entries whose files have been removed externally
+     * are treated as misses and dropped from the index.
+     */
+    @Test
+    void testGetMissingFile() throws IOException {
+        this.exchangeSetCache.put("key", List.of(this.uuid), this.exchangeSet);
+        Files.delete(this.tempDir.resolve("exchangeSet-key.zip"));
+
+        // Make sure the entry is treated as a miss
+        assertFalse(this.exchangeSetCache.get("key").isPresent());
+        assertEquals(0, this.exchangeSetCache.getTotalSize());
+    }
+
+}
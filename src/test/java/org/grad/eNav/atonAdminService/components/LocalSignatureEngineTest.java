@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.*;
+import java.security.cert.CertificateExpiredException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LocalSignatureEngineTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    LocalSignatureEngine localSignatureEngine;
+
+    // Test Variables
+    private KeyPair keyPair;
+    private KeyPair anchorKeyPair;
+    private X509Certificate certificate;
+    private X509Certificate anchorCertificate;
+    private String algorithm;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() throws GeneralSecurityException {
+        // Generate the service and the trust anchor key pairs
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+        this.keyPair = keyPairGenerator.generateKeyPair();
+        this.anchorKeyPair = keyPairGenerator.generateKeyPair();
+        this.algorithm = DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue();
+
+        // Mock the service and the trust anchor certificates
+        this.certificate = mock(X509Certificate.class);
+        this.anchorCertificate = mock(X509Certificate.class);
+
+        // Use a simple in-memory cache
+        this.localSignatureEngine.cacheManager = new ConcurrentMapCacheManager("localTrustedCertificateCache");
+    }
+
+    /**
+     * Test that the local signing mode is disabled by default and will not
+     * load any key material.
+     */
+    @Test
+    void testInitDisabled() {
+        this.localSignatureEngine.enabled = false;
+        this.localSignatureEngine.init();
+
+        // Make sure the engine is disabled
+        assertFalse(this.localSignatureEngine.isEnabled());
+        assertNull(this.localSignatureEngine.privateKey);
+    }
+
+    /**
+     * Test that if the local keystore cannot be loaded, the engine will fall
+     * back to the remote signing mode.
+     */
+    @Test
+    void testInitFallsBack() {
+        this.localSignatureEngine.enabled = true;
+        this.localSignatureEngine.keystore = "/non/existing/keystore.p12";
+        this.localSignatureEngine.keystoreType = "PKCS12";
+        this.localSignatureEngine.keystorePassword = "password";
+        this.localSignatureEngine.init();
+
+        // Make sure the engine is disabled
+        assertFalse(this.localSignatureEngine.isEnabled());
+    }
+
+    /**
+     * Test that the key material can be provided directly, and that the
+     * certificate ID defaults to the certificate serial number.
+     */
+    @Test
+    void testSetKeyMaterial() throws KeyStoreException {
+        doReturn(BigInteger.TEN).when(this.certificate).getSerialNumber();
+
+        this.localSignatureEngine.setKeyMaterial(this.keyPair.getPrivate(), this.certificate, this.anchorCertificate);
+
+        // Make sure the engine is enabled with the provided key material
+        assertTrue(this.localSignatureEngine.isEnabled());
+        assertEquals(this.certificate, this.localSignatureEngine.getCertificate());
+        assertEquals(this.anchorCertificate, this.localSignatureEngine.getRootCertificate());
+        assertEquals(BigInteger.TEN, this.localSignatureEngine.getCertificateId());
+
+        // Unless explicitly configured
+        this.localSignatureEngine.certificateId = "123";
+        assertEquals(BigInteger.valueOf(123), this.localSignatureEngine.getCertificateId());
+
+        // And that incomplete key material is rejected
+        assertThrows(KeyStoreException.class, () -> this.localSignatureEngine.setKeyMaterial(null, this.certificate));
+        assertThrows(KeyStoreException.class, () -> this.localSignatureEngine.setKeyMaterial(this.keyPair.getPrivate()));
+    }
+
+    /**
+     * Test that the inbound signatures are only verified in-process when
+     * the local verification is explicitly enabled along with the local
+     * signing mode.
+     */
+    @Test
+    void testIsVerificationEnabled() throws KeyStoreException {
+        this.localSignatureEngine.verification = true;
+        assertFalse(this.localSignatureEngine.isVerificationEnabled());
+
+        // Enable the local signing mode
+        this.localSignatureEngine.setKeyMaterial(this.keyPair.getPrivate(), this.certificate);
+        assertTrue(this.localSignatureEngine.isVerificationEnabled());
+
+        // But without the local verification
+        this.localSignatureEngine.verification = false;
+        assertFalse(this.localSignatureEngine.isVerificationEnabled());
+    }
+
+    /**
+     * Test that the generated signatures can be verified in-process, as long
+     * as the signing certificate chain is trusted.
+     */
+    @Test
+    void testSignAndVerify() throws GeneralSecurityException {
+        doReturn(this.keyPair.getPublic()).when(this.certificate).getPublicKey();
+        doReturn("certificate".getBytes()).when(this.certificate).getEncoded();
+        doReturn(true).when(this.localSignatureEngine).validateCertPath(any());
+        this.localSignatureEngine.setKeyMaterial(this.keyPair.getPrivate(), this.certificate);
+
+        // Perform the signing operation
+        final byte[] signature = this.localSignatureEngine.sign(this.algorithm, "payload".getBytes());
+
+        // Make sure the signature is valid for the payload only
+        assertNotNull(signature);
+        assertTrue(this.localSignatureEngine.verify(new X509Certificate[]{this.certificate}, this.algorithm, signature, "payload".getBytes()));
+        assertFalse(this.localSignatureEngine.verify(new X509Certificate[]{this.certificate}, this.algorithm, signature, "other".getBytes()));
+
+        // And that the path validation was only performed once
+        verify(this.localSignatureEngine, times(1)).validateCertPath(any());
+    }
+
+    /**
+     * Test that signatures generated with untrusted certificate chains are
+     * rejected.
+     */
+    @Test
+    void testVerifyUntrusted() throws GeneralSecurityException {
+        doReturn("certificate".getBytes()).when(this.certificate).getEncoded();
+        doReturn(false).when(this.localSignatureEngine).validateCertPath(any());
+        this.localSignatureEngine.setKeyMaterial(this.keyPair.getPrivate(), this.certificate);
+
+        // Perform the signing operation
+        final byte[] signature = this.localSignatureEngine.sign(this.algorithm, "payload".getBytes());
+
+        // Make sure the signature is rejected
+        assertFalse(this.localSignatureEngine.isTrusted(this.certificate));
+        assertFalse(this.localSignatureEngine.verify(new X509Certificate[]{this.certificate}, this.algorithm, signature, "payload".getBytes()));
+        assertFalse(this.localSignatureEngine.verify(new X509Certificate[]{}, this.algorithm, signature, "payload".getBytes()));
+        assertFalse(this.localSignatureEngine.verify(null, this.algorithm, signature, "payload".getBytes()));
+    }
+
+    /**
+     * Test that signatures can be verified in-process directly against a
+     * public key, without any trust evaluation taking place.
+     */
+    @Test
+    void testVerifySignature() throws GeneralSecurityException {
+        // Sign the payload with the service private key
+        final Signature signer = Signature.getInstance(this.algorithm);
+        signer.initSign(this.keyPair.getPrivate());
+        signer.update("payload".getBytes());
+        final byte[] signature = signer.sign();
+
+        // Make sure the signature is only valid for the payload and the matching key
+        assertTrue(this.localSignatureEngine.verifySignature(this.keyPair.getPublic(), this.algorithm, signature, "payload".getBytes()));
+        assertFalse(this.localSignatureEngine.verifySignature(this.keyPair.getPublic(), this.algorithm, signature, "other".getBytes()));
+        assertFalse(this.localSignatureEngine.verifySignature(this.anchorKeyPair.getPublic(), this.algorithm, signature, "payload".getBytes()));
+        assertFalse(this.localSignatureEngine.verifySignature(null, this.algorithm, signature, "payload".getBytes()));
+
+        // And that no trust evaluation was performed
+        verify(this.localSignatureEngine, never()).validateCertPath(any());
+    }
+
+    /**
+     * Test that expired certificates are never trusted.
+     */
+    @Test
+    void testIsTrustedExpired() throws GeneralSecurityException {
+        doThrow(CertificateExpiredException.class).when(this.certificate).checkValidity();
+
+        // Make sure the certificate is not trusted
+        assertFalse(this.localSignatureEngine.isTrusted(this.certificate));
+        verify(this.localSignatureEngine, never()).validateCertPath(any());
+    }
+
+    /**
+     * Test that the certificate chains are validated against the SECOM
+     * trust store through a full PKIX path validation.
+     */
+    @Test
+    void testValidateCertPath() throws GeneralSecurityException, IOException {
+        final X509Certificate[] chain;
+        try(InputStream in = ClassLoader.getSystemResourceAsStream("test-chain.pem")) {
+            chain = CertificateFactory.getInstance("X.509")
+                    .generateCertificates(in)
+                    .stream()
+                    .map(X509Certificate.class::cast)
+                    .toArray(X509Certificate[]::new);
+        }
+        this.localSignatureEngine.revocation = false;
+
+        // Make sure the chain is valid against its root, with or without it
+        this.localSignatureEngine.trustAnchors = Collections.singletonList(chain[1]);
+        assertTrue(this.localSignatureEngine.validateCertPath(chain));
+        assertTrue(this.localSignatureEngine.validateCertPath(new X509Certificate[]{chain[0]}));
+
+        // But not without any trust anchors
+        this.localSignatureEngine.trustAnchors = Collections.emptyList();
+        assertFalse(this.localSignatureEngine.validateCertPath(chain));
+
+        // Or if the revocation status cannot be determined
+        this.localSignatureEngine.trustAnchors = Collections.singletonList(chain[1]);
+        this.localSignatureEngine.revocation = true;
+        assertFalse(this.localSignatureEngine.validateCertPath(chain));
+    }
+
+}
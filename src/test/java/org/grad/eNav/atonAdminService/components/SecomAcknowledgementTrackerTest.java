@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.grad.secomv2.core.models.enums.AckTypeEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecomAcknowledgementTrackerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SecomAcknowledgementTracker secomAcknowledgementTracker;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private UUID transactionId;
+    private AtomicInteger redeliveries;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.transactionId = UUID.randomUUID();
+        this.redeliveries = new AtomicInteger();
+
+        this.secomAcknowledgementTracker.timeout = 3;
+        this.secomAcknowledgementTracker.maxRedeliveries = 2;
+        this.secomAcknowledgementTracker.tickDuration = 1000;
+        this.secomAcknowledgementTracker.wheelSize = 2;
+        this.secomAcknowledgementTracker.meterRegistry = this.meterRegistry;
+        this.secomAcknowledgementTracker.init();
+    }
+
+    /**
+     * Test that the delivery and opened acknowledgements are correlated to
+     * the tracked transactions and their latencies get recorded per client.
+     */
+    @Test
+    void testAcknowledge() {
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+        assertEquals(1, this.meterRegistry.get("secom.ack.pending").gauge().value());
+
+        // Acknowledge the delivery
+        assertTrue(this.secomAcknowledgementTracker.acknowledge(this.transactionId, "urn:mrn:org:test", AckTypeEnum.DELIVERED_ACK));
+        assertEquals(1, this.meterRegistry.get("secom.ack.latency").tag("client", "urn:mrn:org:test").tag("type", "delivered").timer().count());
+        assertEquals(1, this.meterRegistry.get("secom.ack.pending").gauge().value());
+
+        // Acknowledge the opening
+        assertTrue(this.secomAcknowledgementTracker.acknowledge(this.transactionId, "urn:mrn:org:test", AckTypeEnum.OPENED_ACK));
+        assertEquals(1, this.meterRegistry.get("secom.ack.latency").tag("client", "urn:mrn:org:test").tag("type", "opened").timer().count());
+        assertEquals(0, this.meterRegistry.get("secom.ack.pending").gauge().value());
+    }
+
+    /**
+     * Test that acknowledgements sent by any other client than the one the
+     * upload was sent to are rejected and do not settle the transaction.
+     */
+    @Test
+    void testAcknowledgeWrongSender() {
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+
+        assertFalse(this.secomAcknowledgementTracker.acknowledge(this.transactionId, "urn:mrn:org:other", AckTypeEnum.DELIVERED_ACK));
+        assertFalse(this.secomAcknowledgementTracker.acknowledge(this.transactionId, null, AckTypeEnum.DELIVERED_ACK));
+        assertEquals(2, this.meterRegistry.counter("secom.ack", "result", "rejected").count());
+
+        // And the upload should still be redelivered
+        for(int i = 0; i < 3; i++) {
+            this.secomAcknowledgementTracker.tick();
+        }
+        assertEquals(1, this.redeliveries.get());
+    }
+
+    /**
+     * Test that acknowledgements for unknown transactions are just counted.
+     */
+    @Test
+    void testAcknowledgeUnknown() {
+        assertFalse(this.secomAcknowledgementTracker.acknowledge(this.transactionId, "urn:mrn:org:test", AckTypeEnum.DELIVERED_ACK));
+        assertFalse(this.secomAcknowledgementTracker.acknowledge(null, "urn:mrn:org:test", AckTypeEnum.DELIVERED_ACK));
+        assertEquals(2, this.meterRegistry.counter("secom.ack", "result", "unknown").count());
+    }
+
+    /**
+     * Test that the unacknowledged transactions are redelivered once their
+     * deadline passes, even if the timer wheel has fewer slots than the
+     * timeout ticks.
+     */
+    @Test
+    void testTickRedelivers() {
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+
+        // Nothing should happen before the deadline
+        this.secomAcknowledgementTracker.tick();
+        this.secomAcknowledgementTracker.tick();
+        assertEquals(0, this.redeliveries.get());
+        assertTrue(this.secomAcknowledgementTracker.pending.containsKey(this.transactionId));
+
+        // And the redelivery should happen on the deadline
+        this.secomAcknowledgementTracker.tick();
+        assertEquals(1, this.redeliveries.get());
+        assertFalse(this.secomAcknowledgementTracker.pending.containsKey(this.transactionId));
+        assertEquals(1, this.meterRegistry.counter("secom.ack", "result", "redelivered").count());
+    }
+
+    /**
+     * Test that the acknowledged transactions are not redelivered.
+     */
+    @Test
+    void testTickAcknowledged() {
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+        this.secomAcknowledgementTracker.acknowledge(this.transactionId, "urn:mrn:org:test", AckTypeEnum.DELIVERED_ACK);
+
+        // Pass the deadline
+        for(int i = 0; i < 3; i++) {
+            this.secomAcknowledgementTracker.tick();
+        }
+
+        // Make sure the transaction was dropped without a redelivery
+        assertEquals(0, this.redeliveries.get());
+        assertTrue(this.secomAcknowledgementTracker.pending.isEmpty());
+    }
+
+    /**
+     * Test that the redeliveries of the same data stop after the maximum
+     * number of attempts.
+     */
+    @Test
+    void testTickExpired() {
+        for(int attempt = 0; attempt < 3; attempt++) {
+            this.secomAcknowledgementTracker.track(UUID.randomUUID(), "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+            for(int i = 0; i < 3; i++) {
+                this.secomAcknowledgementTracker.tick();
+            }
+        }
+
+        // Make sure only the maximum redeliveries were performed
+        assertEquals(2, this.redeliveries.get());
+        assertEquals(1, this.meterRegistry.counter("secom.ack", "result", "expired").count());
+        assertTrue(this.secomAcknowledgementTracker.redeliveries.isEmpty());
+    }
+
+    /**
+     * Test that when the redeliveries are disabled, which is the default,
+     * the unacknowledged transactions are only counted as expired.
+     */
+    @Test
+    void testTickRedeliveriesDisabled() {
+        this.secomAcknowledgementTracker.maxRedeliveries = 0;
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+
+        // Pass the deadline
+        for(int i = 0; i < 3; i++) {
+            this.secomAcknowledgementTracker.tick();
+        }
+
+        // Make sure the transaction was dropped without a redelivery
+        assertEquals(0, this.redeliveries.get());
+        assertTrue(this.secomAcknowledgementTracker.pending.isEmpty());
+        assertEquals(1, this.meterRegistry.counter("secom.ack", "result", "expired").count());
+    }
+
+    /**
+     * Test that nothing is tracked when the acknowledgement timeout is
+     * disabled.
+     */
+    @Test
+    void testTrackDisabled() {
+        this.secomAcknowledgementTracker.timeout = 0;
+        this.secomAcknowledgementTracker.track(this.transactionId, "urn:mrn:org:test", "key", this.redeliveries::incrementAndGet);
+
+        assertTrue(this.secomAcknowledgementTracker.pending.isEmpty());
+        assertEquals(0, this.redeliveries.get());
+    }
+
+}
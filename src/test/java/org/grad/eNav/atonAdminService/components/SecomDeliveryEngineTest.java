@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecomDeliveryEngineTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SecomDeliveryEngine secomDeliveryEngine;
+
+    // Test Variables
+    private SimpleMeterRegistry meterRegistry;
+    private List<Runnable> scheduled;
+    private ScheduledExecutorService retryScheduler;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.meterRegistry = new SimpleMeterRegistry();
+        this.scheduled = new ArrayList<>();
+
+        // Queue the retries along with the drain tasks
+        this.retryScheduler = mock(ScheduledExecutorService.class);
+        lenient().doAnswer(inv -> {
+                    this.scheduled.add(inv.getArgument(0));
+                    return null;
+                })
+                .when(this.retryScheduler).schedule(any(Runnable.class), anyLong(), any());
+
+        this.secomDeliveryEngine.queueCapacity = 10;
+        this.secomDeliveryEngine.maxAttempts = 3;
+        this.secomDeliveryEngine.backoff = 0;
+        this.secomDeliveryEngine.maxBackoff = 0;
+        this.secomDeliveryEngine.failureThreshold = 5;
+        this.secomDeliveryEngine.openDuration = 60;
+        this.secomDeliveryEngine.deliveryExecutor = this.scheduled::add;
+        this.secomDeliveryEngine.meterRegistry = this.meterRegistry;
+        this.secomDeliveryEngine.retryScheduler = this.retryScheduler;
+        this.secomDeliveryEngine.init();
+    }
+
+    /**
+     * Test that a submitted delivery gets performed once the queue of the
+     * client endpoint is drained.
+     */
+    @Test
+    void testSubmit() {
+        final AtomicInteger delivered = new AtomicInteger();
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", delivered::incrementAndGet);
+        assertEquals(1, this.meterRegistry.get("secom.delivery.pending").gauge().value());
+
+        this.drain();
+
+        // Make sure the delivery was performed and measured
+        assertEquals(1, delivered.get());
+        assertEquals(1, this.count("delivered"));
+        assertEquals(1, this.meterRegistry.get("secom.delivery.latency").timer().count());
+        assertEquals(0, this.meterRegistry.get("secom.delivery.pending").gauge().value());
+    }
+
+    /**
+     * Test that the deliveries to different client endpoints are drained by
+     * separate tasks, while the deliveries to the same client endpoint are
+     * drained by a single task, in the order they were submitted.
+     */
+    @Test
+    void testSubmitPerClient() {
+        final List<String> delivered = new ArrayList<>();
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test1", "key1", () -> delivered.add("key1"));
+        this.secomDeliveryEngine.submit("urn:mrn:org:test1", "key2", () -> delivered.add("key2"));
+        this.secomDeliveryEngine.submit("urn:mrn:org:test2", "key3", () -> delivered.add("key3"));
+
+        // One drain task per client endpoint
+        assertEquals(2, this.scheduled.size());
+
+        this.drain();
+
+        // Make sure all deliveries were performed in order
+        assertEquals(List.of("key1", "key2", "key3"), delivered);
+        assertEquals(3, this.count("delivered"));
+    }
+
+    /**
+     * Test that a pending delivery is replaced by a newer one with the same
+     * key, so that superseded updates are never delivered.
+     */
+    @Test
+    void testSubmitCoalesced() {
+        final List<String> delivered = new ArrayList<>();
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", () -> delivered.add("old"));
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", () -> delivered.add("new"));
+        this.drain();
+
+        // Make sure only the latest delivery was performed
+        assertEquals(List.of("new"), delivered);
+        assertEquals(1, this.count("coalesced"));
+        assertEquals(1, this.count("delivered"));
+    }
+
+    /**
+     * Test that the oldest pending delivery gets dropped when the queue of
+     * the client endpoint is full.
+     */
+    @Test
+    void testSubmitQueueFull() {
+        final List<String> delivered = new ArrayList<>();
+        this.secomDeliveryEngine.queueCapacity = 2;
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key1", () -> delivered.add("key1"));
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key2", () -> delivered.add("key2"));
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key3", () -> delivered.add("key3"));
+        this.drain();
+
+        // Make sure the oldest delivery was dropped
+        assertEquals(List.of("key2", "key3"), delivered);
+        assertEquals(1, this.count("dropped"));
+    }
+
+    /**
+     * Test that a failed delivery gets retried until it succeeds, with the
+     * retries scheduled after the backoff rather than blocking the delivery
+     * thread, while the later deliveries to the same client endpoint wait.
+     */
+    @Test
+    void testSubmitRetried() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final List<String> delivered = new ArrayList<>();
+        this.secomDeliveryEngine.backoff = 500;
+        this.secomDeliveryEngine.maxBackoff = 10000;
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key1", () -> {
+            if(attempts.incrementAndGet() < 2) {
+                throw new RuntimeException("Upload failed");
+            }
+            delivered.add("key1");
+        });
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key2", () -> delivered.add("key2"));
+
+        // Run the first drain task only
+        this.scheduled.removeFirst().run();
+
+        // Make sure the retry was scheduled and the next delivery is waiting
+        verify(this.retryScheduler, times(1)).schedule(any(Runnable.class), eq(500L), eq(TimeUnit.MILLISECONDS));
+        assertEquals(1, attempts.get());
+        assertTrue(delivered.isEmpty());
+
+        this.drain();
+
+        // Make sure the delivery was retried once and then succeeded in order
+        assertEquals(2, attempts.get());
+        assertEquals(List.of("key1", "key2"), delivered);
+        assertEquals(1, this.count("retried"));
+        assertEquals(2, this.count("delivered"));
+        assertEquals(1, this.meterRegistry.get("secom.delivery.failures").counter().count());
+    }
+
+    /**
+     * Test that a failed delivery is not retried if a newer delivery with
+     * the same key has been submitted in the meantime.
+     */
+    @Test
+    void testSubmitRetrySuperseded() {
+        final List<String> delivered = new ArrayList<>();
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", () -> {
+            throw new RuntimeException("Upload failed");
+        });
+        this.scheduled.removeFirst().run();
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", () -> delivered.add("new"));
+        this.drain();
+
+        // Make sure only the newer delivery was performed
+        assertEquals(List.of("new"), delivered);
+        assertEquals(1, this.count("superseded"));
+        assertEquals(1, this.count("delivered"));
+    }
+
+    /**
+     * Test that a delivery that keeps failing is given up after the maximum
+     * number of attempts.
+     */
+    @Test
+    void testSubmitFailed() {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key", () -> {
+            attempts.incrementAndGet();
+            throw new RuntimeException("Upload failed");
+        });
+        this.drain();
+
+        // Make sure the delivery was attempted the maximum number of times
+        assertEquals(3, attempts.get());
+        assertEquals(2, this.count("retried"));
+        assertEquals(1, this.count("failed"));
+        assertEquals(0, this.count("delivered"));
+    }
+
+    /**
+     * Test that the circuit of a client endpoint opens after too many
+     * consecutive failures, rejecting any further deliveries, while the
+     * deliveries to other client endpoints are not affected.
+     */
+    @Test
+    void testSubmitCircuitOpen() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger delivered = new AtomicInteger();
+        this.secomDeliveryEngine.maxAttempts = 1;
+        this.secomDeliveryEngine.failureThreshold = 2;
+
+        for(int i = 0; i < 3; i++) {
+            this.secomDeliveryEngine.submit("urn:mrn:org:test1", "key" + i, () -> {
+                attempts.incrementAndGet();
+                throw new RuntimeException("Upload failed");
+            });
+        }
+        this.secomDeliveryEngine.submit("urn:mrn:org:test2", "key", delivered::incrementAndGet);
+        this.drain();
+
+        // Make sure the last delivery to the failing endpoint was rejected
+        assertEquals(2, attempts.get());
+        assertEquals(2, this.count("failed"));
+        assertEquals(1, this.count("rejected"));
+
+        // But the other endpoint was still served
+        assertEquals(1, delivered.get());
+        assertEquals(1, this.count("delivered"));
+    }
+
+    /**
+     * Test that the circuit of a client endpoint allows deliveries again
+     * once the open duration has expired, and closes on success.
+     */
+    @Test
+    void testSubmitCircuitHalfOpen() {
+        final AtomicInteger delivered = new AtomicInteger();
+        this.secomDeliveryEngine.maxAttempts = 1;
+        this.secomDeliveryEngine.failureThreshold = 1;
+        this.secomDeliveryEngine.openDuration = 0;
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key1", () -> {
+            throw new RuntimeException("Upload failed");
+        });
+        this.secomDeliveryEngine.submit("urn:mrn:org:test", "key2", delivered::incrementAndGet);
+        this.drain();
+
+        // Make sure the delivery went through and the circuit closed, so
+        // that the idle queue could be pruned
+        assertEquals(1, delivered.get());
+        assertEquals(0, this.count("rejected"));
+        assertFalse(this.secomDeliveryEngine.queues.containsKey("urn:mrn:org:test"));
+    }
+
+    /**
+     * Test that the idle client endpoint queues are pruned once drained,
+     * unless their circuits are open, in which case they are pruned
+     * periodically once the circuits are allowed to close again.
+     */
+    @Test
+    void testPrune() {
+        this.secomDeliveryEngine.maxAttempts = 1;
+        this.secomDeliveryEngine.failureThreshold = 1;
+
+        this.secomDeliveryEngine.submit("urn:mrn:org:test1", "key", () -> {});
+        this.secomDeliveryEngine.submit("urn:mrn:org:test2", "key", () -> {
+            throw new RuntimeException("Upload failed");
+        });
+        this.drain();
+
+        // Make sure only the failing endpoint queue is kept
+        assertFalse(this.secomDeliveryEngine.queues.containsKey("urn:mrn:org:test1"));
+        assertTrue(this.secomDeliveryEngine.queues.containsKey("urn:mrn:org:test2"));
+
+        // And pruned once its circuit is allowed to close
+        this.secomDeliveryEngine.prune();
+        assertTrue(this.secomDeliveryEngine.queues.containsKey("urn:mrn:org:test2"));
+        this.secomDeliveryEngine.queues.get("urn:mrn:org:test2").openUntil = Instant.now();
+        this.secomDeliveryEngine.prune();
+        assertTrue(this.secomDeliveryEngine.queues.isEmpty());
+
+        // While new deliveries to pruned endpoints are still accepted
+        final AtomicInteger delivered = new AtomicInteger();
+        this.secomDeliveryEngine.submit("urn:mrn:org:test2", "key", delivered::incrementAndGet);
+        this.drain();
+        assertEquals(1, delivered.get());
+    }
+
+    /**
+     * Runs all the scheduled drain tasks.
+     */
+    private void drain() {
+        while(!this.scheduled.isEmpty()) {
+            this.scheduled.removeFirst().run();
+        }
+    }
+
+    /**
+     * Returns the number of SECOM deliveries with the provided result.
+     *
+     * @param result the SECOM delivery result
+     * @return the number of SECOM deliveries
+     */
+    private double count(String result) {
+        return this.meterRegistry.counter("secom.delivery", "result", result).count();
+    }
+
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
+import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
+import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.InjectMocks;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecomSubscriptionMatcherTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SecomSubscriptionMatcher secomSubscriptionMatcher;
+
+    // Test Variables
+    private GeometryFactory factory;
+    private SubscriptionRequest wildcardSubscription;
+    private SubscriptionRequest datasetSubscription;
+    private SubscriptionRequest exchangeSetSubscription;
+    private SubscriptionRequest referenceSubscription;
+    private UUID dataReference;
+    private Point point;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.point = this.factory.createPoint(new Coordinate(1.5, 51.5));
+        this.dataReference = UUID.randomUUID();
+        this.secomSubscriptionMatcher.enabled = true;
+        this.secomSubscriptionMatcher.refreshInterval = 300;
+
+        // A subscription without any attributes matches everything
+        this.wildcardSubscription = this.createSubscription(null, null, null, null, new Envelope(-180, 180, -90, 90));
+
+        // A dataset subscription over the English channel
+        this.datasetSubscription = this.createSubscription(ContainerTypeEnum.S100_DataSet, SECOM_DataProductType.S201, "2.0", null, new Envelope(0, 2, 50, 52));
+
+        // An exchange-set subscription elsewhere
+        this.exchangeSetSubscription = this.createSubscription(ContainerTypeEnum.S100_ExchangeSet, SECOM_DataProductType.S201, "2.0", null, new Envelope(10, 12, 50, 52));
+
+        // A subscription to a specific dataset only
+        this.referenceSubscription = this.createSubscription(ContainerTypeEnum.S100_DataSet, SECOM_DataProductType.S201, null, this.dataReference, new Envelope(0, 2, 50, 52));
+
+        lenient().doReturn(List.of(this.wildcardSubscription, this.datasetSubscription, this.exchangeSetSubscription, this.referenceSubscription))
+                .when(this.secomSubscriptionMatcher).loadSubscriptions();
+    }
+
+    /**
+     * Test that the publications are matched against the subscription
+     * attributes, where missing subscription attributes match any value.
+     */
+    @Test
+    void testMatchAttributes() {
+        // Perform the matching
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(
+                ContainerTypeEnum.S100_DataSet,
+                SECOM_DataProductType.S201,
+                "2.0",
+                UUID.randomUUID(),
+                null,
+                null);
+
+        // Make sure the matching subscriptions were returned
+        assertEquals(2, result.size());
+        assertTrue(result.contains(this.wildcardSubscription));
+        assertTrue(result.contains(this.datasetSubscription));
+    }
+
+    /**
+     * Test that the publications with a data reference also match the
+     * subscriptions to that specific dataset.
+     */
+    @Test
+    void testMatchDataReference() {
+        // Perform the matching
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(
+                ContainerTypeEnum.S100_DataSet,
+                null,
+                null,
+                this.dataReference,
+                null,
+                null);
+
+        // Make sure the matching subscriptions were returned
+        assertEquals(3, result.size());
+        assertTrue(result.contains(this.wildcardSubscription));
+        assertTrue(result.contains(this.datasetSubscription));
+        assertTrue(result.contains(this.referenceSubscription));
+    }
+
+    /**
+     * Test that the publications are matched against the subscription
+     * geometries.
+     */
+    @Test
+    void testMatchGeometry() {
+        // Perform the matching
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(
+                null,
+                null,
+                null,
+                null,
+                this.point,
+                null);
+
+        // Make sure only the intersecting subscriptions were returned
+        assertEquals(3, result.size());
+        assertFalse(result.contains(this.exchangeSetSubscription));
+    }
+
+    /**
+     * Test that the publications are matched against the subscription
+     * periods, where missing boundaries are considered open.
+     */
+    @Test
+    void testMatchPeriod() {
+        this.datasetSubscription.setSubscriptionPeriodStart(LocalDateTime.now().plusDays(1));
+        this.exchangeSetSubscription.setSubscriptionPeriodEnd(LocalDateTime.now().minusDays(1));
+        this.referenceSubscription.setSubscriptionPeriodStart(LocalDateTime.now().minusDays(1));
+        this.referenceSubscription.setSubscriptionPeriodEnd(LocalDateTime.now().plusDays(1));
+
+        // Perform the matching
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(
+                null,
+                null,
+                null,
+                null,
+                null,
+                LocalDateTime.now());
+
+        // Make sure only the active subscriptions were returned
+        assertEquals(2, result.size());
+        assertTrue(result.contains(this.wildcardSubscription));
+        assertTrue(result.contains(this.referenceSubscription));
+    }
+
+    /**
+     * Test that the matched subscriptions are sorted by their UUID, the same
+     * way the search backend would sort them.
+     */
+    @Test
+    void testMatchSorted() {
+        // Perform the matching
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+
+        // Make sure all subscriptions were returned in order
+        assertEquals(4, result.size());
+        for(int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i-1).getUuid().toString().compareTo(result.get(i).getUuid().toString()) < 0);
+        }
+    }
+
+    /**
+     * Test that the in-memory index is only built once, until it gets
+     * invalidated.
+     */
+    @Test
+    void testInvalidate() {
+        this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+        this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+        verify(this.secomSubscriptionMatcher, times(1)).loadSubscriptions();
+
+        // Now remove a subscription and invalidate the index
+        doReturn(List.of(this.wildcardSubscription)).when(this.secomSubscriptionMatcher).loadSubscriptions();
+        this.secomSubscriptionMatcher.invalidate();
+
+        // Make sure the index was rebuilt
+        List<SubscriptionRequest> result = this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+        verify(this.secomSubscriptionMatcher, times(2)).loadSubscriptions();
+        assertEquals(List.of(this.wildcardSubscription), result);
+    }
+
+    /**
+     * Test that the in-memory index gets rebuilt once it expires, unless the
+     * periodic rebuilds are disabled.
+     */
+    @Test
+    void testRefresh() {
+        this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+        assertFalse(this.secomSubscriptionMatcher.isStale());
+
+        // Expire the index
+        this.secomSubscriptionMatcher.index.builtAt = Instant.now().minusSeconds(301);
+        assertTrue(this.secomSubscriptionMatcher.isStale());
+
+        // Disable the periodic rebuilds
+        this.secomSubscriptionMatcher.refreshInterval = 0;
+        assertFalse(this.secomSubscriptionMatcher.isStale());
+    }
+
+    /**
+     * Test that matching a publication against a large number of
+     * subscriptions remains fast, once the index has been built.
+     */
+    @Test
+    void testMatchPerformance() {
+        final List<SubscriptionRequest> subscriptions = new ArrayList<>();
+        for(int i = 0; i < 10000; i++) {
+            final double x = (i % 100) * 3.6 - 180;
+            final double y = (i / 100) * 1.8 - 90;
+            subscriptions.add(this.createSubscription(
+                    i % 2 == 0 ? ContainerTypeEnum.S100_DataSet : ContainerTypeEnum.S100_ExchangeSet,
+                    SECOM_DataProductType.S201,
+                    i % 3 == 0 ? null : "2.0",
+                    null,
+                    new Envelope(x, x + 3.6, y, y + 1.8)));
+        }
+        doReturn(subscriptions).when(this.secomSubscriptionMatcher).loadSubscriptions();
+
+        // Build the index
+        this.secomSubscriptionMatcher.match(null, null, null, null, null, null);
+
+        // Time the matching
+        final long start = System.nanoTime();
+        List<SubscriptionRequest> result = null;
+        for(int i = 0; i < 1000; i++) {
+            result = this.secomSubscriptionMatcher.match(
+                    ContainerTypeEnum.S100_DataSet,
+                    SECOM_DataProductType.S201,
+                    "2.0",
+                    UUID.randomUUID(),
+                    this.point,
+                    LocalDateTime.now());
+        }
+        final long average = (System.nanoTime() - start) / 1000;
+
+        // Make sure the result is correct and fast enough
+        assertNotNull(result);
+        assertFalse(result.isEmpty());
+        result.forEach(s -> assertTrue(s.getSubscriptionGeometry().intersects(this.point)));
+        assertTrue(average < 1_000_000, "Average matching time was " + average + "ns");
+    }
+
+    /**
+     * Creates a new subscription request with the provided attributes.
+     *
+     * @param containerType     the container type
+     * @param dataProductType   the data product type
+     * @param productVersion    the product version
+     * @param dataReference     the data reference
+     * @param envelope          the subscription area
+     * @return the subscription request
+     */
+    private SubscriptionRequest createSubscription(ContainerTypeEnum containerType,
+                                                   SECOM_DataProductType dataProductType,
+                                                   String productVersion,
+                                                   UUID dataReference,
+                                                   Envelope envelope) {
+        final SubscriptionRequest subscriptionRequest = new SubscriptionRequest();
+        subscriptionRequest.setUuid(UUID.randomUUID());
+        subscriptionRequest.setContainerType(containerType);
+        subscriptionRequest.setDataProductType(dataProductType);
+        subscriptionRequest.setProductVersion(productVersion);
+        subscriptionRequest.setDataReference(dataReference);
+        subscriptionRequest.setSubscriptionGeometry(this.factory.toGeometry(envelope));
+        subscriptionRequest.setClientMrn("urn:mrn:org:test");
+        return subscriptionRequest;
+    }
+
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import feign.Response;
+import org.grad.eNav.atonAdminService.feign.CKeeperClient;
+import org.grad.eNav.atonAdminService.models.dtos.SignatureVerificationRequestDto;
+import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.*;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecomV2SignatureProviderImplTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SecomV2SignatureProviderImpl secomV2SignatureProvider;
+
+    /**
+     * The cKeeper Feign Client mock.
+     */
+    @Mock
+    CKeeperClient cKeeperClient;
+
+    /**
+     * The Local Signature Engine mock.
+     */
+    @Mock
+    LocalSignatureEngine localSignatureEngine;
+
+    // Test Variables
+    private KeyPair keyPair;
+    private X509Certificate certificate;
+    private SecomV2SignatureProviderImpl.CertificateChain certificateChain;
+    private String algorithm;
+    private byte[] signature;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() throws GeneralSecurityException {
+        // Generate the entity key pair and sign a payload
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+        this.keyPair = keyPairGenerator.generateKeyPair();
+        this.algorithm = DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue();
+        final Signature signer = Signature.getInstance(this.algorithm);
+        signer.initSign(this.keyPair.getPrivate());
+        signer.update("payload".getBytes());
+        this.signature = signer.sign();
+
+        // Mock the entity certificate chain
+        this.certificate = mock(X509Certificate.class);
+        this.certificateChain = new SecomV2SignatureProviderImpl.CertificateChain(
+                new X509Certificate[]{this.certificate},
+                "fingerprint",
+                "urn:mrn:org:test",
+                this.algorithm);
+
+        // Use simple in-memory caches
+        this.secomV2SignatureProvider.cacheManager = new ConcurrentMapCacheManager(
+                "secomCertificateChainCache",
+                "secomVerificationCache",
+                "secomTrustedCertificateCache");
+    }
+
+    /**
+     * Test that the parsed certificate chains are cached, so that the same
+     * PEM chains are not parsed again.
+     */
+    @Test
+    void testGetCertificateChain() throws IOException {
+        final String pem;
+        try(InputStream in = ClassLoader.getSystemResourceAsStream("test.pem")) {
+            pem = new String(in.readAllBytes());
+        }
+        doReturn("fingerprint").when(this.localSignatureEngine).getFingerprint(any());
+
+        // Parse the same chain twice
+        final Optional<SecomV2SignatureProviderImpl.CertificateChain> result = this.secomV2SignatureProvider.getCertificateChain(new String[]{pem});
+        final Optional<SecomV2SignatureProviderImpl.CertificateChain> cached = this.secomV2SignatureProvider.getCertificateChain(new String[]{pem});
+
+        // Make sure the chain was parsed only once
+        assertTrue(result.isPresent());
+        assertEquals(1, result.get().certificates().length);
+        assertEquals("fingerprint", result.get().fingerprint());
+        assertSame(result.get(), cached.orElse(null));
+        verify(this.localSignatureEngine, times(1)).getFingerprint(any());
+    }
+
+    /**
+     * Test that missing certificate chains cannot be parsed.
+     */
+    @Test
+    void testGetCertificateChainMissing() {
+        assertFalse(this.secomV2SignatureProvider.getCertificateChain(null).isPresent());
+        assertFalse(this.secomV2SignatureProvider.getCertificateChain(new String[]{}).isPresent());
+        assertFalse(this.secomV2SignatureProvider.validateSignature(null, this.signature, "payload".getBytes()));
+    }
+
+    /**
+     * Test that the signatures are verified through cKeeper and that the
+     * positive outcomes are cached for the identical repeat requests.
+     */
+    @Test
+    void testValidateSignature() {
+        final Response response = mock(Response.class);
+        doReturn(200).when(response).status();
+        doReturn(response).when(this.cKeeperClient).verifyEntitySignature(eq("urn:mrn:org:test"), any());
+        doReturn(Optional.of(this.certificateChain)).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the same signature twice
+        assertTrue(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+        assertTrue(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+
+        // Make sure cKeeper was only asked once
+        verify(this.cKeeperClient, times(1)).verifyEntitySignature(eq("urn:mrn:org:test"), any(SignatureVerificationRequestDto.class));
+        verify(this.localSignatureEngine, never()).verifySignature(any(), any(), any(), any());
+    }
+
+    /**
+     * Test that failed signature verifications are not cached and will be
+     * checked through cKeeper again.
+     */
+    @Test
+    void testValidateSignatureFailed() {
+        final Response response = mock(Response.class);
+        doReturn(400).when(response).status();
+        doReturn(response).when(this.cKeeperClient).verifyEntitySignature(eq("urn:mrn:org:test"), any());
+        doReturn(Optional.of(this.certificateChain)).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the same signature twice
+        assertFalse(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+        assertFalse(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+
+        // Make sure cKeeper was asked both times
+        verify(this.cKeeperClient, times(2)).verifyEntitySignature(eq("urn:mrn:org:test"), any(SignatureVerificationRequestDto.class));
+    }
+
+    /**
+     * Test that when the local verification is enabled, once a certificate
+     * has been verified through cKeeper, its subsequent signatures are
+     * verified in-process.
+     */
+    @Test
+    void testValidateSignatureLocalVerification() {
+        this.secomV2SignatureProvider.localVerification = true;
+        final Response response = mock(Response.class);
+        doReturn(200).when(response).status();
+        doReturn(response).when(this.cKeeperClient).verifyEntitySignature(eq("urn:mrn:org:test"), any());
+        doReturn(this.keyPair.getPublic()).when(this.certificate).getPublicKey();
+        doReturn(true).when(this.localSignatureEngine).verifySignature(eq(this.keyPair.getPublic()), eq(this.algorithm), any(), eq("payload".getBytes()));
+        doReturn(false).when(this.localSignatureEngine).verifySignature(eq(this.keyPair.getPublic()), eq(this.algorithm), any(), eq("other".getBytes()));
+        doReturn(Optional.of(this.certificateChain)).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the signature through cKeeper first and then locally
+        assertTrue(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+        assertFalse(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "other".getBytes()));
+
+        // Make sure cKeeper was only asked once and the certificate is now trusted
+        verify(this.cKeeperClient, times(1)).verifyEntitySignature(eq("urn:mrn:org:test"), any(SignatureVerificationRequestDto.class));
+        assertTrue(this.secomV2SignatureProvider.isTrustedCertificate(this.certificateChain));
+    }
+
+    /**
+     * Test that only the certificates already verified through cKeeper for
+     * the same entity MRN are trusted, and not the ones merely issued by the
+     * SECOM trust store.
+     */
+    @Test
+    void testIsTrustedCertificate() {
+        // Certificates unknown to cKeeper are not trusted
+        assertFalse(this.secomV2SignatureProvider.isTrustedCertificate(this.certificateChain));
+        verify(this.localSignatureEngine, never()).isTrusted(any(X509Certificate[].class));
+
+        // Neither are the ones verified for another MRN
+        this.secomV2SignatureProvider.getTrustedCertificateCache().ifPresent(cache -> cache.put("fingerprint", "urn:mrn:org:other"));
+        assertFalse(this.secomV2SignatureProvider.isTrustedCertificate(this.certificateChain));
+
+        // But the ones verified for the same MRN are
+        this.secomV2SignatureProvider.getTrustedCertificateCache().ifPresent(cache -> cache.put("fingerprint", "urn:mrn:org:test"));
+        assertTrue(this.secomV2SignatureProvider.isTrustedCertificate(this.certificateChain));
+    }
+
+    /**
+     * Test that when the local signature engine verification is enabled,
+     * all signatures are verified in-process by the local signature engine.
+     */
+    @Test
+    void testValidateSignatureLocalEngine() {
+        doReturn(true).when(this.localSignatureEngine).isVerificationEnabled();
+        doReturn(true).when(this.localSignatureEngine).verify(this.certificateChain.certificates(), this.algorithm, this.signature, "payload".getBytes());
+        doReturn(Optional.of(this.certificateChain)).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the signature
+        assertTrue(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+
+        // Make sure cKeeper was not used
+        verify(this.cKeeperClient, never()).verifyEntitySignature(any(), any());
+    }
+
+    /**
+     * Test that when the local signature engine verification is enabled,
+     * the certificates without an entity MRN are rejected.
+     */
+    @Test
+    void testValidateSignatureLocalEngineNoMrn() {
+        doReturn(true).when(this.localSignatureEngine).isVerificationEnabled();
+        doReturn(Optional.of(new SecomV2SignatureProviderImpl.CertificateChain(
+                this.certificateChain.certificates(),
+                "fingerprint",
+                null,
+                this.algorithm))).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the signature
+        assertFalse(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+
+        // Make sure neither the local engine nor cKeeper were used
+        verify(this.localSignatureEngine, never()).verify(any(), any(), any(), any());
+        verify(this.cKeeperClient, never()).verifyEntitySignature(any(), any());
+    }
+
+    /**
+     * Test that in the local signing mode, the signatures are still verified
+     * through cKeeper unless the local verification is also enabled.
+     */
+    @Test
+    void testValidateSignatureLocalSigningMode() {
+        final Response response = mock(Response.class);
+        doReturn(200).when(response).status();
+        doReturn(response).when(this.cKeeperClient).verifyEntitySignature(eq("urn:mrn:org:test"), any());
+        doReturn(false).when(this.localSignatureEngine).isVerificationEnabled();
+        doReturn(Optional.of(this.certificateChain)).when(this.secomV2SignatureProvider).getCertificateChain(any());
+
+        // Validate the signature
+        assertTrue(this.secomV2SignatureProvider.validateSignature(new String[]{"pem"}, this.signature, "payload".getBytes()));
+
+        // Make sure cKeeper was used
+        verify(this.cKeeperClient, times(1)).verifyEntitySignature(eq("urn:mrn:org:test"), any(SignatureVerificationRequestDto.class));
+        verify(this.localSignatureEngine, never()).verify(any(), any(), any(), any());
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SecondLevelCacheEndpointTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SecondLevelCacheEndpoint secondLevelCacheEndpoint;
+
+    /**
+     * The Entity Manager Factory mock.
+     */
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+
+    // Test Variables
+    private Statistics statistics;
+    private CacheRegionStatistics regionStatistics;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.statistics = mock(Statistics.class);
+        this.regionStatistics = mock(CacheRegionStatistics.class);
+    }
+
+    /**
+     * Test that the endpoint reports the statistics of all the second-level
+     * cache regions.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRegions() {
+        doReturn(this.statistics).when(this.secondLevelCacheEndpoint).getStatistics();
+        doReturn(true).when(this.statistics).isStatisticsEnabled();
+        doReturn(10L).when(this.statistics).getSecondLevelCacheHitCount();
+        doReturn(new String[]{"region"}).when(this.statistics).getSecondLevelCacheRegionNames();
+        doReturn(this.regionStatistics).when(this.statistics).getCacheRegionStatistics("region");
+        doReturn(7L).when(this.regionStatistics).getHitCount();
+        doReturn(3L).when(this.regionStatistics).getMissCount();
+        doReturn(5L).when(this.regionStatistics).getElementCountInMemory();
+
+        // Perform the component call
+        Map<String, Object> result = this.secondLevelCacheEndpoint.regions();
+
+        // Test the result
+        assertNotNull(result);
+        assertEquals(Boolean.TRUE, result.get("statisticsEnabled"));
+        assertEquals(10L, result.get("hitCount"));
+        Map<String, Object> regions = (Map<String, Object>) result.get("regions");
+        assertEquals(1, regions.size());
+        Map<String, Object> region = (Map<String, Object>) regions.get("region");
+        assertEquals(7L, region.get("hitCount"));
+        assertEquals(3L, region.get("missCount"));
+        assertEquals(5L, region.get("elementCountInMemory"));
+    }
+
+    /**
+     * Test that the endpoint will not report anything for unknown regions.
+     */
+    @Test
+    void testRegionUnknown() {
+        doReturn(this.statistics).when(this.secondLevelCacheEndpoint).getStatistics();
+        doReturn(null).when(this.statistics).getCacheRegionStatistics("unknown");
+
+        // Perform the component call and test the result
+        assertNull(this.secondLevelCacheEndpoint.region("unknown"));
+    }
+
+    /**
+     * Test that the endpoint can evict the whole second-level cache.
+     */
+    @Test
+    void testEvictAll() {
+        Cache cache = mock(Cache.class);
+        doReturn(cache).when(this.entityManagerFactory).getCache();
+
+        // Perform the component call
+        this.secondLevelCacheEndpoint.evictAll();
+
+        // Verify the cache eviction
+        verify(cache, times(1)).evictAll();
+    }
+
+}
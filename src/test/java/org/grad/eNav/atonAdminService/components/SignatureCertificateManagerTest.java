@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import org.grad.eNav.atonAdminService.feign.CKeeperClient;
+import org.grad.eNav.atonAdminService.models.domain.s100.ServiceInformationConfig;
+import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
+import org.grad.secomv2.core.base.DigitalSignatureCertificate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SignatureCertificateManagerTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SignatureCertificateManager signatureCertificateManager;
+
+    /**
+     * The Service Information Config mock.
+     */
+    @Mock
+    ServiceInformationConfig serviceInformationConfig;
+
+    /**
+     * The cKeeper Feign Client mock.
+     */
+    @Mock
+    CKeeperClient cKeeperClient;
+
+    // Test Variables
+    private SignatureCertificateDto signatureCertificate;
+    private SignatureCertificateDto newSignatureCertificate;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() throws IOException {
+        final String pem;
+        try(InputStream in = ClassLoader.getSystemResourceAsStream("test.pem")) {
+            pem = new String(in.readAllBytes());
+        }
+
+        // Create the signature certificates provided by cKeeper
+        this.signatureCertificate = new SignatureCertificateDto();
+        this.signatureCertificate.setCertificateId(BigInteger.ONE);
+        this.signatureCertificate.setCertificate(pem);
+        this.signatureCertificate.setRootCertificate(pem);
+        this.newSignatureCertificate = new SignatureCertificateDto();
+        this.newSignatureCertificate.setCertificateId(BigInteger.TWO);
+        this.newSignatureCertificate.setCertificate(pem);
+        this.newSignatureCertificate.setRootCertificate(pem);
+
+        // Run the asynchronous refreshes in-line
+        this.signatureCertificateManager.ttl = 300;
+        this.signatureCertificateManager.refreshAhead = 60;
+        this.signatureCertificateManager.retryInterval = 10;
+        this.signatureCertificateManager.taskExecutor = Runnable::run;
+        this.signatureCertificateManager.init();
+    }
+
+    /**
+     * Test that the certificate is retrieved from cKeeper and parsed only
+     * once, while it is still fresh.
+     */
+    @Test
+    void testGetSignatureCertificate() {
+        doReturn(this.signatureCertificate).when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Request the certificate multiple times
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        final DigitalSignatureCertificate digitalSignatureCertificate = this.signatureCertificateManager.getDigitalSignatureCertificate();
+
+        // Make sure cKeeper was only contacted once and the certificate was parsed
+        verify(this.cKeeperClient, times(1)).getSignatureCertificate(any(), any(), any(), any());
+        assertNotNull(digitalSignatureCertificate);
+        assertEquals("1", digitalSignatureCertificate.getCertificateAlias()[0]);
+        assertEquals(1, digitalSignatureCertificate.getCertificate().length);
+        assertNotNull(digitalSignatureCertificate.getPublicKey());
+        assertNotNull(digitalSignatureCertificate.getRootCertificate());
+        assertTrue(this.signatureCertificateManager.nextRefresh.isAfter(Instant.now().plusSeconds(200)));
+    }
+
+    /**
+     * Test that the initial certificate retrieval failures are propagated
+     * since there is no certificate to fall back to.
+     */
+    @Test
+    void testGetSignatureCertificateInitialFailure() {
+        doThrow(RuntimeException.class).when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Make sure the failure is propagated
+        assertThrows(RuntimeException.class, () -> this.signatureCertificateManager.getSignatureCertificate());
+        assertNull(this.signatureCertificateManager.current);
+        assertEquals(1.0, this.signatureCertificateManager.meterRegistry.counter("secom.certificate.refresh.failures").count());
+    }
+
+    /**
+     * Test that once the certificate is due for a refresh, the current one
+     * is still served while the new one is retrieved in the background.
+     */
+    @Test
+    void testGetSignatureCertificateRefreshAhead() {
+        doReturn(this.signatureCertificate)
+                .doReturn(this.newSignatureCertificate)
+                .when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Load the certificate and make it due for a refresh
+        this.signatureCertificateManager.getSignatureCertificate();
+        this.signatureCertificateManager.nextRefresh = Instant.now().minusSeconds(1);
+
+        // Make sure the current certificate is served and then replaced
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        assertSame(this.newSignatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        verify(this.cKeeperClient, times(2)).getSignatureCertificate(any(), any(), any(), any());
+        assertFalse(this.signatureCertificateManager.refreshing.get());
+    }
+
+    /**
+     * Test that if the certificate refresh fails, the last good certificate
+     * keeps being served and the refresh is retried after the retry interval.
+     */
+    @Test
+    void testGetSignatureCertificateRefreshFailure() {
+        doReturn(this.signatureCertificate)
+                .doThrow(RuntimeException.class)
+                .when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Load the certificate and make it due for a refresh
+        this.signatureCertificateManager.getSignatureCertificate();
+        this.signatureCertificateManager.nextRefresh = Instant.now().minusSeconds(1);
+
+        // Make sure the last good certificate is still served
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        verify(this.cKeeperClient, times(2)).getSignatureCertificate(any(), any(), any(), any());
+        assertTrue(this.signatureCertificateManager.nextRefresh.isAfter(Instant.now()));
+        assertFalse(this.signatureCertificateManager.refreshing.get());
+        assertEquals(1.0, this.signatureCertificateManager.meterRegistry.counter("secom.certificate.refresh.failures").count());
+    }
+
+    /**
+     * Test that if an invalid certificate is received on a refresh, it does
+     * not replace the last good certificate and the refresh counts as failed.
+     */
+    @Test
+    void testGetSignatureCertificateRefreshInvalid() {
+        final SignatureCertificateDto invalidSignatureCertificate = new SignatureCertificateDto();
+        invalidSignatureCertificate.setCertificateId(BigInteger.TWO);
+        invalidSignatureCertificate.setCertificate("invalid");
+        invalidSignatureCertificate.setRootCertificate("invalid");
+        doReturn(this.signatureCertificate)
+                .doReturn(invalidSignatureCertificate)
+                .when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Load the certificate and make it due for a refresh
+        this.signatureCertificateManager.getSignatureCertificate();
+        this.signatureCertificateManager.nextRefresh = Instant.now().minusSeconds(1);
+
+        // Make sure the last good certificate is still served
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        assertSame(this.signatureCertificate, this.signatureCertificateManager.getSignatureCertificate());
+        assertNotNull(this.signatureCertificateManager.getDigitalSignatureCertificate());
+        assertTrue(this.signatureCertificateManager.nextRefresh.isAfter(Instant.now()));
+        assertEquals(1.0, this.signatureCertificateManager.meterRegistry.counter("secom.certificate.refresh.failures").count());
+    }
+
+    /**
+     * Test that the periodic refresh check only refreshes a certificate that
+     * has already been loaded and is due for a refresh.
+     */
+    @Test
+    void testRefreshIfDue() {
+        doReturn(this.signatureCertificate).when(this.cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+
+        // Nothing should be loaded before the first request
+        this.signatureCertificateManager.refreshIfDue();
+        verify(this.cKeeperClient, never()).getSignatureCertificate(any(), any(), any(), any());
+
+        // Nor while the certificate is fresh
+        this.signatureCertificateManager.getSignatureCertificate();
+        this.signatureCertificateManager.refreshIfDue();
+        verify(this.cKeeperClient, times(1)).getSignatureCertificate(any(), any(), any(), any());
+
+        // But only once it is due
+        this.signatureCertificateManager.nextRefresh = Instant.now().minusSeconds(1);
+        this.signatureCertificateManager.refreshIfDue();
+        verify(this.cKeeperClient, times(2)).getSignatureCertificate(any(), any(), any(), any());
+    }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.components;
+
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
+import org.hibernate.search.mapper.orm.Search;
+import org.hibernate.search.mapper.orm.session.SearchSession;
+import org.hibernate.search.mapper.orm.work.SearchIndexingPlan;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SubscriptionTimestampBufferTest {
+
+    /**
+     * The Tested Component.
+     */
+    @InjectMocks
+    @Spy
+    SubscriptionTimestampBuffer subscriptionTimestampBuffer;
+
+    /**
+     * The Entity Manager Factory mock.
+     */
+    @Mock
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * The JDBC Template mock.
+     */
+    @Mock
+    JdbcTemplate jdbcTemplate;
+
+    // Test Variables
+    private List<Runnable> scheduled;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.scheduled = new ArrayList<>();
+        this.subscriptionTimestampBuffer.batchSize = 2;
+        this.subscriptionTimestampBuffer.taskExecutor = this.scheduled::add;
+    }
+
+    /**
+     * Test that only the latest timestamp of each subscription is buffered.
+     */
+    @Test
+    void testRecord() {
+        final UUID uuid = UUID.randomUUID();
+        final LocalDateTime now = LocalDateTime.now();
+
+        this.subscriptionTimestampBuffer.record(uuid, now);
+        this.subscriptionTimestampBuffer.record(uuid, now.minusMinutes(1));
+        this.subscriptionTimestampBuffer.record(null, now);
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), null);
+
+        // Make sure the latest timestamp was kept
+        assertEquals(1, this.subscriptionTimestampBuffer.size());
+        assertEquals(now, this.subscriptionTimestampBuffer.buffer.get(uuid));
+        assertTrue(this.scheduled.isEmpty());
+    }
+
+    /**
+     * Test that a flush is requested once the buffer is full, but only once
+     * until it has been performed.
+     */
+    @Test
+    void testRecordFull() {
+        doReturn(mock(Cache.class)).when(this.entityManagerFactory).getCache();
+        doNothing().when(this.subscriptionTimestampBuffer).reindex(any());
+
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+        assertEquals(1, this.scheduled.size());
+
+        // Perform the requested flush
+        this.scheduled.removeFirst().run();
+        assertEquals(0, this.subscriptionTimestampBuffer.size());
+
+        // A new flush can now be requested
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+        assertEquals(1, this.scheduled.size());
+    }
+
+    /**
+     * Test that the buffered timestamps are flushed in batches, evicting the
+     * respective second level cache entries and re-indexing the updated
+     * subscriptions.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush() {
+        final Cache cache = mock(Cache.class);
+        doReturn(cache).when(this.entityManagerFactory).getCache();
+        doNothing().when(this.subscriptionTimestampBuffer).reindex(any());
+        final UUID uuid = UUID.randomUUID();
+        final LocalDateTime now = LocalDateTime.now();
+        this.subscriptionTimestampBuffer.buffer.put(uuid, now);
+        this.subscriptionTimestampBuffer.buffer.put(UUID.randomUUID(), now);
+        this.subscriptionTimestampBuffer.buffer.put(UUID.randomUUID(), now);
+
+        // Perform the flush
+        this.subscriptionTimestampBuffer.flush();
+
+        // Make sure the timestamps were written in two batches
+        ArgumentCaptor<List<Object[]>> batchArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.jdbcTemplate, times(2)).batchUpdate(anyString(), batchArgument.capture());
+        assertEquals(2, batchArgument.getAllValues().get(0).size());
+        assertEquals(1, batchArgument.getAllValues().get(1).size());
+        assertTrue(batchArgument.getAllValues()
+                .stream()
+                .flatMap(List::stream)
+                .anyMatch(args -> uuid.equals(args[1]) && Timestamp.valueOf(now).equals(args[0]) && Timestamp.valueOf(now).equals(args[2])));
+        verify(cache, times(3)).evict(eq(SubscriptionRequest.class), any());
+        ArgumentCaptor<List<UUID>> uuidsArgument = ArgumentCaptor.forClass(List.class);
+        verify(this.subscriptionTimestampBuffer, times(2)).reindex(uuidsArgument.capture());
+        assertEquals(3, uuidsArgument.getAllValues().stream().mapToInt(List::size).sum());
+        assertTrue(uuidsArgument.getAllValues().stream().anyMatch(uuids -> uuids.contains(uuid)));
+        assertEquals(0, this.subscriptionTimestampBuffer.size());
+    }
+
+    /**
+     * Test that the subscriptions are reloaded and re-indexed straight away,
+     * skipping any that no longer exist.
+     */
+    @Test
+    void testReindex() {
+        final EntityManager entityManager = mock(EntityManager.class);
+        final SearchSession searchSession = mock(SearchSession.class);
+        final SearchIndexingPlan indexingPlan = mock(SearchIndexingPlan.class);
+        final SubscriptionRequest subscriptionRequest = new SubscriptionRequest();
+        final UUID uuid = UUID.randomUUID();
+        final UUID missingUuid = UUID.randomUUID();
+        doReturn(entityManager).when(this.entityManagerFactory).createEntityManager();
+        doReturn(indexingPlan).when(searchSession).indexingPlan();
+        doReturn(subscriptionRequest).when(entityManager).find(SubscriptionRequest.class, uuid);
+        doReturn(null).when(entityManager).find(SubscriptionRequest.class, missingUuid);
+
+        // Perform the component call
+        try (MockedStatic<Search> mockedSearch = Mockito.mockStatic(Search.class)) {
+            mockedSearch.when(() -> Search.session(entityManager)).thenReturn(searchSession);
+            this.subscriptionTimestampBuffer.reindex(List.of(uuid, missingUuid));
+        }
+
+        // Make sure only the existing subscription was re-indexed
+        verify(indexingPlan, times(1)).addOrUpdate(subscriptionRequest);
+        verify(indexingPlan, times(1)).addOrUpdate(any());
+        verify(indexingPlan, times(1)).execute();
+        verify(entityManager, times(1)).close();
+    }
+
+    /**
+     * Test that the timestamps that fail to be written are put back into the
+     * buffer, without overwriting any newer timestamps recorded meanwhile.
+     */
+    @Test
+    void testFlushFailed() {
+        final UUID uuid = UUID.randomUUID();
+        final LocalDateTime now = LocalDateTime.now();
+        this.subscriptionTimestampBuffer.buffer.put(uuid, now.minusMinutes(1));
+        doAnswer(inv -> {
+            this.subscriptionTimestampBuffer.buffer.put(uuid, now);
+            throw new DataAccessResourceFailureException("Database down");
+        }).when(this.jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        // Perform the flush
+        this.subscriptionTimestampBuffer.flush();
+
+        // Make sure the newer timestamp remains buffered
+        assertEquals(1, this.subscriptionTimestampBuffer.size());
+        assertEquals(now, this.subscriptionTimestampBuffer.buffer.get(uuid));
+        verify(this.entityManagerFactory, never()).getCache();
+    }
+
+    /**
+     * Test that nothing gets written when no timestamps are buffered.
+     */
+    @Test
+    void testFlushEmpty() {
+        this.subscriptionTimestampBuffer.flush();
+
+        verify(this.jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    /**
+     * Test that the buffered timestamps are persisted before shutting down.
+     */
+    @Test
+    void testDestroy() {
+        doReturn(mock(Cache.class)).when(this.entityManagerFactory).getCache();
+        doNothing().when(this.subscriptionTimestampBuffer).reindex(any());
+        this.subscriptionTimestampBuffer.record(UUID.randomUUID(), LocalDateTime.now());
+
+        // Perform the component call
+        this.subscriptionTimestampBuffer.destroy();
+
+        // Make sure the timestamps were written
+        verify(this.jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+        assertEquals(0, this.subscriptionTimestampBuffer.size());
+    }
+
+}
@@ -20,12 +20,17 @@ import _int.iho.s_201.gml.cs0._2.ChangeTypesType;
 import org.grad.eNav.atonAdminService.TestFeignSecurityConfig;
 import org.grad.eNav.atonAdminService.TestingConfiguration;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.models.domain.s201.*;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.*;
 import org.grad.eNav.atonAdminService.models.dtos.s201.AidsToNavigationDto;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
 import org.grad.eNav.atonAdminService.models.dtos.s201.FeatureNameDto;
 import org.grad.eNav.atonAdminService.models.dtos.s201.InformationDto;
+import org.grad.eNav.atonAdminService.models.enums.AtonExportFormat;
 import org.grad.eNav.atonAdminService.services.AidsToNavigationService;
+import org.grad.eNav.atonAdminService.services.AtonExportService;
+import org.grad.eNav.atonAdminService.services.AtonTileService;
 import org.grad.eNav.atonAdminService.services.DatasetService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -40,6 +45,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -47,17 +53,26 @@ import org.springframework.test.web.servlet.MvcResult;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(controllers = AidsToNavigationController.class, excludeAutoConfiguration = {SecurityAutoConfiguration.class})
@@ -82,6 +97,18 @@ class AidsToNavigationControllerTest {
     @MockitoBean
     AidsToNavigationService aidsToNavigationService;
 
+    /**
+     * The AtoN Tile Service mock.
+     */
+    @MockitoBean
+    AtonTileService atonTileService;
+
+    /**
+     * The AtoN Export Service mock.
+     */
+    @MockitoBean
+    AtonExportService atonExportService;
+
     /**
      * The Dataset Service mock.
      */
@@ -291,6 +318,147 @@ class AidsToNavigationControllerTest {
         }
     }
 
+    /**
+     * Test that we can stream the Aids to Navigation export, which by
+     * default is generated as newline delimited JSON.
+     */
+    @Test
+    void testExportAidsToNavigation() throws Exception {
+        doAnswer(inv -> {
+            final OutputStream outputStream = inv.getArgument(5);
+            outputStream.write("{\"idCode\":\"ID001\"}\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        }).when(this.atonExportService).export(eq(AtonExportFormat.NDJSON), any(), any(), any(), any(), any());
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(get("/api/atons/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(AtonExportFormat.NDJSON.getMediaType()))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"atons.ndjson\""))
+                .andReturn();
+
+        // Validate the response
+        assertEquals("{\"idCode\":\"ID001\"}\n", mvcResult.getResponse().getContentAsString());
+    }
+
+    /**
+     * Test that we can stream the Aids to Navigation export as a GeoJSON
+     * feature collection.
+     */
+    @Test
+    void testExportAidsToNavigationGeoJson() throws Exception {
+        doReturn(0L).when(this.atonExportService).export(eq(AtonExportFormat.GEOJSON), any(), any(), any(), any(), any());
+
+        // Perform the MVC request
+        this.mockMvc.perform(get("/api/atons/export").param("format", "geojson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(AtonExportFormat.GEOJSON.getMediaType()))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"atons.geojson\""));
+    }
+
+    /**
+     * Test that if we request an unsupported export format, an HTTP
+     * UNPROCESSABLE_ENTITY response will be returned.
+     */
+    @Test
+    void testExportAidsToNavigationInvalidFormat() throws Exception {
+        // Perform the MVC request
+        this.mockMvc.perform(get("/api/atons/export").param("format", "csv"))
+                .andExpect(status().is(HttpStatus.UNPROCESSABLE_ENTITY.value()));
+    }
+
+    /**
+     * Test that we can retrieve the Aids to Navigation clusters of a bounding
+     * box for a low zoom map view.
+     */
+    @Test
+    void testGetAidsToNavigationClusters() throws Exception {
+        final AtonClusterDto cluster = new AtonClusterDto();
+        cluster.setCount(3);
+        cluster.setLatitude(54.5);
+        cluster.setLongitude(-3.5);
+        cluster.setBbox(new double[]{-4.0, 54.0, -3.0, 55.0});
+        cluster.setTypes(Map.of("Lighthouse", 3L));
+        doReturn(Collections.singletonList(cluster)).when(this.aidsToNavigationService).findClusters(any(), anyInt());
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(get("/api/atons/clusters")
+                        .param("bbox", "-10,50,5,60")
+                        .param("zoom", "4"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andReturn();
+
+        // Parse and validate the response
+        List<AtonClusterDto> result = this.objectMapper.readValue(mvcResult.getResponse().getContentAsString(), new TypeReference<>() {});
+        assertEquals(1, result.size());
+        assertEquals(cluster.getCount(), result.getFirst().getCount());
+        assertEquals(cluster.getLatitude(), result.getFirst().getLatitude());
+        assertEquals(cluster.getLongitude(), result.getFirst().getLongitude());
+        assertArrayEquals(cluster.getBbox(), result.getFirst().getBbox());
+        assertEquals(cluster.getTypes(), result.getFirst().getTypes());
+    }
+
+    /**
+     * Test that we can retrieve the Aids to Navigation vector tiles, which
+     * should be served gzip-compressed when the client accepts it.
+     */
+    @Test
+    void testGetAidsToNavigationTile() throws Exception {
+        final byte[] tile = new byte[]{0x1f, (byte) 0x8b, 0x08, 0x00};
+        doReturn(tile).when(this.atonTileService).getTile(5, 15, 10, true);
+
+        // Perform the MVC request
+        MvcResult mvcResult = this.mockMvc.perform(get("/api/atons/tiles/{z}/{x}/{y}.mvt", 5, 15, 10)
+                        .header("Accept-Encoding", "deflate, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(AtonTileService.MVT_MEDIA_TYPE))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andReturn();
+
+        // Validate the response
+        assertArrayEquals(tile, mvcResult.getResponse().getContentAsByteArray());
+    }
+
+    /**
+     * Test that the Aids to Navigation vector tiles are served uncompressed
+     * to the clients that do not accept the gzip content encoding.
+     */
+    @Test
+    void testGetAidsToNavigationTileUncompressed() throws Exception {
+        final byte[] tile = new byte[]{0x1a, 0x02, 0x78, 0x02};
+        doReturn(tile).when(this.atonTileService).getTile(5, 15, 10, false);
+
+        // Perform the MVC requests, without and with a rejected gzip encoding
+        for(String acceptEncoding : new String[]{null, "gzip;q=0, *", "identity"}) {
+            MvcResult mvcResult = this.mockMvc.perform(acceptEncoding == null ?
+                            get("/api/atons/tiles/{z}/{x}/{y}.mvt", 5, 15, 10) :
+                            get("/api/atons/tiles/{z}/{x}/{y}.mvt", 5, 15, 10).header("Accept-Encoding", acceptEncoding))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(AtonTileService.MVT_MEDIA_TYPE))
+                    .andExpect(header().doesNotExist("Content-Encoding"))
+                    .andExpect(header().string("Vary", "Accept-Encoding"))
+                    .andReturn();
+
+            // Validate the response
+            assertArrayEquals(tile, mvcResult.getResponse().getContentAsByteArray());
+        }
+    }
+
+    /**
+     * Test that if we request a vector tile outside the tile matrix, an HTTP
+     * UNPROCESSABLE_ENTITY response will be returned.
+     */
+    @Test
+    void testGetAidsToNavigationTileInvalid() throws Exception {
+        doThrow(ValidationException.class).when(this.atonTileService).getTile(anyInt(), anyInt(), anyInt(), anyBoolean());
+
+        // Perform the MVC request
+        this.mockMvc.perform(get("/api/atons/tiles/{z}/{x}/{y}.mvt", 1, 5, 5))
+                .andExpect(status().is(HttpStatus.UNPROCESSABLE_ENTITY.value()));
+    }
+
     /**
      * Test that we can correctly delete an existing Aids to Navigation by using
      * a valid ID.
@@ -18,7 +18,9 @@ package org.grad.eNav.atonAdminService.controllers;
 
 import org.grad.eNav.atonAdminService.TestFeignSecurityConfig;
 import org.grad.eNav.atonAdminService.TestingConfiguration;
+import org.grad.eNav.atonAdminService.components.DatasetRemovalTracker;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.*;
 import org.grad.eNav.atonAdminService.models.dtos.s201.S201DataSetDto;
@@ -37,6 +39,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
@@ -44,6 +47,9 @@ import org.springframework.test.web.servlet.MvcResult;
 import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.ObjectMapper;
 
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -51,8 +57,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doReturn;
-import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -78,6 +83,12 @@ class DatasetControllerTest {
     @MockitoBean
     DatasetService datasetService;
 
+    /**
+     * The Dataset Removal Tracker mock.
+     */
+    @MockitoBean
+    DatasetRemovalTracker datasetRemovalTracker;
+
     // Test Variables
     private List<S201Dataset> datasetList;
     private Pageable pageable;
@@ -126,7 +137,8 @@ class DatasetControllerTest {
     void testGetDatasets() throws Exception {
         // Created a result page to be returned by the mocked service
         Page<S201Dataset> page = new PageImpl<>(this.datasetList.subList(0, 5), this.pageable, this.datasetList.size());
-        doReturn(page).when(this.datasetService).findAll(any(), any(), any(), any(), any(), any());
+        doReturn(Page.empty()).when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
+        doReturn(page).when(this.datasetService).findAll(any(Page.class));
 
         // Perform the MVC request
         MvcResult mvcResult = this.mockMvc.perform(get("/api/dataset"))
@@ -156,6 +168,70 @@ class DatasetControllerTest {
         }
     }
 
+    /**
+     * Test that the datasets retrieval supports conditional requests, and
+     * that the datasets are not retrieved again if the client already holds
+     * the current version.
+     */
+    @Test
+    void testGetDatasetsNotModified() throws Exception {
+        // Mock the dataset versions and the result page
+        Page<DatasetVersion> versions = new PageImpl<>(this.datasetList.subList(0, 5).stream()
+                .map(d -> new DatasetVersion(UUID.randomUUID(), BigInteger.ONE, LocalDateTime.now(), LocalDateTime.now()))
+                .toList(), this.pageable, this.datasetList.size());
+        Page<S201Dataset> page = new PageImpl<>(this.datasetList.subList(0, 5), this.pageable, this.datasetList.size());
+        doReturn(versions).when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
+        doReturn(page).when(this.datasetService).findAll(versions);
+
+        // Perform the initial MVC request
+        MvcResult mvcResult = this.mockMvc.perform(get("/api/dataset"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String eTag = mvcResult.getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Perform the conditional MVC request
+        this.mockMvc.perform(get("/api/dataset").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+
+        // Make sure the datasets were only retrieved once
+        verify(this.datasetService, times(1)).findAll(versions);
+    }
+
+    /**
+     * Test that the datasets retrieval does not consider the client copy as
+     * up to date through the If-Modified-Since header, if any dataset has
+     * been removed since, even though the remaining datasets have not been
+     * modified.
+     */
+    @Test
+    void testGetDatasetsModifiedAfterRemoval() throws Exception {
+        // Mock the dataset versions and the result page
+        Page<DatasetVersion> versions = new PageImpl<>(this.datasetList.subList(0, 5).stream()
+                .map(d -> new DatasetVersion(UUID.randomUUID(), BigInteger.ONE, LocalDateTime.now().minusHours(2), LocalDateTime.now().minusHours(2)))
+                .toList(), this.pageable, this.datasetList.size());
+        Page<S201Dataset> page = new PageImpl<>(this.datasetList.subList(0, 5), this.pageable, this.datasetList.size());
+        doReturn(versions).when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
+        doReturn(page).when(this.datasetService).findAll(versions);
+
+        // Perform the conditional MVC request before any removal
+        final long ifModifiedSince = Instant.now().minusSeconds(3600).toEpochMilli();
+        doReturn(Instant.now().minusSeconds(7200)).when(this.datasetRemovalTracker).getLastRemovalTime();
+        this.mockMvc.perform(get("/api/dataset").header(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince))
+                .andExpect(status().isNotModified());
+
+        // And again after a removal
+        doReturn(Instant.now()).when(this.datasetRemovalTracker).getLastRemovalTime();
+        this.mockMvc.perform(get("/api/dataset").header(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince))
+                .andExpect(status().isOk());
+
+        // Make sure the datasets were only retrieved the second time
+        verify(this.datasetService, times(1)).findAll(versions);
+    }
+
     /**
      * Test that the API supports the jQuery Datatables server-side paging
      * and search requests.
@@ -21,9 +21,12 @@ import jakarta.xml.bind.DatatypeConverter;
 import jakarta.xml.bind.JAXBException;
 import org.grad.eNav.atonAdminService.TestFeignSecurityConfig;
 import org.grad.eNav.atonAdminService.TestingConfiguration;
+import org.grad.eNav.atonAdminService.components.DatasetRemovalTracker;
+import org.grad.eNav.atonAdminService.components.SecomAcknowledgementTracker;
 import org.grad.eNav.atonAdminService.components.SecomV2CertificateProviderImpl;
 import org.grad.eNav.atonAdminService.components.SecomV2SignatureProviderImpl;
 import org.grad.eNav.atonAdminService.controllers.secom.SecomRequestHeaders;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
@@ -53,8 +56,11 @@ import org.springframework.boot.security.autoconfigure.SecurityAutoConfiguration
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webtestclient.autoconfigure.AutoConfigureWebTestClient;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -74,6 +80,7 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
 import java.util.Collections;
@@ -135,6 +142,18 @@ class SecomV2ControllerTest {
     @MockitoBean
     SecomV2SubscriptionService secomV2SubscriptionService;
 
+    /**
+     * The SECOM Acknowledgement Tracker mock.
+     */
+    @MockitoBean
+    SecomAcknowledgementTracker secomAcknowledgementTracker;
+
+    /**
+     * The Dataset Removal Tracker mock.
+     */
+    @MockitoBean
+    DatasetRemovalTracker datasetRemovalTracker;
+
     /**
      * The Secom Certificate Provider mock.
      */
@@ -344,6 +363,40 @@ class SecomV2ControllerTest {
                 });
     }
 
+    /**
+     * Test that the SECOM Get Summary interface will only retrieve the first
+     * page of the default size when no pagination is requested, while still
+     * reporting the total number of the matching datasets.
+     */
+    @Test
+    void testGetSummaryDefaultPagination() {
+        doReturn(new PageImpl<>(Collections.singletonList(this.s201DataSet), PageRequest.of(0, 100), 2500))
+                .when(this.datasetService).findAll(any(), any(), any(), any(), any(), any());
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/secom" + GET_SUMMARY_INTERFACE_PATH)
+                        .queryParam("containerType", this.queryContainerType.getValue())
+                        .queryParam("dataProductType", this.queryDataProductType.getValue())
+                        .build())
+                .header(SecomRequestHeaders.MRN_HEADER, "mrn")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(GetSummaryResponseObject.class)
+                .consumeWith(response -> {
+                    GetSummaryResponseObject getSummaryResponseObject = response.getResponseBody();
+                    assertNotNull(getSummaryResponseObject);
+                    assertNotNull(getSummaryResponseObject.getSummaryObject());
+                    assertEquals(1, getSummaryResponseObject.getSummaryObject().size());
+                    assertNotNull(getSummaryResponseObject.getPagination());
+                    assertEquals(100, getSummaryResponseObject.getPagination().getMaxItemsPerPage());
+                    assertEquals(2500, getSummaryResponseObject.getPagination().getTotalItems());
+                });
+
+        // Make sure only the first page of the default size was requested
+        verify(this.datasetService, times(1)).findAll(any(), any(), any(), any(), any(), eq(PageRequest.of(0, 100)));
+    }
+
     /**
      * Test that the SECOM Get Summary interface will return an HTTP Status
      * BAD_REQUEST if one of the provided query parameters is not formatted
@@ -417,8 +470,10 @@ class SecomV2ControllerTest {
         doReturn("signature".getBytes()).when(this.secomSignatureProvider).generateSignature(any(), any(), any());
 
         // Mock the rest
+        doReturn(new PageImpl<>(Collections.singletonList(new DatasetVersion(this.queryDataReference, BigInteger.ONE, LocalDateTime.now(), LocalDateTime.now())), Pageable.ofSize(this.queryPageSize), 1))
+                .when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
         doReturn(new PageImpl<>(Collections.singletonList(this.s201DataSet), Pageable.ofSize(this.queryPageSize), 1))
-                .when(this.datasetService).findAll(any(), any(), any(), any(), any(), any());
+                .when(this.datasetService).findAll(any(Page.class));
 
         webTestClient.get()
                 .uri(uriBuilder -> uriBuilder
@@ -499,8 +554,10 @@ class SecomV2ControllerTest {
         doReturn("signature".getBytes()).when(this.secomSignatureProvider).generateSignature(any(), any());
 
         // Mock the rest
+        doReturn(new PageImpl<>(Collections.singletonList(new DatasetVersion(this.queryDataReference, BigInteger.ONE, LocalDateTime.now(), LocalDateTime.now())), Pageable.ofSize(this.queryPageSize), 1))
+                .when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
         doReturn(new PageImpl<>(Collections.singletonList(this.s201DataSet), Pageable.ofSize(this.queryPageSize), 1))
-                .when(this.datasetService).findAll(any(), any(), any(), any(), any(), any());
+                .when(this.datasetService).findAll(any(Page.class));
         doReturn("packagedExchangeSet".getBytes()).when(this.s100ExchangeSetService).packageToExchangeSet(any(), any(), any());
 
         // Set the container type to Exchange Set
@@ -550,6 +607,40 @@ class SecomV2ControllerTest {
                 });
     }
 
+    /**
+     * Test that the SECOM Get interface will return an HTTP Status
+     * NOT_MODIFIED, without retrieving the actual datasets, if the client
+     * already holds the current dataset versions.
+     */
+    @Test
+    void testGetNotModified() {
+        // Mock the dataset versions
+        doReturn(new PageImpl<>(Collections.singletonList(new DatasetVersion(
+                this.queryDataReference,
+                BigInteger.ONE,
+                LocalDateTime.now().minusHours(1),
+                LocalDateTime.now().minusHours(1))), Pageable.ofSize(this.queryPageSize), 1))
+                .when(this.datasetService).findAllVersions(any(), any(), any(), any(), any(), any());
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .path("/api/secom" + GET_INTERFACE_PATH)
+                        .queryParam("dataReference", this.queryDataReference)
+                        .queryParam("containerType", this.queryContainerType.getValue())
+                        .queryParam("dataProductType", this.queryDataProductType.getValue())
+                        .build())
+                .header(SecomRequestHeaders.MRN_HEADER, "mrn")
+                .ifModifiedSince(ZonedDateTime.now())
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .expectBody().isEmpty();
+
+        // Make sure the datasets were not actually retrieved
+        verify(this.datasetService, never()).findAll(any(Page.class));
+    }
+
     /**
      * Test that the SECOM Get interface will return an HTTP Status BAD_REQUEST
      * if one of the provided query parameters is not formatted properly
@@ -764,6 +855,12 @@ class SecomV2ControllerTest {
                     assertNotNull(acknowledgementResponseObject);
                     assertEquals(String.format("Successfully received ACK for %s", acknowledgementObject.getEnvelope().getTransactionIdentifier()), acknowledgementResponseObject.getMessage());
                 });
+
+        // Make sure the acknowledgement was correlated to the transactions
+        verify(this.secomAcknowledgementTracker, times(1)).acknowledge(
+                this.acknowledgementObject.getEnvelope().getTransactionIdentifier(),
+                "mrn",
+                AckTypeEnum.DELIVERED_ACK);
     }
 
     /**
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.controllers.secom.v2;
+
+import org.grad.eNav.atonAdminService.TestingConfiguration;
+import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
+import org.grad.eNav.atonAdminService.repos.DatasetRepo;
+import org.grad.secomv2.core.models.GetSummaryResponseObject;
+import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
+import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.jpa.properties.hibernate.search.indexing.plan.synchronization.strategy=sync",
+        "gla.rad.service.secom.pagination.defaultPageSize=" + SecomV2PaginationLoadTest.DEFAULT_PAGE_SIZE
+})
+@Import(TestingConfiguration.class)
+class SecomV2PaginationLoadTest {
+
+    /**
+     * The number of datasets to be persisted in the queried area.
+     */
+    private static final int DATASET_COUNT = 3000;
+
+    /**
+     * The default page size used when no pagination is requested.
+     */
+    static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * The maximum latency allowed for retrieving a single page of the
+     * dataset summaries. Retrieving all datasets in a single response would
+     * grow with the number of datasets in the area.
+     */
+    private static final Duration MAX_PAGE_LATENCY = Duration.ofSeconds(2);
+
+    /**
+     * The queried area, covering all the persisted datasets.
+     */
+    private static final String QUERY_GEOMETRY = "POLYGON((-10 40, 10 40, 10 60, -10 60, -10 40))";
+
+    /**
+     * The SECOM Get Summary Controller.
+     */
+    @Autowired
+    GetSummaryController getSummaryController;
+
+    /**
+     * The Dataset Repo.
+     */
+    @Autowired
+    DatasetRepo datasetRepo;
+
+    /**
+     * The Transaction Manager.
+     */
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // Test Variables
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        // Persist thousands of datasets in the same area
+        this.transactionTemplate.executeWithoutResult(status -> {
+            final List<S201Dataset> datasets = new ArrayList<>();
+            for(int i=0; i<DATASET_COUNT; i++) {
+                S201Dataset dataset = new S201Dataset("LoadTestDataset" + i);
+                dataset.setGeometry(factory.createPoint(new Coordinate(-5 + (i % 100) * 0.1, 45 + (i / 100) * 0.1)));
+                datasets.add(dataset);
+            }
+            this.datasetRepo.saveAll(datasets);
+        });
+    }
+
+    /**
+     * Clean up the persisted datasets after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.transactionTemplate.executeWithoutResult(status -> this.datasetRepo.deleteAll());
+    }
+
+    /**
+     * Test that a SECOM Get Summary request without any pagination only
+     * retrieves the first page of the default size, while still reporting
+     * the total number of the datasets in the area.
+     */
+    @Test
+    void testGetSummaryDefaultPage() {
+        final GetSummaryResponseObject response = this.getSummaryPage(null, null);
+
+        assertNotNull(response.getSummaryObject());
+        assertEquals(DEFAULT_PAGE_SIZE, response.getSummaryObject().size());
+        assertNotNull(response.getPagination());
+        assertEquals(DATASET_COUNT, response.getPagination().getTotalItems());
+        assertEquals(DEFAULT_PAGE_SIZE, response.getPagination().getMaxItemsPerPage());
+    }
+
+    /**
+     * Test that walking through all the pages of the datasets in the area
+     * retrieves every dataset exactly once, while the latency of each page
+     * remains bounded regardless of the total number of datasets.
+     */
+    @Test
+    void testGetSummaryPageLatency() {
+        // Warm up the search index and the persistence context
+        this.getSummaryPage(1, DEFAULT_PAGE_SIZE);
+
+        final int totalPages = (DATASET_COUNT + DEFAULT_PAGE_SIZE - 1) / DEFAULT_PAGE_SIZE;
+        final Set<UUID> retrieved = new HashSet<>();
+        Duration maxLatency = Duration.ZERO;
+        for(int page=1; page<=totalPages; page++) {
+            final long start = System.nanoTime();
+            final GetSummaryResponseObject response = this.getSummaryPage(page, DEFAULT_PAGE_SIZE);
+            final Duration latency = Duration.ofNanos(System.nanoTime() - start);
+            maxLatency = latency.compareTo(maxLatency) > 0 ? latency : maxLatency;
+
+            assertEquals(DATASET_COUNT, response.getPagination().getTotalItems());
+            assertTrue(response.getSummaryObject().size() <= DEFAULT_PAGE_SIZE);
+            response.getSummaryObject().forEach(summary -> assertTrue(retrieved.add(summary.getDataReference())));
+        }
+
+        // Make sure all datasets were retrieved within the latency bounds
+        assertEquals(DATASET_COUNT, retrieved.size());
+        assertTrue(maxLatency.compareTo(MAX_PAGE_LATENCY) <= 0,
+                String.format("Expected each page within %d ms but the slowest took %d ms",
+                        MAX_PAGE_LATENCY.toMillis(), maxLatency.toMillis()));
+    }
+
+    /**
+     * A helper function to retrieve a page of the dataset summaries in the
+     * queried area, through the SECOM Get Summary controller.
+     *
+     * @param page the SECOM page number
+     * @param pageSize the SECOM page size
+     * @return the SECOM Get Summary response object
+     */
+    private GetSummaryResponseObject getSummaryPage(Integer page, Integer pageSize) {
+        final ResponseEntity<GetSummaryResponseObject> response = this.getSummaryController.getSummary(
+                ContainerTypeEnum.S100_DataSet,
+                SECOM_DataProductType.S201,
+                null,
+                QUERY_GEOMETRY,
+                null,
+                null,
+                null,
+                page,
+                pageSize);
+        assertNotNull(response.getBody());
+        return response.getBody();
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.feign;
+
+import feign.Request;
+import feign.Response;
+import org.grad.eNav.atonAdminService.models.dtos.SignatureCertificateDto;
+import org.grad.eNav.atonAdminService.models.dtos.SignatureVerificationRequestDto;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stub of the cKeeper client, to be used for testing and
+ * benchmarking the signature operations without a running cKeeper instance.
+ * Every request is delayed by a configurable latency to simulate the remote
+ * round trip, while the number of requests and the maximum number of
+ * concurrent requests are recorded.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class CKeeperClientStub implements CKeeperClient {
+
+    // Class Variables
+    private final long latency;
+    private final AtomicInteger requests = new AtomicInteger(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger maxInFlight = new AtomicInteger(0);
+
+    /**
+     * Instantiates a new cKeeper client stub.
+     *
+     * @param latency the simulated latency of each request in milliseconds
+     */
+    public CKeeperClientStub(long latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the total number of requests received.
+     *
+     * @return the total number of requests received
+     */
+    public int getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * Returns the maximum number of requests served concurrently.
+     *
+     * @return the maximum number of requests served concurrently
+     */
+    public int getMaxInFlight() {
+        return this.maxInFlight.get();
+    }
+
+    @Override
+    public SignatureCertificateDto getSignatureCertificate(String entityName, String version, String mmsi, String entityType) {
+        this.simulateRequest();
+        final SignatureCertificateDto signatureCertificateDto = new SignatureCertificateDto();
+        signatureCertificateDto.setCertificateId(BigInteger.ONE);
+        return signatureCertificateDto;
+    }
+
+    @Override
+    public Response generateCertificateSignature(BigInteger certificateId, String algorithm, byte[] payload) {
+        this.simulateRequest();
+        return Response.builder()
+                .status(200)
+                .request(Request.create(Request.HttpMethod.POST, "/api/signature/certificate/" + certificateId, Collections.emptyMap(), payload, StandardCharsets.UTF_8, null))
+                .body(this.sign(payload))
+                .build();
+    }
+
+    @Override
+    public List<String> generateCertificateSignatures(BigInteger certificateId, String algorithm, List<String> payloads) {
+        this.simulateRequest();
+        return payloads.stream()
+                .map(Base64.getDecoder()::decode)
+                .map(this::sign)
+                .map(signature -> new String(signature, StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    @Override
+    public Response verifyEntitySignature(String entityName, SignatureVerificationRequestDto signatureVerificationRequestDto) {
+        this.simulateRequest();
+        return Response.builder()
+                .status(200)
+                .request(Request.create(Request.HttpMethod.POST, "/api/signature/entity/verify/" + entityName, Collections.emptyMap(), null, StandardCharsets.UTF_8, null))
+                .build();
+    }
+
+    /**
+     * Generates a deterministic fake signature for the provided payload.
+     *
+     * @param payload the payload to be signed
+     * @return the fake signature
+     */
+    public byte[] sign(byte[] payload) {
+        return ("signature-" + new String(payload, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Records a new request and blocks for the configured latency.
+     */
+    protected void simulateRequest() {
+        this.requests.incrementAndGet();
+        this.maxInFlight.accumulateAndGet(this.inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(this.latency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.inFlight.decrementAndGet();
+        }
+    }
+
+}
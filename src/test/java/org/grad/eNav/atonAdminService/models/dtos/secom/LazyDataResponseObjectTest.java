@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.models.dtos.secom;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LazyDataResponseObjectTest {
+
+    // Test Variables
+    private AtomicInteger loads;
+    private LazyDataResponseObject lazyDataResponseObject;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.loads = new AtomicInteger();
+        this.lazyDataResponseObject = new LazyDataResponseObject(() -> {
+            this.loads.incrementAndGet();
+            return "payload".getBytes();
+        });
+    }
+
+    /**
+     * Test that the payload is only loaded on the first request, and that
+     * the same payload is returned until it gets written.
+     */
+    @Test
+    void testGetData() {
+        assertEquals(0, this.loads.get());
+
+        // Read the payload twice, e.g. while signing it
+        assertArrayEquals("payload".getBytes(), this.lazyDataResponseObject.getData());
+        assertArrayEquals("payload".getBytes(), this.lazyDataResponseObject.getData());
+
+        // Validate it was only loaded once
+        assertEquals(1, this.loads.get());
+    }
+
+    /**
+     * Test that the payload is released once it has been written.
+     */
+    @Test
+    void testWriteData() {
+        assertArrayEquals("payload".getBytes(), this.lazyDataResponseObject.getData());
+        assertArrayEquals("payload".getBytes(), this.lazyDataResponseObject.writeData());
+
+        // Validate the payload was released without being loaded again
+        assertNull(this.lazyDataResponseObject.getData());
+        assertEquals(1, this.loads.get());
+    }
+
+    /**
+     * Test that the payload is serialised as the SECOM data field and then
+     * released.
+     */
+    @Test
+    void testSerialise() {
+        final JsonNode json = new ObjectMapper().valueToTree(this.lazyDataResponseObject);
+
+        // Validate the serialised payload
+        assertEquals(Base64.getEncoder().encodeToString("payload".getBytes()), json.get("data").asString());
+        assertNull(this.lazyDataResponseObject.getData());
+        assertEquals(1, this.loads.get());
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.grad.eNav.atonAdminService.services;
+
+import _int.iho.s_201.gml.cs0._2.Dataset;
+import jakarta.persistence.EntityManagerFactory;
+import org.grad.eNav.atonAdminService.TestingConfiguration;
+import org.grad.eNav.atonAdminService.models.domain.s201.*;
+import org.grad.eNav.atonAdminService.repos.AidsToNavigationRepo;
+import org.grad.eNav.atonAdminService.utils.S201DatasetBuilder;
+import org.grad.eNav.s201.utils.S201Utils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.search.indexing.plan.synchronization.strategy=sync"
+})
+@Import(TestingConfiguration.class)
+class AidsToNavigationFetchPlanTest {
+
+    /**
+     * The number of Aids to Navigation to be included in the dataset.
+     */
+    private static final int ATON_COUNT = 100;
+
+    /**
+     * The maximum number of SQL statements allowed for loading and packaging
+     * the whole dataset. Loading each entry separately would require several
+     * statements per Aids to Navigation.
+     */
+    private static final long MAX_STATEMENTS = 50;
+
+    /**
+     * The Aids to Navigation Service.
+     */
+    @Autowired
+    AidsToNavigationService aidsToNavigationService;
+
+    /**
+     * The Aids to Navigation Repo.
+     */
+    @Autowired
+    AidsToNavigationRepo aidsToNavigationRepo;
+
+    /**
+     * The Entity Manager Factory.
+     */
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    /**
+     * The Transaction Manager.
+     */
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    /**
+     * The Model Mapper.
+     */
+    @Autowired
+    ModelMapper modelMapper;
+
+    // Test Variables
+    private TransactionTemplate transactionTemplate;
+    private S201Dataset s201Dataset;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+        // Persist the Aids to Navigation with some relations to be fetched
+        this.transactionTemplate.executeWithoutResult(status -> {
+            for(int i=0; i<ATON_COUNT; i++) {
+                BeaconCardinal aidsToNavigation = new BeaconCardinal();
+                aidsToNavigation.setIdCode("FETCH_PLAN_ID" + i);
+                aidsToNavigation.setGeometry(factory.createPoint(new Coordinate(i%180, i%90)));
+                FeatureName featureName = new FeatureName();
+                featureName.setName("Aton No" + i);
+                aidsToNavigation.setFeatureNames(Collections.singleton(featureName));
+                AtonStatusInformation information = new AtonStatusInformation();
+                information.setText("Description of AtoN No" + i);
+                aidsToNavigation.setInformations(Collections.singleton(information));
+                this.aidsToNavigationRepo.save(aidsToNavigation);
+            }
+        });
+
+        // Create the dataset to package the Aids to Navigation into
+        this.s201Dataset = new S201Dataset("FetchPlanDataset");
+        this.s201Dataset.setUuid(UUID.randomUUID());
+    }
+
+    /**
+     * Clean up the persisted Aids to Navigation after each test.
+     */
+    @AfterEach
+    void tearDown() {
+        this.transactionTemplate.executeWithoutResult(status -> this.aidsToNavigationRepo.deleteAll());
+    }
+
+    /**
+     * Test that loading and packaging all the Aids to Navigation of a dataset
+     * only requires a bounded number of SQL statements.
+     */
+    @Test
+    void testDatasetGenerationStatementCount() {
+        final Statistics statistics = this.entityManagerFactory
+                .unwrap(SessionFactory.class)
+                .getStatistics();
+
+        // Load and package the dataset as done during the content generation
+        final String datasetXml = this.transactionTemplate.execute(status -> {
+            statistics.clear();
+            final List<AidsToNavigation> atonList = this.aidsToNavigationService
+                    .findAllForDataset(null);
+            assertEquals(ATON_COUNT, atonList.size());
+            final Dataset dataset = new S201DatasetBuilder(this.modelMapper)
+                    .packageToDataset(this.s201Dataset, atonList);
+            try {
+                return S201Utils.marshalS201(dataset, Boolean.FALSE);
+            } catch (Exception ex) {
+                return fail(ex);
+            }
+        });
+
+        // Make sure the dataset was generated with a bounded number of statements
+        assertNotNull(datasetXml);
+        assertTrue(statistics.getPrepareStatementCount() <= MAX_STATEMENTS,
+                String.format("Expected at most %d statements but %d were issued",
+                        MAX_STATEMENTS, statistics.getPrepareStatementCount()));
+    }
+
+}
@@ -19,17 +19,24 @@ package org.grad.eNav.atonAdminService.services;
 import _int.iho.s_201.gml.cs0._2.ChangeTypesType;
 import _int.iho.s_201.gml.cs0._2.LightCharacteristicType;
 import jakarta.persistence.EntityManager;
+import org.grad.eNav.atonAdminService.components.AtonClusterIndex;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.models.domain.s201.*;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.*;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AtonClusterDto;
 import org.grad.eNav.atonAdminService.repos.AidsToNavigationRepo;
 import org.hibernate.search.engine.search.query.SearchQuery;
 import org.hibernate.search.engine.search.query.SearchResult;
 import org.hibernate.search.engine.search.query.SearchResultTotal;
+import org.hibernate.search.engine.search.query.SearchScroll;
+import org.hibernate.search.engine.search.query.SearchScrollResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 import org.mockito.InjectMocks;
@@ -61,6 +68,12 @@ class AidsToNavigationServiceTest {
     @Spy
     AidsToNavigationService aidsToNavigationService;
 
+    /**
+     * The Datatables Count Cache spy.
+     */
+    @Spy
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The Aggregation Service mock.
      */
@@ -85,6 +98,12 @@ class AidsToNavigationServiceTest {
     @Mock
     AidsToNavigationRepo aidsToNavigationRepo;
 
+    /**
+     * The AtoN Cluster Index mock.
+     */
+    @Mock
+    AtonClusterIndex atonClusterIndex;
+
     // Test Variables
     private List<AidsToNavigation> aidsToNavigationList;
     private Pageable pageable;
@@ -199,6 +218,27 @@ class AidsToNavigationServiceTest {
         }
     }
 
+    /**
+     * Test that we can retrieve all the Aids to Navigation to be included in
+     * a dataset, loaded through the dataset entity graph, which is not used
+     * by the rest of the searches.
+     */
+    @Test
+    void testFindAllForDataset() {
+        // Mock the full text query
+        SearchQuery<AidsToNavigation> mockedQuery = mock(SearchQuery.class);
+        doReturn(this.aidsToNavigationList).when(mockedQuery).fetchAllHits();
+        doReturn(mockedQuery).when(this.aidsToNavigationService).getAidsToNavigationSearchQuery(any(), any(), any(), any(), any(), eq(true));
+
+        // Perform the service call
+        List<AidsToNavigation> result = this.aidsToNavigationService.findAllForDataset(null);
+
+        // Test the result
+        assertNotNull(result);
+        assertEquals(this.aidsToNavigationList.size(), result.size());
+        verify(this.aidsToNavigationService, never()).getAidsToNavigationSearchQuery(any(), any(), any(), any(), any());
+    }
+
     /**
      * Test that we can easily access the total number of results included in
      * the search for all the Aids to Navigation currently present
@@ -218,6 +258,84 @@ class AidsToNavigationServiceTest {
         assertEquals(10, result);
     }
 
+    /**
+     * Test that we can scroll through all the Aids to Navigation matching the
+     * provided criteria in chunks, clearing the persistence context after
+     * every chunk.
+     */
+    @Test
+    void testScrollAll() {
+        // Mock the full text query scrolling
+        SearchScrollResult<AidsToNavigation> firstChunk = mock(SearchScrollResult.class);
+        doReturn(true).when(firstChunk).hasHits();
+        doReturn(this.aidsToNavigationList.subList(0, 5)).when(firstChunk).hits();
+        SearchScrollResult<AidsToNavigation> secondChunk = mock(SearchScrollResult.class);
+        doReturn(true).when(secondChunk).hasHits();
+        doReturn(this.aidsToNavigationList.subList(5, 10)).when(secondChunk).hits();
+        SearchScrollResult<AidsToNavigation> lastChunk = mock(SearchScrollResult.class);
+        doReturn(false).when(lastChunk).hasHits();
+        SearchScroll<AidsToNavigation> mockedScroll = mock(SearchScroll.class);
+        doReturn(firstChunk, secondChunk, lastChunk).when(mockedScroll).next();
+        SearchQuery<AidsToNavigation> mockedQuery = mock(SearchQuery.class);
+        doReturn(mockedScroll).when(mockedQuery).scroll(5);
+        doReturn(mockedQuery).when(this.aidsToNavigationService).getAidsToNavigationSearchQuery(any(), any(), any(), any(), any());
+
+        // Perform the service call
+        final List<AidsToNavigation> consumed = new ArrayList<>();
+        long result = this.aidsToNavigationService.scrollAll(null, null, null, null, 5, consumed::add);
+
+        // Test the result
+        assertEquals(this.aidsToNavigationList.size(), result);
+        assertEquals(this.aidsToNavigationList, consumed);
+        verify(this.entityManager, times(2)).clear();
+        verify(mockedScroll, times(1)).close();
+    }
+
+    /**
+     * Test that we can retrieve the Aids to Navigation clusters of a bounding
+     * box, which is translated into the S-100 axis order.
+     */
+    @Test
+    void testFindClusters() {
+        final AtonClusterDto cluster = new AtonClusterDto();
+        cluster.setCount(5);
+        doReturn(Collections.singletonList(cluster)).when(this.atonClusterIndex).getClusters(any(), eq(4));
+
+        // Perform the service call
+        List<AtonClusterDto> result = this.aidsToNavigationService.findClusters(new double[]{-10, 50, 5, 60}, 4);
+
+        // Test the result
+        assertEquals(1, result.size());
+        assertSame(cluster, result.getFirst());
+        verify(this.atonClusterIndex, times(1)).getClusters(new Envelope(50, 60, -10, 5), 4);
+    }
+
+    /**
+     * Test that the bounding boxes crossing the antimeridian are split into
+     * two separate cluster index queries.
+     */
+    @Test
+    void testFindClustersAntimeridian() {
+        doReturn(Collections.emptyList()).when(this.atonClusterIndex).getClusters(any(), eq(2));
+
+        // Perform the service call
+        List<AtonClusterDto> result = this.aidsToNavigationService.findClusters(new double[]{170, -20, -170, 20}, 2);
+
+        // Test the result
+        assertTrue(result.isEmpty());
+        verify(this.atonClusterIndex, times(1)).getClusters(new Envelope(-20, 20, 170, 180), 2);
+        verify(this.atonClusterIndex, times(1)).getClusters(new Envelope(-20, 20, -180, -170), 2);
+    }
+
+    /**
+     * Test that invalid bounding boxes and zoom levels are rejected.
+     */
+    @Test
+    void testFindClustersInvalid() {
+        assertThrows(ValidationException.class, () -> this.aidsToNavigationService.findClusters(new double[]{1, 2, 3}, 2));
+        assertThrows(ValidationException.class, () -> this.aidsToNavigationService.findClusters(new double[]{1, 2, 3, 4}, -1));
+    }
+
     /**
      * Test that we can retrieve the paged list of station nodes for a
      * Datatables pagination request (which by the way also includes search and
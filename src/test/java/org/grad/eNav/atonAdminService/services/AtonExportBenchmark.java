@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import org.grad.eNav.atonAdminService.components.DomainDtoMapper;
+import org.grad.eNav.atonAdminService.config.GlobalConfig;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.BeaconCardinal;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AidsToNavigationDto;
+import org.grad.eNav.atonAdminService.models.enums.AtonExportFormat;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A JMH benchmark comparing the throughput and the memory allocation of the
+ * streaming AtoN export, in both the NDJSON and the GeoJSON formats, against
+ * the previous approach of converting the whole result list into DTOs and
+ * serialising it at once. The AtoN scrolling is replaced by an in-memory
+ * stub, so that only the conversion and the serialisation are measured.
+ * <p/>
+ * This is not executed as part of the unit tests, but can be run from the
+ * test classpath through its main method. The GC profiler is enabled, so
+ * that the normalised allocation per export is reported alongside the
+ * throughput.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AtonExportBenchmark {
+
+    /**
+     * The number of the exported AtoNs.
+     */
+    @Param({"1000", "10000"})
+    public int atonCount;
+
+    // Benchmark Variables
+    private AtonExportService atonExportService;
+    private List<AidsToNavigation> aidsToNavigationList;
+
+    /**
+     * Sets up the export service with the stubbed AtoN scrolling.
+     */
+    @Setup
+    public void setup() {
+        // Generate the AtoNs to be exported
+        final GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.aidsToNavigationList = new ArrayList<>();
+        for(int i=0; i<this.atonCount; i++) {
+            AidsToNavigation aidsToNavigation = new BeaconCardinal();
+            aidsToNavigation.setId(BigInteger.valueOf(i));
+            aidsToNavigation.setIdCode("AtoN" + i);
+            aidsToNavigation.setDateStart(LocalDate.now());
+            aidsToNavigation.setGeometry(factory.createPoint(new Coordinate(50 + (i % 1000) * 0.01, (i % 360) - 180)));
+            this.aidsToNavigationList.add(aidsToNavigation);
+        }
+
+        // Set up the export service
+        final ModelMapper modelMapper = new GlobalConfig().modelMapper();
+        this.atonExportService = new AtonExportService();
+        this.atonExportService.chunkSize = 500;
+        this.atonExportService.objectMapper = new ObjectMapper();
+        this.atonExportService.aidsToNavigationToDtoMapper = new DomainDtoMapper<>() {
+            @Override
+            public AidsToNavigationDto convertTo(AidsToNavigation fromObj, Class<AidsToNavigationDto> clazz) {
+                return modelMapper.map(fromObj, clazz);
+            }
+        };
+        this.atonExportService.aidsToNavigationService = new AidsToNavigationService() {
+            @Override
+            public long scrollAll(String idCode,
+                                  Geometry geometry,
+                                  LocalDateTime fromTime,
+                                  LocalDateTime toTime,
+                                  int chunkSize,
+                                  Consumer<AidsToNavigation> consumer) {
+                aidsToNavigationList.forEach(consumer);
+                return aidsToNavigationList.size();
+            }
+        };
+    }
+
+    /**
+     * Streams the AtoNs as newline delimited JSON.
+     *
+     * @return the number of the exported AtoNs
+     */
+    @Benchmark
+    public long exportNdjson() {
+        return this.atonExportService.export(AtonExportFormat.NDJSON, null, null, null, null, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Streams the AtoNs as a GeoJSON feature collection.
+     *
+     * @return the number of the exported AtoNs
+     */
+    @Benchmark
+    public long exportGeoJson() {
+        return this.atonExportService.export(AtonExportFormat.GEOJSON, null, null, null, null, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * Converts all the AtoNs into DTOs and serialises them at once, as the
+     * paged API does.
+     *
+     * @return the serialised AtoNs
+     */
+    @Benchmark
+    public byte[] exportInMemory() {
+        final List<AidsToNavigationDto> dtos = this.atonExportService.aidsToNavigationToDtoMapper
+                .convertToList(this.aidsToNavigationList, AidsToNavigationDto.class);
+        return this.atonExportService.objectMapper.writeValueAsBytes(dtos);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments
+     * @throws RunnerException if the benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(AtonExportBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import org.grad.eNav.atonAdminService.components.DomainDtoMapper;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.BeaconCardinal;
+import org.grad.eNav.atonAdminService.models.dtos.s201.AidsToNavigationDto;
+import org.grad.eNav.atonAdminService.models.enums.AtonExportFormat;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AtonExportServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    AtonExportService atonExportService;
+
+    /**
+     * The Aids to Navigation Service mock.
+     */
+    @Mock
+    AidsToNavigationService aidsToNavigationService;
+
+    /**
+     * The Domain to DTO Mapper mock.
+     */
+    @Mock
+    DomainDtoMapper<AidsToNavigation, AidsToNavigationDto> aidsToNavigationToDtoMapper;
+
+    // Test Variables
+    private List<AidsToNavigation> aidsToNavigationList;
+    private ObjectMapper objectMapper;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.objectMapper = new ObjectMapper();
+        this.atonExportService.objectMapper = this.objectMapper;
+        this.atonExportService.chunkSize = 2;
+
+        // Create a temp geometry factory to get a test geometries
+        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), 4326);
+
+        // Initialise the AtoN list
+        this.aidsToNavigationList = new ArrayList<>();
+        for(long i=0; i<3; i++) {
+            AidsToNavigation aidsToNavigation = new BeaconCardinal();
+            aidsToNavigation.setId(BigInteger.valueOf(i));
+            aidsToNavigation.setIdCode("ID"+i);
+            aidsToNavigation.setGeometry(factory.createPoint(new Coordinate(50 + i, i)));
+            this.aidsToNavigationList.add(aidsToNavigation);
+        }
+
+        // Mock the AtoN scrolling and the DTO conversion
+        doAnswer(inv -> {
+            final Consumer<AidsToNavigation> consumer = inv.getArgument(5);
+            this.aidsToNavigationList.forEach(consumer);
+            return (long) this.aidsToNavigationList.size();
+        }).when(this.aidsToNavigationService).scrollAll(any(), any(), any(), any(), eq(2), any());
+        doAnswer(inv -> {
+            final AidsToNavigation aidsToNavigation = inv.getArgument(0);
+            final AidsToNavigationDto dto = new AidsToNavigationDto();
+            dto.setId(aidsToNavigation.getId());
+            dto.setIdCode(aidsToNavigation.getIdCode());
+            dto.setGeometry(aidsToNavigation.getGeometry());
+            return dto;
+        }).when(this.aidsToNavigationToDtoMapper).convertTo(any(), eq(AidsToNavigationDto.class));
+    }
+
+    /**
+     * Test that the AtoNs can be exported as newline delimited JSON, with
+     * one AtoN per line.
+     */
+    @Test
+    void testExportNdjson() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Perform the service call
+        final long count = this.atonExportService.export(AtonExportFormat.NDJSON, null, null, null, null, outputStream);
+
+        // Validate the results
+        assertEquals(3, count);
+        final String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        for(int i=0; i<lines.length; i++) {
+            final JsonNode line = this.objectMapper.readTree(lines[i]);
+            assertEquals("ID"+i, line.get("idCode").stringValue());
+            assertEquals("Point", line.get("geometry").get("type").stringValue());
+        }
+        assertTrue(outputStream.toString(StandardCharsets.UTF_8).endsWith("\n"));
+    }
+
+    /**
+     * Test that the AtoNs can be exported as a GeoJSON feature collection,
+     * with the geometries moved out of the feature properties and written
+     * in the longitude first order.
+     */
+    @Test
+    void testExportGeoJson() {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Perform the service call
+        final long count = this.atonExportService.export(AtonExportFormat.GEOJSON, null, null, null, null, outputStream);
+
+        // Validate the results
+        assertEquals(3, count);
+        final JsonNode collection = this.objectMapper.readTree(outputStream.toString(StandardCharsets.UTF_8));
+        assertEquals("FeatureCollection", collection.get("type").stringValue());
+        assertEquals(3, collection.get("features").size());
+        for(int i=0; i<3; i++) {
+            assertEquals(50 + i, this.aidsToNavigationList.get(i).getGeometry().getCoordinate().x, 1e-9);
+            final JsonNode feature = collection.get("features").get(i);
+            assertEquals("Feature", feature.get("type").stringValue());
+            assertEquals("ID"+i, feature.get("id").stringValue());
+            assertEquals("Point", feature.get("geometry").get("type").stringValue());
+            assertEquals(i, feature.get("geometry").get("coordinates").get(0).asDouble(), 1e-9);
+            assertEquals(50 + i, feature.get("geometry").get("coordinates").get(1).asDouble(), 1e-9);
+            assertEquals("ID"+i, feature.get("properties").get("idCode").stringValue());
+            assertTrue(feature.get("properties").get("geometry").isNull());
+        }
+    }
+
+    /**
+     * Test that an empty export still generates a valid GeoJSON feature
+     * collection.
+     */
+    @Test
+    void testExportGeoJsonEmpty() {
+        this.aidsToNavigationList.clear();
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        // Perform the service call
+        final long count = this.atonExportService.export(AtonExportFormat.GEOJSON, null, null, null, null, outputStream);
+
+        // Validate the results
+        assertEquals(0, count);
+        final JsonNode collection = this.objectMapper.readTree(outputStream.toString(StandardCharsets.UTF_8));
+        assertEquals("FeatureCollection", collection.get("type").stringValue());
+        assertTrue(collection.get("features").isEmpty());
+    }
+
+}
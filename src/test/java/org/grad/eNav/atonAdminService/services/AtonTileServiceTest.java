@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import org.grad.eNav.atonAdminService.components.AtonTileCache;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
+import org.grad.eNav.atonAdminService.models.domain.s201.AidsToNavigation;
+import org.grad.eNav.atonAdminService.models.domain.s201.BeaconCardinal;
+import org.grad.eNav.atonAdminService.utils.VectorTileEncoder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.locationtech.jts.geom.*;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AtonTileServiceTest {
+
+    /**
+     * The Tested Service.
+     */
+    @InjectMocks
+    @Spy
+    AtonTileService atonTileService;
+
+    /**
+     * The Aids to Navigation Service mock.
+     */
+    @Mock
+    AidsToNavigationService aidsToNavigationService;
+
+    /**
+     * The AtoN Tile Cache mock.
+     */
+    @Mock
+    AtonTileCache atonTileCache;
+
+    // Test Variables
+    private GeometryFactory factory;
+    private AidsToNavigation aidsToNavigation;
+
+    /**
+     * Common setup for all the tests.
+     */
+    @BeforeEach
+    void setup() {
+        this.atonTileService.extent = 4096;
+        this.atonTileService.buffer = 64;
+        this.atonTileService.maxFeatures = 100;
+        this.atonTileService.simplification = 1.0;
+        this.atonTileService.maxZoom = 22;
+
+        // Create an AtoN in the north-east quadrant, i.e. latitude first
+        this.factory = new GeometryFactory(new PrecisionModel(), 4326);
+        this.aidsToNavigation = new BeaconCardinal();
+        this.aidsToNavigation.setId(BigInteger.ONE);
+        this.aidsToNavigation.setIdCode("ID001");
+        this.aidsToNavigation.setGeometry(this.factory.createPoint(new Coordinate(50.0, 10.0)));
+    }
+
+    /**
+     * Test that the cached tiles are served without querying the AtoNs.
+     */
+    @Test
+    void testGetTileCached() {
+        doReturn(Optional.of(new byte[]{1, 2, 3})).when(this.atonTileCache).get(1, 1, 0);
+
+        // Perform the service call
+        byte[] result = this.atonTileService.getTile(1, 1, 0);
+
+        // Validate the results
+        assertArrayEquals(new byte[]{1, 2, 3}, result);
+        verify(this.aidsToNavigationService, never()).findAll(any(), any(), any(), any(), any());
+        verify(this.atonTileCache, never()).put(anyInt(), anyInt(), anyInt(), any(), anyLong());
+    }
+
+    /**
+     * Test that the tiles that are not cached are generated through the
+     * spatial search, compressed and then cached.
+     */
+    @Test
+    void testGetTile() throws IOException {
+        doReturn(Optional.empty()).when(this.atonTileCache).get(1, 1, 0);
+        doReturn(7L).when(this.atonTileCache).getGeneration();
+        doReturn(VectorTileEncoder.getTileEnvelope(1, 1, 0)).when(this.atonTileCache).getBufferedTileEnvelope(1, 1, 0);
+        doReturn(new PageImpl<>(Collections.singletonList(this.aidsToNavigation), PageRequest.of(0, 100), 1))
+                .when(this.aidsToNavigationService).findAll(any(), any(), any(), any(), any());
+
+        // Perform the service call
+        byte[] result = this.atonTileService.getTile(1, 1, 0);
+
+        // Validate the results
+        final String tile;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(result))) {
+            tile = new String(gzip.readAllBytes(), StandardCharsets.ISO_8859_1);
+        }
+        assertTrue(tile.contains(AtonTileService.ATON_LAYER));
+        assertTrue(tile.contains("ID001"));
+        verify(this.atonTileCache, times(1)).put(1, 1, 0, result, 7L);
+    }
+
+    /**
+     * Test that the cached tiles can also be served uncompressed.
+     */
+    @Test
+    void testGetTileUncompressed() {
+        doReturn(Optional.of(this.atonTileService.gzip(new byte[]{1, 2, 3}))).when(this.atonTileCache).get(1, 1, 0);
+
+        // Perform the service call
+        byte[] result = this.atonTileService.getTile(1, 1, 0, false);
+
+        // Validate the results
+        assertArrayEquals(new byte[]{1, 2, 3}, result);
+        verify(this.aidsToNavigationService, never()).findAll(any(), any(), any(), any(), any());
+    }
+
+    /**
+     * Test that the tiles outside the tile matrix are rejected.
+     */
+    @Test
+    void testGetTileInvalid() {
+        assertThrows(ValidationException.class, () -> this.atonTileService.getTile(-1, 0, 0));
+        assertThrows(ValidationException.class, () -> this.atonTileService.getTile(23, 0, 0));
+        assertThrows(ValidationException.class, () -> this.atonTileService.getTile(1, 2, 0));
+        assertThrows(ValidationException.class, () -> this.atonTileService.getTile(1, 0, -1));
+    }
+
+    /**
+     * Test that the tile geometries are clipped to the buffered tile area.
+     */
+    @Test
+    void testClip() {
+        final Geometry clip = this.factory.toGeometry(new Envelope(-64, 4160, -64, 4160));
+        final Geometry line = this.factory.createLineString(new Coordinate[]{
+                new Coordinate(2048, 2048),
+                new Coordinate(8192, 2048)
+        });
+        final Geometry points = this.factory.createMultiPointFromCoords(new Coordinate[]{
+                new Coordinate(2048, 2048),
+                new Coordinate(8192, 2048)
+        });
+
+        // Perform the service calls
+        final Geometry clippedLine = this.atonTileService.clip(line, clip);
+        final Geometry clippedPoints = this.atonTileService.clip(points, clip);
+
+        // Validate the results
+        assertEquals(4160.0, clippedLine.getEnvelopeInternal().getMaxX(), 1e-9);
+        assertEquals(1, clippedPoints.getNumGeometries());
+    }
+
+    /**
+     * Test that the tile geometries are simplified, while the points are
+     * left unchanged.
+     */
+    @Test
+    void testSimplify() {
+        final Geometry line = this.factory.createLineString(new Coordinate[]{
+                new Coordinate(0, 0),
+                new Coordinate(100, 1),
+                new Coordinate(200, 0)
+        });
+        final Geometry point = this.factory.createPoint(new Coordinate(1, 1));
+
+        // Validate the results
+        assertEquals(2, this.atonTileService.simplify(line, 16).getNumPoints());
+        assertEquals(3, this.atonTileService.simplify(line, 0).getNumPoints());
+        assertSame(point, this.atonTileService.simplify(point, 16));
+    }
+
+}
@@ -17,6 +17,8 @@
 package org.grad.eNav.atonAdminService.services;
 
 import jakarta.persistence.EntityManager;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.ExchangeSetCache;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
@@ -65,6 +67,12 @@ class DatasetContentLogServiceTest {
     @Spy
     DatasetContentLogService datasetContentLogService;
 
+    /**
+     * The Datatables Count Cache spy.
+     */
+    @Spy
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The Entity Manager mock.
      */
@@ -83,6 +91,12 @@ class DatasetContentLogServiceTest {
     @Mock
     DatasetContentLogRepo datasetContentLogRepo;
 
+    /**
+     * The Exchange Set Cache mock.
+     */
+    @Mock
+    ExchangeSetCache exchangeSetCache;
+
     // Test Variables
     private Pageable pageable;
     private List<DatasetContentLog> datasetContentLogList;
@@ -501,6 +515,9 @@ class DatasetContentLogServiceTest {
         assertEquals(this.newDatasetContentLog.getSequenceNo(), result.getSequenceNo());
         assertEquals(this.newDatasetContentLog.getContent(), result.getContent());
         assertEquals(this.newDatasetContentLog.getContentLength(), result.getContentLength());
+
+        // Make sure the cached exchange sets of the dataset were invalidated
+        verify(this.exchangeSetCache, times(1)).invalidate(this.newDatasetContentLog.getUuid());
     }
 
     /**
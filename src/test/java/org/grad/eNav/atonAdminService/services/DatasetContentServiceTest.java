@@ -38,10 +38,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.modelmapper.MappingException;
 import org.modelmapper.ModelMapper;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
-import org.springframework.data.domain.Pageable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
@@ -50,10 +48,13 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -173,6 +174,94 @@ class DatasetContentServiceTest {
         this.existingDataset.setDatasetContent(this.existingDatasetContent);
     }
 
+    /**
+     * Test that we can retrieve only the content of an existing dataset
+     * content entry.
+     */
+    @Test
+    void testFindContent() {
+        doReturn(Optional.of(this.existingDatasetContent.getContent())).when(this.datasetContentRepo).findContentById(this.existingDatasetContent.getId());
+
+        // Perform the service call
+        Optional<String> result = this.datasetContentService.findContent(this.existingDatasetContent.getId());
+
+        // Test the result
+        assertTrue(result.isPresent());
+        assertEquals(this.existingDatasetContent.getContent(), result.get());
+    }
+
+    /**
+     * Test that we retrieve no content for a dataset content entry that does
+     * not exist.
+     */
+    @Test
+    void testFindContentNotFound() {
+        doReturn(Optional.empty()).when(this.datasetContentRepo).findContentById(any());
+
+        // Perform the service call
+        Optional<String> result = this.datasetContentService.findContent(BigInteger.TEN);
+
+        // Test the result
+        assertFalse(result.isPresent());
+    }
+
+    /**
+     * Test that we can retrieve the compressed content of an existing dataset
+     * content entry directly from its stored compressed form.
+     */
+    @Test
+    void testFindCompressedContent() {
+        doReturn(Optional.of("compressed".getBytes())).when(this.datasetContentRepo).findCompressedContentById(this.existingDatasetContent.getId());
+
+        // Perform the service call
+        Optional<byte[]> result = this.datasetContentService.findCompressedContent(this.existingDatasetContent.getId(), this.existingDataset.getUuid());
+
+        // Test the result
+        assertTrue(result.isPresent());
+        assertArrayEquals("compressed".getBytes(), result.get());
+
+        // Make sure the content was not compressed again
+        verify(this.datasetContentRepo, never()).findContentById(any());
+    }
+
+    /**
+     * Test that if the compressed content of an existing dataset content
+     * entry has not been stored, the content will be compressed on the fly.
+     */
+    @Test
+    void testFindCompressedContentOnTheFly() throws IOException {
+        doReturn(Optional.empty()).when(this.datasetContentRepo).findCompressedContentById(this.existingDatasetContent.getId());
+        doReturn(Optional.of(this.existingDatasetContent.getContent())).when(this.datasetContentRepo).findContentById(this.existingDatasetContent.getId());
+
+        // Perform the service call
+        Optional<byte[]> result = this.datasetContentService.findCompressedContent(this.existingDatasetContent.getId(), this.existingDataset.getUuid());
+
+        // Test the result
+        assertTrue(result.isPresent());
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(result.get()))) {
+            ZipEntry zipEntry = zipInputStream.getNextEntry();
+            assertNotNull(zipEntry);
+            assertEquals(this.existingDataset.getUuid() + ".xml", zipEntry.getName());
+            assertEquals(this.existingDatasetContent.getContent(), new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Test that we retrieve no compressed content for a dataset content entry
+     * that does not exist.
+     */
+    @Test
+    void testFindCompressedContentNotFound() {
+        doReturn(Optional.empty()).when(this.datasetContentRepo).findCompressedContentById(any());
+        doReturn(Optional.empty()).when(this.datasetContentRepo).findContentById(any());
+
+        // Perform the service call
+        Optional<byte[]> result = this.datasetContentService.findCompressedContent(BigInteger.TEN, UUID.randomUUID());
+
+        // Test the result
+        assertFalse(result.isPresent());
+    }
+
     /**
      * Test that we can successfully save a new dataset content into the
      * database and the updated result will be returned.
@@ -218,15 +307,16 @@ class DatasetContentServiceTest {
      */
     @Test
     void testGenerateDatasetContent() throws ExecutionException, InterruptedException {
+        this.datasetContentService.compressionEnabled = true;
         final int numOfAtons = 5;
-        final Page<AidsToNavigation> aidsToNavigationPage = new PageImpl<>(this.aidsToNavigationList.subList(0, numOfAtons), Pageable.ofSize(5), this.aidsToNavigationList.size());
+        final List<AidsToNavigation> aidsToNavigationList = this.aidsToNavigationList.subList(0, numOfAtons);
 
         // Get the model mapper configuration from the GlobalConfig
         this.datasetContentService.modelMapper = new GlobalConfig().modelMapper();
 
         // Mock the service calls
         doReturn(this.existingDataset).when(this.datasetService).findOne(eq(this.existingDataset.getUuid()));
-        doReturn(aidsToNavigationPage).when(this.aidsToNavigationService).findAll(any(), any(), any(), any(), any());
+        doReturn(aidsToNavigationList).when(this.aidsToNavigationService).findAllForDataset(any());
         doAnswer((inv) -> inv.getArgument(0)).when(this.datasetContentService).save(any());
 
         // Perform the service call
@@ -243,11 +333,42 @@ class DatasetContentServiceTest {
         assertNotNull(resultDataset.getDatasetContent().getContent());
         assertEquals(2*numOfAtons, DATASET_MEMBER_PATTERN.matcher(resultDataset.getDatasetContent().getContent()).results().count());
         assertEquals(BigInteger.valueOf(result.get().getDatasetContent().getContent().length()), result.get().getDatasetContent().getContentLength());
+        assertNotNull(resultDataset.getDatasetContent().getCompressedContent());
+        assertEquals(BigInteger.valueOf(resultDataset.getDatasetContent().getCompressedContent().length), resultDataset.getDatasetContent().getCompressedContentLength());
+        assertTrue(resultDataset.getDatasetContent().getCompressedContent().length < resultDataset.getDatasetContent().getContent().length());
 
         // Make also sure that we save and published the generated content
         verify(this.datasetContentService, times(1)).save(any(DatasetContent.class));
     }
 
+    /**
+     * Test that when the dataset content compression is disabled, the
+     * compressed form of the generated content is not computed or stored.
+     */
+    @Test
+    void testGenerateDatasetContentUncompressed() throws ExecutionException, InterruptedException {
+        this.datasetContentService.compressionEnabled = false;
+        final List<AidsToNavigation> aidsToNavigationList = this.aidsToNavigationList.subList(0, 5);
+
+        // Get the model mapper configuration from the GlobalConfig
+        this.datasetContentService.modelMapper = new GlobalConfig().modelMapper();
+
+        // Mock the service calls
+        doReturn(this.existingDataset).when(this.datasetService).findOne(eq(this.existingDataset.getUuid()));
+        doReturn(aidsToNavigationList).when(this.aidsToNavigationService).findAllForDataset(any());
+        doAnswer((inv) -> inv.getArgument(0)).when(this.datasetContentService).save(any());
+
+        // Perform the service call
+        CompletableFuture<S201Dataset> result = this.datasetContentService.generateDatasetContent(this.existingDataset.getUuid());
+
+        // Make sure the content was generated but not compressed
+        assertNotNull(result.get().getDatasetContent());
+        assertNotNull(result.get().getDatasetContent().getContent());
+        assertNull(result.get().getDatasetContent().getCompressedContent());
+        assertNull(result.get().getDatasetContent().getCompressedContentLength());
+        verify(this.datasetContentService, never()).compressContent(any(), any());
+    }
+
     /**
      * Test that if we ty to generate the content of a dataset provided and an
      * exception is thrown, the CompletableFuture response will include the
@@ -256,11 +377,11 @@ class DatasetContentServiceTest {
     @Test
     void testGenerateDatasetContentWithException() {
         final int numOfAtons = 5;
-        final Page<AidsToNavigation> aidsToNavigationPage = new PageImpl<>(this.aidsToNavigationList.subList(0, numOfAtons), Pageable.ofSize(5), this.aidsToNavigationList.size());
+        final List<AidsToNavigation> aidsToNavigationList = this.aidsToNavigationList.subList(0, numOfAtons);
 
         // Mock the service calls
         doReturn(this.existingDataset).when(this.datasetService).findOne(eq(this.existingDataset.getUuid()));
-        doReturn(aidsToNavigationPage).when(this.aidsToNavigationService).findAll(any(), any(), any(), any(), any());
+        doReturn(aidsToNavigationList).when(this.aidsToNavigationService).findAllForDataset(any());
         doThrow(new MappingException(Collections.emptyList())).when(this.modelMapper).map(any(), any());
 
         // Perform the service call
@@ -289,7 +410,7 @@ class DatasetContentServiceTest {
 
         // Mock the service calls
         doReturn(this.existingDataset).when(this.datasetService).findOne(eq(this.existingDataset.getUuid()));
-        doReturn(new PageImpl<>(Collections.emptyList())).when(this.aidsToNavigationService).findAll(any(), any(), any(), any(), any());
+        doReturn(Collections.emptyList()).when(this.aidsToNavigationService).findAllForDataset(any());
 
         // Perform the service call
         CompletableFuture<S201Dataset> result = this.datasetContentService.generateDatasetContent(this.existingDataset.getUuid());
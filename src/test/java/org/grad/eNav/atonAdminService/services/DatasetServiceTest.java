@@ -18,10 +18,12 @@ package org.grad.eNav.atonAdminService.services;
 
 import _int.iho.s_201.gml.cs0._2.ChangeTypesType;
 import jakarta.persistence.EntityManager;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
 import org.grad.eNav.atonAdminService.exceptions.DataNotFoundException;
 import org.grad.eNav.atonAdminService.exceptions.DeletedAtoNsInDatasetContentGenerationException;
 import org.grad.eNav.atonAdminService.exceptions.SavingFailedException;
 import org.grad.eNav.atonAdminService.exceptions.ValidationException;
+import org.grad.eNav.atonAdminService.models.DatasetVersion;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.*;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.*;
@@ -41,6 +43,7 @@ import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.context.ApplicationContext;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.integration.channel.PublishSubscribeChannel;
@@ -68,6 +71,12 @@ class DatasetServiceTest {
     @Spy
     DatasetService datasetService;
 
+    /**
+     * The Datatables Count Cache spy.
+     */
+    @Spy
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The Application Context mock.
      */
@@ -269,6 +278,71 @@ class DatasetServiceTest {
         }
     }
 
+    /**
+     * Test that we can search for the versions of all the datasets currently
+     * present in the database and matching the provided criteria, and that
+     * the total hit count is retrieved in the same query.
+     */
+    @Test
+    void testFindAllVersions() {
+        // Mock the full text query
+        List<DatasetVersion> versions = this.datasetList.subList(0, 5).stream()
+                .map(d -> new DatasetVersion(UUID.randomUUID(), BigInteger.ONE, LocalDateTime.now(), LocalDateTime.now()))
+                .toList();
+        SearchQuery<DatasetVersion> mockedQuery = mock(SearchQuery.class);
+        SearchResult<DatasetVersion> searchResult = mock(SearchResult.class);
+        SearchResultTotal searchResultTotal = mock(SearchResultTotal.class);
+        doReturn(searchResult).when(mockedQuery).fetch(any(), any());
+        doReturn(versions).when(searchResult).hits();
+        doReturn(searchResultTotal).when(searchResult).total();
+        doReturn(10L).when(searchResultTotal).hitCount();
+        doReturn(mockedQuery).when(this.datasetService).getDatasetVersionSearchQuery(any(), any(), any(), any(), any(), any());
+
+        // Perform the service call
+        Page<DatasetVersion> result = this.datasetService.findAllVersions(null, null, null, null, Boolean.FALSE, this.pageable);
+
+        // Test the result
+        assertNotNull(result);
+        assertEquals(versions, result.getContent());
+        assertEquals(10L, result.getTotalElements());
+        verify(mockedQuery, times(1)).fetch(0, 5);
+    }
+
+    /**
+     * Test that we can retrieve the datasets of a page of dataset versions,
+     * retaining the order and the pagination of the versions, while skipping
+     * any datasets that have been deleted in the meantime.
+     */
+    @Test
+    void testFindAllByVersions() {
+        // Assign the dataset UUIDs and create the matching versions
+        this.datasetList.forEach(dataset -> dataset.setUuid(UUID.randomUUID()));
+        List<DatasetVersion> versions = this.datasetList.subList(0, 5).stream()
+                .map(d -> new DatasetVersion(d.getUuid(), BigInteger.ONE, LocalDateTime.now(), LocalDateTime.now()))
+                .toList();
+        Page<DatasetVersion> versionPage = new PageImpl<>(versions, this.pageable, 10);
+
+        // Mock the repository, returning the datasets out of order and one missing
+        List<S201Dataset> stored = new ArrayList<>(this.datasetList.subList(0, 5));
+        stored.remove(2);
+        Collections.reverse(stored);
+        doReturn(stored).when(this.datasetRepo).findAllById(any());
+
+        // Perform the service call
+        Page<S201Dataset> result = this.datasetService.findAll(versionPage);
+
+        // Test the result
+        assertNotNull(result);
+        assertEquals(4, result.getContent().size());
+        assertEquals(10L, result.getTotalElements());
+        assertEquals(this.pageable, result.getPageable());
+        assertEquals(this.datasetList.get(0).getUuid(), result.getContent().get(0).getUuid());
+        assertEquals(this.datasetList.get(1).getUuid(), result.getContent().get(1).getUuid());
+        assertEquals(this.datasetList.get(3).getUuid(), result.getContent().get(2).getUuid());
+        assertEquals(this.datasetList.get(4).getUuid(), result.getContent().get(3).getUuid());
+        verify(this.datasetRepo, times(1)).findAllById(versions.stream().map(DatasetVersion::getUuid).toList());
+    }
+
     /**
      * Test that we can retrieve the paged list of datatable entries for a
      * Datatables pagination request (which by the way also includes search and
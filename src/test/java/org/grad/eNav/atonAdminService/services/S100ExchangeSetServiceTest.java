@@ -20,7 +20,12 @@ import _int.iho.s100.catalog._5_2.*;
 import feign.FeignException;
 import feign.Response;
 import jakarta.xml.bind.JAXBException;
+import org.grad.eNav.atonAdminService.components.ExchangeSetCache;
+import org.grad.eNav.atonAdminService.components.LocalSignatureEngine;
+import org.grad.eNav.atonAdminService.components.SignatureCertificateManager;
+import org.grad.eNav.atonAdminService.exceptions.ValidationException;
 import org.grad.eNav.atonAdminService.feign.CKeeperClient;
+import org.grad.eNav.atonAdminService.feign.CKeeperClientStub;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContentLog;
 import org.grad.eNav.atonAdminService.models.domain.s100.ServiceInformationConfig;
@@ -37,7 +42,6 @@ import org.grad.eNav.s201.utils.GIRegistryInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.io.TempDir;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
@@ -45,14 +49,18 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -60,6 +68,7 @@ import java.util.zip.ZipEntry;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -90,11 +99,30 @@ class S100ExchangeSetServiceTest {
     @Mock
     CKeeperClient cKeeperClient;
 
+    /**
+     * The Exchange Set Cache mock.
+     */
+    @Mock
+    ExchangeSetCache exchangeSetCache;
+
+    /**
+     * The Local Signature Engine mock.
+     */
+    @Mock
+    LocalSignatureEngine localSignatureEngine;
+
+    /**
+     * The Signature Certificate Manager mock.
+     */
+    @Mock
+    SignatureCertificateManager signatureCertificateManager;
+
     // Test Variables
     private S201Dataset s201Dataset;
     private DatasetContent datasetContent;
     private List<DatasetContentLog> datasetContentLogList;
     private String testCertificatePem;
+    private SignatureCertificateDto signatureCertificate;
 
     /**
      * Common setup for all the tests.
@@ -144,6 +172,11 @@ class S100ExchangeSetServiceTest {
                 .replaceAll(System.lineSeparator(),"")
                 .replaceAll("\r\n","")
                 .replaceAll("\n","");
+
+        // Create the signature certificate of the service
+        this.signatureCertificate = new SignatureCertificateDto();
+        this.signatureCertificate.setCertificateId(BigInteger.ONE);
+        this.signatureCertificate.setCertificate(this.testCertificatePem);
     }
 
     /**
@@ -152,11 +185,7 @@ class S100ExchangeSetServiceTest {
      * use that to retrieve the included S-201 data.
      */
     @Test
-    void testPackageToExchangeSet(@TempDir Path tempDir) throws CertificateException, JAXBException, IOException {
-        // First set a temporary directory to generate the zip in
-        this.s100ExchangeSetService.s100ExchangeSetDir = tempDir.toString();
-        this.s100ExchangeSetService.s100ExchangeSetPrefix = "atonServiceTest";
-
+    void testPackageToExchangeSet() throws CertificateException, JAXBException, IOException {
         // Create the signature certificate to be used for signing
         SignatureCertificateDto signatureCertificate = new SignatureCertificateDto();
         signatureCertificate.setCertificateId(BigInteger.ONE);
@@ -164,7 +193,7 @@ class S100ExchangeSetServiceTest {
 
         // Mock the further internal operations
         doReturn("XX00").when(this.serviceInformationConfig).ihoProducerCode();
-        doReturn(signatureCertificate).when(cKeeperClient).getSignatureCertificate(any(), any(), any(), any());
+        doReturn(signatureCertificate).when(this.signatureCertificateManager).getSignatureCertificate();
         doReturn(this.datasetContentLogList).when(this.datasetContentLogService).findForUuidDuring(any(), any(), any());
         doReturn("catalogXMLContent").when(this.s100ExchangeSetService).generateExchangeSetContent(any(), any());
         doReturn("signature".getBytes()).when(this.s100ExchangeSetService).signContent(any(), any(), any());
@@ -191,6 +220,125 @@ class S100ExchangeSetServiceTest {
         }
     }
 
+    /**
+     * Test that the packaged exchange sets are stored in the exchange set
+     * cache.
+     */
+    @Test
+    void testPackageToExchangeSetStoresInCache() throws CertificateException, JAXBException, IOException {
+        // Create the signature certificate to be used for signing
+        SignatureCertificateDto signatureCertificate = new SignatureCertificateDto();
+        signatureCertificate.setCertificateId(BigInteger.ONE);
+        signatureCertificate.setCertificate(this.testCertificatePem);
+
+        // Mock the further internal operations
+        doReturn("XX00").when(this.serviceInformationConfig).ihoProducerCode();
+        doReturn(signatureCertificate).when(this.signatureCertificateManager).getSignatureCertificate();
+        doReturn(this.datasetContentLogList).when(this.datasetContentLogService).findForUuidDuring(any(), any(), any());
+        doReturn("catalogXMLContent").when(this.s100ExchangeSetService).generateExchangeSetContent(any(), any());
+        doReturn("signature".getBytes()).when(this.s100ExchangeSetService).signContent(any(), any(), any());
+
+        // Perform the service call
+        final byte[] result = this.s100ExchangeSetService.packageToExchangeSet(Collections.singletonList(this.s201Dataset), null, null);
+
+        // Make sure the exchange set was cached
+        assertNotNull(result);
+        verify(this.exchangeSetCache, times(1)).put(
+                eq(this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList), signatureCertificate)),
+                eq(Collections.singletonList(this.s201Dataset.getUuid())),
+                eq(result));
+
+        // And that the build is no longer shared
+        assertTrue(this.s100ExchangeSetService.exchangeSetBuilds.isEmpty());
+    }
+
+    /**
+     * Test that if an exchange set with the same dataset versions has
+     * already been packaged, it will be served directly from the exchange
+     * set cache without signing it again.
+     */
+    @Test
+    void testPackageToExchangeSetFromCache() throws JAXBException, IOException {
+        doReturn(this.signatureCertificate).when(this.signatureCertificateManager).getSignatureCertificate();
+        doReturn(this.datasetContentLogList).when(this.datasetContentLogService).findForUuidDuring(any(), any(), any());
+        doReturn(Optional.of("cachedExchangeSet".getBytes())).when(this.exchangeSetCache).get(any());
+
+        // Perform the service call
+        final byte[] result = this.s100ExchangeSetService.packageToExchangeSet(Collections.singletonList(this.s201Dataset), null, null);
+
+        // Make sure the cached exchange set was returned
+        assertNotNull(result);
+        assertArrayEquals("cachedExchangeSet".getBytes(), result);
+        verify(this.s100ExchangeSetService, never()).buildExchangeSet(any(), any(), any());
+        verify(this.exchangeSetCache, never()).put(any(), any(), any());
+    }
+
+    /**
+     * Test that if an exchange set with the same dataset versions is already
+     * being packaged by another request, its result will be shared instead
+     * of packaging and signing the same exchange set again.
+     */
+    @Test
+    void testPackageToExchangeSetShared() throws JAXBException, IOException {
+        doReturn(this.signatureCertificate).when(this.signatureCertificateManager).getSignatureCertificate();
+        doReturn(this.datasetContentLogList).when(this.datasetContentLogService).findForUuidDuring(any(), any(), any());
+
+        // Mock an ongoing build of the same exchange set
+        final String exchangeSetKey = this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList), this.signatureCertificate);
+        this.s100ExchangeSetService.exchangeSetBuilds.put(exchangeSetKey, CompletableFuture.completedFuture("sharedExchangeSet".getBytes()));
+
+        // Perform the service call
+        final byte[] result = this.s100ExchangeSetService.packageToExchangeSet(Collections.singletonList(this.s201Dataset), null, null);
+
+        // Make sure the shared exchange set was returned
+        assertNotNull(result);
+        assertArrayEquals("sharedExchangeSet".getBytes(), result);
+        verify(this.s100ExchangeSetService, never()).buildExchangeSet(any(), any(), any());
+    }
+
+    /**
+     * Test that if the shared packaging of an exchange set fails, the error
+     * will be propagated to all the requests sharing it.
+     */
+    @Test
+    void testPackageToExchangeSetSharedFailed() {
+        doReturn(this.signatureCertificate).when(this.signatureCertificateManager).getSignatureCertificate();
+        doReturn(this.datasetContentLogList).when(this.datasetContentLogService).findForUuidDuring(any(), any(), any());
+
+        // Mock a failed build of the same exchange set
+        final String exchangeSetKey = this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList), this.signatureCertificate);
+        this.s100ExchangeSetService.exchangeSetBuilds.put(exchangeSetKey, CompletableFuture.failedFuture(new ValidationException("Signing failed")));
+
+        // Perform the service call
+        assertThrows(ValidationException.class, () ->
+                this.s100ExchangeSetService.packageToExchangeSet(Collections.singletonList(this.s201Dataset), null, null));
+        verify(this.s100ExchangeSetService, never()).buildExchangeSet(any(), any(), any());
+    }
+
+    /**
+     * Test that the exchange set keys only depend on the included dataset
+     * versions and the signature certificate, and that they change whenever
+     * a new delta is included or the certificate is rotated.
+     */
+    @Test
+    void testGenerateExchangeSetKey() {
+        final String key = this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList), this.signatureCertificate);
+
+        // Make sure the key is deterministic and file-name safe
+        assertNotNull(key);
+        assertTrue(key.matches("[0-9a-f]+"));
+        assertEquals(key, this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, new ArrayList<>(this.datasetContentLogList)), this.signatureCertificate));
+
+        // And that it changes when the included deltas change
+        assertNotEquals(key, this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList.subList(0, 5)), this.signatureCertificate));
+
+        // Or when the signature certificate is rotated
+        final SignatureCertificateDto rotatedCertificate = new SignatureCertificateDto();
+        rotatedCertificate.setCertificateId(BigInteger.TWO);
+        rotatedCertificate.setCertificate(this.testCertificatePem);
+        assertNotEquals(key, this.s100ExchangeSetService.generateExchangeSetKey(Collections.singletonMap(this.s201Dataset, this.datasetContentLogList), rotatedCertificate));
+    }
+
     /**
      * Test that we can successfully generate the S-100 exchange set CATALOG.XML
      * content using the imported library and all fields and populated as
@@ -202,13 +350,13 @@ class S100ExchangeSetServiceTest {
         final AtomicInteger index = new AtomicInteger(0);
         Map<String, S100ExchangeSetService.DatasetData> datasetData = this.datasetContentLogList.stream()
                 .map(log -> new S100ExchangeSetService.DatasetData(
-                        new File(String.format("s201-msg-%d.xml", index.getAndIncrement())),
+                        String.format("s201-msg-%d.xml", index.getAndIncrement()),
                         BigInteger.ONE,
                         this.testCertificatePem,
                         this.s201Dataset,
                         log)
                 )
-                .collect(Collectors.toMap(d -> d.datasetFile().getName(), Function.identity()));
+                .collect(Collectors.toMap(S100ExchangeSetService.DatasetData::fileName, Function.identity()));
 
         // Create the signature certificate to be used for signing
         SignatureCertificateDto signatureCertificate = new SignatureCertificateDto();
@@ -396,6 +544,164 @@ class S100ExchangeSetServiceTest {
                 this.s100ExchangeSetService.signContent(BigInteger.ONE, "random", "content".getBytes()));
     }
 
+    /**
+     * Test that in the local signing mode, the content is signed in-process
+     * by the local signature engine without contacting cKeeper.
+     */
+    @Test
+    void testSignContentLocally() throws GeneralSecurityException {
+        doReturn(true).when(this.localSignatureEngine).isEnabled();
+        doReturn("signature".getBytes()).when(this.localSignatureEngine).sign(any(), any());
+
+        // Perform the service call
+        byte[] result = this.s100ExchangeSetService.signContent(BigInteger.ONE, "random", "content".getBytes());
+
+        // Assert the signature looks OK
+        assertEquals("signature", new String(result, StandardCharsets.UTF_8));
+        verify(this.cKeeperClient, never()).generateCertificateSignature(any(), any(), any());
+    }
+
+    /**
+     * Test that the exchange set payloads are signed concurrently through
+     * the bounded signing executor, and that the generated signatures are
+     * cached so that the same payloads are never signed again.
+     */
+    @Test
+    void testPreSignContents() {
+        final CKeeperClientStub cKeeperClientStub = new CKeeperClientStub(50);
+        final ExecutorService executorService = Executors.newFixedThreadPool(4);
+        this.s100ExchangeSetService.cKeeperClient = cKeeperClientStub;
+        this.s100ExchangeSetService.signingExecutor = executorService;
+        this.s100ExchangeSetService.cacheManager = new ConcurrentMapCacheManager("s100SignatureCache");
+
+        // Create some payloads, including a duplicate one
+        final List<byte[]> payloads = new ArrayList<>();
+        for(int i=0; i<8; i++) {
+            payloads.add(("payload" + i).getBytes());
+        }
+        payloads.add("payload0".getBytes());
+
+        // Perform the service call
+        try {
+            this.s100ExchangeSetService.preSignContents(BigInteger.ONE, "algorithm", payloads);
+        } finally {
+            executorService.shutdown();
+        }
+
+        // Make sure the distinct payloads were signed concurrently
+        assertEquals(8, cKeeperClientStub.getRequests());
+        assertTrue(cKeeperClientStub.getMaxInFlight() > 1);
+
+        // And that the signatures are now served from the cache
+        assertArrayEquals(cKeeperClientStub.sign("payload3".getBytes()),
+                this.s100ExchangeSetService.signContentCached(BigInteger.ONE, "algorithm", "payload3".getBytes()));
+        this.s100ExchangeSetService.preSignContents(BigInteger.ONE, "algorithm", payloads);
+        assertEquals(8, cKeeperClientStub.getRequests());
+
+        // Unless a different certificate is used
+        this.s100ExchangeSetService.signContentCached(BigInteger.TWO, "algorithm", "payload3".getBytes());
+        assertEquals(9, cKeeperClientStub.getRequests());
+    }
+
+    /**
+     * Test that when a signing batch size is configured, the exchange set
+     * payloads are signed using the cKeeper batch signature requests.
+     */
+    @Test
+    void testPreSignContentsInBatches() {
+        final CKeeperClientStub cKeeperClientStub = new CKeeperClientStub(0);
+        this.s100ExchangeSetService.cKeeperClient = cKeeperClientStub;
+        this.s100ExchangeSetService.cacheManager = new ConcurrentMapCacheManager("s100SignatureCache");
+        this.s100ExchangeSetService.signingBatchSize = 3;
+
+        // Create some payloads
+        final List<byte[]> payloads = new ArrayList<>();
+        for(int i=0; i<8; i++) {
+            payloads.add(("payload" + i).getBytes());
+        }
+
+        // Perform the service call
+        this.s100ExchangeSetService.preSignContents(BigInteger.ONE, "algorithm", payloads);
+
+        // Make sure the payloads were signed in three batches
+        assertEquals(3, cKeeperClientStub.getRequests());
+        for(byte[] payload : payloads) {
+            assertArrayEquals(cKeeperClientStub.sign(payload),
+                    this.s100ExchangeSetService.signContentCached(BigInteger.ONE, "algorithm", payload));
+        }
+        assertEquals(3, cKeeperClientStub.getRequests());
+    }
+
+    /**
+     * Test that the batch and the individual signing requests produce the
+     * exact same signatures for the same payloads, so that it makes no
+     * difference which one populated the signature cache.
+     */
+    @Test
+    void testPreSignContentsBatchesMatchIndividual() {
+        final CKeeperClientStub cKeeperClientStub = new CKeeperClientStub(0);
+        this.s100ExchangeSetService.cKeeperClient = cKeeperClientStub;
+        this.s100ExchangeSetService.signingExecutor = Runnable::run;
+
+        // Create some payloads
+        final List<byte[]> payloads = new ArrayList<>();
+        for(int i=0; i<4; i++) {
+            payloads.add(("payload" + i).getBytes());
+        }
+
+        // Sign them individually
+        final ConcurrentMapCacheManager individualCacheManager = new ConcurrentMapCacheManager("s100SignatureCache");
+        this.s100ExchangeSetService.cacheManager = individualCacheManager;
+        this.s100ExchangeSetService.signingBatchSize = 0;
+        this.s100ExchangeSetService.preSignContents(BigInteger.ONE, "algorithm", payloads);
+
+        // And in batches
+        final ConcurrentMapCacheManager batchCacheManager = new ConcurrentMapCacheManager("s100SignatureCache");
+        this.s100ExchangeSetService.cacheManager = batchCacheManager;
+        this.s100ExchangeSetService.signingBatchSize = 2;
+        this.s100ExchangeSetService.preSignContents(BigInteger.ONE, "algorithm", payloads);
+
+        // Make sure both produced the same signatures
+        assertEquals(6, cKeeperClientStub.getRequests());
+        for(byte[] payload : payloads) {
+            final String key = this.s100ExchangeSetService.generateSignatureKey(BigInteger.ONE, "algorithm", payload);
+            assertArrayEquals(cKeeperClientStub.sign(payload), individualCacheManager.getCache("s100SignatureCache").get(key, byte[].class));
+            assertArrayEquals(cKeeperClientStub.sign(payload), batchCacheManager.getCache("s100SignatureCache").get(key, byte[].class));
+        }
+    }
+
+    /**
+     * Test that in the local signing mode, the batch signing signs the
+     * payloads in-process instead of contacting cKeeper.
+     */
+    @Test
+    void testSignContentsLocally() throws GeneralSecurityException {
+        doReturn(true).when(this.localSignatureEngine).isEnabled();
+        doReturn("signature".getBytes()).when(this.localSignatureEngine).sign(any(), any());
+
+        // Perform the service call
+        List<byte[]> result = this.s100ExchangeSetService.signContents(BigInteger.ONE, "random", List.of("content1".getBytes(), "content2".getBytes()));
+
+        // Assert the signatures look OK
+        assertEquals(2, result.size());
+        assertEquals("signature", new String(result.get(0), StandardCharsets.UTF_8));
+        verify(this.cKeeperClient, never()).generateCertificateSignatures(any(), any(), any());
+    }
+
+    /**
+     * Test that the signature cache keys depend on the certificate, the
+     * algorithm and the payload digest.
+     */
+    @Test
+    void testGenerateSignatureKey() {
+        final String key = this.s100ExchangeSetService.generateSignatureKey(BigInteger.ONE, "algorithm", "payload".getBytes());
+        assertTrue(key.startsWith("1:algorithm:"));
+        assertEquals(key, this.s100ExchangeSetService.generateSignatureKey(BigInteger.ONE, "algorithm", "payload".getBytes()));
+        assertNotEquals(key, this.s100ExchangeSetService.generateSignatureKey(BigInteger.TWO, "algorithm", "payload".getBytes()));
+        assertNotEquals(key, this.s100ExchangeSetService.generateSignatureKey(BigInteger.ONE, "other", "payload".getBytes()));
+        assertNotEquals(key, this.s100ExchangeSetService.generateSignatureKey(BigInteger.ONE, "algorithm", "other".getBytes()));
+    }
+
     /**
      * Test that we can correctly identify the dataset purspose of an exchange
      * set based on the dataset operation.
@@ -17,6 +17,7 @@
 package org.grad.eNav.atonAdminService.services;
 
 import _int.iho.s_201.gml.cs0._2.ChangeTypesType;
+import org.grad.eNav.atonAdminService.components.AtonUpdateBroadcaster;
 import org.grad.eNav.atonAdminService.models.domain.s201.*;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
@@ -26,7 +27,6 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
-import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -35,7 +35,6 @@ import org.springframework.integration.channel.PublishSubscribeChannel;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import tools.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
@@ -43,9 +42,8 @@ import java.math.BigInteger;
 import java.util.Collections;
 import java.util.Optional;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -65,10 +63,10 @@ class S201WebSocketServiceTest {
     PublishSubscribeChannel atonPublicationChannel;
 
     /**
-     * The Web Socket mock.
+     * The AtoN Update Broadcaster mock.
      */
     @Mock
-    SimpMessagingTemplate webSocket;
+    AtonUpdateBroadcaster atonUpdateBroadcaster;
 
     // Test Variables
     private AidsToNavigation aidsToNavigation;
@@ -96,8 +94,7 @@ class S201WebSocketServiceTest {
         information.setChangeTypes(ChangeTypesType.TEMPORARY_CHANGES);
         aidsToNavigation.setInformations(Collections.singleton(information));
 
-        // Also set the web-socket service topic prefix
-        this.s201WebSocketService.prefix = "topic";
+        // Also set the web-socket service object mapper
         this.s201WebSocketService.objectMapper = new ObjectMapper();
     }
 
@@ -141,34 +138,8 @@ class S201WebSocketServiceTest {
         // Perform the service call
         this.s201WebSocketService.handleMessage(message);
 
-        // Verify that we send a packet to the web-socket and get that message
-        ArgumentCaptor<String> topicArgument = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<AidsToNavigation> payLoadArgument = ArgumentCaptor.forClass(AidsToNavigation.class);
-        verify(this.webSocket, times(1)).convertAndSend(topicArgument.capture(), payLoadArgument.capture());
-
-        // Verify the message
-        assertEquals("/topic/S201", topicArgument.getValue());
-        assertNotNull(payLoadArgument.getValue());
-        assertEquals(this.aidsToNavigation.getId(), payLoadArgument.getValue().getId());
-        assertEquals(this.aidsToNavigation.getIdCode(), payLoadArgument.getValue().getIdCode());
-        assertEquals(this.aidsToNavigation.getInformations().size(), payLoadArgument.getValue().getInformations().size());
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getFileLocator).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getFileLocator).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getFileReference).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getFileReference).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getHeadline).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getHeadline).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getLanguage).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getLanguage).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getText).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getText).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().size(), payLoadArgument.getValue().getFeatureNames().size());
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getName).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getName).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getDisplayName).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getDisplayName).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getLanguage).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getLanguage).orElse(null));
+        // Verify that the AtoN was handed over to the broadcaster as an update
+        verify(this.atonUpdateBroadcaster, times(1)).enqueue(this.aidsToNavigation, false);
     }
 
     /**
@@ -187,34 +158,8 @@ class S201WebSocketServiceTest {
         // Perform the service call
         this.s201WebSocketService.handleMessage(message);
 
-        // Verify that we send a packet to the VDES port and get that packet
-        ArgumentCaptor<String> topicArgument = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<AidsToNavigation> payLoadArgument = ArgumentCaptor.forClass(AidsToNavigation.class);
-        verify(this.webSocket, times(1)).convertAndSend(topicArgument.capture(), payLoadArgument.capture());
-
-        // Verify the packet
-        assertEquals("/topic/deletions/S201", topicArgument.getValue());
-        assertNotNull(payLoadArgument.getValue());
-        assertEquals(this.aidsToNavigation.getId(), payLoadArgument.getValue().getId());
-        assertEquals(this.aidsToNavigation.getIdCode(), payLoadArgument.getValue().getIdCode());
-        assertEquals(this.aidsToNavigation.getInformations().size(), payLoadArgument.getValue().getInformations().size());
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getFileLocator).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getFileLocator).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getFileReference).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getFileReference).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getHeadline).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getHeadline).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getLanguage).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getLanguage).orElse(null));
-        assertEquals(this.aidsToNavigation.getInformations().stream().findFirst().map(Information::getText).orElse(null),
-                payLoadArgument.getValue().getInformations().stream().findFirst().map(Information::getText).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().size(), payLoadArgument.getValue().getFeatureNames().size());
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getName).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getName).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getDisplayName).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getDisplayName).orElse(null));
-        assertEquals(this.aidsToNavigation.getFeatureNames().stream().findFirst().map(FeatureName::getLanguage).orElse(null),
-                payLoadArgument.getValue().getFeatureNames().stream().findFirst().map(FeatureName::getLanguage).orElse(null));
+        // Verify that the AtoN was handed over to the broadcaster as a deletion
+        verify(this.atonUpdateBroadcaster, times(1)).enqueue(this.aidsToNavigation, true);
     }
 
     /**
@@ -231,8 +176,8 @@ class S201WebSocketServiceTest {
         // Perform the service call
         this.s201WebSocketService.handleMessage(message);
 
-        // Verify that we didn't send any packets to the VDES port
-        verify(this.webSocket, never()).convertAndSend(any(String.class), any(Object.class));
+        // Verify that nothing was handed over to the broadcaster
+        verify(this.atonUpdateBroadcaster, never()).enqueue(any(), anyBoolean());
     }
 
 }
\ No newline at end of file
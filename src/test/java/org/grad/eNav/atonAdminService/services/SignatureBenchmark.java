@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services;
+
+import org.grad.eNav.atonAdminService.components.LocalSignatureEngine;
+import org.grad.eNav.atonAdminService.feign.CKeeperClientStub;
+import org.grad.secomv2.core.models.enums.DigitalSignatureAlgorithmEnum;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPairGenerator;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * A JMH benchmark comparing the signatures per second achieved by the
+ * exchange set signing operation, when using the remote cKeeper mode (backed
+ * by a local cKeeper stub with a simulated round trip latency) and when
+ * using the local signature engine.
+ * <p/>
+ * This is not executed as part of the unit tests, but can be run from the
+ * test classpath through its main method.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SignatureBenchmark {
+
+    /**
+     * The simulated cKeeper round trip latency in milliseconds.
+     */
+    @Param({"0", "5"})
+    public long cKeeperLatency;
+
+    // Benchmark Variables
+    private S100ExchangeSetService remoteService;
+    private S100ExchangeSetService localService;
+    private String algorithm;
+    private byte[] payload;
+
+    /**
+     * Sets up the two signing modes.
+     */
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        // The remote mode uses the cKeeper stub
+        this.remoteService = new S100ExchangeSetService();
+        this.remoteService.cKeeperClient = new CKeeperClientStub(this.cKeeperLatency);
+        this.remoteService.localSignatureEngine = new LocalSignatureEngine();
+
+        // While the local mode uses a freshly generated key pair
+        final KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp384r1"));
+        this.localService = new S100ExchangeSetService();
+        this.localService.localSignatureEngine = new LocalSignatureEngine();
+        this.localService.localSignatureEngine.setKeyMaterial(keyPairGenerator.generateKeyPair().getPrivate(), mock(X509Certificate.class));
+
+        // Sign a typical dataset delta sized payload
+        this.algorithm = DigitalSignatureAlgorithmEnum.SHA3_384_WITH_ECDSA.getValue();
+        this.payload = new byte[16 * 1024];
+    }
+
+    /**
+     * Signs the payload through the remote cKeeper mode.
+     *
+     * @return the generated signature
+     */
+    @Benchmark
+    public byte[] signRemotely() {
+        return this.remoteService.signContent(BigInteger.ONE, this.algorithm, this.payload);
+    }
+
+    /**
+     * Signs the payload through the local signature engine.
+     *
+     * @return the generated signature
+     */
+    @Benchmark
+    public byte[] signLocally() {
+        return this.localService.signContent(BigInteger.ONE, this.algorithm, this.payload);
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the command line arguments
+     * @throws RunnerException if the benchmark fails
+     */
+    public static void main(String[] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+                .include(SignatureBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.services.secom.v2;
+
+import org.grad.secomv2.core.models.*;
+import org.grad.secomv2.springboot4.components.SecomClient;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * A local stub of the SECOM discovery service, to be used for testing the
+ * SECOM client discovery without a running service registry. The stub
+ * answers the search requests from a local registry of MRN to endpoint
+ * entries, delaying every request by a configurable latency to simulate the
+ * remote round trip, while the number of requests per MRN is recorded. The
+ * stub can also be made unavailable, in which case no search result is
+ * returned at all.
+ *
+ * @author Nikolaos Vastardis (email: Nikolaos.Vastardis@gla-rad.org)
+ */
+public class SecomDiscoveryServiceStub {
+
+    // Class Variables
+    private final long latency;
+    private final Map<String, String> registry = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final SecomClient client;
+    private volatile boolean available = true;
+
+    /**
+     * Instantiates a new SECOM discovery service stub.
+     *
+     * @param latency the simulated latency of each request in milliseconds
+     */
+    public SecomDiscoveryServiceStub(long latency) {
+        this.latency = latency;
+        this.client = mock(SecomClient.class);
+        doAnswer(inv -> this.search(inv.getArgument(0))).when(this.client).searchService(any());
+    }
+
+    /**
+     * Returns the SECOM client answering through this stub.
+     *
+     * @return the SECOM client answering through this stub
+     */
+    public SecomClient getClient() {
+        return this.client;
+    }
+
+    /**
+     * Registers the endpoint of an MRN in the stub registry.
+     *
+     * @param mrn the registered MRN
+     * @param endpointUri the registered endpoint URI
+     */
+    public void register(String mrn, String endpointUri) {
+        this.registry.put(mrn, endpointUri);
+    }
+
+    /**
+     * Removes the endpoint of an MRN from the stub registry.
+     *
+     * @param mrn the MRN to be removed
+     */
+    public void unregister(String mrn) {
+        this.registry.remove(mrn);
+    }
+
+    /**
+     * Sets whether the stub is available to answer the search requests.
+     *
+     * @param available whether the stub is available
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    /**
+     * Returns the number of search requests received for an MRN.
+     *
+     * @param mrn the searched MRN
+     * @return the number of search requests received for the MRN
+     */
+    public int getRequests(String mrn) {
+        return Optional.ofNullable(this.requests.get(mrn))
+                .map(AtomicInteger::get)
+                .orElse(0);
+    }
+
+    /**
+     * Answers a search request from the stub registry.
+     *
+     * @param searchFilterObject the search filter object
+     * @return the search result
+     */
+    protected Optional<SearchResult> search(SearchFilterObject searchFilterObject) {
+        final String mrn = searchFilterObject.getEnvelope().getQuery().getInstanceId();
+        this.requests.computeIfAbsent(mrn, k -> new AtomicInteger()).incrementAndGet();
+        try {
+            Thread.sleep(this.latency);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        // An unavailable service does not return any result
+        if(!this.available) {
+            return Optional.empty();
+        }
+
+        // Build the matching instances, if any
+        final List<ServiceInstanceObject> instances = new ArrayList<>();
+        Optional.ofNullable(this.registry.get(mrn)).ifPresent(endpointUri -> {
+            final ServiceInstanceObject instance = new ServiceInstanceObject();
+            instance.setVersion("0.0.1");
+            instance.setEndpointUri(endpointUri);
+            instances.add(instance);
+        });
+
+        // And return the search result
+        final SearchResult searchResult = new SearchResult();
+        final EnvelopeSearchResultObject envelopeSearchResultObject = new EnvelopeSearchResultObject();
+        envelopeSearchResultObject.setServiceInstance(instances);
+        searchResult.setEnvelope(envelopeSearchResultObject);
+        return Optional.of(searchResult);
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package org.grad.eNav.atonAdminService.services.secom.v2;
 
+import org.grad.secomv2.core.exceptions.SecomNotFoundException;
 import org.grad.secomv2.core.exceptions.SecomValidationException;
 import org.grad.secomv2.core.models.EnvelopeSearchResultObject;
 import org.grad.secomv2.core.models.SearchResult;
@@ -31,6 +32,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.net.MalformedURLException;
 import java.net.URI;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -162,4 +164,200 @@ class SecomV2ServiceTest {
         assertThrows(SecomValidationException.class, () -> this.secomV2Service.getClient("urn:mrn:org:test"));
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that the SECOM clients constructed for the same URL are pooled
+     * and reused, instead of being constructed again on every request.
+     */
+    @Test
+    void testGetClientPooled() throws MalformedURLException {
+        this.secomV2Service.clientPoolSize = 10;
+
+        // Perform the service calls
+        SecomClient result1 = this.secomV2Service.getClient(URI.create("http://localhost").toURL());
+        SecomClient result2 = this.secomV2Service.getClient(URI.create("http://localhost").toURL());
+        SecomClient result3 = this.secomV2Service.getClient(URI.create("http://localhost:8080").toURL());
+
+        // Make sure the clients were reused for the same URL
+        assertNotNull(result1);
+        assertSame(result1, result2);
+        assertNotSame(result1, result3);
+        assertEquals(2, this.secomV2Service.clientPool.size());
+        assertEquals(1.0, this.secomV2Service.meterRegistry.counter("secom.clients", "result", "reused").count());
+        assertEquals(2.0, this.secomV2Service.meterRegistry.counter("secom.clients", "result", "created").count());
+    }
+
+    /**
+     * Test that the SECOM client pool does not grow beyond its maximum size,
+     * by evicting the least recently used clients.
+     */
+    @Test
+    void testGetClientPoolEviction() throws MalformedURLException {
+        this.secomV2Service.clientPoolSize = 2;
+
+        // Perform the service calls
+        SecomClient result = this.secomV2Service.getClient(URI.create("http://localhost:8080").toURL());
+        this.secomV2Service.getClient(URI.create("http://localhost:8081").toURL());
+        this.secomV2Service.getClient(URI.create("http://localhost:8082").toURL());
+
+        // Make sure the oldest client was evicted
+        assertEquals(2, this.secomV2Service.clientPool.size());
+        assertNotSame(result, this.secomV2Service.getClient(URI.create("http://localhost:8080").toURL()));
+    }
+
+    /**
+     * Test that the results of the SECOM discovery service are cached, so
+     * that repeated requests for the same MRN do not contact the discovery
+     * service again.
+     */
+    @Test
+    void testGetClientDiscoveryCached() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        discoveryServiceStub.register("urn:mrn:org:test", "http://localhost/");
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.clientPoolSize = 10;
+
+        // Perform the service calls
+        SecomClient result1 = this.secomV2Service.getClient("urn:mrn:org:test");
+        SecomClient result2 = this.secomV2Service.getClient("urn:mrn:org:test");
+
+        // Make sure the discovery service was only contacted once
+        assertNotNull(result1);
+        assertSame(result1, result2);
+        assertEquals(1, discoveryServiceStub.getRequests("urn:mrn:org:test"));
+        assertEquals(1.0, this.secomV2Service.meterRegistry.counter("secom.discovery.cache", "result", "miss").count());
+        assertEquals(1.0, this.secomV2Service.meterRegistry.counter("secom.discovery.cache", "result", "hit").count());
+        assertEquals(1, this.secomV2Service.meterRegistry.timer("secom.discovery.latency").count());
+    }
+
+    /**
+     * Test that the MRNs not found in the SECOM discovery service are also
+     * cached, so that repeated failing requests do not flood the discovery
+     * service.
+     */
+    @Test
+    void testGetClientDiscoveryNegativeCached() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.discoveryNegativeCacheTtl = 30;
+
+        // Perform the service calls
+        assertThrows(SecomNotFoundException.class, () -> this.secomV2Service.getClient("urn:mrn:org:unknown"));
+        assertThrows(SecomNotFoundException.class, () -> this.secomV2Service.getClient("urn:mrn:org:unknown"));
+
+        // Make sure the discovery service was only contacted once
+        assertEquals(1, discoveryServiceStub.getRequests("urn:mrn:org:unknown"));
+        assertEquals(1.0, this.secomV2Service.meterRegistry.counter("secom.discovery.cache", "result", "negative").count());
+    }
+
+    /**
+     * Test that the cached results of the SECOM discovery service are
+     * refreshed in the background when accessed close to their expiry, while
+     * the cached result is still returned to the caller.
+     */
+    @Test
+    void testGetClientDiscoveryRefreshAhead() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        discoveryServiceStub.register("urn:mrn:org:test", "http://localhost/");
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.discoveryRefreshAhead = 300;
+        this.secomV2Service.taskExecutor = Runnable::run;
+
+        // Perform the first service call to populate the cache
+        this.secomV2Service.getClient("urn:mrn:org:test");
+        assertEquals(1, discoveryServiceStub.getRequests("urn:mrn:org:test"));
+
+        // Move the client and perform the service call within the refresh window
+        discoveryServiceStub.register("urn:mrn:org:test", "http://localhost:8080/");
+        SecomClient result = this.secomV2Service.getClient("urn:mrn:org:test");
+
+        // Make sure the cached result was returned but also refreshed
+        assertNotNull(result);
+        assertEquals(2, discoveryServiceStub.getRequests("urn:mrn:org:test"));
+        assertEquals("http://localhost:8080/", this.secomV2Service.discoveryCache.get("urn:mrn:org:test").endpointUri());
+        assertTrue(this.secomV2Service.discoveryRefreshes.isEmpty());
+    }
+
+    /**
+     * Test that if the SECOM discovery service fails to provide a search
+     * result, the last endpoint discovered for the MRN is kept and used,
+     * instead of being replaced by a not-found result.
+     */
+    @Test
+    void testGetClientDiscoveryFailedKeepsLast() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        discoveryServiceStub.register("urn:mrn:org:test", "http://localhost/");
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.discoveryNegativeCacheTtl = 30;
+        this.secomV2Service.discoveryRefreshAhead = 300;
+        this.secomV2Service.discoveryCacheSize = 10;
+        this.secomV2Service.taskExecutor = Runnable::run;
+
+        // Perform the first service call to populate the cache
+        this.secomV2Service.getClient("urn:mrn:org:test");
+
+        // Make the discovery service fail during the background refresh
+        discoveryServiceStub.setAvailable(false);
+        assertNotNull(this.secomV2Service.getClient("urn:mrn:org:test"));
+        assertEquals("http://localhost/", this.secomV2Service.discoveryCache.get("urn:mrn:org:test").endpointUri());
+
+        // And make sure the last endpoint is also used once expired
+        this.secomV2Service.discoveryCache.put("urn:mrn:org:test", new SecomV2Service.DiscoveryResult("http://localhost/", Instant.now().minusSeconds(1)));
+        assertNotNull(this.secomV2Service.getClient("urn:mrn:org:test"));
+        assertEquals(3, discoveryServiceStub.getRequests("urn:mrn:org:test"));
+        assertEquals(2.0, this.secomV2Service.meterRegistry.counter("secom.discovery.cache", "result", "stale").count());
+    }
+
+    /**
+     * Test that if the SECOM discovery service fails to provide a search
+     * result for an MRN never discovered before, the failure is reported but
+     * not cached as a not-found result.
+     */
+    @Test
+    void testGetClientDiscoveryFailedNotNegativeCached() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        discoveryServiceStub.setAvailable(false);
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.discoveryNegativeCacheTtl = 30;
+
+        // Perform the service calls
+        assertThrows(SecomValidationException.class, () -> this.secomV2Service.getClient("urn:mrn:org:test"));
+        assertThrows(SecomValidationException.class, () -> this.secomV2Service.getClient("urn:mrn:org:test"));
+
+        // Make sure the discovery service was contacted every time
+        assertEquals(2, discoveryServiceStub.getRequests("urn:mrn:org:test"));
+        assertTrue(this.secomV2Service.discoveryCache.isEmpty());
+    }
+
+    /**
+     * Test that the SECOM discovery cache is bounded, evicting the least
+     * recently used MRNs first.
+     */
+    @Test
+    void testGetClientDiscoveryCacheEviction() {
+        final SecomDiscoveryServiceStub discoveryServiceStub = new SecomDiscoveryServiceStub(0);
+        discoveryServiceStub.register("urn:mrn:org:test1", "http://localhost/");
+        discoveryServiceStub.register("urn:mrn:org:test2", "http://localhost/");
+        discoveryServiceStub.register("urn:mrn:org:test3", "http://localhost/");
+        this.secomV2Service.discoveryService = discoveryServiceStub.getClient();
+        this.secomV2Service.discoveryCacheTtl = 300;
+        this.secomV2Service.discoveryCacheSize = 2;
+
+        // Perform the service calls
+        this.secomV2Service.getClient("urn:mrn:org:test1");
+        this.secomV2Service.getClient("urn:mrn:org:test2");
+        this.secomV2Service.getClient("urn:mrn:org:test1");
+        this.secomV2Service.getClient("urn:mrn:org:test3");
+
+        // Make sure the least recently used MRN was evicted
+        assertEquals(2, this.secomV2Service.discoveryCache.size());
+        assertTrue(this.secomV2Service.discoveryCache.containsKey("urn:mrn:org:test1"));
+        assertFalse(this.secomV2Service.discoveryCache.containsKey("urn:mrn:org:test2"));
+        assertTrue(this.secomV2Service.discoveryCache.containsKey("urn:mrn:org:test3"));
+    }
+
+}
@@ -20,17 +20,24 @@ import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.xml.bind.JAXBException;
+import org.grad.eNav.atonAdminService.components.DatatablesCountCache;
+import org.grad.eNav.atonAdminService.components.SecomAcknowledgementTracker;
+import org.grad.eNav.atonAdminService.components.SecomDeliveryEngine;
+import org.grad.eNav.atonAdminService.components.SecomSubscriptionMatcher;
+import org.grad.eNav.atonAdminService.components.SubscriptionTimestampBuffer;
 import org.grad.eNav.atonAdminService.models.domain.DatasetContent;
 import org.grad.eNav.atonAdminService.models.domain.s201.S201Dataset;
 import org.grad.eNav.atonAdminService.models.domain.secom.SubscriptionRequest;
 import org.grad.eNav.atonAdminService.models.dtos.datatables.*;
 import org.grad.eNav.atonAdminService.models.enums.DatasetOperation;
 import org.grad.eNav.atonAdminService.repos.SecomSubscriptionRepo;
+import org.grad.eNav.atonAdminService.services.DatasetContentService;
 import org.grad.eNav.atonAdminService.services.S100ExchangeSetService;
 import org.grad.eNav.atonAdminService.services.UnLoCodeService;
 import org.grad.secomv2.core.exceptions.SecomNotFoundException;
 import org.grad.secomv2.core.exceptions.SecomValidationException;
 import org.grad.secomv2.core.models.UploadObject;
+import org.grad.secomv2.core.models.UploadResponseObject;
 import org.grad.secomv2.core.models.enums.AckRequestEnum;
 import org.grad.secomv2.core.models.enums.ContainerTypeEnum;
 import org.grad.secomv2.core.models.enums.SECOM_DataProductType;
@@ -81,6 +88,12 @@ class SecomV2SubscriptionServiceTest {
     @Spy
     SecomV2SubscriptionService secomV2SubscriptionService;
 
+    /**
+     * The Datatables Count Cache spy.
+     */
+    @Spy
+    DatatablesCountCache datatablesCountCache;
+
     /**
      * The Entity Manager Factory mock.
      */
@@ -111,6 +124,36 @@ class SecomV2SubscriptionServiceTest {
     @Mock
     S100ExchangeSetService s100ExchangeSetService;
 
+    /**
+     * The Dataset Content Service mock.
+     */
+    @Mock
+    DatasetContentService datasetContentService;
+
+    /**
+     * The SECOM Acknowledgement Tracker mock.
+     */
+    @Mock
+    SecomAcknowledgementTracker secomAcknowledgementTracker;
+
+    /**
+     * The SECOM Delivery Engine mock.
+     */
+    @Mock
+    SecomDeliveryEngine secomDeliveryEngine;
+
+    /**
+     * The SECOM Subscription Matcher mock.
+     */
+    @Mock
+    SecomSubscriptionMatcher secomSubscriptionMatcher;
+
+    /**
+     * The Subscription Timestamp Buffer mock.
+     */
+    @Mock
+    SubscriptionTimestampBuffer subscriptionTimestampBuffer;
+
     /**
      * The SECOM Subscription Repo mock.
      */
@@ -239,6 +282,7 @@ class SecomV2SubscriptionServiceTest {
     void testHandleMessagePublication() {
         doReturn(Collections.singletonList(this.existingSubscriptionRequest)).when(this.secomV2SubscriptionService).findAll(any(), any(), any(), any(), any(), any());
         doNothing().when(this.secomV2SubscriptionService).sendToSubscription(any(), any());
+        doAnswer(inv -> { inv.<Runnable>getArgument(2).run(); return null; }).when(this.secomDeliveryEngine).submit(any(), any(), any());
 
         // Create a message to be handled
         Message<S201Dataset> message = Optional.of(this.s201Dataset).map(MessageBuilder::withPayload)
@@ -279,6 +323,13 @@ class SecomV2SubscriptionServiceTest {
         assertEquals(this.s201Dataset.getGeometry(), geometryArgument.getValue());
         assertEquals(this.s201Dataset.getLastUpdatedAt(), timestampArgument.getValue());
 
+        // Verify that the delivery is queued for the subscription client
+        ArgumentCaptor<String> endpointArgument = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> keyArgument = ArgumentCaptor.forClass(String.class);
+        verify(this.secomDeliveryEngine, times(1)).submit(endpointArgument.capture(), keyArgument.capture(), any());
+        assertEquals(this.existingSubscriptionRequest.getClientMrn(), endpointArgument.getValue());
+        assertEquals(this.existingSubscriptionRequest.getUuid() + "/" + this.s201Dataset.getUuid(), keyArgument.getValue());
+
         // Verify that we try to update the registered clients
         ArgumentCaptor<SubscriptionRequest> subscriptionRequestArgument = ArgumentCaptor.forClass(SubscriptionRequest.class);
         ArgumentCaptor<S201Dataset> s201DatasetArgument = ArgumentCaptor.forClass(S201Dataset.class);
@@ -409,6 +460,42 @@ class SecomV2SubscriptionServiceTest {
         }
     }
 
+    /**
+     * Test that when enabled, the subscription request entries are matched
+     * against the in-memory subscription index, without contacting the
+     * search backend.
+     */
+    @Test
+    void testFindAllMatcher() {
+        final LocalDateTime timestamp = LocalDateTime.now();
+        doReturn(Boolean.TRUE).when(this.secomSubscriptionMatcher).isEnabled();
+        doReturn(Collections.singletonList(this.existingSubscriptionRequest)).when(this.secomSubscriptionMatcher).match(any(), any(), any(), any(), any(), any());
+
+        // Perform the service call
+        List<SubscriptionRequest> result = this.secomV2SubscriptionService.findAll(
+                this.existingSubscriptionRequest.getContainerType(),
+                this.existingSubscriptionRequest.getDataProductType(),
+                this.existingSubscriptionRequest.getProductVersion(),
+                this.existingSubscriptionRequest.getDataReference(),
+                this.existingSubscriptionRequest.getGeometry(),
+                timestamp);
+
+        // Test the result
+        assertNotNull(result);
+        assertEquals(1, result.size());
+        assertEquals(this.existingSubscriptionRequest.getUuid(), result.get(0).getUuid());
+
+        // Make sure the matcher was used with the correct arguments
+        verify(this.secomSubscriptionMatcher, times(1)).match(
+                this.existingSubscriptionRequest.getContainerType(),
+                this.existingSubscriptionRequest.getDataProductType(),
+                this.existingSubscriptionRequest.getProductVersion(),
+                this.existingSubscriptionRequest.getDataReference(),
+                this.existingSubscriptionRequest.getGeometry(),
+                timestamp);
+        verify(this.secomV2SubscriptionService, never()).getSubscriptionRequestSearchQuery(any(), any(), any(), any(), any(), any(), any());
+    }
+
     /**
      * Test that we can retrieve the paged list of subscription request entries
      * for a Datatables pagination request (which by the way also includes
@@ -504,6 +591,9 @@ class SecomV2SubscriptionServiceTest {
                 eq(this.existingSubscriptionRequest.getClientMrn()),
                 eq(this.existingSubscriptionRequest.getUuid()),
                 eq(SubscriptionEventEnum.SUBSCRIPTION_CREATED));
+
+        // Make sure the in-memory subscription index was invalidated
+        verify(this.secomSubscriptionMatcher, times(1)).invalidate();
     }
 
     /**
@@ -579,6 +669,9 @@ class SecomV2SubscriptionServiceTest {
                 eq(this.existingSubscriptionRequest.getClientMrn()),
                 eq(this.existingSubscriptionRequest.getUuid()),
                 eq(SubscriptionEventEnum.SUBSCRIPTION_REMOVED));
+
+        // Make sure the in-memory subscription index was invalidated
+        verify(this.secomSubscriptionMatcher, times(1)).invalidate();
     }
 
     /**
@@ -640,6 +733,7 @@ class SecomV2SubscriptionServiceTest {
 
         // Mock a SECOM client
         final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
         doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
 
         // Perform the service call
@@ -657,9 +751,96 @@ class SecomV2SubscriptionServiceTest {
         assertEquals(AckRequestEnum.DELIVERED_ACK_REQUESTED, uploadArgument.getValue().getEnvelope().getAckRequest());
         assertNotNull(uploadArgument.getValue().getEnvelope().getTransactionIdentifier());
 
-        // Verify that we updated the timestamp of the subscription
-        verify(this.secomSubscriptionRepo, times(1)).save(any());
+        // Verify that the timestamp is updated straight after the upload
+        verify(this.subscriptionTimestampBuffer, times(1)).record(eq(this.existingSubscriptionRequest.getUuid()), any());
         assertNotNull(this.existingSubscriptionRequest.getUpdatedAt());
+
+        // And that the delivery acknowledgement is tracked
+        ArgumentCaptor<Runnable> redeliveryArgument = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.secomAcknowledgementTracker, times(1)).track(
+                eq(uploadArgument.getValue().getEnvelope().getTransactionIdentifier()),
+                eq(this.existingSubscriptionRequest.getClientMrn()),
+                eq(this.existingSubscriptionRequest.getUuid() + "/" + this.s201Dataset.getUuid()),
+                redeliveryArgument.capture());
+
+        // With any redelivery queued through the delivery engine
+        redeliveryArgument.getValue().run();
+        verify(this.secomDeliveryEngine, times(1)).submit(
+                eq(this.existingSubscriptionRequest.getClientMrn()),
+                eq(this.existingSubscriptionRequest.getUuid() + "/" + this.s201Dataset.getUuid()),
+                any());
+    }
+
+    /**
+     * Test that the redelivery of an unacknowledged exchange set covers the
+     * same time window as the original upload, even though the subscription
+     * timestamp has been advanced in the meantime.
+     */
+    @Test
+    void testSendToSubscriptionRedeliveryWindow() throws JAXBException, IOException {
+        // Specify that this is for an S-100 exchange set and mock the generation
+        final LocalDateTime updatedAt = LocalDateTime.now().minusHours(1);
+        this.secomV2SubscriptionService.exchangeSetWindow = 0;
+        this.existingSubscriptionRequest.setContainerType(ContainerTypeEnum.S100_ExchangeSet);
+        this.existingSubscriptionRequest.setUpdatedAt(updatedAt);
+        doReturn("exchangeSet".getBytes()).when(this.s100ExchangeSetService).packageToExchangeSet(any(), any(), any());
+
+        // Mock a SECOM client
+        final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
+        doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
+
+        // Perform the service call
+        this.secomV2SubscriptionService.sendToSubscription(this.existingSubscriptionRequest, this.s201Dataset);
+        assertTrue(this.existingSubscriptionRequest.getUpdatedAt().isAfter(updatedAt));
+
+        // Run the redelivery through the delivery engine
+        ArgumentCaptor<Runnable> redeliveryArgument = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.secomAcknowledgementTracker, times(1)).track(any(), any(), any(), redeliveryArgument.capture());
+        redeliveryArgument.getValue().run();
+        ArgumentCaptor<Runnable> deliveryArgument = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.secomDeliveryEngine, times(1)).submit(any(), any(), deliveryArgument.capture());
+        deliveryArgument.getValue().run();
+
+        // Verify that both uploads started from the original timestamp
+        verify(this.s100ExchangeSetService, times(2)).packageToExchangeSet(any(), eq(updatedAt), any());
+    }
+
+    /**
+     * Test that for a given subscription and a list of received Aids to
+     * Navigation messages, when the dataset content compression is enabled,
+     * this function will upload the stored compressed content of the dataset
+     * and flag it as compressed in the exchange metadata.
+     */
+    @Test
+    void testSendToSubscriptionCompressedDataset() {
+        // Specify that this is for an S-100 dataset with a compressed content
+        this.existingSubscriptionRequest.setContainerType(ContainerTypeEnum.S100_DataSet);
+        this.datasetContent.setCompressedContent("compressed".getBytes());
+        doReturn(Boolean.TRUE).when(this.datasetContentService).isCompressionEnabled();
+
+        // Mock a SECOM client
+        final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
+        doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
+
+        // Perform the service call
+        this.secomV2SubscriptionService.sendToSubscription(this.existingSubscriptionRequest, this.s201Dataset);
+
+        // Verify that we upload the constructed SECOM upload object
+        ArgumentCaptor<UploadObject> uploadArgument = ArgumentCaptor.forClass(UploadObject.class);
+        verify(secomClient).upload(uploadArgument.capture());
+
+        // Verify that the constructed object contains the compressed content
+        assertNotNull(uploadArgument.getValue());
+        assertNotNull(uploadArgument.getValue().getEnvelope());
+        assertArrayEquals("compressed".getBytes(), uploadArgument.getValue().getEnvelope().getData());
+        assertEquals(ContainerTypeEnum.S100_DataSet, uploadArgument.getValue().getEnvelope().getContainerType());
+        assertNotNull(uploadArgument.getValue().getEnvelope().getExchangeMetadata());
+        assertEquals(Boolean.TRUE, uploadArgument.getValue().getEnvelope().getExchangeMetadata().getCompressionFlag());
+
+        // Make sure the content was not compressed again
+        verify(this.datasetContentService, never()).compressContent(any(), any());
     }
 
     /**
@@ -675,6 +856,7 @@ class SecomV2SubscriptionServiceTest {
 
         // Mock a SECOM client
         final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
         doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getCallbackEndpoint());
 
         // Perform the service call
@@ -692,8 +874,9 @@ class SecomV2SubscriptionServiceTest {
         assertEquals(AckRequestEnum.DELIVERED_ACK_REQUESTED, uploadArgument.getValue().getEnvelope().getAckRequest());
         assertNotNull(uploadArgument.getValue().getEnvelope().getTransactionIdentifier());
 
-        // Verify that we updated the timestamp of the subscription
-        verify(this.secomSubscriptionRepo, times(1)).save(any());
+        // Verify that we update the timestamp of the subscription once uploaded
+        verify(this.secomAcknowledgementTracker, times(1)).track(any(), any(), any(), any());
+        verify(this.subscriptionTimestampBuffer, times(1)).record(eq(this.existingSubscriptionRequest.getUuid()), any());
         assertNotNull(this.existingSubscriptionRequest.getUpdatedAt());
     }
 
@@ -711,6 +894,7 @@ class SecomV2SubscriptionServiceTest {
 
         // Mock a SECOM client
         final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
         doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
 
         // Perform the service call
@@ -725,12 +909,15 @@ class SecomV2SubscriptionServiceTest {
         assertNotNull(uploadArgument.getValue().getEnvelope());
         assertTrue(uploadArgument.getValue().getEnvelope().getData().length > 0);
         assertEquals("exchangeSet", new String(uploadArgument.getValue().getEnvelope().getData(), StandardCharsets.UTF_8));
+        assertEquals(ContainerTypeEnum.S100_ExchangeSet, uploadArgument.getValue().getEnvelope().getContainerType());
+        assertEquals(Boolean.TRUE, uploadArgument.getValue().getEnvelope().getExchangeMetadata().getCompressionFlag());
         assertEquals(SECOM_DataProductType.S201, uploadArgument.getValue().getEnvelope().getDataProductType());
         assertEquals(AckRequestEnum.DELIVERED_ACK_REQUESTED, uploadArgument.getValue().getEnvelope().getAckRequest());
         assertNotNull(uploadArgument.getValue().getEnvelope().getTransactionIdentifier());
 
-        // Verify that we updated the timestamp of the subscription
-        verify(this.secomSubscriptionRepo, times(1)).save(any());
+        // Verify that we update the timestamp of the subscription once uploaded
+        verify(this.secomAcknowledgementTracker, times(1)).track(any(), any(), any(), any());
+        verify(this.subscriptionTimestampBuffer, times(1)).record(eq(this.existingSubscriptionRequest.getUuid()), any());
         assertNotNull(this.existingSubscriptionRequest.getUpdatedAt());
     }
 
@@ -748,6 +935,7 @@ class SecomV2SubscriptionServiceTest {
 
         // Mock a SECOM client
         final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.of(new UploadResponseObject())).when(secomClient).upload(any());
         doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getCallbackEndpoint());
 
         // Perform the service call
@@ -762,15 +950,85 @@ class SecomV2SubscriptionServiceTest {
         assertNotNull(uploadArgument.getValue().getEnvelope());
         assertTrue(uploadArgument.getValue().getEnvelope().getData().length > 0);
         assertEquals("exchangeSet", new String(uploadArgument.getValue().getEnvelope().getData(), StandardCharsets.UTF_8));
+        assertEquals(ContainerTypeEnum.S100_ExchangeSet, uploadArgument.getValue().getEnvelope().getContainerType());
+        assertEquals(Boolean.TRUE, uploadArgument.getValue().getEnvelope().getExchangeMetadata().getCompressionFlag());
         assertEquals(SECOM_DataProductType.S201, uploadArgument.getValue().getEnvelope().getDataProductType());
         assertEquals(AckRequestEnum.DELIVERED_ACK_REQUESTED, uploadArgument.getValue().getEnvelope().getAckRequest());
         assertNotNull(uploadArgument.getValue().getEnvelope().getTransactionIdentifier());
 
-        // Verify that we updated the timestamp of the subscription
-        verify(this.secomSubscriptionRepo, times(1)).save(any());
+        // Verify that we update the timestamp of the subscription once uploaded
+        verify(this.secomAcknowledgementTracker, times(1)).track(any(), any(), any(), any());
+        verify(this.subscriptionTimestampBuffer, times(1)).record(eq(this.existingSubscriptionRequest.getUuid()), any());
         assertNotNull(this.existingSubscriptionRequest.getUpdatedAt());
     }
 
+    /**
+     * Test that if the upload to the subscription client fails, the failure
+     * is thrown back to the delivery engine and the delivery is not tracked
+     * for acknowledgement.
+     */
+    @Test
+    void testSendToSubscriptionUploadFailed() {
+        // Specify that this is for an S-100 dataset
+        this.existingSubscriptionRequest.setContainerType(ContainerTypeEnum.S100_DataSet);
+
+        // Mock a SECOM client that returns no response
+        final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(Optional.empty()).when(secomClient).upload(any());
+        doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
+
+        // Perform the service call
+        assertThrows(IllegalStateException.class, () -> this.secomV2SubscriptionService.sendToSubscription(this.existingSubscriptionRequest, this.s201Dataset));
+
+        // Verify that the delivery was neither tracked nor timestamped
+        verify(this.secomAcknowledgementTracker, never()).track(any(), any(), any(), any());
+        verify(this.subscriptionTimestampBuffer, never()).record(any(), any());
+    }
+
+    /**
+     * Test that if the exchange set packaging fails, the failure is thrown
+     * back to the delivery engine and nothing gets uploaded.
+     */
+    @Test
+    void testSendToSubscriptionPackagingFailed() throws JAXBException, IOException {
+        // Specify that this is for an S-100 exchange set and fail the generation
+        this.existingSubscriptionRequest.setContainerType(ContainerTypeEnum.S100_ExchangeSet);
+        doThrow(IOException.class).when(this.s100ExchangeSetService).packageToExchangeSet(any(), any(), any());
+
+        // Mock a SECOM client
+        final SecomClient secomClient = mock(SecomClient.class);
+        doReturn(secomClient).when(this.secomV2Service).getClient(this.existingSubscriptionRequest.getClientMrn());
+
+        // Perform the service call
+        assertThrows(IllegalStateException.class, () -> this.secomV2SubscriptionService.sendToSubscription(this.existingSubscriptionRequest, this.s201Dataset));
+
+        // Verify that nothing was uploaded
+        verify(secomClient, never()).upload(any());
+        verify(this.secomAcknowledgementTracker, never()).track(any(), any(), any(), any());
+    }
+
+    /**
+     * Test that the exchange set subscription update times are rounded down
+     * to the configured window, so that subscribers updated at similar times
+     * can share the same packaged exchange set.
+     */
+    @Test
+    void testGetExchangeSetWindowStart() {
+        final LocalDateTime updatedAt = LocalDateTime.of(2024, 1, 1, 12, 34, 56, 789);
+
+        // With no window the update time is not changed
+        this.secomV2SubscriptionService.exchangeSetWindow = 0;
+        assertEquals(updatedAt, this.secomV2SubscriptionService.getExchangeSetWindowStart(updatedAt));
+        assertNull(this.secomV2SubscriptionService.getExchangeSetWindowStart(null));
+
+        // Otherwise it should be rounded down
+        this.secomV2SubscriptionService.exchangeSetWindow = 60;
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 34), this.secomV2SubscriptionService.getExchangeSetWindowStart(updatedAt));
+        this.secomV2SubscriptionService.exchangeSetWindow = 3600;
+        assertEquals(LocalDateTime.of(2024, 1, 1, 12, 0), this.secomV2SubscriptionService.getExchangeSetWindowStart(updatedAt));
+        assertNull(this.secomV2SubscriptionService.getExchangeSetWindowStart(null));
+    }
+
     /**
      * Test that we can successfully update the update timestamp of a
      * subscription to keep track of when the last information was sent to it.
@@ -779,12 +1037,30 @@ class SecomV2SubscriptionServiceTest {
     void testUpdateSubscriptionTimestamp() {
         // Make sure we don't have an update time
         this.existingSubscriptionRequest.setUpdatedAt(null);
+        final LocalDateTime updatedAt = LocalDateTime.now();
 
         // Perform the service call
-        this.secomV2SubscriptionService.updateSubscriptionTimestamp(this.existingSubscriptionRequest);
+        this.secomV2SubscriptionService.updateSubscriptionTimestamp(this.existingSubscriptionRequest, updatedAt);
 
         // And check that the time was updated
-        verify(this.secomSubscriptionRepo, times(1)).save(any());
-        assertNotNull(this.existingSubscriptionRequest.getUpdatedAt());
+        verify(this.subscriptionTimestampBuffer, times(1)).record(this.existingSubscriptionRequest.getUuid(), updatedAt);
+        assertEquals(updatedAt, this.existingSubscriptionRequest.getUpdatedAt());
+    }
+
+    /**
+     * Test that the update timestamp of a subscription is never moved
+     * backwards, e.g. when the acknowledgements arrive out of order.
+     */
+    @Test
+    void testUpdateSubscriptionTimestampOutOfOrder() {
+        final LocalDateTime updatedAt = LocalDateTime.now();
+        this.existingSubscriptionRequest.setUpdatedAt(updatedAt);
+
+        // Perform the service call
+        this.secomV2SubscriptionService.updateSubscriptionTimestamp(this.existingSubscriptionRequest, updatedAt.minusMinutes(1));
+
+        // And check that the time was not updated
+        verify(this.subscriptionTimestampBuffer, never()).record(any(), any());
+        assertEquals(updatedAt, this.existingSubscriptionRequest.getUpdatedAt());
     }
 }
\ No newline at end of file
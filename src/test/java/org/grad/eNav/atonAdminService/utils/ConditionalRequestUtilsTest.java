@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalRequestUtilsTest {
+
+    /**
+     * Test that the generated ETags are strong, stable for the same parts
+     * and different when any of the parts changes.
+     */
+    @Test
+    void testGenerateETag() {
+        String eTag = ConditionalRequestUtils.generateETag(Stream.of("dataset:1", "dataset2:5"));
+        assertNotNull(eTag);
+        assertTrue(eTag.startsWith("\""));
+        assertTrue(eTag.endsWith("\""));
+        assertFalse(eTag.startsWith("W/"));
+        assertEquals(eTag, ConditionalRequestUtils.generateETag(Stream.of("dataset:1", "dataset2:5")));
+        assertNotEquals(eTag, ConditionalRequestUtils.generateETag(Stream.of("dataset:1", "dataset2:6")));
+        assertNotEquals(eTag, ConditionalRequestUtils.generateETag(Stream.of("dataset2:5", "dataset:1")));
+    }
+
+    /**
+     * Test that the last modification time is the latest of the provided
+     * times, truncated to seconds.
+     */
+    @Test
+    void testGetLastModified() {
+        LocalDateTime latest = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 500_000_000);
+        Instant lastModified = ConditionalRequestUtils.getLastModified(Stream.of(
+                latest.minusDays(1), null, latest, latest.minusHours(2)));
+        assertEquals(latest.atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.SECONDS), lastModified);
+        assertNull(ConditionalRequestUtils.getLastModified(Stream.empty()));
+    }
+
+    /**
+     * Test that the last modification time also accounts for the last time
+     * any entry might have been removed from the response.
+     */
+    @Test
+    void testGetLastModifiedWithRemovals() {
+        LocalDateTime latest = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+        Instant latestInstant = latest.atZone(ZoneId.systemDefault()).toInstant();
+        assertEquals(latestInstant, ConditionalRequestUtils.getLastModified(Stream.of(latest), latestInstant.minusSeconds(60)));
+        assertEquals(latestInstant.plusSeconds(60), ConditionalRequestUtils.getLastModified(Stream.of(latest), latestInstant.plusSeconds(60)));
+        assertEquals(latestInstant, ConditionalRequestUtils.getLastModified(Stream.empty(), latestInstant));
+        assertEquals(latestInstant, ConditionalRequestUtils.getLastModified(Stream.of(latest), null));
+        assertNull(ConditionalRequestUtils.getLastModified(Stream.empty(), null));
+    }
+
+    /**
+     * Test that matching If-None-Match headers (including weak and wildcard
+     * ones) are detected as not modified, while non-matching ones are not.
+     */
+    @Test
+    void testIsNotModifiedIfNoneMatch() {
+        String eTag = ConditionalRequestUtils.generateETag(Stream.of("dataset:1"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\", " + eTag);
+        assertTrue(ConditionalRequestUtils.isNotModified(request, eTag, null));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "W/" + eTag);
+        assertTrue(ConditionalRequestUtils.isNotModified(request, eTag, null));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "*");
+        assertTrue(ConditionalRequestUtils.isNotModified(request, eTag, null));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        assertFalse(ConditionalRequestUtils.isNotModified(request, eTag, null));
+    }
+
+    /**
+     * Test that the If-Modified-Since header is evaluated only when no
+     * If-None-Match header is present.
+     */
+    @Test
+    void testIsNotModifiedIfModifiedSince() {
+        String eTag = ConditionalRequestUtils.generateETag(Stream.of("dataset:1"));
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified.toEpochMilli());
+        assertTrue(ConditionalRequestUtils.isNotModified(request, eTag, lastModified));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified.minusSeconds(60).toEpochMilli());
+        assertFalse(ConditionalRequestUtils.isNotModified(request, eTag, lastModified));
+
+        request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"other\"");
+        request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified.toEpochMilli());
+        assertFalse(ConditionalRequestUtils.isNotModified(request, eTag, lastModified));
+
+        assertFalse(ConditionalRequestUtils.isNotModified(new MockHttpServletRequest(), eTag, lastModified));
+    }
+
+    /**
+     * Test that the HTTP request currently being handled is evaluated when
+     * no request is provided, while outside a request the response is always
+     * considered as modified.
+     */
+    @Test
+    void testIsNotModifiedCurrentRequest() {
+        String eTag = ConditionalRequestUtils.generateETag(Stream.of("dataset:1"));
+        assertFalse(ConditionalRequestUtils.isNotModified(eTag, null));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertTrue(ConditionalRequestUtils.isNotModified(eTag, null));
+            assertFalse(ConditionalRequestUtils.isNotModified(ConditionalRequestUtils.generateETag(Stream.of("dataset:2")), null));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    /**
+     * Test that the validator headers are populated when available.
+     */
+    @Test
+    void testCreateValidatorHeaders() {
+        String eTag = ConditionalRequestUtils.generateETag(Stream.of("dataset:1"));
+        Instant lastModified = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+
+        HttpHeaders headers = ConditionalRequestUtils.createValidatorHeaders(eTag, lastModified);
+        assertEquals(eTag, headers.getETag());
+        assertEquals(lastModified.toEpochMilli(), headers.getLastModified());
+
+        headers = ConditionalRequestUtils.createValidatorHeaders(eTag, null);
+        assertEquals(eTag, headers.getETag());
+        assertEquals(-1, headers.getLastModified());
+    }
+
+}
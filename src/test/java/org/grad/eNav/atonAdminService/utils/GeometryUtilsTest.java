@@ -16,14 +16,18 @@
 
 package org.grad.eNav.atonAdminService.utils;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import org.junit.jupiter.api.Test;
 import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNull;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 class GeometryUtilsTest {
 
@@ -65,4 +69,114 @@ class GeometryUtilsTest {
         assertEquals(polygonGeometry, GeometryUtils.joinGeometries(pointGeometry, lineGeometry, polygonGeometry));
     }
 
-}
\ No newline at end of file
+    /**
+     * Test that the intersection query uses the cheap bounding box predicate
+     * for the point geometries when the search area is a rectangle, and the
+     * full geo_shape predicate for the rest of the geometries.
+     */
+    @Test
+    void testGeoShapeIntersectsQueryRectangle() {
+        Geometry rectangle = this.geometryFactory.toGeometry(new Envelope(-10, 10, -5, 5));
+
+        // Perform the utility call
+        JsonObject query = GeometryUtils.geoShapeIntersectsQuery("geometry", rectangle);
+
+        // Test the point clause
+        JsonArray should = query.getAsJsonObject("bool").getAsJsonArray("should");
+        assertEquals(2, should.size());
+        JsonArray pointFilters = should.get(0).getAsJsonObject().getAsJsonObject("bool").getAsJsonArray("filter");
+        assertTrue(pointFilters.get(0).getAsJsonObject().getAsJsonObject("term").get("geometry_point").getAsBoolean());
+        JsonObject box = pointFilters.get(1).getAsJsonObject().getAsJsonObject("geo_bounding_box").getAsJsonObject("geometry_centroid");
+        assertEquals(5.0, box.getAsJsonObject("top_left").get("lat").getAsDouble());
+        assertEquals(-10.0, box.getAsJsonObject("top_left").get("lon").getAsDouble());
+        assertEquals(-5.0, box.getAsJsonObject("bottom_right").get("lat").getAsDouble());
+        assertEquals(10.0, box.getAsJsonObject("bottom_right").get("lon").getAsDouble());
+
+        // Test the shape clause
+        JsonObject shapeBool = should.get(1).getAsJsonObject().getAsJsonObject("bool");
+        assertTrue(shapeBool.getAsJsonArray("filter").get(0).getAsJsonObject().getAsJsonObject("geo_shape").has("geometry"));
+        assertTrue(shapeBool.getAsJsonObject("must_not").getAsJsonObject("term").get("geometry_point").getAsBoolean());
+    }
+
+    /**
+     * Test that the intersection query uses a geo_shape predicate on the
+     * centroid geo_point field for the point geometries, when the search area
+     * is not a rectangle.
+     */
+    @Test
+    void testGeoShapeIntersectsQueryPolygon() {
+        Geometry triangle = this.geometryFactory.createPolygon(new Coordinate[] {
+                new Coordinate(0, 0),
+                new Coordinate(10, 0),
+                new Coordinate(0, 10),
+                new Coordinate(0, 0)
+        });
+
+        // Perform the utility call
+        JsonObject query = GeometryUtils.geoShapeIntersectsQuery("geometry", triangle);
+
+        // Test the point clause
+        JsonArray should = query.getAsJsonObject("bool").getAsJsonArray("should");
+        JsonArray pointFilters = should.get(0).getAsJsonObject().getAsJsonObject("bool").getAsJsonArray("filter");
+        JsonObject shape = pointFilters.get(1).getAsJsonObject().getAsJsonObject("geo_shape").getAsJsonObject("geometry_centroid");
+        assertEquals(GeometryUtils.toWkt(triangle), shape.get("shape").getAsString());
+        assertEquals("intersects", shape.get("relation").getAsString());
+    }
+
+    /**
+     * Test that no intersection query is generated without a geometry.
+     */
+    @Test
+    void testGeoShapeIntersectsQueryNoGeometry() {
+        assertNull(GeometryUtils.geoShapeIntersectsQuery("geometry", null));
+    }
+
+    /**
+     * Test that the bounding boxes are translated into envelopes in the AtoN
+     * geometry axis order, i.e. latitude first.
+     */
+    @Test
+    void testToEnvelopes() {
+        List<Envelope> envelopes = GeometryUtils.toEnvelopes(new double[]{10, 50, 11, 51});
+
+        // Validate the envelope
+        assertEquals(1, envelopes.size());
+        assertEquals(new Envelope(50, 51, 10, 11), envelopes.getFirst());
+    }
+
+    /**
+     * Test that the bounding boxes crossing the antimeridian are split into
+     * two envelopes, one on each side of it.
+     */
+    @Test
+    void testToEnvelopesAntimeridian() {
+        List<Envelope> envelopes = GeometryUtils.toEnvelopes(new double[]{170, -10, -170, 10});
+
+        // Validate the envelopes
+        assertEquals(2, envelopes.size());
+        assertEquals(new Envelope(-10, 10, 170, 180), envelopes.get(0));
+        assertEquals(new Envelope(-10, 10, -180, -170), envelopes.get(1));
+    }
+
+    /**
+     * Test that the geometries are copied into the longitude first order,
+     * leaving the original geometries untouched.
+     */
+    @Test
+    void testToLonLat() {
+        Geometry lineGeometry = this.geometryFactory.createLineString(new Coordinate[] {
+                new Coordinate(50, 10),
+                new Coordinate(51, 11),
+        });
+
+        // Perform the utility call
+        Geometry result = GeometryUtils.toLonLat(lineGeometry);
+
+        // Validate the results
+        assertEquals(new Coordinate(10, 50), result.getCoordinates()[0]);
+        assertEquals(new Coordinate(11, 51), result.getCoordinates()[1]);
+        assertEquals(new Coordinate(50, 10), lineGeometry.getCoordinates()[0]);
+        assertNull(GeometryUtils.toLonLat(null));
+    }
+
+}
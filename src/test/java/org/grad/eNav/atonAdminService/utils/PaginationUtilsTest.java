@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import org.grad.secomv2.core.models.PaginationObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaginationUtilsTest {
+
+    /**
+     * Test that the SECOM pagination parameters are translated to the
+     * equivalent zero-based pageable requests.
+     */
+    @Test
+    void testToPageable() {
+        Pageable pageable = PaginationUtils.toPageable(3, 20, 100);
+        assertTrue(pageable.isPaged());
+        assertEquals(2, pageable.getPageNumber());
+        assertEquals(20, pageable.getPageSize());
+        assertEquals(40, pageable.getOffset());
+    }
+
+    /**
+     * Test that the missing SECOM pagination parameters are translated to
+     * the first page of the default page size, so that the requests are
+     * never left unpaged.
+     */
+    @Test
+    void testToPageableDefaults() {
+        assertEquals(PageRequest.of(0, 100), PaginationUtils.toPageable(null, null, 100));
+        assertEquals(PageRequest.of(1, 100), PaginationUtils.toPageable(2, null, 100));
+        assertEquals(PageRequest.of(1, 100), PaginationUtils.toPageable(2, 0, 100));
+        assertEquals(PageRequest.of(0, 10), PaginationUtils.toPageable(0, 10, 100));
+        assertEquals(PageRequest.of(0, 1), PaginationUtils.toPageable(null, null, 0));
+    }
+
+    /**
+     * Test that the generated SECOM pagination objects report the total
+     * number of the matching entries and not just the ones included in the
+     * retrieved page.
+     */
+    @Test
+    void testToPaginationObject() {
+        Pageable pageable = PageRequest.of(0, 10);
+        Page<String> page = new PageImpl<>(Collections.nCopies(10, "entry"), pageable, 2500);
+
+        PaginationObject paginationObject = PaginationUtils.toPaginationObject(page, pageable);
+        assertEquals(2500, paginationObject.getTotalItems());
+        assertEquals(10, paginationObject.getMaxItemsPerPage());
+    }
+
+    /**
+     * Test that the generated SECOM pagination objects report no items when
+     * nothing was retrieved.
+     */
+    @Test
+    void testToPaginationObjectEmpty() {
+        Pageable pageable = PageRequest.of(0, 10);
+
+        PaginationObject paginationObject = PaginationUtils.toPaginationObject(Page.empty(pageable), pageable);
+        assertEquals(0, paginationObject.getTotalItems());
+        assertEquals(10, paginationObject.getMaxItemsPerPage());
+    }
+
+}
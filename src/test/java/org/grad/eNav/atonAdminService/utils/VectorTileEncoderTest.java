@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2024 GLA Research and Development Directorate
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.grad.eNav.atonAdminService.utils;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VectorTileEncoderTest {
+
+    // Test Variables
+    private GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    /**
+     * Test that the tile envelopes follow the S-100 axis order, i.e. the
+     * latitude on the X axis and the longitude on the Y axis.
+     */
+    @Test
+    void testGetTileEnvelope() {
+        final Envelope world = VectorTileEncoder.getTileEnvelope(0, 0, 0);
+        assertEquals(-VectorTileEncoder.MAX_LATITUDE, world.getMinX(), 1e-9);
+        assertEquals(VectorTileEncoder.MAX_LATITUDE, world.getMaxX(), 1e-9);
+        assertEquals(-180.0, world.getMinY(), 1e-9);
+        assertEquals(180.0, world.getMaxY(), 1e-9);
+
+        final Envelope northEast = VectorTileEncoder.getTileEnvelope(1, 1, 0);
+        assertEquals(0.0, northEast.getMinX(), 1e-9);
+        assertEquals(VectorTileEncoder.MAX_LATITUDE, northEast.getMaxX(), 1e-9);
+        assertEquals(0.0, northEast.getMinY(), 1e-9);
+        assertEquals(180.0, northEast.getMaxY(), 1e-9);
+    }
+
+    /**
+     * Test that the geographic coordinates are converted into the fractional
+     * tile coordinates they fall within.
+     */
+    @Test
+    void testCoordinatesToTile() {
+        assertEquals(0.0, VectorTileEncoder.longitudeToTile(-180.0, 2), 1e-9);
+        assertEquals(1.0, VectorTileEncoder.longitudeToTile(0.0, 2), 1e-9);
+        assertEquals(540, (int) VectorTileEncoder.longitudeToTile(10.0, 1024));
+        assertEquals(0.0, VectorTileEncoder.latitudeToTile(90.0, 2), 1e-9);
+        assertEquals(1.0, VectorTileEncoder.latitudeToTile(0.0, 2), 1e-9);
+        assertEquals(347, (int) VectorTileEncoder.latitudeToTile(50.0, 1024));
+    }
+
+    /**
+     * Test that the geographic geometries are correctly transformed into
+     * the tile coordinate space, where the Y axis points down.
+     */
+    @Test
+    void testTransform() {
+        final Geometry centre = VectorTileEncoder.transform(this.geometryFactory.createPoint(new Coordinate(0.0, 0.0)), 0, 0, 0, 4096);
+        assertEquals(2048.0, centre.getCoordinate().x, 1e-6);
+        assertEquals(2048.0, centre.getCoordinate().y, 1e-6);
+
+        final Geometry corner = VectorTileEncoder.transform(this.geometryFactory.createPoint(new Coordinate(90.0, -180.0)), 0, 0, 0, 4096);
+        assertEquals(0.0, corner.getCoordinate().x, 1e-6);
+        assertEquals(0.0, corner.getCoordinate().y, 1e-6);
+
+        final Geometry shifted = VectorTileEncoder.transform(this.geometryFactory.createPoint(new Coordinate(0.0, 0.0)), 1, 1, 1, 4096);
+        assertEquals(0.0, shifted.getCoordinate().x, 1e-6);
+        assertEquals(0.0, shifted.getCoordinate().y, 1e-6);
+    }
+
+    /**
+     * Test that a point feature is encoded according to the vector tile
+     * specification.
+     */
+    @Test
+    void testEncodePoint() {
+        final VectorTileEncoder encoder = new VectorTileEncoder(4096);
+        assertTrue(encoder.isEmpty());
+        encoder.addFeature("a", 1, this.geometryFactory.createPoint(new Coordinate(25.2, 16.8)), Map.of("k", "v"));
+        assertFalse(encoder.isEmpty());
+
+        // Validate the encoded bytes
+        assertArrayEquals(new byte[]{
+                0x1A, 0x1F,                                     // layer
+                0x78, 0x02,                                     // version
+                0x0A, 0x01, 0x61,                               // name
+                0x12, 0x0D,                                     // feature
+                0x08, 0x01,                                     // id
+                0x12, 0x02, 0x00, 0x00,                         // tags
+                0x18, 0x01,                                     // type
+                0x22, 0x03, 0x09, 0x32, 0x22,                   // geometry
+                0x1A, 0x01, 0x6B,                               // keys
+                0x22, 0x03, 0x0A, 0x01, 0x76,                   // values
+                0x28, (byte) 0x80, 0x20                         // extent
+        }, encoder.encode());
+    }
+
+    /**
+     * Test that the polygon rings are encoded with the same winding order,
+     * regardless of the winding order of the original geometry.
+     */
+    @Test
+    void testEncodePolygonWinding() {
+        final Coordinate[] ring = new Coordinate[]{
+                new Coordinate(0, 0),
+                new Coordinate(0, 10),
+                new Coordinate(10, 10),
+                new Coordinate(10, 0),
+                new Coordinate(0, 0)
+        };
+        final Coordinate[] reversedRing = new Coordinate[]{
+                new Coordinate(10, 0),
+                new Coordinate(10, 10),
+                new Coordinate(0, 10),
+                new Coordinate(0, 0),
+                new Coordinate(10, 0)
+        };
+        final Polygon polygon = this.geometryFactory.createPolygon(ring);
+        final Polygon reversed = this.geometryFactory.createPolygon(reversedRing);
+
+        final VectorTileEncoder encoder = new VectorTileEncoder(4096);
+        encoder.addFeature("a", 1, polygon, Collections.emptyMap());
+        final VectorTileEncoder reversedEncoder = new VectorTileEncoder(4096);
+        reversedEncoder.addFeature("a", 1, reversed, Collections.emptyMap());
+
+        // Validate the encoded bytes
+        assertArrayEquals(encoder.encode(), reversedEncoder.encode());
+    }
+
+    /**
+     * Test that empty and degenerate geometries are not encoded.
+     */
+    @Test
+    void testEncodeEmpty() {
+        final VectorTileEncoder encoder = new VectorTileEncoder(4096);
+        encoder.addFeature("a", 1, null, Collections.emptyMap());
+        encoder.addFeature("a", 2, this.geometryFactory.createPoint(), Collections.emptyMap());
+        encoder.addFeature("a", 3, this.geometryFactory.createLineString(new Coordinate[]{
+                new Coordinate(1.1, 1.1),
+                new Coordinate(0.9, 0.9)
+        }), Collections.emptyMap());
+
+        // Validate the results
+        assertTrue(encoder.isEmpty());
+        assertEquals(0, encoder.encode().length);
+    }
+
+}
@@ -30,7 +30,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ZipUtilsTest {
 
@@ -91,6 +91,59 @@ public class ZipUtilsTest {
         assertZipContainsEntry(this.byteArrayOutputStream, fileEntry);
     }
 
+    /**
+     * Test that we can successfully add a directory entry into a zip output
+     * stream without it existing on disk.
+     */
+    @Test
+    public void testZipDirectory() throws IOException {
+        // Perform the zipping operation -- the final slash should be added
+        ZipUtils.zipDirectory("asdfgh", this.zipOutputStream);
+        this.zipOutputStream.close();
+
+        // Assert that the zip contains the directory entry
+        assertZipContainsEntry(this.byteArrayOutputStream, new ZipEntry("asdfgh/"));
+    }
+
+    /**
+     * Test that we can successfully zip some in-memory content into a zip
+     * output stream without a temporary file.
+     */
+    @Test
+    public void testZipBytes() throws IOException {
+        // Perform the zipping operation
+        ZipUtils.zipBytes("content".getBytes(), "asdfgh/qwerty.txt", this.zipOutputStream);
+        this.zipOutputStream.close();
+
+        // Assert that the zip contains the entry with the correct content
+        assertZipContainsEntry(this.byteArrayOutputStream, new ZipEntry("asdfgh/qwerty.txt"));
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(this.byteArrayOutputStream.toByteArray()))) {
+            assertNotNull(zipInputStream.getNextEntry());
+            assertArrayEquals("content".getBytes(), zipInputStream.readAllBytes());
+        }
+    }
+
+    /**
+     * Test that we can successfully compress some in-memory content directly
+     * into the bytes of a zip archive.
+     */
+    @Test
+    public void testZipContent() throws IOException {
+        // Perform the zipping operation on some repetitive content
+        final byte[] content = "<content/>".repeat(1000).getBytes();
+        final byte[] zipped = ZipUtils.zipContent(content, "qwerty.xml");
+
+        // Assert that the zip is smaller and contains the original content
+        assertTrue(zipped.length < content.length);
+        try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zipped))) {
+            ZipEntry zipEntry = zipInputStream.getNextEntry();
+            assertNotNull(zipEntry);
+            assertEquals("qwerty.xml", zipEntry.getName());
+            assertArrayEquals(content, zipInputStream.readAllBytes());
+            assertNull(zipInputStream.getNextEntry());
+        }
+    }
+
     /**
      * This helper function asserts that the specified zip entry can be found inside
      * the zipped data.